@@ -0,0 +1,129 @@
+package au.com.permeance.liferay.spring;
+
+import java.lang.annotation.Retention;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.core.type.filter.RegexPatternTypeFilter;
+import org.springframework.core.type.filter.TypeFilter;
+
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+import static java.util.Collections.singleton;
+
+/**
+ * Measures the cost of the {@link BeanLocatorDefinitionCopier} startup path against a {@link SyntheticBeanLocator}.
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BeanLocatorDefinitionCopierBenchmark {
+
+    @Param({"100", "1000", "20000"})
+    private int nameCount;
+
+    @Param({"0.0", "0.5", "0.9"})
+    private double nonClassRatio;
+
+    @Param({"none", "assignable", "annotation", "regex", "mixed"})
+    private String filters;
+
+    private String[] names;
+
+    private BeanLocatorDefinitionCopier copier;
+
+    private TypeFilter filter;
+
+    @Setup
+    public void setUp() {
+        final SyntheticBeanLocator beanLocator = new SyntheticBeanLocator(nameCount, nonClassRatio);
+        names = beanLocator.getNames();
+        copier = new BeanLocatorDefinitionCopier(beanLocator);
+
+        final TypeFilter assignable = new AssignableTypeFilter(Collection.class);
+        final TypeFilter annotation = new AnnotationTypeFilter(BenchmarkMarker.class);
+        final TypeFilter regex = new RegexPatternTypeFilter(Pattern.compile("java\\.util\\.concurrent\\..*"));
+        if ("assignable".equals(filters)) {
+            copier.addIncludeFilter(assignable);
+        }
+        else if ("annotation".equals(filters)) {
+            copier.addExcludeFilter(annotation);
+        }
+        else if ("regex".equals(filters)) {
+            copier.addIncludeFilter(regex);
+        }
+        else if ("mixed".equals(filters)) {
+            copier.addIncludeFilter(assignable);
+            copier.addIncludeFilter(regex);
+            copier.addExcludeFilter(annotation);
+        }
+        filter = regex;
+    }
+
+    @Benchmark
+    public int initApplicationContext() {
+        final CountingBeanFactory beanFactory = new CountingBeanFactory();
+        copier.initApplicationContext(new GenericApplicationContext(beanFactory));
+        return beanFactory.count;
+    }
+
+    @Benchmark
+    public void isAcceptable(final Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(copier.isAcceptable(name));
+        }
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return copier.matches(singleton(filter), ConcurrentHashMap.class);
+    }
+
+    @Benchmark
+    public SimpleMetadataReader simpleMetadataReaderConstruction() {
+        return new SimpleMetadataReader(ConcurrentHashMap.class);
+    }
+
+    @Benchmark
+    public Object simpleMetadataReaderMetadata() {
+        return new SimpleMetadataReader(ConcurrentHashMap.class).getAnnotationMetadata();
+    }
+
+    /**
+     * Annotation used by the annotation filter mix; it is present on no JDK class, so every type is scanned in full.
+     */
+    @Retention(RUNTIME)
+    public @interface BenchmarkMarker {
+    }
+
+    /**
+     * Bean factory which counts registered singletons instead of retaining them, so duplicate synthetic names are
+     * tolerated and each invocation starts from an empty registry.
+     */
+    private static final class CountingBeanFactory extends DefaultListableBeanFactory {
+
+        private int count;
+
+        @Override
+        public void registerSingleton(final String beanName, final Object singletonObject) {
+            count++;
+        }
+
+    }
+
+}
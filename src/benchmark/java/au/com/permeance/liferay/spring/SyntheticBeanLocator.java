@@ -0,0 +1,75 @@
+package au.com.permeance.liferay.spring;
+
+import com.liferay.portal.kernel.bean.BeanLocator;
+import com.liferay.portal.kernel.bean.BeanLocatorException;
+
+import java.util.Random;
+
+/**
+ * In-memory {@link BeanLocator} whose names are a repeatable mix of JDK class names and names which do not identify a
+ * class. Every name locates to a shared placeholder bean.
+ */
+public class SyntheticBeanLocator implements BeanLocator {
+
+    static final String[] CLASS_NAMES = {
+        "java.io.Closeable", "java.io.File", "java.io.InputStream", "java.io.OutputStream", "java.io.Reader",
+        "java.io.Serializable", "java.io.StringWriter", "java.io.Writer", "java.lang.Appendable",
+        "java.lang.CharSequence", "java.lang.Cloneable", "java.lang.Comparable", "java.lang.Deprecated",
+        "java.lang.Iterable", "java.lang.Number", "java.lang.Object", "java.lang.Readable", "java.lang.Runnable",
+        "java.lang.String", "java.lang.StringBuilder", "java.lang.Thread", "java.lang.ThreadLocal",
+        "java.util.AbstractList", "java.util.AbstractMap", "java.util.ArrayList", "java.util.BitSet",
+        "java.util.Collection", "java.util.Comparator", "java.util.Deque", "java.util.EventListener",
+        "java.util.HashMap", "java.util.HashSet", "java.util.Iterator", "java.util.LinkedHashMap",
+        "java.util.LinkedList", "java.util.List", "java.util.Map", "java.util.NavigableMap", "java.util.Observable",
+        "java.util.Properties", "java.util.Queue", "java.util.Random", "java.util.RandomAccess", "java.util.Set",
+        "java.util.SortedMap", "java.util.SortedSet", "java.util.Stack", "java.util.Timer", "java.util.TreeMap",
+        "java.util.TreeSet", "java.util.Vector", "java.util.WeakHashMap", "java.util.concurrent.BlockingQueue",
+        "java.util.concurrent.Callable", "java.util.concurrent.ConcurrentHashMap", "java.util.concurrent.ConcurrentMap",
+        "java.util.concurrent.CopyOnWriteArrayList", "java.util.concurrent.Executor",
+        "java.util.concurrent.ExecutorService", "java.util.concurrent.Future", "java.util.concurrent.FutureTask",
+        "java.util.concurrent.LinkedBlockingQueue", "java.util.concurrent.ThreadPoolExecutor",
+        "java.util.concurrent.atomic.AtomicInteger", "java.util.concurrent.atomic.AtomicLong",
+        "java.util.concurrent.locks.Lock", "java.util.concurrent.locks.ReentrantLock"
+    };
+
+    private final String[] names;
+
+    private final Object bean = new Object();
+
+    /**
+     * Creates a locator with the supplied number of names, of which the supplied ratio do not identify a class.
+     *
+     * @param count         the number of names.
+     * @param nonClassRatio the ratio (between 0 and 1) of names which do not identify a class.
+     */
+    public SyntheticBeanLocator(final int count, final double nonClassRatio) {
+        final Random random = new Random(count);
+        names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = random.nextDouble() < nonClassRatio
+                       ? "com.example.synthetic.Missing" + i
+                       : CLASS_NAMES[i % CLASS_NAMES.length];
+        }
+    }
+
+    @Override
+    public ClassLoader getClassLoader() {
+        return getClass().getClassLoader();
+    }
+
+    @Override
+    public String[] getNames() {
+        return names.clone();
+    }
+
+    @Override
+    public Class<?> getType(final String name) throws BeanLocatorException {
+        return bean.getClass();
+    }
+
+    @Override
+    public Object locate(final String name) throws BeanLocatorException {
+        return bean;
+    }
+
+}
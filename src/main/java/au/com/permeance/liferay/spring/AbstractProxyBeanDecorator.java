@@ -0,0 +1,159 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+import com.liferay.portal.kernel.log.Log;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.core.type.classreading.SimpleMetadataReaderFactory;
+import org.springframework.core.type.filter.TypeFilter;
+import org.springframework.util.ClassUtils;
+
+import static com.liferay.portal.kernel.log.LogFactoryUtil.getLog;
+
+import static java.lang.String.format;
+import static java.lang.reflect.Proxy.newProxyInstance;
+
+/**
+ * This class provides the basis of {@link BeanDecorator}s which wrap beans in JDK proxies. Beans are selected by
+ * {@link #addTypeFilter(TypeFilter) type filters} (every bean is selected if none is added), and selected beans are
+ * wrapped in a proxy implementing all of their interfaces whose {@link InvocationHandler} is created by the subclass.
+ * Beans without interfaces are never decorated.
+ */
+public abstract class AbstractProxyBeanDecorator implements BeanDecorator {
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = getLog(AbstractProxyBeanDecorator.class);
+
+    /**
+     * Stores the filters selecting the beans to decorate.
+     */
+    private final transient List<TypeFilter> typeFilters = new CopyOnWriteArrayList<TypeFilter>();
+
+    /**
+     * Adds a filter selecting beans to decorate. Filters are matched against the class of each bean, reading the
+     * class files of its supertypes from the bean's class loader.
+     *
+     * @param filter the filter which beans must match to be decorated.
+     */
+    public final void addTypeFilter(final TypeFilter filter) {
+        typeFilters.add(filter);
+    }
+
+    /**
+     * Returns whether any filter selecting beans to decorate has been added.
+     *
+     * @return {@code true} if a type filter has been added, {@code false} if every bean is selected.
+     */
+    protected final boolean hasTypeFilters() {
+        return !typeFilters.isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return a proxy if the bean is selected, implements an interface and is accepted by
+     *         {@link #createInvocationHandler(String, Object, Class[])}, or the supplied bean otherwise.
+     */
+    @Override
+    public final Object decorate(final String name, final Object bean) {
+        final Class<?> beanClass = bean.getClass();
+        if (!isSelected(beanClass)) {
+            return bean;
+        }
+        final ClassLoader classLoader = beanClass.getClassLoader();
+        final Class<?>[] interfaces = ClassUtils.getAllInterfacesForClass(beanClass, classLoader);
+        if (interfaces.length == 0) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(format("Not decorating bean %s as it implements no interface", name));
+            }
+            return bean;
+        }
+        final InvocationHandler handler = createInvocationHandler(name, bean, interfaces);
+        return handler == null ? bean : newProxyInstance(classLoader, interfaces, handler);
+    }
+
+    /**
+     * Creates the invocation handler of the proxy decorating the supplied bean.
+     *
+     * @param name       the name the bean will be registered under.
+     * @param bean       the bean to decorate.
+     * @param interfaces the interfaces the proxy will implement.
+     *
+     * @return the invocation handler, or {@code null} if the bean should not be decorated.
+     */
+    protected abstract InvocationHandler createInvocationHandler(String name, Object bean, Class<?>[] interfaces);
+
+    /**
+     * Invokes the supplied method on the supplied bean, unwrapping any exception it throws.
+     *
+     * @param target the bean to invoke the method on.
+     * @param method the method to invoke.
+     * @param args   the arguments to invoke it with.
+     *
+     * @return the result of the method.
+     *
+     * @throws Throwable if the method throws.
+     */
+    protected static Object invokeTarget(final Object target,
+                                         final Method method,
+                                         final Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        }
+        catch (final InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    /**
+     * Returns whether the supplied bean class is selected by the {@link #typeFilters}.
+     *
+     * @param beanClass the class of the bean.
+     *
+     * @return {@code true} if no filter is configured or any filter matches, {@code false} otherwise.
+     */
+    private boolean isSelected(final Class<?> beanClass) {
+        if (typeFilters.isEmpty()) {
+            return true;
+        }
+        final SimpleMetadataReader metadataReader = new SimpleMetadataReader(beanClass);
+        final MetadataReaderFactory metadataReaderFactory =
+            new SimpleMetadataReaderFactory(beanClass.getClassLoader());
+        for (TypeFilter filter : typeFilters) {
+            try {
+                if (filter.match(metadataReader, metadataReaderFactory)) {
+                    return true;
+                }
+            }
+            catch (final IOException e) {
+                LOG.warn(format("Error checking for filter %s match against %s", filter, beanClass));
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,238 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * This class provides a bounded cache of {@link AcceptanceDecision}s which can be shared between
+ * {@link BeanLocatorDefinitionCopier} instances, so that copiers resolving the same names with equivalent filters (see
+ * {@link TypeFilterFingerprint}) only classify each name once. Decisions are partitioned by the class loader names
+ * were resolved against; class loaders are only weakly referenced, and their decisions can be discarded explicitly with
+ * {@link #invalidate(ClassLoader)} when a plugin is undeployed. Within each class loader the least recently used
+ * decisions are evicted once {@link #getMaximumSize()} is exceeded.
+ * <p/>
+ * Note that {@link #getSharedInstance()} is shared by every copier loaded by the same class loader as this class, so
+ * deploying this library to the portal's global class path shares it across plugins.
+ */
+public class AcceptanceCache {
+
+    /**
+     * The default maximum number of decisions held per class loader.
+     */
+    public static final int DEFAULT_MAXIMUM_SIZE = 16384;
+
+    /**
+     * The instance shared by default between copiers.
+     */
+    private static final AcceptanceCache SHARED_INSTANCE = new AcceptanceCache(DEFAULT_MAXIMUM_SIZE);
+
+    /**
+     * Stores the cached decisions, keyed by class loader, then by fingerprint and name.
+     */
+    private final transient Map<ClassLoader, Map<Key, AcceptanceDecision>> decisions =
+        new WeakHashMap<ClassLoader, Map<Key, AcceptanceDecision>>();
+
+    /**
+     * Stores the maximum number of decisions held per class loader.
+     */
+    private final transient int maximumSize;
+
+    /**
+     * Creates a new instance holding at most the supplied number of decisions per class loader.
+     *
+     * @param maximumSize the maximum number of decisions held per class loader.
+     */
+    public AcceptanceCache(final int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Returns the instance shared by default between copiers.
+     *
+     * @return the shared instance.
+     */
+    public static AcceptanceCache getSharedInstance() {
+        return SHARED_INSTANCE;
+    }
+
+    /**
+     * Returns the maximum number of decisions held per class loader.
+     *
+     * @return the maximum number of decisions held per class loader.
+     */
+    public final int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Returns the cached decision for the supplied name.
+     *
+     * @param classLoader the class loader the name is resolved against.
+     * @param fingerprint the fingerprint of the filters the name is matched with.
+     * @param name        the name of the bean.
+     *
+     * @return the cached decision, or {@code null} if none is cached.
+     */
+    public final synchronized AcceptanceDecision get(final ClassLoader classLoader,
+                                                     final String fingerprint,
+                                                     final String name) {
+        final Map<Key, AcceptanceDecision> map = decisions.get(classLoader);
+        return map == null ? null : map.get(new Key(fingerprint, name));
+    }
+
+    /**
+     * Caches the decision for the supplied name.
+     *
+     * @param classLoader the class loader the name is resolved against.
+     * @param fingerprint the fingerprint of the filters the name is matched with.
+     * @param name        the name of the bean.
+     * @param decision    the decision to cache.
+     */
+    public final synchronized void put(final ClassLoader classLoader,
+                                       final String fingerprint,
+                                       final String name,
+                                       final AcceptanceDecision decision) {
+        Map<Key, AcceptanceDecision> map = decisions.get(classLoader);
+        if (map == null) {
+            map = new BoundedMap(maximumSize);
+            decisions.put(classLoader, map);
+        }
+        map.put(new Key(fingerprint, name), decision);
+    }
+
+    /**
+     * Discards every decision made against the supplied class loader.
+     *
+     * @param classLoader the class loader to discard decisions for.
+     */
+    public final synchronized void invalidate(final ClassLoader classLoader) {
+        decisions.remove(classLoader);
+    }
+
+    /**
+     * Discards every cached decision.
+     */
+    public final synchronized void invalidateAll() {
+        decisions.clear();
+    }
+
+    /**
+     * Returns the total number of cached decisions.
+     *
+     * @return the total number of cached decisions.
+     */
+    public final synchronized int size() {
+        int size = 0;
+        for (Map<Key, AcceptanceDecision> map : decisions.values()) {
+            size += map.size();
+        }
+        return size;
+    }
+
+    /**
+     * Key of a decision within a class loader's partition, pairing the fingerprint of the filters with the name so
+     * lookups need not build a combined string.
+     */
+    private static final class Key {
+
+        /**
+         * Stores the fingerprint of the filters the name is matched with.
+         */
+        private final String fingerprint;
+
+        /**
+         * Stores the name of the bean.
+         */
+        private final String name;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param fingerprint the fingerprint of the filters the name is matched with.
+         * @param name        the name of the bean.
+         */
+        Key(final String fingerprint, final String name) {
+            this.fingerprint = fingerprint;
+            this.name = name;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return name.equals(other.name) && fingerprint.equals(other.fingerprint);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return 31 * fingerprint.hashCode() + name.hashCode();
+        }
+
+    }
+
+    /**
+     * Access ordered map which evicts its least recently used entry once it holds more than its maximum size.
+     */
+    private static final class BoundedMap extends LinkedHashMap<Key, AcceptanceDecision> {
+
+        /**
+         * Serialisation version.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Stores the maximum number of entries held.
+         */
+        private final int maximumSize;
+
+        /**
+         * Creates a new instance holding at most the supplied number of entries.
+         *
+         * @param maximumSize the maximum number of entries held.
+         */
+        BoundedMap(final int maximumSize) {
+            super(16, 0.75f, true);
+            this.maximumSize = maximumSize;
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * @return {@code true} once this map holds more than {@link #maximumSize} entries.
+         */
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Key, AcceptanceDecision> eldest) {
+            return size() > maximumSize;
+        }
+
+    }
+
+}
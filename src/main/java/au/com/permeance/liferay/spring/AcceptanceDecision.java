@@ -0,0 +1,64 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+/**
+ * This enumeration describes the outcome of deciding whether a bean obtained from liferay's
+ * {@link com.liferay.portal.kernel.bean.BeanLocator} should be copied.
+ */
+public enum AcceptanceDecision {
+
+    /**
+     * The bean's type is known and matched the configured filters.
+     */
+    ACCEPTED,
+
+    /**
+     * The bean's name was rejected by the {@link BeanNameFilter} before its type was resolved.
+     */
+    NAME_EXCLUDED,
+
+    /**
+     * The bean's name does not identify a known type.
+     */
+    UNKNOWN_TYPE,
+
+    /**
+     * The bean's type matched an exclude filter.
+     */
+    EXCLUDED,
+
+    /**
+     * The bean's type did not match any of the configured include filters.
+     */
+    NOT_INCLUDED,
+
+    /**
+     * The bean's name was rejected by an {@link AcceptanceIndex} or {@link CopyManifest} without being classified.
+     */
+    INDEXED_REJECTED;
+
+    /**
+     * Returns whether this decision allows the bean to be copied.
+     *
+     * @return {@code true} if this decision is {@link #ACCEPTED}, {@code false} otherwise.
+     */
+    public boolean isAccepted() {
+        return this == ACCEPTED;
+    }
+
+}
@@ -0,0 +1,242 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+import com.liferay.portal.kernel.log.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static com.liferay.portal.kernel.log.LogFactoryUtil.getLog;
+
+import static java.lang.String.format;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+
+/**
+ * This class provides a persistent index of acceptance decisions made by a {@link BeanLocatorDefinitionCopier}, so that
+ * a restarted node can skip classifying names whose decisions are already known. The index is a compact binary file
+ * holding a header followed by one bit per name (set if the name was accepted), and is memory-mapped when read. Each
+ * index is keyed by a hash of the names and the filter configuration they were classified with (see
+ * {@link #key(String[], String)}); an index with a different key is ignored.
+ */
+public class AcceptanceIndex {
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = getLog(AcceptanceIndex.class);
+
+    /**
+     * Identifies index files ("LSAI").
+     */
+    private static final int MAGIC = 0x4C534149;
+
+    /**
+     * Identifies the version of the index file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The length of the header: magic, version, key and name count.
+     */
+    private static final int HEADER_LENGTH = 4 + 4 + 8 + 4;
+
+    /**
+     * The 64-bit FNV-1a offset basis.
+     */
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    /**
+     * The 64-bit FNV-1a prime.
+     */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Stores the file the index is persisted to.
+     */
+    private final transient File file;
+
+    /**
+     * Creates a new instance persisted to the supplied file.
+     *
+     * @param file the file the index is persisted to.
+     */
+    public AcceptanceIndex(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the file the index is persisted to.
+     *
+     * @return the file the index is persisted to.
+     */
+    public final File getFile() {
+        return file;
+    }
+
+    /**
+     * Computes the key identifying the supplied names classified with the supplied filter configuration.
+     *
+     * @param names       the names obtained from the bean locator, in order.
+     * @param fingerprint the fingerprint of the filter configuration (see {@link TypeFilterFingerprint}).
+     *
+     * @return the 64-bit FNV-1a hash of the names and fingerprint.
+     */
+    public static long key(final String[] names, final String fingerprint) {
+        long hash = hash(FNV_OFFSET_BASIS, fingerprint);
+        for (String name : names) {
+            hash = hash(hash, name);
+        }
+        return hash;
+    }
+
+    /**
+     * Reads the indexed decisions, if the index exists and was written for the supplied key and number of names. Any
+     * error reading the index is logged and treated as a missing index.
+     *
+     * @param key   the expected key (see {@link #key(String[], String)}).
+     * @param count the expected number of names.
+     *
+     * @return whether each name was accepted, in order, or {@code null} if the index is missing or does not match.
+     */
+    public final boolean[] load(final long key, final int count) {
+        if (!file.isFile()) {
+            LOG.debug(format("No acceptance index at %s", file));
+            return null;
+        }
+
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            final FileChannel channel = randomAccessFile.getChannel();
+            if (channel.size() != length(count)) {
+                LOG.debug(format("Ignoring acceptance index %s (unexpected length)", file));
+                return null;
+            }
+
+            final MappedByteBuffer buffer = channel.map(READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != key
+                || buffer.getInt() != count) {
+                LOG.debug(format("Ignoring acceptance index %s (stale or unrecognised)", file));
+                return null;
+            }
+
+            final boolean[] accepted = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                accepted[i] = (buffer.get(HEADER_LENGTH + (i >>> 3)) & (1 << (i & 7))) != 0;
+            }
+            return accepted;
+        }
+        catch (final IOException e) {
+            LOG.warn(format("Error reading acceptance index %s - ignoring", file), e);
+        }
+        finally {
+            close(randomAccessFile);
+        }
+        return null;
+    }
+
+    /**
+     * Writes the supplied decisions to the index, replacing any existing index. The index is written to a temporary
+     * file which then replaces the index, so concurrent readers never observe a partially written index. Any error
+     * writing the index is logged rather than propagated.
+     *
+     * @param key      the key of the decisions (see {@link #key(String[], String)}).
+     * @param accepted whether each name was accepted, in order.
+     */
+    public final void store(final long key, final boolean[] accepted) {
+        final ByteBuffer buffer = ByteBuffer.allocate(length(accepted.length));
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(key).putInt(accepted.length);
+        for (int i = 0; i < accepted.length; i++) {
+            if (accepted[i]) {
+                final int offset = HEADER_LENGTH + (i >>> 3);
+                buffer.put(offset, (byte) (buffer.get(offset) | (1 << (i & 7))));
+            }
+        }
+        buffer.rewind();
+
+        RandomAccessFile randomAccessFile = null;
+        try {
+            final File temporary = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+            randomAccessFile = new RandomAccessFile(temporary, "rw");
+            randomAccessFile.getChannel().write(buffer);
+            randomAccessFile.close();
+            randomAccessFile = null;
+
+            if (!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file))) {
+                LOG.warn(format("Unable to replace acceptance index %s", file));
+                temporary.delete();
+            }
+        }
+        catch (final IOException e) {
+            LOG.warn(format("Error writing acceptance index %s - ignoring", file), e);
+        }
+        finally {
+            close(randomAccessFile);
+        }
+    }
+
+    /**
+     * Returns the length of an index holding the supplied number of names.
+     *
+     * @param count the number of names.
+     *
+     * @return the length of the index in bytes.
+     */
+    private static int length(final int count) {
+        return HEADER_LENGTH + (count + 7) / 8;
+    }
+
+    /**
+     * Continues the supplied FNV-1a hash with the characters of the supplied string and a terminating separator.
+     *
+     * @param hash  the hash to continue.
+     * @param value the string to hash.
+     *
+     * @return the continued hash.
+     */
+    private static long hash(final long hash, final String value) {
+        long result = hash;
+        for (int i = 0; i < value.length(); i++) {
+            result = (result ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return (result ^ '\n') * FNV_PRIME;
+    }
+
+    /**
+     * Closes the supplied resource, logging rather than propagating any error.
+     *
+     * @param closeable the resource to close, or {@code null}.
+     */
+    private static void close(final Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        }
+        catch (final IOException e) {
+            LOG.debug(format("Error closing %s", closeable), e);
+        }
+    }
+
+}
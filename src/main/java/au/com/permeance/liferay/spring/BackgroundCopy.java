@@ -0,0 +1,386 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+import com.liferay.portal.kernel.log.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.springframework.beans.factory.config.SingletonBeanRegistry;
+import org.springframework.context.ApplicationContextException;
+
+import static com.liferay.portal.kernel.log.LogFactoryUtil.getLog;
+
+import static java.lang.String.format;
+
+/**
+ * This class tracks the copy a {@link BeanLocatorDefinitionCopier} makes when its context is initialised, which runs
+ * on an executor if one is supplied. While a copy runs in the background, beans may be resolved ahead of it via
+ * {@link #resolveEarly(SingletonBeanRegistry, String)}: each name is resolved once whichever of the lookup and the copy
+ * reaches it first, and the copy registers the bean resolved early rather than a bean of its own. Beans resolved early
+ * whose names the copy did not register are registered when the copy {@link #finish(SingletonBeanRegistry) finishes}.
+ */
+final class BackgroundCopy {
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = getLog(BackgroundCopy.class);
+
+    /**
+     * Stores the steps of the copy performed by the copier.
+     */
+    private final Resolver resolver;
+
+    /**
+     * Stores the future of the copy, or {@code null} if no copy has been made.
+     */
+    private volatile Future<?> future;
+
+    /**
+     * Stores whether the background copy has started running.
+     */
+    private volatile boolean started;
+
+    /**
+     * Stores the deadline of the background copy in progress, as given by {@link System#nanoTime()}, or {@code null}
+     * if no background copy is in progress or it has no deadline.
+     */
+    private volatile Long deadline;
+
+    /**
+     * Stores the resolutions of beans located and decorated ahead of the background copy, which the copy registers
+     * instead of locating the beans again. Guarded by itself when registering.
+     */
+    private final ConcurrentMap<String, Resolution> earlyResolutions = new ConcurrentHashMap<String, Resolution>();
+
+    /**
+     * Stores the pending or completed resolution of each name resolved during the background copy in progress, whether
+     * by the copy or ahead of it, so that each name is resolved, and its decision and statistics recorded, once.
+     * {@code null} if no background copy is in progress; cleared whilst holding {@link #earlyResolutions}.
+     */
+    private volatile ConcurrentMap<String, FutureTask<Resolution>> sharedResolutions;
+
+    /**
+     * Creates a new instance performing the steps of the copy with the supplied resolver.
+     *
+     * @param resolver the resolver performing the steps of the copy.
+     */
+    BackgroundCopy(final Resolver resolver) {
+        this.resolver = resolver;
+    }
+
+    /**
+     * Records a copy which has already completed on the calling thread.
+     */
+    void completed() {
+        final FutureTask<Void> task = new FutureTask<Void>(new Runnable() {
+            @Override
+            public void run() {
+                // nothing to do
+            }
+        }, null);
+        task.run();
+        future = task;
+    }
+
+    /**
+     * Starts the supplied copy on the supplied executor, sharing resolutions with lookups until it finishes.
+     *
+     * @param executor the executor to run the copy on.
+     * @param copy     the copy to run.
+     */
+    void start(final ExecutorService executor, final Runnable copy) {
+        final FutureTask<Void> task = new FutureTask<Void>(new Runnable() {
+            @Override
+            public void run() {
+                started = true;
+                copy.run();
+            }
+        }, null);
+        started = false;
+        sharedResolutions = new ConcurrentHashMap<String, FutureTask<Resolution>>();
+        future = task;
+        executor.execute(task);
+    }
+
+    /**
+     * Returns the future of the copy.
+     *
+     * @return the future of the copy, or {@code null} if no copy has been made.
+     */
+    Future<?> getFuture() {
+        return future;
+    }
+
+    /**
+     * Sets the deadline which beans resolved ahead of the copy must be located by.
+     *
+     * @param deadline the deadline, as given by {@link System#nanoTime()}, or {@code null} if there is none.
+     */
+    void setDeadline(final Long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Cancels the background copy if it has not yet started. A running copy is left to complete, and remains
+     * cancellable (with interruption) by {@link #cancel()}.
+     */
+    void cancelIfPending() {
+        final Future<?> current = future;
+        if (current != null && !started) {
+            current.cancel(false);
+        }
+    }
+
+    /**
+     * Cancels the background copy, interrupting it if it is running.
+     */
+    void cancel() {
+        final Future<?> current = future;
+        if (current != null) {
+            current.cancel(true);
+        }
+    }
+
+    /**
+     * Discards the beans resolved ahead of the copy, and stops resolving beans ahead of it.
+     */
+    void clear() {
+        sharedResolutions = null;
+        earlyResolutions.clear();
+        deadline = null;
+    }
+
+    /**
+     * Forgets the copy, once it has been cancelled and its beans released.
+     */
+    void reset() {
+        clear();
+        future = null;
+    }
+
+    /**
+     * Resolves a single bean, once amongst the copy and any lookups if a background copy is in progress.
+     *
+     * @param name         the name of the bean to resolve.
+     * @param indexed      the previously indexed acceptance of the name, or {@code null} if it must be classified.
+     * @param copyDeadline the time by which the bean must be located, as given by {@link System#nanoTime()}, or
+     *                     {@code null} if there is no deadline.
+     *
+     * @return the resolution of the bean.
+     */
+    Resolution resolve(final String name, final Boolean indexed, final Long copyDeadline) {
+        final ConcurrentMap<String, FutureTask<Resolution>> resolutions = sharedResolutions;
+        if (resolutions == null) {
+            return resolver.resolve(name, indexed, copyDeadline);
+        }
+        return resolveShared(resolutions, name, indexed, copyDeadline);
+    }
+
+    /**
+     * Resolves the named bean ahead of the background copy in progress, recording the decorated bean so that the copy
+     * registers the same bean. If the copy registers the bean first, the registered bean is returned instead.
+     *
+     * @param registry the registry the copy registers beans with.
+     * @param name     the name of the bean.
+     *
+     * @return the bean, or {@code null} if it is unacceptable, could not be located or the copy has completed without
+     *         registering it.
+     */
+    Object resolveEarly(final SingletonBeanRegistry registry, final String name) {
+        Resolution early = earlyResolutions.get(name);
+        if (early == null) {
+            final ConcurrentMap<String, FutureTask<Resolution>> resolutions = sharedResolutions;
+            if (resolutions == null) {
+                return registry.getSingleton(name);
+            }
+            final Resolution resolution = resolveShared(resolutions, name, null, deadline);
+            if (resolution.bean == null) {
+                return null;
+            }
+            final Object registered = registry.getSingleton(name);
+            if (registered != null) {
+                return registered;
+            }
+            early = new Resolution(name);
+            early.decision = resolution.decision;
+            early.type = resolution.type;
+            early.bean = resolver.decorate(name, resolution.bean);
+        }
+        synchronized (earlyResolutions) {
+            final Object registered = registry.getSingleton(name);
+            if (registered != null || sharedResolutions == null) {
+                return registered;
+            }
+            final Resolution existing = earlyResolutions.putIfAbsent(name, early);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(format("Resolved bean %s on demand", name));
+            }
+            return existing == null ? early.bean : existing.bean;
+        }
+    }
+
+    /**
+     * Registers the bean of the supplied resolution with the supplied registry, decorating it first, unless a bean was
+     * resolved early under its name, which is registered instead.
+     *
+     * @param registry   the registry to register the bean with.
+     * @param resolution the resolution of the bean.
+     *
+     * @return the bean registered.
+     */
+    Object register(final SingletonBeanRegistry registry, final Resolution resolution) {
+        synchronized (earlyResolutions) {
+            final Resolution early = earlyResolutions.get(resolution.name);
+            final Object bean = early == null ? resolver.decorate(resolution.name, resolution.bean) : early.bean;
+            resolver.register(registry, resolution.name, bean);
+            return bean;
+        }
+    }
+
+    /**
+     * Ends resolution ahead of the copy, registering the beans resolved early whose names the copy did not register
+     * because they were not provided when it started.
+     *
+     * @param registry the registry the copy registered beans with.
+     *
+     * @return the early resolutions whose beans were registered.
+     */
+    List<Resolution> finish(final SingletonBeanRegistry registry) {
+        final List<Resolution> remaining = new ArrayList<Resolution>();
+        synchronized (earlyResolutions) {
+            sharedResolutions = null;
+            deadline = null;
+            for (Resolution early : earlyResolutions.values()) {
+                if (registry.getSingleton(early.name) == null) {
+                    resolver.register(registry, early.name, early.bean);
+                    remaining.add(early);
+                }
+            }
+            earlyResolutions.clear();
+        }
+        return remaining;
+    }
+
+    /**
+     * Resolves a single bean once amongst every caller sharing the supplied resolutions, the first caller resolving it
+     * and any other waiting for and returning the same resolution.
+     *
+     * @param resolutions  the pending or completed resolutions shared by the callers.
+     * @param name         the name of the bean to resolve.
+     * @param indexed      the previously indexed acceptance of the name, or {@code null} if it must be classified.
+     * @param copyDeadline the time by which the bean must be located, as given by {@link System#nanoTime()}, or
+     *                     {@code null} if there is no deadline.
+     *
+     * @return the resolution of the bean.
+     *
+     * @throws ApplicationContextException if the calling thread is interrupted while waiting for another caller.
+     */
+    private Resolution resolveShared(final ConcurrentMap<String, FutureTask<Resolution>> resolutions,
+                                     final String name,
+                                     final Boolean indexed,
+                                     final Long copyDeadline) {
+        final FutureTask<Resolution> task = new FutureTask<Resolution>(new Callable<Resolution>() {
+            @Override
+            public Resolution call() {
+                return resolver.resolve(name, indexed, copyDeadline);
+            }
+        });
+        FutureTask<Resolution> resolution = resolutions.putIfAbsent(name, task);
+        if (resolution == null) {
+            resolution = task;
+            task.run();
+        }
+        try {
+            return resolution.get();
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApplicationContextException("Interrupted while copying bean definitions", e);
+        }
+        catch (final ExecutionException e) {
+            throw propagate(e);
+        }
+    }
+
+    /**
+     * Returns the exception to throw for the failure of a resolution on another thread, rethrowing errors.
+     *
+     * @param e the exception thrown by the resolution's future.
+     *
+     * @return the runtime exception which caused the failure, or an {@link ApplicationContextException} wrapping any
+     *         other cause.
+     */
+    static RuntimeException propagate(final ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new ApplicationContextException("Error copying bean definitions", cause);
+    }
+
+    /**
+     * This interface is implemented by the copier to perform the steps of a copy which lookups share.
+     */
+    interface Resolver {
+
+        /**
+         * Classifies and locates a single bean.
+         *
+         * @param name     the name of the bean to resolve.
+         * @param indexed  the previously indexed acceptance of the name, or {@code null} if it must be classified.
+         * @param deadline the time by which the bean must be located, as given by {@link System#nanoTime()}, or
+         *                 {@code null} if there is no deadline.
+         *
+         * @return the resolution of the bean.
+         */
+        Resolution resolve(String name, Boolean indexed, Long deadline);
+
+        /**
+         * Decorates a located bean.
+         *
+         * @param name the name the bean will be registered under.
+         * @param bean the bean to decorate.
+         *
+         * @return the decorated bean.
+         */
+        Object decorate(String name, Object bean);
+
+        /**
+         * Registers a decorated bean.
+         *
+         * @param registry the registry to register the bean with.
+         * @param name     the name to register the bean under.
+         * @param bean     the bean to register.
+         */
+        void register(SingletonBeanRegistry registry, String name, Object bean);
+
+    }
+
+}
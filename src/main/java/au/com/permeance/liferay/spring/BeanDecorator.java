@@ -0,0 +1,44 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+/**
+ * This interface is implemented by decorators which {@link BeanLocatorDefinitionCopier} applies to each bean before
+ * registering it, for example to wrap it in a proxy adding caching or instrumentation. Decorators are applied in the
+ * order they were added, each receiving the result of the previous one.
+ */
+public interface BeanDecorator {
+
+    /**
+     * Decorates the supplied bean.
+     *
+     * @param name the name the bean will be registered under.
+     * @param bean the bean to decorate.
+     *
+     * @return the decorated bean, or the supplied bean if it should not be decorated.
+     */
+    Object decorate(String name, Object bean);
+
+    /**
+     * Discards anything retained for the named bean, which has been removed from the context it was registered in. A
+     * decorator must not retain the bean, or anything loaded by its class loader, once this returns.
+     *
+     * @param name the name the bean was registered under.
+     */
+    void release(String name);
+
+}
@@ -21,29 +21,115 @@ import com.liferay.portal.kernel.bean.BeanLocatorException;
 import com.liferay.portal.kernel.log.Log;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.beans.factory.config.SingletonBeanRegistry;
+import org.springframework.beans.factory.support.DefaultSingletonBeanRegistry;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextException;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.context.support.ApplicationObjectSupport;
+import org.springframework.core.io.Resource;
 import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
 import org.springframework.core.type.filter.TypeFilter;
 
 import static com.liferay.portal.kernel.log.LogFactoryUtil.getLog;
 
+import static au.com.permeance.liferay.spring.AcceptanceDecision.ACCEPTED;
+import static au.com.permeance.liferay.spring.AcceptanceDecision.EXCLUDED;
+import static au.com.permeance.liferay.spring.AcceptanceDecision.NAME_EXCLUDED;
+import static au.com.permeance.liferay.spring.AcceptanceDecision.INDEXED_REJECTED;
+import static au.com.permeance.liferay.spring.AcceptanceDecision.NOT_INCLUDED;
+import static au.com.permeance.liferay.spring.AcceptanceDecision.UNKNOWN_TYPE;
+import static au.com.permeance.liferay.spring.LazyBeanInvocationHandler.newLazyProxy;
+import static au.com.permeance.liferay.spring.TypeFilterFingerprint.fingerprint;
+
 import static java.lang.Class.forName;
 import static java.lang.String.format;
+import static java.lang.System.nanoTime;
+import static java.util.Arrays.asList;
+import static java.util.Arrays.fill;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 /**
  * This class provides a bean which registers existing liferay beans obtained from liferay's {@link BeanLocator} in the
  * Spring {@link ApplicationContext} in which the instance of this class is defined. Bean inclusions and exclusions can
- * be specified using the {@link #addIncludeFilter(TypeFilter)} and {@link #addExcludeFilter(TypeFilter)} methods.
- * Exclusions take priority of inclusions.
+ * be specified using the {@link #addIncludeFilter(TypeFilter)} and {@link #addExcludeFilter(TypeFilter)} methods, or
+ * as the {@code includeFilters} and {@code excludeFilters} properties. Exclusions take priority of inclusions. Filters
+ * are compiled into a {@link CompiledFilterChain} when first used after being added, so each class hierarchy is walked
+ * once regardless of the number of assignable and annotation type filters created by
+ * {@link CopyManifestGenerator#filter(String)}. A {@link BeanNameFilter} can also be supplied via
+ * {@link #setNameFilter(BeanNameFilter)} to reject names before their classes are loaded. Beans can be copied from
+ * several {@link BeanLocator}s at once by supplying a list of them, which is merged by a {@link CompositeBeanLocator}.
+ * <p/>
+ * By default beans are resolved sequentially on the thread initialising the context. Supplying an
+ * {@link ExecutorService} via {@link #setExecutorService(ExecutorService)} resolves beans in parallel instead, while
+ * still registering them in the order returned by {@link BeanLocator#getNames()}. Supplying an executor via
+ * {@link #setAsyncExecutorService(ExecutorService)} instead moves the whole copy off the initialising thread; callers
+ * can wait for it via {@link #getCopyFuture()} (or, as a {@link SmartLifecycle}, on start), and resolve beans needed
+ * before it completes via {@link #getBean(String)}. Alternatively, in {@link #setOnDemand(boolean) on demand} mode no
+ * bean is copied until it is resolved via {@link #resolveBean(String)}, for example by a
+ * {@link DemandDrivenBeanResolver}.
+ * <p/>
+ * When {@link #setLazy(boolean) lazy} registration is enabled, beans whose names identify an interface are registered
+ * as proxies which only call {@link BeanLocator#locate(String)} when first invoked.
+ * <p/>
+ * Supplying an {@link AcceptanceCache} via {@link #setAcceptanceCache(AcceptanceCache)} (for example
+ * {@link AcceptanceCache#getSharedInstance()}) shares acceptance decisions with other instances configured with
+ * equivalent filters, and supplying an {@link AcceptanceIndex} via {@link #setAcceptanceIndex(AcceptanceIndex)}
+ * persists them between restarts. Alternatively a {@link CopyManifest} generated at build time can be supplied via
+ * {@link #setCopyManifest(Resource)}, in which case names are copied without being classified at all.
+ * <p/>
+ * After the initial copy, {@link #resync()} copies beans added to the {@link BeanLocator} since the previous copy and
+ * removes copied beans which it no longer provides, without refreshing the context. Copied beans are indexed by type
+ * as they are registered, and can be looked up via {@link #getTypeIndex()} and {@link #getBeansOfType(Class)}.
+ * <p/>
+ * Beans can be decorated before they are registered by adding {@link BeanDecorator}s via
+ * {@link #addBeanDecorator(BeanDecorator)}, such as a {@link CachingBeanDecorator} caching the results of read-only
+ * service methods, or an {@link InvocationMetricsDecorator} recording how often and how quickly each method is called.
+ * Enabling {@link #setDirectDispatch(boolean) direct dispatch} replaces the nested class loader switching proxies
+ * liferay returns for beans of other plugins with a single dispatcher.
+ * <p/>
+ * Location can be bounded so that a slow or hanging {@link BeanLocator} cannot stall the context: each call to
+ * {@link BeanLocator#locate(String)} can be given a {@link #setLocateTimeoutMillis(long) timeout} and each copy a
+ * {@link #setCopyDeadlineMillis(long) deadline}. Beans which miss either are deferred, and can be retried in the
+ * background by supplying a {@link #setRetryExecutorService(ScheduledExecutorService) retry executor}. Supplying a
+ * {@link LocateCircuitBreaker} via {@link #setCircuitBreaker(LocateCircuitBreaker)} skips names which keep failing.
+ * <p/>
+ * Supplying a {@link CopierEventListener} via {@link #setEventListener(CopierEventListener)} reports each copy, and
+ * each slow phase of a single bean, as it happens.
+ * <p/>
+ * Supplying a {@link SharedBeanFactoryRegistry} via {@link #setSharedBeanFactoryRegistry(SharedBeanFactoryRegistry)}
+ * attaches a single read-only factory of beans, built once per {@link BeanLocator} and configuration, as the parent of
+ * each context instead of copying beans to every context.
+ * <p/>
+ * When the context is closed, or the {@link BeanLocator} is {@link #setBeanLocator(BeanLocator) replaced} because the
+ * plugin providing it was redeployed, every bean copied by this instance is {@link #release() released}, so that
+ * nothing copied keeps the class loader of an undeployed plugin reachable.
  */
-public class BeanLocatorDefinitionCopier extends ApplicationObjectSupport {
+public class BeanLocatorDefinitionCopier extends ApplicationObjectSupport implements SmartLifecycle, DisposableBean {
 
     /**
      * Logger for this class.
@@ -51,92 +137,1661 @@ public class BeanLocatorDefinitionCopier extends ApplicationObjectSupport {
     private static final Log LOG = getLog(BeanLocatorDefinitionCopier.class);
 
     /**
-     * Stores the list of bean exclusions.
+     * The default delay before each retry of the deferred beans, in milliseconds.
+     */
+    public static final long DEFAULT_RETRY_DELAY_MILLIS = 30000L;
+
+    /**
+     * The default maximum number of times the deferred beans of a copy are retried in the background.
+     */
+    public static final int DEFAULT_RETRY_LIMIT = 3;
+
+    /**
+     * Stores the list of bean exclusions.
+     */
+    private final transient List<TypeFilter> excludeFilters = new CopyOnWriteArrayList<TypeFilter>();
+
+    /**
+     * Stores the list of bean inclusions.
+     */
+    private final transient List<TypeFilter> includeFilters = new CopyOnWriteArrayList<TypeFilter>();
+
+    /**
+     * Stores the decorators applied to beans before they are registered.
+     */
+    private final transient List<BeanDecorator> beanDecorators = new CopyOnWriteArrayList<BeanDecorator>();
+
+    /**
+     * Stores the decorator replacing class loader switching proxies, or {@code null} if beans are registered as located.
+     */
+    private transient DirectDispatchBeanDecorator directDispatchBeanDecorator;
+
+    /**
+     * Stores the filter applied to bean names before their types are resolved, or {@code null} if none is applied.
+     */
+    private transient BeanNameFilter nameFilter;
+
+    /**
+     * Stores the factory used to read class metadata without loading classes, or {@code null} if classes should be
+     * resolved to read their metadata.
+     */
+    private transient MetadataReaderFactory metadataReaderFactory;
+
+    /**
+     * Stores the statistics of the copies made by this instance.
+     */
+    private final transient CopierStatistics statistics = new CopierStatistics();
+
+    /**
+     * Stores the registry beans were last copied to, or {@code null} if no copy has been made.
+     */
+    private transient SingletonBeanRegistry copiedRegistry;
+
+    /**
+     * Stores every name obtained from the bean locator by the previous copy or resynchronisation.
+     */
+    private final transient Set<String> knownNames = new HashSet<String>();
+
+    /**
+     * Stores the names of the beans registered by this instance.
+     */
+    private final transient Set<String> registeredNames = new LinkedHashSet<String>();
+
+    /**
+     * Stores the index from types to the names of the beans registered by this instance.
+     */
+    private final transient BeanTypeIndex typeIndex = new BeanTypeIndex();
+
+    /**
+     * Stores the liferay bean locator to copy beans from.
+     */
+    private transient volatile BeanLocator beanLocator;
+
+    /**
+     * Stores the executor used to resolve beans in parallel, or {@code null} to resolve them sequentially.
+     */
+    private transient ExecutorService executorService;
+
+    /**
+     * Stores whether interface typed beans should be registered as lazily located proxies.
+     */
+    private transient boolean lazy;
+
+    /**
+     * Stores whether beans should only be copied when {@link #resolveBean(String) resolved} on demand.
+     */
+    private transient boolean onDemand;
+
+    /**
+     * Stores whether per-bean information and warning messages should be suppressed in favour of the summary.
+     */
+    private transient boolean quiet;
+
+    /**
+     * Stores the maximum number of skipped names listed in the summary.
+     */
+    private transient int skippedNameLimit;
+
+    /**
+     * Stores the cache of acceptance decisions, or {@code null} if decisions should not be cached.
+     */
+    private transient AcceptanceCache acceptanceCache;
+
+    /**
+     * Stores the number of filters added, identifying the current filter configuration.
+     */
+    private final transient AtomicInteger filterGeneration = new AtomicInteger();
+
+    /**
+     * Stores the compiled snapshot of the filter configuration, or {@code null} if none has been compiled.
+     */
+    private transient volatile FilterSnapshot filterSnapshot;
+
+    /**
+     * Stores the decisions of the copy manifest and acceptance index, which are applied instead of classifying names.
+     */
+    private final transient PrecomputedDecisions precomputedDecisions = new PrecomputedDecisions();
+
+    /**
+     * Stores the executor the copy is run on in the background, or {@code null} to copy while initialising.
+     */
+    private transient ExecutorService asyncExecutorService;
+
+    /**
+     * Stores the executor each bean is located on when location is bounded, or {@code null} to locate on the resolving
+     * thread.
+     */
+    private transient ExecutorService locateExecutorService;
+
+    /**
+     * Stores the maximum time to wait for a single bean to be located, in nanoseconds, or {@code 0} to wait indefinitely.
+     */
+    private transient long locateTimeoutNanos;
+
+    /**
+     * Stores the maximum time a copy may spend locating beans, in nanoseconds, or {@code 0} if copies have no deadline.
+     */
+    private transient long copyDeadlineNanos;
+
+    /**
+     * Stores the circuit breaker skipping names which repeatedly fail to be located, or {@code null} to always locate.
+     */
+    private transient volatile LocateCircuitBreaker circuitBreaker;
+
+    /**
+     * Stores the executor deferred beans are retried on, or {@code null} if they are only retried explicitly.
+     */
+    private transient ScheduledExecutorService retryExecutorService;
+
+    /**
+     * Stores the delay before each retry of the deferred beans, in milliseconds.
+     */
+    private transient long retryDelayMillis = DEFAULT_RETRY_DELAY_MILLIS;
+
+    /**
+     * Stores the maximum number of times the deferred beans of a copy are retried in the background.
+     */
+    private transient int retryLimit = DEFAULT_RETRY_LIMIT;
+
+    /**
+     * Stores the names of accepted beans which were not located in time, in the order they were deferred.
+     */
+    private final transient Set<String> deferredNames = Collections.synchronizedSet(new LinkedHashSet<String>());
+
+    /**
+     * Stores the generation of the background retries, incremented to supersede any retries already scheduled.
+     */
+    private final transient AtomicInteger retryGeneration = new AtomicInteger();
+
+    /**
+     * Stores the future of the next background retry, or {@code null} if none is scheduled.
+     */
+    private transient volatile Future<?> retryFuture;
+
+    /**
+     * Stores whether {@link #start()} should wait for a background copy to complete.
+     */
+    private transient boolean awaitOnStart;
+
+    /**
+     * Stores the lifecycle phase of this instance.
+     */
+    private transient int phase = Integer.MIN_VALUE;
+
+    /**
+     * Stores whether this instance has been started and not stopped.
+     */
+    private transient volatile boolean running;
+
+    /**
+     * Stores the registry the current copy registers beans with, or {@code null} if no copy has been started.
+     */
+    private transient volatile SingletonBeanRegistry copyTarget;
+
+    /**
+     * Stores the copy started when the context was initialised, and the beans {@link #getBean(String)} resolves ahead
+     * of it while it runs in the background.
+     */
+    private final transient BackgroundCopy backgroundCopy = new BackgroundCopy(new BackgroundCopy.Resolver() {
+        @Override
+        public Resolution resolve(final String name, final Boolean indexed, final Long deadline) {
+            return classifyAndLocate(name, indexed, deadline, false);
+        }
+
+        @Override
+        public Object decorate(final String name, final Object bean) {
+            return BeanLocatorDefinitionCopier.this.decorate(name, bean);
+        }
+
+        @Override
+        public void register(final SingletonBeanRegistry registry, final String name, final Object bean) {
+            final long registrationStart = nanoTime();
+            registry.registerSingleton(name, bean);
+            statistics.recordPhase(CopierPhase.REGISTRATION, nanoTime() - registrationStart);
+        }
+    });
+
+    /**
+     * Stores the shared parent factory attached to the context in place of copying beans to it, if any.
+     */
+    private final transient SharedParentFactory sharedParentFactory = new SharedParentFactory();
+
+    /**
+     * Stores the listener notified of copies and slow phases, or {@code null} if no events should be emitted.
+     */
+    private transient volatile CopierEventListener eventListener;
+
+    /**
+     * Stores the minimum duration of a phase of a single bean for it to be reported to the {@link #eventListener}.
+     */
+    private transient long eventThresholdNanos = MILLISECONDS.toNanos(1);
+
+    /**
+     * Creates a new instance based on the supplied bean locator.
+     *
+     * @param beanLocator the liferay bean locator to copy beans from.
+     */
+    public BeanLocatorDefinitionCopier(final BeanLocator beanLocator) {
+        super();
+        LOG.debug(format("Storing bean locator: %s", beanLocator));
+        this.beanLocator = beanLocator;
+    }
+
+    /**
+     * Creates a new instance based on the supplied bean locators, which are merged by a {@link CompositeBeanLocator}:
+     * each name is classified once, and names provided by several locators are copied from the first of them.
+     * The {@link #setExecutorService(ExecutorService) resolving executor} is also used to obtain their names, so it
+     * must not be the {@link #setAsyncExecutorService(ExecutorService) async} or
+     * {@link #setLocateExecutorService(ExecutorService) locate} executor, whose tasks would wait on it.
+     *
+     * @param beanLocators the liferay bean locators to copy beans from, in order of precedence.
+     */
+    public BeanLocatorDefinitionCopier(final List<? extends BeanLocator> beanLocators) {
+        this(new CompositeBeanLocator(beanLocators));
+    }
+
+    /**
+     * Replaces the bean locator beans are copied from, for example when the plugin providing it has been redeployed.
+     * Every bean copied from the previous bean locator is {@link #release() released}; if beans have been copied to a
+     * context, the beans of the new bean locator are then copied to it as by {@link #resync()}. Every
+     * {@link #setSharedBeanFactoryRegistry(SharedBeanFactoryRegistry) shared factory} of the previous bean locator is
+     * discarded, however many copiers share it, although a factory already attached to a context remains attached
+     * until the context is refreshed.
+     *
+     * @param beanLocator the liferay bean locator to copy beans from.
+     */
+    public final synchronized void setBeanLocator(final BeanLocator beanLocator) {
+        release();
+        sharedParentFactory.discard(this.beanLocator);
+        LOG.debug(format("Storing bean locator: %s", beanLocator));
+        this.beanLocator = beanLocator;
+        if (beanLocator instanceof CompositeBeanLocator) {
+            ((CompositeBeanLocator) beanLocator).setExecutorService(executorService);
+        }
+        if (copiedRegistry != null) {
+            resync();
+        }
+    }
+
+    /**
+     * Adds an inclusion filter.
+     *
+     * @param filter the filter which beans must match to be copied.
+     */
+    public final void addIncludeFilter(final TypeFilter filter) {
+        includeFilters.add(filter);
+        filterGeneration.incrementAndGet();
+    }
+
+    /**
+     * Adds an exclusion filter.
+     *
+     * @param filter the filter which beans must not match to be copied.
+     */
+    public final void addExcludeFilter(final TypeFilter filter) {
+        excludeFilters.add(filter);
+        filterGeneration.incrementAndGet();
+    }
+
+    /**
+     * Replaces the inclusion filters, for configuration as a bean property.
+     *
+     * @param filters the filters which beans must match to be copied, in order.
+     */
+    public final void setIncludeFilters(final List<? extends TypeFilter> filters) {
+        includeFilters.clear();
+        includeFilters.addAll(filters);
+        filterGeneration.incrementAndGet();
+    }
+
+    /**
+     * Replaces the exclusion filters, for configuration as a bean property.
+     *
+     * @param filters the filters which beans must not match to be copied, in order.
+     */
+    public final void setExcludeFilters(final List<? extends TypeFilter> filters) {
+        excludeFilters.clear();
+        excludeFilters.addAll(filters);
+        filterGeneration.incrementAndGet();
+    }
+
+    /**
+     * Adds a decorator applied to each bean before it is registered, for example a {@link CachingBeanDecorator}.
+     * Decorators are applied in the order they were added. Decorators are not part of the configuration identifying a
+     * {@link #setSharedBeanFactoryRegistry(SharedBeanFactoryRegistry) shared factory}, so instances sharing factories
+     * should add the same decorators.
+     *
+     * @param beanDecorator the decorator to apply.
+     */
+    public final void addBeanDecorator(final BeanDecorator beanDecorator) {
+        beanDecorators.add(beanDecorator);
+    }
+
+    /**
+     * Sets whether beans located as liferay's class loader switching proxies should be registered as a single proxy
+     * dispatching directly to the innermost bean, as described by {@link DirectDispatchBeanDecorator}. The dispatcher
+     * is applied before any other {@link #addBeanDecorator(BeanDecorator) decorator}.
+     *
+     * @param directDispatch {@code true} to replace class loader switching proxies, {@code false} to register beans as
+     *                       located.
+     */
+    public final void setDirectDispatch(final boolean directDispatch) {
+        this.directDispatchBeanDecorator = directDispatch ? new DirectDispatchBeanDecorator() : null;
+    }
+
+    /**
+     * Sets the filter applied to bean names before their types are resolved. Names rejected by the filter are skipped
+     * without loading a class or consulting the {@link TypeFilter}s.
+     *
+     * @param nameFilter the filter to apply, or {@code null} to resolve the type of every name.
+     */
+    public final void setNameFilter(final BeanNameFilter nameFilter) {
+        this.nameFilter = nameFilter;
+    }
+
+    /**
+     * Sets the factory used to read class metadata. When set, names are classified by reading their class files (for
+     * example using Spring's ASM based {@link org.springframework.core.type.classreading.CachingMetadataReaderFactory},
+     * which caches the readers it creates and may be shared between instances), so classes which are not accepted are
+     * never loaded, and accepted classes are only loaded (without being initialised) when their type is needed. The
+     * factory is also supplied to filters, allowing them to traverse class hierarchies.
+     *
+     * @param metadataReaderFactory the factory to read class metadata with, or {@code null} to resolve each class.
+     */
+    public final void setMetadataReaderFactory(final MetadataReaderFactory metadataReaderFactory) {
+        this.metadataReaderFactory = metadataReaderFactory;
+    }
+
+    /**
+     * Sets the executor used to classify and locate beans in parallel. Any {@link ExecutorService} may be used,
+     * including a fork-join pool. When copying from several bean locators, the executor is also used to obtain their
+     * names concurrently, while the thread copying beans waits for them; sharing it with the
+     * {@link #setAsyncExecutorService(ExecutorService) async} or {@link #setLocateExecutorService(ExecutorService)
+     * locate} executor can therefore deadlock a small pool, whose every thread waits on tasks queued behind them. The
+     * executor is not shut down by this instance.
+     *
+     * @param executorService the executor to resolve beans with, or {@code null} to resolve them sequentially.
+     */
+    public final void setExecutorService(final ExecutorService executorService) {
+        this.executorService = executorService;
+        if (beanLocator instanceof CompositeBeanLocator) {
+            ((CompositeBeanLocator) beanLocator).setExecutorService(executorService);
+        }
+    }
+
+    /**
+     * Sets the executor the copy is run on. When set, initialising the context only submits the copy, so the rest of
+     * the context is initialised while beans are copied in the background; {@link #getCopyFuture()} completes when the
+     * copy does, and {@link #getBean(String)} resolves beans needed before then on demand. Has no effect when beans are
+     * shared via a {@link #setSharedBeanFactoryRegistry(SharedBeanFactoryRegistry) shared parent factory}, which must
+     * be attached before the context's beans are created. The executor is not shut down by this instance.
+     *
+     * @param asyncExecutorService the executor to copy beans on, or {@code null} to copy beans while initialising.
+     */
+    public final void setAsyncExecutorService(final ExecutorService asyncExecutorService) {
+        this.asyncExecutorService = asyncExecutorService;
+    }
+
+    /**
+     * Sets the executor beans are located on when a {@link #setLocateTimeoutMillis(long) locate timeout} or
+     * {@link #setCopyDeadlineMillis(long) copy deadline} applies, so that the resolving thread can stop waiting for a
+     * bean which takes too long. Location which times out is cancelled (interrupting the locating thread) and the bean
+     * is deferred. This must not be the {@link #setExecutorService(ExecutorService) executor beans are resolved with},
+     * whose threads would otherwise wait on tasks queued behind them. The executor is not shut down by this instance.
+     *
+     * @param locateExecutorService the executor to locate beans on, or {@code null} to locate them on the resolving
+     *                              thread without a time bound.
+     */
+    public final void setLocateExecutorService(final ExecutorService locateExecutorService) {
+        this.locateExecutorService = locateExecutorService;
+    }
+
+    /**
+     * Sets the maximum time to wait for a single bean to be located. Has no effect unless a
+     * {@link #setLocateExecutorService(ExecutorService) locate executor} is supplied.
+     *
+     * @param locateTimeoutMillis the maximum time to wait, in milliseconds, or {@code 0} to wait indefinitely.
+     */
+    public final void setLocateTimeoutMillis(final long locateTimeoutMillis) {
+        this.locateTimeoutNanos = MILLISECONDS.toNanos(locateTimeoutMillis);
+    }
+
+    /**
+     * Sets the maximum time a copy (or resynchronisation) may spend before it stops locating beans. Accepted beans not
+     * located by the deadline are deferred rather than registered. Without a
+     * {@link #setLocateExecutorService(ExecutorService) locate executor} the deadline is checked before each bean is
+     * located; with one, location in progress at the deadline is also abandoned.
+     *
+     * @param copyDeadlineMillis the maximum duration of a copy, in milliseconds, or {@code 0} for no deadline.
+     */
+    public final void setCopyDeadlineMillis(final long copyDeadlineMillis) {
+        this.copyDeadlineNanos = MILLISECONDS.toNanos(copyDeadlineMillis);
+    }
+
+    /**
+     * Sets the circuit breaker used to skip names which repeatedly fail (or time out) when located. A breaker may be
+     * shared between instances copying from the same {@link BeanLocator}.
+     *
+     * @param circuitBreaker the circuit breaker to use, or {@code null} to locate every accepted name.
+     */
+    public final void setCircuitBreaker(final LocateCircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Sets the executor deferred beans are retried on. After each copy or resynchronisation which defers beans, they
+     * are retried via {@link #retryDeferred()} after the {@link #setRetryDelayMillis(long) retry delay}, and again
+     * until none remain deferred or the {@link #setRetryLimit(int) retry limit} is reached. The executor is not shut
+     * down by this instance.
+     *
+     * @param retryExecutorService the executor to retry deferred beans on, or {@code null} to only retry them
+     *                             explicitly.
+     */
+    public final void setRetryExecutorService(final ScheduledExecutorService retryExecutorService) {
+        this.retryExecutorService = retryExecutorService;
+    }
+
+    /**
+     * Sets the delay before each background retry of the deferred beans, which defaults to
+     * {@link #DEFAULT_RETRY_DELAY_MILLIS}.
+     *
+     * @param retryDelayMillis the delay before each retry, in milliseconds.
+     */
+    public final void setRetryDelayMillis(final long retryDelayMillis) {
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    /**
+     * Sets the maximum number of times the deferred beans of a copy are retried in the background, which defaults to
+     * {@link #DEFAULT_RETRY_LIMIT}.
+     *
+     * @param retryLimit the maximum number of background retries.
+     */
+    public final void setRetryLimit(final int retryLimit) {
+        this.retryLimit = retryLimit;
+    }
+
+    /**
+     * Sets whether {@link #start()} should wait for a background copy to complete, so that lifecycle beans in later
+     * {@link #setPhase(int) phases} (and the completion of the context refresh) are held back until every bean has been
+     * copied.
+     *
+     * @param awaitOnStart {@code true} to wait for the copy on start, {@code false} to start immediately.
+     */
+    public final void setAwaitOnStart(final boolean awaitOnStart) {
+        this.awaitOnStart = awaitOnStart;
+    }
+
+    /**
+     * Sets the lifecycle phase of this instance, which defaults to {@link Integer#MIN_VALUE} so that it starts before
+     * (and stops after) any other lifecycle bean.
+     *
+     * @param phase the lifecycle phase.
+     */
+    public final void setPhase(final int phase) {
+        this.phase = phase;
+    }
+
+    /**
+     * Sets whether interface typed beans should be registered as proxies which defer calling
+     * {@link BeanLocator#locate(String)} until first invoked. Beans whose type is not an interface are always located
+     * immediately.
+     *
+     * @param lazy {@code true} to register lazily located proxies, {@code false} to locate every bean immediately.
+     */
+    public final void setLazy(final boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    /**
+     * Sets whether beans should only be copied when they are needed. When set, initialising the context copies no
+     * beans; instead each bean is classified, located and registered when first requested via
+     * {@link #resolveBean(String)}, typically by a {@link DemandDrivenBeanResolver} resolving the injection points of
+     * the context's beans, so startup cost is proportional to the beans the context depends on. Takes precedence over
+     * {@link #setAsyncExecutorService(ExecutorService) background copying} and
+     * {@link #setSharedBeanFactoryRegistry(SharedBeanFactoryRegistry) shared factories}.
+     *
+     * @param onDemand {@code true} to copy beans on demand, {@code false} to copy every acceptable bean on
+     *                 initialisation.
+     */
+    public final void setOnDemand(final boolean onDemand) {
+        this.onDemand = onDemand;
+    }
+
+    /**
+     * Sets whether per-bean information and warning messages should be suppressed. Every copy logs a single summary
+     * (giving the number of names with each decision, the number of beans registered and the time taken) regardless
+     * of this setting; in quiet mode that summary is the only message logged above debug level for the copy.
+     *
+     * @param quiet {@code true} to suppress per-bean messages, {@code false} to log each copied bean.
+     */
+    public final void setQuiet(final boolean quiet) {
+        this.quiet = quiet;
+    }
+
+    /**
+     * Sets the maximum number of skipped names listed in the summary logged after each copy.
+     *
+     * @param skippedNameLimit the maximum number of skipped names to list, or zero to list none.
+     */
+    public final void setSkippedNameLimit(final int skippedNameLimit) {
+        this.skippedNameLimit = skippedNameLimit;
+    }
+
+    /**
+     * Sets the cache used to share acceptance decisions between instances. Decisions are keyed by bean name, the class
+     * loader used to resolve it and the {@link TypeFilterFingerprint fingerprint} of this instance's filters; the cache
+     * is not consulted while any filter cannot be fingerprinted.
+     *
+     * @param acceptanceCache the cache to use, or {@code null} to classify every name.
+     */
+    public final void setAcceptanceCache(final AcceptanceCache acceptanceCache) {
+        this.acceptanceCache = acceptanceCache;
+    }
+
+    /**
+     * Sets the persistent index used to skip classification on restart. When the index holds decisions for the same
+     * names and filter configuration, accepted names are located directly and no class is loaded or filter matched;
+     * otherwise every name is classified and the index is rewritten. The index is neither read nor written while any
+     * filter cannot be {@link TypeFilterFingerprint fingerprinted}, as decisions could then be applied to a different
+     * configuration.
+     *
+     * @param acceptanceIndex the index to use, or {@code null} to classify every name.
+     */
+    public final void setAcceptanceIndex(final AcceptanceIndex acceptanceIndex) {
+        precomputedDecisions.setAcceptanceIndex(acceptanceIndex);
+    }
+
+    /**
+     * Sets the resource holding a {@link CopyManifest} generated at build time by {@link CopyManifestGenerator}. When
+     * the manifest was generated with filters equivalent to those of this instance, names are copied if they appear in
+     * the manifest (and are accepted by the name filter, if any) without loading classes or matching filters;
+     * otherwise a warning is logged and names are classified as usual. The manifest takes precedence over any
+     * {@link #setAcceptanceIndex(AcceptanceIndex) acceptance index}.
+     *
+     * @param copyManifestResource the resource holding the manifest, or {@code null} to classify every name.
+     */
+    public final synchronized void setCopyManifest(final Resource copyManifestResource) {
+        precomputedDecisions.setCopyManifest(copyManifestResource);
+    }
+
+    /**
+     * Sets the registry of shared parent bean factories. When set, beans are not copied to each context: instead a
+     * read-only factory holding the accepted beans is built once per {@link BeanLocator} and configuration (filters,
+     * name filter and lazy mode) and attached as the parent of the context's bean factory. Contexts whose bean factory
+     * already has a parent, or whose filters cannot be {@link TypeFilterFingerprint fingerprinted}, fall back to
+     * copying. Contexts sharing a factory cannot be {@link #resync() resynchronised}.
+     *
+     * @param sharedBeanFactoryRegistry the registry to obtain shared factories from (for example
+     *                                  {@link SharedBeanFactoryRegistry#getSharedInstance()}), or {@code null} to copy
+     *                                  beans to each context.
+     */
+    public final void setSharedBeanFactoryRegistry(final SharedBeanFactoryRegistry sharedBeanFactoryRegistry) {
+        sharedParentFactory.setRegistry(sharedBeanFactoryRegistry);
+    }
+
+    /**
+     * Sets the listener notified when each copy completes, and when a phase of a single bean (type resolution, filter
+     * matching or location) takes at least the {@link #setEventThresholdNanos(long) event threshold}. Events carry the
+     * bean's name, its decision and the filter which decided it; the deciding filter is only determined for events
+     * which are emitted, so when no listener is set the only cost is a field read per phase.
+     *
+     * @param eventListener the listener to notify, or {@code null} to emit no events.
+     */
+    public final void setEventListener(final CopierEventListener eventListener) {
+        this.eventListener = eventListener;
+    }
+
+    /**
+     * Sets the minimum duration of a phase of a single bean for it to be reported to the
+     * {@link #setEventListener(CopierEventListener) event listener}, which defaults to one millisecond.
+     *
+     * @param eventThresholdNanos the minimum duration to report, in nanoseconds, or zero to report every phase.
+     */
+    public final void setEventThresholdNanos(final long eventThresholdNanos) {
+        this.eventThresholdNanos = eventThresholdNanos;
+    }
+
+    /**
+     * Returns the statistics of the copies made by this instance, which can be exported as an MBean to monitor how
+     * long copying takes and why beans were skipped.
+     *
+     * @return the statistics of this instance.
+     */
+    public final CopierStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns the index from types to the names of the beans copied to a context by this instance, which resolves the
+     * copied beans of a type without scanning every singleton in the context. Beans attached via a shared parent
+     * factory are not indexed, as the frozen configuration of the shared factory allows Spring to cache lookups by type
+     * itself.
+     *
+     * @return the type index of this instance.
+     */
+    public final BeanTypeIndex getTypeIndex() {
+        return typeIndex;
+    }
+
+    /**
+     * Returns the beans copied to a context by this instance which are assignable to the supplied type, using the
+     * {@link #getTypeIndex() type index}.
+     *
+     * @param type the type to look up.
+     * @param <T>  the type to look up.
+     *
+     * @return the matching beans keyed by name, in the order they were registered.
+     */
+    public final <T> Map<String, T> getBeansOfType(final Class<T> type) {
+        final SingletonBeanRegistry registry = copiedRegistry;
+        final Map<String, T> beans = new LinkedHashMap<String, T>();
+        if (registry == null) {
+            return beans;
+        }
+        for (String name : typeIndex.getBeanNamesForType(type)) {
+            final Object bean = registry.getSingleton(name);
+            if (type.isInstance(bean)) {
+                beans.put(name, type.cast(bean));
+            }
+        }
+        return beans;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return always returns {@link ConfigurableApplicationContext}.
+     */
+    @Override
+    protected final Class requiredContextClass() {
+        return ConfigurableApplicationContext.class;
+    }
+
+    /**
+     * Initialises the supplied application context based on the {@link BeanLocator} associated with this instance by
+     * iterating the liferay registered beans (via {@link BeanLocator#getNames()}).
+     *
+     * @param context the {@link ConfigurableApplicationContext} in which beans should be registered (by calling
+     *                {@link ConfigurableApplicationContext#getBeanFactory()}).
+     */
+    @Override
+    protected final synchronized void initApplicationContext(final ApplicationContext context) {
+        final ConfigurableListableBeanFactory beanFactory =
+            ((ConfigurableApplicationContext) context).getBeanFactory();
+        if (onDemand) {
+            prepareOnDemand(context, beanFactory);
+            return;
+        }
+        if (sharedParentFactory.isEnabled() && share(context, beanFactory)) {
+            return;
+        }
+
+        copyTarget = beanFactory;
+        if (asyncExecutorService == null) {
+            copy(context, beanFactory, true);
+            backgroundCopy.completed();
+            return;
+        }
+
+        if (LOG.isInfoEnabled()) {
+            LOG.info(format("Copying bean definitions from %s to %s in the background", beanLocator, context));
+        }
+        backgroundCopy.start(asyncExecutorService, new Runnable() {
+            @Override
+            public void run() {
+                copyInBackground(context, beanFactory);
+            }
+        });
+    }
+
+    /**
+     * Prepares to copy beans to the supplied bean factory on demand, recording the names the {@link BeanLocator}
+     * provides without classifying any of them.
+     *
+     * @param context     the context being initialised.
+     * @param beanFactory the bean factory of the context.
+     */
+    private void prepareOnDemand(final ApplicationContext context, final ConfigurableListableBeanFactory beanFactory) {
+        copyTarget = beanFactory;
+        copiedRegistry = beanFactory;
+        knownNames.clear();
+        knownNames.addAll(asList(beanLocator.getNames()));
+        typeIndex.clear();
+        backgroundCopy.completed();
+        if (LOG.isInfoEnabled()) {
+            LOG.info(format("Copying bean definitions from %s to %s on demand", beanLocator, context));
+        }
+    }
+
+    /**
+     * Returns the named bean, copying it to the context first if it has not yet been copied. The bean is classified
+     * against this instance's filters and located as it would be by a full copy, and is registered (and indexed) only
+     * if it is accepted and located. This is how beans are copied in {@link #setOnDemand(boolean) on demand} mode,
+     * but it may be used in any mode to copy a bean provided since the context was initialised.
+     *
+     * @param name the name of the bean.
+     *
+     * @return the registered bean, or {@code null} if the bean locator does not provide an acceptable bean of that
+     *         name.
+     *
+     * @throws IllegalStateException if no beans have been copied to a context by this instance.
+     */
+    public final synchronized Object resolveBean(final String name) {
+        if (copiedRegistry == null) {
+            throw new IllegalStateException("Cannot resolve beans before bean definitions have been copied");
+        }
+        final Object registered = copiedRegistry.getSingleton(name);
+        if (registered != null) {
+            return registered;
+        }
+        if (!knownNames.contains(name)) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(format("Not resolving bean %s as %s does not provide it", name, beanLocator));
+            }
+            return null;
+        }
+
+        final Resolution resolution = resolve(name, null, null, false);
+        if (resolution.bean == null) {
+            return null;
+        }
+        register(copiedRegistry, Collections.singletonList(resolution), true);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(format("Resolved bean %s on demand", name));
+        }
+        return copiedRegistry.getSingleton(name);
+    }
+
+    /**
+     * Copies beans to the supplied bean factory on a background thread, holding this instance's lock so that no
+     * resynchronisation overlaps the copy. Failures are logged, and are also reported by {@link #getCopyFuture()}.
+     *
+     * @param context     the context being initialised.
+     * @param beanFactory the bean factory of the context.
+     */
+    private synchronized void copyInBackground(final ApplicationContext context,
+                                               final ConfigurableListableBeanFactory beanFactory) {
+        try {
+            copy(context, beanFactory, true);
+        }
+        catch (final RuntimeException e) {
+            LOG.error(format("Error copying bean definitions from %s to %s", beanLocator, context), e);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the future of the copy started when the context was initialised, which completes once every bean has
+     * been registered (immediately, unless an {@link #setAsyncExecutorService(ExecutorService) executor} is set).
+     * Callers can wait on it to overlap other startup work with the copy.
+     *
+     * @return the future of the copy.
+     *
+     * @throws IllegalStateException if no beans have been copied to a context by this instance (including when they
+     *                               are shared via a parent factory).
+     */
+    public final Future<?> getCopyFuture() {
+        final Future<?> future = backgroundCopy.getFuture();
+        if (future == null) {
+            throw new IllegalStateException("No bean definitions are being copied");
+        }
+        return future;
+    }
+
+    /**
+     * Returns the named bean copied (or to be copied) by this instance. If the bean has been registered it is returned
+     * immediately; if a background copy is still running the bean is resolved on demand instead, without waiting for
+     * the copy, subject to the same circuit breaker, locate timeout and copy deadline as the copy. The copy then
+     * registers the bean resolved here rather than locating it again (even if the {@link BeanLocator} no longer
+     * provided its name when the copy started), so the bean returned is the one the context holds once the copy
+     * completes. Should the bean not be resolvable on demand, this method blocks until the copy
+     * completes and returns whatever was registered. In {@link #setOnDemand(boolean) on demand} mode the bean is
+     * instead {@link #resolveBean(String) resolved} and registered.
+     *
+     * @param name the name of the bean.
+     *
+     * @return the bean, or {@code null} if it is not copied by this instance.
+     *
+     * @throws InterruptedException  if interrupted while waiting for the copy to complete.
+     * @throws IllegalStateException if no beans have been copied to a context by this instance.
+     */
+    public final Object getBean(final String name) throws InterruptedException {
+        final Future<?> future = getCopyFuture();
+        final SingletonBeanRegistry registry = copyTarget;
+        final Object registered = registry.getSingleton(name);
+        if (registered == null && onDemand) {
+            return resolveBean(name);
+        }
+        if (registered != null || future.isDone()) {
+            return registered;
+        }
+
+        final Object resolved = backgroundCopy.resolveEarly(registry, name);
+        if (resolved != null) {
+            return resolved;
+        }
+
+        try {
+            future.get();
+        }
+        catch (final ExecutionException e) {
+            LOG.debug(format("Copy failed while waiting for bean %s", name), e);
+        }
+        catch (final CancellationException e) {
+            LOG.debug(format("Copy cancelled while waiting for bean %s", name), e);
+        }
+        return registry.getSingleton(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return always returns {@code true}.
+     */
+    @Override
+    public final boolean isAutoStartup() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Waits for a background copy to complete if {@link #setAwaitOnStart(boolean) configured} to do so.
+     */
+    @Override
+    public final void start() {
+        final Future<?> future = backgroundCopy.getFuture();
+        if (awaitOnStart && future != null) {
+            try {
+                future.get();
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            catch (final ExecutionException e) {
+                LOG.warn(format("Starting after failing to copy bean definitions from %s", beanLocator));
+            }
+            catch (final CancellationException e) {
+                LOG.warn(format("Starting after cancelling the copy of bean definitions from %s", beanLocator));
+            }
+        }
+        running = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Cancels a background copy which has not yet started, and any scheduled retry of deferred beans.
+     */
+    @Override
+    public final void stop() {
+        // a running copy is left to complete, and remains cancellable (with interruption) by release or destroy
+        backgroundCopy.cancelIfPending();
+        retryGeneration.incrementAndGet();
+        final Future<?> retry = retryFuture;
+        if (retry != null) {
+            retry.cancel(false);
+        }
+        running = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param callback the callback to run once stopped.
+     */
+    @Override
+    public final void stop(final Runnable callback) {
+        stop();
+        callback.run();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@code true} if this instance has been started and not stopped, {@code false} otherwise.
+     */
+    @Override
+    public final boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the phase set by {@link #setPhase(int)}.
+     */
+    @Override
+    public final int getPhase() {
+        return phase;
+    }
+
+    /**
+     * Releases everything this instance holds from its {@link BeanLocator}: any background copy or retry is
+     * cancelled, the beans it registered are removed from the context (and their results from any
+     * {@link CachingBeanDecorator}), the names, type index, filter snapshot and copy manifest it holds are discarded, and
+     * its reference to the {@link #setSharedBeanFactoryRegistry(SharedBeanFactoryRegistry) shared factory} attached to
+     * its context, if any, is released, discarding the factory once no other copier shares it. The context remains
+     * associated with this instance, so {@link #resync()} copies the beans again.
+     * <p/>
+     * Background work is cancelled before this instance's lock is taken, as a background copy holds the lock until it
+     * completes: interrupting it lets a copy blocked locating a bean finish early rather than delaying the release.
+     */
+    public final void release() {
+        cancelBackgroundWork();
+        synchronized (this) {
+            unregisterAll();
+        }
+    }
+
+    /**
+     * Cancels any background copy or retry, interrupting it if it is running.
+     */
+    private void cancelBackgroundWork() {
+        retryGeneration.incrementAndGet();
+        final Future<?> retry = retryFuture;
+        if (retry != null) {
+            retry.cancel(true);
+            retryFuture = null;
+        }
+        backgroundCopy.cancel();
+    }
+
+    /**
+     * Performs the part of {@link #release()} requiring this instance's lock, once background work has been cancelled.
+     */
+    private void unregisterAll() {
+        int removed = 0;
+        if (copiedRegistry != null) {
+            for (String name : new ArrayList<String>(registeredNames)) {
+                if (unregister(copiedRegistry, name)) {
+                    removed++;
+                }
+            }
+        }
+        registeredNames.clear();
+        knownNames.clear();
+        typeIndex.clear();
+        deferredNames.clear();
+        backgroundCopy.clear();
+        filterSnapshot = null;
+        precomputedDecisions.clear();
+        sharedParentFactory.release(beanLocator);
+
+        if (LOG.isInfoEnabled()) {
+            LOG.info(format("Released bean definitions copied from %s: removed=%d", beanLocator, removed));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * {@link #release() Releases} everything copied by this instance and disassociates it from its context.
+     */
+    @Override
+    public final void destroy() {
+        cancelBackgroundWork();
+        synchronized (this) {
+            unregisterAll();
+            copiedRegistry = null;
+            copyTarget = null;
+            backgroundCopy.reset();
+            running = false;
+        }
+    }
+
+    /**
+     * Attaches the shared factory holding the beans of the {@link BeanLocator} for this instance's configuration as the
+     * parent of the supplied bean factory, populating the shared factory first if no other instance has done so.
+     *
+     * @param context     the context being initialised.
+     * @param beanFactory the bean factory of the context.
+     *
+     * @return {@code true} if a shared factory was attached, or {@code false} if the beans must be copied instead.
+     */
+    private boolean share(final ApplicationContext context, final ConfigurableListableBeanFactory beanFactory) {
+        return sharedParentFactory.attach(
+            context, beanFactory, beanLocator, getIndexFingerprint(), lazy, new SharedBeanFactoryRegistry.Populator() {
+                @Override
+                public void populate(final SingletonBeanRegistry singletonBeanRegistry) {
+                    copy("shared bean factory", singletonBeanRegistry, false);
+                }
+            });
+    }
+
+    /**
+     * Copies the accepted beans of the {@link BeanLocator} to the supplied registry.
+     *
+     * @param target                the target of the copy, as described in log messages.
+     * @param singletonBeanRegistry the registry to register beans with.
+     * @param track                 {@code true} to record the copy so that it can be {@link #resync() resynchronised},
+     *                              {@code false} otherwise.
+     */
+    private void copy(final Object target, final SingletonBeanRegistry singletonBeanRegistry, final boolean track) {
+        if (LOG.isInfoEnabled()) {
+            LOG.info(format("Copying bean definitions from %s to %s", beanLocator, target));
+        }
+        final long start = nanoTime();
+
+        final String[] names = beanLocator.getNames();
+        final PrecomputedDecisions.Lookup lookup =
+            precomputedDecisions.lookup(names, getFilterFingerprint(), nameFilter);
+        final boolean[] indexed = lookup.getDecisions();
+
+        final Long deadline = getDeadline(start);
+        if (track) {
+            backgroundCopy.setDeadline(deadline);
+        }
+        final List<Resolution> resolutions = executorService == null
+                                             ? resolveAll(names, indexed, deadline, false)
+                                             : resolveAllInParallel(names, indexed, deadline, false);
+
+        lookup.store(resolutions);
+
+        if (track) {
+            copiedRegistry = singletonBeanRegistry;
+            knownNames.clear();
+            knownNames.addAll(asList(names));
+            typeIndex.clear();
+        }
+        int registered = register(singletonBeanRegistry, resolutions, track);
+        if (track) {
+            registered += registerRemainingEarlyResolutions(singletonBeanRegistry);
+            recordDeferrals(resolutions, true);
+        }
+
+        final long nanos = nanoTime() - start;
+        statistics.recordCopy(nanos);
+        if (LOG.isInfoEnabled()) {
+            LOG.info(summarise(target, resolutions, nanos));
+        }
+        final CopierEventListener listener = eventListener;
+        if (listener != null) {
+            listener.copyCompleted(target, names.length, registered, nanos);
+        }
+    }
+
+    /**
+     * Incrementally resynchronises the beans copied by this instance with the {@link BeanLocator}: names which were not
+     * present at the previous copy or resynchronisation are classified and registered, and beans registered by this
+     * instance whose names are no longer present are removed from the registry. Names present on both occasions are
+     * not reprocessed. In {@link #setOnDemand(boolean) on demand} mode new names are only recorded, to be copied when
+     * resolved.
+     *
+     * @throws IllegalStateException if no application context has been initialised by this instance.
+     */
+    public final synchronized void resync() {
+        if (copiedRegistry == null) {
+            throw new IllegalStateException("Cannot resynchronise before bean definitions have been copied");
+        }
+
+        final long start = nanoTime();
+        final String[] names = beanLocator.getNames();
+        final Set<String> currentNames = new HashSet<String>(asList(names));
+
+        int removed = 0;
+        for (String name : new ArrayList<String>(registeredNames)) {
+            if (!currentNames.contains(name) && unregister(copiedRegistry, name)) {
+                removed++;
+            }
+        }
+
+        final List<String> added = new ArrayList<String>();
+        for (String name : names) {
+            if (!onDemand && !knownNames.contains(name)) {
+                added.add(name);
+            }
+        }
+        final String[] addedNames = added.toArray(new String[added.size()]);
+        final boolean[] manifested =
+            precomputedDecisions.getManifestDecisions(addedNames, getFilterFingerprint(), nameFilter);
+        final Long deadline = getDeadline(start);
+        final List<Resolution> resolutions = executorService == null
+                                             ? resolveAll(addedNames, manifested, deadline, false)
+                                             : resolveAllInParallel(addedNames, manifested, deadline, false);
+        final int registered = register(copiedRegistry, resolutions, true);
+
+        knownNames.clear();
+        knownNames.addAll(currentNames);
+        deferredNames.retainAll(currentNames);
+        recordDeferrals(resolutions, false);
+
+        if (LOG.isInfoEnabled()) {
+            LOG.info(format("Resynchronised bean definitions from %s: added=%d registered=%d removed=%d durationMs=%d",
+                            beanLocator, addedNames.length, registered, removed,
+                            NANOSECONDS.toMillis(nanoTime() - start)));
+        }
+    }
+
+    /**
+     * Retries the beans deferred by previous copies, resynchronisations or retries because they were not located in
+     * time, registering those now located. Beans which are deferred again remain deferred; any which fail outright
+     * are no longer retried. Called in the background when a
+     * {@link #setRetryExecutorService(ScheduledExecutorService) retry executor} is supplied.
+     *
+     * @return the number of beans registered.
+     *
+     * @throws IllegalStateException if no application context has been initialised by this instance.
+     */
+    public final synchronized int retryDeferred() {
+        if (copiedRegistry == null) {
+            throw new IllegalStateException("Cannot retry deferred beans before bean definitions have been copied");
+        }
+
+        final long start = nanoTime();
+        final String[] names;
+        synchronized (deferredNames) {
+            names = deferredNames.toArray(new String[deferredNames.size()]);
+        }
+        final boolean[] accepted = new boolean[names.length];
+        fill(accepted, true);
+        final Long deadline = getDeadline(start);
+        final List<Resolution> resolutions = executorService == null
+                                             ? resolveAll(names, accepted, deadline, true)
+                                             : resolveAllInParallel(names, accepted, deadline, true);
+        final int registered = register(copiedRegistry, resolutions, true);
+        for (Resolution resolution : resolutions) {
+            if (!resolution.deferred) {
+                deferredNames.remove(resolution.name);
+            }
+        }
+
+        if (LOG.isInfoEnabled()) {
+            LOG.info(format("Retried deferred bean definitions from %s: retried=%d registered=%d deferred=%d "
+                            + "durationMs=%d", beanLocator, names.length, registered, deferredNames.size(),
+                            NANOSECONDS.toMillis(nanoTime() - start)));
+        }
+        return registered;
+    }
+
+    /**
+     * Returns the names of the accepted beans which have not been registered because they were not located in time.
+     *
+     * @return the names of the deferred beans, in the order they were deferred.
+     */
+    public final List<String> getDeferredNames() {
+        synchronized (deferredNames) {
+            return new ArrayList<String>(deferredNames);
+        }
+    }
+
+    /**
+     * Records which of the supplied resolutions were deferred and, if any are, schedules them to be retried.
+     *
+     * @param resolutions the resolutions of a copy or resynchronisation.
+     * @param replace     {@code true} to forget beans deferred by previous copies, {@code false} to retain them.
+     */
+    private void recordDeferrals(final List<Resolution> resolutions, final boolean replace) {
+        if (replace) {
+            deferredNames.clear();
+        }
+        for (Resolution resolution : resolutions) {
+            if (resolution.deferred) {
+                deferredNames.add(resolution.name);
+            }
+        }
+        if (!deferredNames.isEmpty() && !quiet) {
+            LOG.warn(format("Deferred %d bean definitions from %s", deferredNames.size(), beanLocator));
+        }
+        scheduleRetry(retryGeneration.incrementAndGet(), 1);
+    }
+
+    /**
+     * Schedules a background retry of the deferred beans on the {@link #retryExecutorService}, if one is supplied, any
+     * beans remain deferred and the {@link #retryLimit} has not been reached. Each retry schedules the next, until it
+     * is superseded by a later generation of retries.
+     *
+     * @param generation the generation of the retry.
+     * @param attempt    the number of the retry within its generation, starting at 1.
+     */
+    private void scheduleRetry(final int generation, final int attempt) {
+        final ScheduledExecutorService executor = retryExecutorService;
+        if (executor == null || attempt > retryLimit || deferredNames.isEmpty()
+            || generation != retryGeneration.get()) {
+            return;
+        }
+        retryFuture = executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (BeanLocatorDefinitionCopier.this) {
+                    if (generation != retryGeneration.get()) {
+                        return;
+                    }
+                    try {
+                        retryDeferred();
+                    }
+                    catch (final RuntimeException e) {
+                        LOG.warn(format("Error retrying deferred bean definitions from %s", beanLocator), e);
+                    }
+                    scheduleRetry(generation, attempt + 1);
+                }
+            }
+        }, retryDelayMillis, MILLISECONDS);
+    }
+
+    /**
+     * Registers each resolved bean with the supplied registry.
+     *
+     * @param singletonBeanRegistry the registry to register beans with.
+     * @param resolutions           the resolutions to register the beans of.
+     * @param track                 {@code true} to record the names of the beans as registered by this instance,
+     *                              {@code false} otherwise.
+     *
+     * @return the number of beans registered.
+     */
+    private int register(final SingletonBeanRegistry singletonBeanRegistry,
+                         final List<Resolution> resolutions,
+                         final boolean track) {
+        int registered = 0;
+        for (Resolution resolution : resolutions) {
+            if (resolution.bean != null) {
+                if (!quiet && LOG.isInfoEnabled()) {
+                    LOG.info(format("Copying bean definition %s", resolution.name));
+                }
+                final Object bean = backgroundCopy.register(singletonBeanRegistry, resolution);
+                statistics.recordRegistration();
+                if (track) {
+                    registeredNames.add(resolution.name);
+                    typeIndex.add(resolution.name, bean.getClass());
+                }
+                registered++;
+            }
+        }
+        return registered;
+    }
+
+    /**
+     * Ends resolution ahead of the background copy, registering the beans resolved early by {@link #getBean(String)}
+     * whose names the copy did not register because they were not provided when it started. Such beans are tracked as
+     * if copied, so that they are removed by the next {@link #resync() resynchronisation} if the names are still not
+     * provided, and by {@link #release()}.
+     *
+     * @param singletonBeanRegistry the registry the copy registered beans with.
+     *
+     * @return the number of beans registered.
      */
-    private final transient List<TypeFilter> excludeFilters = new LinkedList<TypeFilter>();
+    private int registerRemainingEarlyResolutions(final SingletonBeanRegistry singletonBeanRegistry) {
+        final List<Resolution> remaining = backgroundCopy.finish(singletonBeanRegistry);
+        for (Resolution early : remaining) {
+            if (!quiet && LOG.isInfoEnabled()) {
+                LOG.info(format("Copying bean definition %s resolved on demand but no longer provided by %s",
+                                early.name, beanLocator));
+            }
+            statistics.recordRegistration();
+            knownNames.add(early.name);
+            registeredNames.add(early.name);
+            typeIndex.add(early.name, early.bean.getClass());
+        }
+        return remaining.size();
+    }
 
     /**
-     * Stores the list of bean inclusions.
+     * Applies the {@link #directDispatchBeanDecorator} (if any) and then each of the {@link #beanDecorators} to the
+     * supplied bean in turn.
+     *
+     * @param name the name the bean will be registered under.
+     * @param bean the bean to decorate.
+     *
+     * @return the decorated bean.
      */
-    private final transient List<TypeFilter> includeFilters = new LinkedList<TypeFilter>();
+    private Object decorate(final String name, final Object bean) {
+        final long decorationStart = nanoTime();
+        final DirectDispatchBeanDecorator directDispatch = directDispatchBeanDecorator;
+        Object decorated = directDispatch == null ? bean : directDispatch.decorate(name, bean);
+        for (BeanDecorator beanDecorator : beanDecorators) {
+            decorated = beanDecorator.decorate(name, decorated);
+        }
+        statistics.recordPhase(CopierPhase.DECORATION, nanoTime() - decorationStart);
+        return decorated;
+    }
 
     /**
-     * Stores the liferay bean locator to copy beans from.
+     * Removes the named bean, previously registered by this instance, from the supplied registry. Removal is only
+     * possible for registries extending {@link DefaultSingletonBeanRegistry} (which includes the bean factories of
+     * Spring's standard application contexts); for any other registry a warning is logged and the bean is retained.
+     * A removed bean is also {@link BeanDecorator#release(String) released} from every decorator, so that nothing they
+     * retain for it (such as the cache of a {@link CachingBeanDecorator}) outlives it.
+     *
+     * @param singletonBeanRegistry the registry to remove the bean from.
+     * @param name                  the name of the bean to remove.
+     *
+     * @return {@code true} if the bean was removed, {@code false} otherwise.
      */
-    private final transient BeanLocator beanLocator;
+    private boolean unregister(final SingletonBeanRegistry singletonBeanRegistry, final String name) {
+        if (!(singletonBeanRegistry instanceof DefaultSingletonBeanRegistry)) {
+            LOG.warn(format("Unable to remove bean %s from %s (unsupported registry)", name, singletonBeanRegistry));
+            return false;
+        }
+
+        if (!quiet && LOG.isInfoEnabled()) {
+            LOG.info(format("Removing bean definition %s", name));
+        }
+        ((DefaultSingletonBeanRegistry) singletonBeanRegistry).destroySingleton(name);
+        registeredNames.remove(name);
+        typeIndex.remove(name);
+        final DirectDispatchBeanDecorator directDispatch = directDispatchBeanDecorator;
+        if (directDispatch != null) {
+            directDispatch.release(name);
+        }
+        for (BeanDecorator beanDecorator : beanDecorators) {
+            beanDecorator.release(name);
+        }
+        return true;
+    }
 
     /**
-     * Creates a new instance based on the supplied bean locator.
+     * Builds the summary of a single copy.
      *
-     * @param beanLocator the liferay bean locator to copy beans from.
+     * @param target      the target beans were copied to.
+     * @param resolutions the resolutions of every name obtained from the bean locator.
+     * @param nanos       the duration of the copy, in nanoseconds.
+     *
+     * @return the summary of the copy.
      */
-    public BeanLocatorDefinitionCopier(final BeanLocator beanLocator) {
-        super();
-        LOG.debug(format("Storing bean locator: %s", beanLocator));
-        this.beanLocator = beanLocator;
+    private String summarise(final Object target, final List<Resolution> resolutions, final long nanos) {
+        final int[] decisions = new int[AcceptanceDecision.values().length];
+        final List<String> skipped = new ArrayList<String>();
+        int registered = 0;
+        int locateFailures = 0;
+        for (Resolution resolution : resolutions) {
+            decisions[resolution.decision.ordinal()]++;
+            if (resolution.bean != null) {
+                registered++;
+                continue;
+            }
+            if (resolution.decision.isAccepted()) {
+                locateFailures++;
+            }
+            if (skipped.size() < skippedNameLimit) {
+                skipped.add(resolution.name);
+            }
+        }
+
+        final StringBuilder builder = new StringBuilder("Copied bean definitions from ").append(beanLocator)
+            .append(" to ").append(target)
+            .append(": names=").append(resolutions.size())
+            .append(" registered=").append(registered);
+        for (AcceptanceDecision decision : AcceptanceDecision.values()) {
+            builder.append(' ').append(decision).append('=').append(decisions[decision.ordinal()]);
+        }
+        builder.append(" locateFailures=").append(locateFailures)
+            .append(" durationMs=").append(NANOSECONDS.toMillis(nanos));
+        if (skippedNameLimit > 0) {
+            final int unlisted = resolutions.size() - registered - skipped.size();
+            builder.append(" skipped=").append(skipped);
+            if (unlisted > 0) {
+                builder.append(" (").append(unlisted).append(" more)");
+            }
+        }
+        return builder.toString();
     }
 
     /**
-     * Adds an inclusion filter.
+     * Resolves each of the supplied names in turn on the calling thread, stopping if the thread is interrupted (for
+     * example when a background copy is cancelled).
      *
-     * @param filter the filter which beans must match to be copied.
+     * @param names    the names of the beans to resolve.
+     * @param indexed  the previously indexed acceptance of each name, or {@code null} if each name must be classified.
+     * @param deadline the time by which beans must be located, as given by {@link System#nanoTime()}, or {@code null}
+     *                 if there is no deadline.
+     * @param retry    {@code true} if the names are deferred names being retried, whose decisions have already been
+     *                 recorded, {@code false} otherwise.
+     *
+     * @return the resolutions, in the same order as the supplied names.
+     *
+     * @throws ApplicationContextException if the calling thread is interrupted.
      */
-    public final void addIncludeFilter(final TypeFilter filter) {
-        includeFilters.add(filter);
+    private List<Resolution> resolveAll(final String[] names,
+                                        final boolean[] indexed,
+                                        final Long deadline,
+                                        final boolean retry) {
+        final List<Resolution> resolutions = new ArrayList<Resolution>(names.length);
+        for (int i = 0; i < names.length; i++) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new ApplicationContextException("Interrupted while copying bean definitions");
+            }
+            resolutions.add(resolve(names[i], indexed == null ? null : indexed[i], deadline, retry));
+        }
+        return resolutions;
     }
 
     /**
-     * Adds an exclusion filter.
+     * Resolves the supplied names concurrently using the {@link #executorService} associated with this instance,
+     * waiting for every name to be resolved.
      *
-     * @param filter the filter which beans must not match to be copied.
+     * @param names    the names of the beans to resolve.
+     * @param indexed  the previously indexed acceptance of each name, or {@code null} if each name must be classified.
+     * @param deadline the time by which beans must be located, as given by {@link System#nanoTime()}, or {@code null}
+     *                 if there is no deadline.
+     * @param retry    {@code true} if the names are deferred names being retried, whose decisions have already been
+     *                 recorded, {@code false} otherwise.
+     *
+     * @return the resolutions, in the same order as the supplied names.
      */
-    public final void addExcludeFilter(final TypeFilter filter) {
-        excludeFilters.add(filter);
+    private List<Resolution> resolveAllInParallel(final String[] names,
+                                                  final boolean[] indexed,
+                                                  final Long deadline,
+                                                  final boolean retry) {
+        final List<Callable<Resolution>> tasks = new ArrayList<Callable<Resolution>>(names.length);
+        for (int i = 0; i < names.length; i++) {
+            final String name = names[i];
+            final Boolean accepted = indexed == null ? null : indexed[i];
+            tasks.add(new Callable<Resolution>() {
+                @Override
+                public Resolution call() {
+                    return resolve(name, accepted, deadline, retry);
+                }
+            });
+        }
+
+        final List<Resolution> resolutions = new ArrayList<Resolution>(names.length);
+        try {
+            for (Future<Resolution> future : executorService.invokeAll(tasks)) {
+                resolutions.add(future.get());
+            }
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApplicationContextException("Interrupted while copying bean definitions", e);
+        }
+        catch (final ExecutionException e) {
+            throw BackgroundCopy.propagate(e);
+        }
+        return resolutions;
     }
 
     /**
-     * {@inheritDoc}
+     * Resolves a single bean by checking it is acceptable and then locating it. During a background copy the
+     * resolution is shared with {@link #getBean(String)}, so a name it resolved early is not resolved again.
      *
-     * @return always returns {@link ConfigurableApplicationContext}.
+     * @param name     the name of the bean to resolve.
+     * @param indexed  the previously indexed acceptance of the name, or {@code null} if the name must be classified.
+     * @param deadline the time by which the bean must be located, as given by {@link System#nanoTime()}, or
+     *                 {@code null} if there is no deadline.
+     * @param retry    {@code true} if the bean is a deferred bean being retried, whose decision has already been
+     *                 recorded, {@code false} otherwise.
+     *
+     * @return the resolution of the bean, whose bean is {@code null} if the bean is unacceptable or could not be
+     *         located, and which is marked as deferred if the bean was not located in time.
      */
-    @Override
-    protected final Class requiredContextClass() {
-        return ConfigurableApplicationContext.class;
+    private Resolution resolve(final String name, final Boolean indexed, final Long deadline, final boolean retry) {
+        if (retry) {
+            return classifyAndLocate(name, indexed, deadline, true);
+        }
+        return backgroundCopy.resolve(name, indexed, deadline);
     }
 
     /**
-     * Initialises the supplied application context based on the {@link BeanLocator} associated with this instance by
-     * iterating the liferay registered beans (via {@link BeanLocator#getNames()}).
+     * Classifies and locates a single bean, as described by {@link #resolve(String, Boolean, Long, boolean)}.
      *
-     * @param context the {@link ConfigurableApplicationContext} in which beans should be registered (by calling
-     *                {@link ConfigurableApplicationContext#getBeanFactory()}).
+     * @param name     the name of the bean to resolve.
+     * @param indexed  the previously indexed acceptance of the name, or {@code null} if the name must be classified.
+     * @param deadline the time by which the bean must be located, as given by {@link System#nanoTime()}, or
+     *                 {@code null} if there is no deadline.
+     * @param retry    {@code true} if the bean is a deferred bean being retried, whose decision has already been
+     *                 recorded, {@code false} otherwise.
+     *
+     * @return the resolution of the bean.
      */
-    @Override
-    protected final void initApplicationContext(final ApplicationContext context) {
-        LOG.info(format("Copying bean definitions from %s to %s", beanLocator, context));
-
-        final ConfigurableApplicationContext configurableApplicationContext = (ConfigurableApplicationContext) context;
-        @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
-        final SingletonBeanRegistry singletonBeanRegistry = configurableApplicationContext.getBeanFactory();
-
-        final String[] names = beanLocator.getNames();
-        for (String name : names) {
+    private Resolution classifyAndLocate(final String name,
+                                         final Boolean indexed,
+                                         final Long deadline,
+                                         final boolean retry) {
+        if (LOG.isDebugEnabled()) {
             LOG.debug(format("Processing bean locator bean named: %s", name));
+        }
+
+        final Resolution resolution = new Resolution(name);
+        if (indexed == null) {
+            classify(resolution);
+        }
+        else {
+            resolution.decision = indexed ? ACCEPTED : INDEXED_REJECTED;
+        }
+        if (!retry) {
+            statistics.recordDecision(resolution.decision);
+        }
 
-            if (!isAcceptable(name)) {
+        if (!resolution.decision.isAccepted()) {
+            if (LOG.isDebugEnabled()) {
                 LOG.debug(format("Skipping bean %s", name));
-                continue;
             }
+            return resolution;
+        }
+
+        if (lazy && resolution.type == null) {
+            resolution.type = safeLoadClass(name);
+        }
+
+        if (lazy && resolution.type != null && resolution.type.isInterface()) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(format("Deferring location of bean %s", name));
+            }
+            resolution.bean = newLazyProxy(beanLocator, name, resolution.type);
+            return resolution;
+        }
+
+        final LocateCircuitBreaker breaker = circuitBreaker;
+        if (breaker != null && !breaker.allows(name)) {
+            if (!quiet) {
+                LOG.warn(format("Skipping bean %s (circuit open after repeated failures)", name));
+            }
+            statistics.recordLocateFailure();
+            return resolution;
+        }
+
+        final long locateStart = nanoTime();
+        if (deadline != null && deadline - locateStart <= 0) {
+            resolution.deferred = true;
+        }
+        else {
+            resolution.bean = boundedLocate(resolution, deadline, locateStart);
+        }
+        final long locateNanos = nanoTime() - locateStart;
+        statistics.recordPhase(CopierPhase.LOCATE, locateNanos);
+        final CopierEventListener listener = eventListener;
+        if (listener != null) {
+            fireEvent(listener, resolution, CopierPhase.LOCATE, locateNanos, resolution.decision,
+                      resolution.bean != null);
+        }
+        if (resolution.bean != null) {
+            if (breaker != null) {
+                breaker.recordSuccess(name);
+            }
+            return resolution;
+        }
 
-            final Object bean = safeLocate(name);
-            if (bean == null) {
+        if (breaker != null && breaker.recordFailure(name)) {
+            if (!quiet) {
+                LOG.warn(format("Skipping bean %s (circuit opened after %d consecutive failures)", name,
+                                breaker.getFailureThreshold()));
+            }
+            resolution.deferred = false;
+            statistics.recordLocateFailure();
+        }
+        else if (resolution.deferred) {
+            if (!quiet) {
+                LOG.warn(format("Deferring bean %s (bean locator didn't supply it in time)", name));
+            }
+            statistics.recordDeferral();
+        }
+        else {
+            if (!quiet) {
                 LOG.warn(format("Skipping bean %s (bean locator couldn't acquire a valid instance)", name));
-                continue;
             }
+            statistics.recordLocateFailure();
+        }
+        return resolution;
+    }
+
+    /**
+     * Locates the bean of the supplied resolution, on the {@link #locateExecutorService} if its location is bounded by
+     * the {@link #locateTimeoutNanos} or the supplied deadline. If the bean is not located in time its location is
+     * cancelled and the resolution is marked as deferred, as it is if bounded location fails with any runtime exception
+     * (not only a {@link BeanLocatorException}), so that a single misbehaving bean does not abort the copy.
+     *
+     * @param resolution  the resolution of the bean to locate.
+     * @param deadline    the time by which the bean must be located, as given by {@link System#nanoTime()}, or
+     *                    {@code null} if there is no deadline.
+     * @param locateStart the time location started, as given by {@link System#nanoTime()}.
+     *
+     * @return the located bean, or {@code null} if it could not be located in time.
+     */
+    private Object boundedLocate(final Resolution resolution, final Long deadline, final long locateStart) {
+        final String name = resolution.name;
+        final ExecutorService executor = locateExecutorService;
+        long timeout = locateTimeoutNanos;
+        if (deadline != null) {
+            final long remaining = deadline - locateStart;
+            timeout = timeout > 0 ? Math.min(timeout, remaining) : remaining;
+        }
+        if (executor == null || timeout <= 0) {
+            return safeLocate(name);
+        }
 
-            LOG.info(format("Copying bean definition %s", name));
-            singletonBeanRegistry.registerSingleton(name, bean);
+        final Future<Object> future = executor.submit(new Callable<Object>() {
+            @Override
+            public Object call() {
+                return safeLocate(name);
+            }
+        });
+        try {
+            return future.get(timeout, NANOSECONDS);
         }
+        catch (final TimeoutException e) {
+            future.cancel(true);
+            resolution.deferred = true;
+        }
+        catch (final InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            resolution.deferred = true;
+        }
+        catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                LOG.warn(format("Error fetching bean from bean locator: %s - deferring", name), cause);
+                resolution.deferred = true;
+                return null;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new ApplicationContextException(format("Error locating bean %s", name), cause);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the deadline of a copy started at the supplied time.
+     *
+     * @param start the time the copy started, as given by {@link System#nanoTime()}.
+     *
+     * @return the deadline, as given by {@link System#nanoTime()}, or {@code null} if copies have no deadline.
+     */
+    private Long getDeadline(final long start) {
+        return copyDeadlineNanos > 0 ? start + copyDeadlineNanos : null;
     }
 
     /**
@@ -149,7 +1804,9 @@ public class BeanLocatorDefinitionCopier extends ApplicationObjectSupport {
      *         thrown.
      */
     protected final Object safeLocate(final String name) {
-        LOG.debug(format("Fetching bean from bean locator: %s", name));
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(format("Fetching bean from bean locator: %s", name));
+        }
         try {
             return beanLocator.locate(name);
         }
@@ -163,6 +1820,7 @@ public class BeanLocatorDefinitionCopier extends ApplicationObjectSupport {
      * Determines whether the class identified by the supplied string is acceptable for copying by this instance.
      * Acceptance is based on (in order):
      * <ol>
+     * <li>The string being accepted by the name filter, if any (if the name is rejected, it is unacceptable)</li>
      * <li>The string identifying a known type (if the type is unknown, it is unacceptable)</li>
      * <li>Which does not match an exclude filter (if the type is excluded, it is unacceptable)</li>
      * <li>Which matches any defined include filters (if the type is included, it is acceptable)</li>
@@ -174,24 +1832,226 @@ public class BeanLocatorDefinitionCopier extends ApplicationObjectSupport {
      * @return {@code true} if the type matches the acceptance criteria for this class, {@code false} otherwise.
      */
     protected final boolean isAcceptable(final String type) {
-        final Class<?> clazz = safeForName(type);
+        final Resolution resolution = new Resolution(type);
+        classify(resolution);
+        return resolution.decision.isAccepted();
+    }
 
-        if (clazz == null) {
-            LOG.debug(format("Skipping unknown type %s", type));
-            return false;
+    /**
+     * Classifies the supplied resolution using the criteria described by {@link #isAcceptable(String)}, consulting the
+     * {@link #acceptanceCache} if one is associated with this instance and its filters can be fingerprinted. On return
+     * the resolution's decision is set, along with its type if its class was resolved.
+     *
+     * @param resolution the resolution to classify.
+     */
+    private void classify(final Resolution resolution) {
+        final String type = resolution.name;
+        if (nameFilter != null && !nameFilter.accepts(type)) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(format("Refusing excluded name %s", type));
+            }
+            resolution.decision = NAME_EXCLUDED;
+            return;
         }
 
-        if (matches(excludeFilters, clazz)) {
-            LOG.debug(format("Refusing excluded type %s", type));
-            return false;
+        final String fingerprint = acceptanceCache == null ? null : getFilterFingerprint();
+        if (fingerprint == null) {
+            resolution.decision = decide(resolution);
+            return;
         }
 
-        if (matches(includeFilters, clazz)) {
-            LOG.debug(format("Accepting included type %s", type));
-            return true;
+        final ClassLoader classLoader = getClassLoader();
+        final AcceptanceDecision cached = acceptanceCache.get(classLoader, fingerprint, type);
+        if (cached == null) {
+            resolution.decision = decide(resolution);
+            acceptanceCache.put(classLoader, fingerprint, type, resolution.decision);
+        }
+        else {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(format("Using cached decision %s for type %s", cached, type));
+            }
+            resolution.decision = cached;
+        }
+    }
+
+    /**
+     * Decides whether the supplied resolution is acceptable for copying by this instance, reading its metadata either
+     * from the {@link #metadataReaderFactory} associated with this instance, or by resolving its class.
+     *
+     * @param resolution the resolution to decide, whose type is set if its class is resolved.
+     *
+     * @return the decision reached.
+     */
+    private AcceptanceDecision decide(final Resolution resolution) {
+        final long start = nanoTime();
+        final MetadataReader metadataReader;
+        if (metadataReaderFactory == null) {
+            final Class<?> clazz = safeForName(resolution.name);
+            resolution.type = clazz;
+            metadataReader = clazz == null ? null : new SimpleMetadataReader(clazz);
+        }
+        else {
+            metadataReader = safeGetMetadataReader(resolution.name);
+        }
+
+        final long matchStart = nanoTime();
+        statistics.recordPhase(CopierPhase.TYPE_RESOLUTION, matchStart - start);
+        final AcceptanceDecision decision = classify(resolution.name, metadataReader);
+        final long matchNanos = nanoTime() - matchStart;
+        statistics.recordPhase(CopierPhase.FILTER_MATCHING, matchNanos);
+
+        final CopierEventListener listener = eventListener;
+        if (listener != null) {
+            resolution.metadataReader = metadataReader;
+            fireEvent(listener, resolution, CopierPhase.TYPE_RESOLUTION, matchStart - start, decision,
+                      metadataReader != null);
+            fireEvent(listener, resolution, CopierPhase.FILTER_MATCHING, matchNanos, decision, true);
+        }
+        return decision;
+    }
+
+    /**
+     * Notifies the supplied listener of a phase of the supplied resolution, if the phase took at least the
+     * {@link #eventThresholdNanos event threshold}.
+     *
+     * @param listener   the listener to notify.
+     * @param resolution the resolution the phase belongs to.
+     * @param phase      the phase.
+     * @param nanos      the duration of the phase, in nanoseconds.
+     * @param decision   the decision reached for the bean.
+     * @param successful {@code true} if the phase succeeded, {@code false} otherwise.
+     */
+    private void fireEvent(final CopierEventListener listener,
+                           final Resolution resolution,
+                           final CopierPhase phase,
+                           final long nanos,
+                           final AcceptanceDecision decision,
+                           final boolean successful) {
+        if (nanos < eventThresholdNanos) {
+            return;
+        }
+        final TypeFilter decidingFilter = getDecidingFilter(resolution.metadataReader, decision);
+        listener.phaseCompleted(new CopierPhaseEvent(resolution.name, phase, nanos, decision, decidingFilter,
+                                                     successful));
+    }
+
+    /**
+     * Determines the filter which decided the class described by the supplied metadata: the first exclude filter it
+     * matches if it was excluded, or the first include filter it matches if it was included.
+     *
+     * @param metadataReader the metadata of the class, or {@code null} if it is unknown.
+     * @param decision       the decision reached for the class.
+     *
+     * @return the deciding filter, or {@code null} if the decision was not reached by matching a filter.
+     */
+    private TypeFilter getDecidingFilter(final MetadataReader metadataReader, final AcceptanceDecision decision) {
+        final List<TypeFilter> filters;
+        if (metadataReader == null) {
+            return null;
+        }
+        else if (decision == EXCLUDED) {
+            filters = excludeFilters;
         }
+        else if (decision == ACCEPTED) {
+            filters = includeFilters;
+        }
+        else {
+            return null;
+        }
+
+        for (TypeFilter filter : filters) {
+            if (safeMatch(filter, metadataReader)) {
+                return filter;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decides whether the class described by the supplied metadata is acceptable for copying by this instance, using
+     * the criteria described by {@link #isAcceptable(String)}. The same metadata reader is matched against both the
+     * exclude and include filters, and evaluation stops as soon as the decision is known; when no filter is configured
+     * the metadata is not consulted at all.
+     *
+     * @param type           the type of class to match.
+     * @param metadataReader the metadata of the class, or {@code null} if the type is unknown.
+     *
+     * @return the decision reached.
+     */
+    private AcceptanceDecision classify(final String type, final MetadataReader metadataReader) {
+        if (metadataReader == null) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(format("Skipping unknown type %s", type));
+            }
+            return UNKNOWN_TYPE;
+        }
+
+        final FilterSnapshot filters = getFilterSnapshot();
+        if (!filters.excludes.isEmpty() && matches(filters.excludes, metadataReader)) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(format("Refusing excluded type %s", type));
+            }
+            return EXCLUDED;
+        }
+
+        if (filters.includes.isEmpty()) {
+            return ACCEPTED;
+        }
+
+        if (matches(filters.includes, metadataReader)) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(format("Accepting included type %s", type));
+            }
+            return ACCEPTED;
+        }
+
+        return NOT_INCLUDED;
+    }
+
+    /**
+     * Returns the compiled snapshot of the filters currently configured for this instance, compiling it if no snapshot
+     * has been compiled since a filter was last added.
+     *
+     * @return the snapshot of the current filter configuration.
+     */
+    private FilterSnapshot getFilterSnapshot() {
+        FilterSnapshot current = filterSnapshot;
+        final int generation = filterGeneration.get();
+        if (current == null || current.generation != generation) {
+            current = new FilterSnapshot(generation, includeFilters, excludeFilters, getClassLoader());
+            filterSnapshot = current;
+        }
+        return current;
+    }
+
+    /**
+     * Returns the fingerprint of the filters currently configured for this instance.
+     *
+     * @return the fingerprint of the current filter configuration, or {@code null} if it cannot be fingerprinted.
+     */
+    private String getFilterFingerprint() {
+        return getFilterSnapshot().fingerprint;
+    }
+
+    /**
+     * Returns the fingerprint identifying the complete configuration used to classify names, including the
+     * {@link #nameFilter}.
+     *
+     * @return the fingerprint of the complete classification configuration, or {@code null} if the filters cannot be
+     *         fingerprinted.
+     */
+    private String getIndexFingerprint() {
+        return PrecomputedDecisions.indexFingerprint(getFilterFingerprint(), nameFilter);
+    }
 
-        return includeFilters.isEmpty();
+    /**
+     * Returns the class loader names are resolved against by {@link #safeForName(String)} and
+     * {@link #safeLoadClass(String)}.
+     *
+     * @return the class loader names are resolved against.
+     */
+    private ClassLoader getClassLoader() {
+        return BeanLocatorDefinitionCopier.class.getClassLoader();
     }
 
     /**
@@ -204,8 +2064,20 @@ public class BeanLocatorDefinitionCopier extends ApplicationObjectSupport {
      * @return {@code true} if any of the filters match, {@code false} otherwise.
      */
     protected final boolean matches(final Collection<? extends TypeFilter> filters, final Class<?> clazz) {
-        @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
-        final MetadataReader metadataReader = new SimpleMetadataReader(clazz);
+        return matches(filters, new SimpleMetadataReader(clazz));
+    }
+
+    /**
+     * Checks whether the class described by the supplied metadata matches any of the supplied type filters, returning
+     * {@code true} if it does, {@code false} otherwise.
+     *
+     * @param filters        the filters to match against.
+     * @param metadataReader the metadata of the class to match.
+     *
+     * @return {@code true} if any of the filters match, {@code false} otherwise.
+     */
+    protected final boolean matches(final Collection<? extends TypeFilter> filters,
+                                    final MetadataReader metadataReader) {
         for (TypeFilter filter : filters) {
             final boolean match = safeMatch(filter, metadataReader);
             if (match) {
@@ -215,12 +2087,29 @@ public class BeanLocatorDefinitionCopier extends ApplicationObjectSupport {
         return false;
     }
 
+    /**
+     * Checks whether the class described by the supplied metadata matches the supplied compiled chain, consulting its
+     * compiled filters first and then each of its fallback filters in turn.
+     *
+     * @param chain          the compiled chain to match against.
+     * @param metadataReader the metadata of the class to match.
+     *
+     * @return {@code true} if any filter in the chain matches, {@code false} otherwise.
+     */
+    private boolean matches(final CompiledFilterChain chain, final MetadataReader metadataReader) {
+        if (chain.matches(metadataReader, metadataReaderFactory)) {
+            return true;
+        }
+        final List<TypeFilter> fallbackFilters = chain.getFallbackFilters();
+        return !fallbackFilters.isEmpty() && matches(fallbackFilters, metadataReader);
+    }
 
     /**
      * Wraps a call to
      * {@link TypeFilter#match(MetadataReader, org.springframework.core.type.classreading.MetadataReaderFactory)}
      * so that any {@link IOException} is logged rather than propagating up the call stack. Returns the result of the
-     * match if successful, {@code false} otherwise.
+     * match if successful, {@code false} otherwise. The {@link #metadataReaderFactory} associated with this instance
+     * (if any) is supplied to the filter, allowing it to traverse the class hierarchy.
      *
      * @param filter         the filter to match against.
      * @param metadataReader the metadata reader to match with.
@@ -231,7 +2120,7 @@ public class BeanLocatorDefinitionCopier extends ApplicationObjectSupport {
      */
     protected final boolean safeMatch(final TypeFilter filter, final MetadataReader metadataReader) {
         try {
-            return filter.match(metadataReader, null);
+            return filter.match(metadataReader, metadataReaderFactory);
         }
         catch (final IOException e) {
             LOG.warn(format("Error checking for filter %s match against reader %s", filter, metadataReader));
@@ -239,6 +2128,51 @@ public class BeanLocatorDefinitionCopier extends ApplicationObjectSupport {
         return false;
     }
 
+    /**
+     * Wraps a call to {@link MetadataReaderFactory#getMetadataReader(String)} on the {@link #metadataReaderFactory}
+     * associated with this instance so that any {@link IOException} (such as for a name which does not identify a
+     * class) is logged rather than propagating back up the call stack.
+     *
+     * @param className the name of the class to read.
+     *
+     * @return the metadata of the requested class, if available, or {@code null}.
+     */
+    protected final MetadataReader safeGetMetadataReader(final String className) {
+        try {
+            return metadataReaderFactory.getMetadataReader(className);
+        }
+        catch (final IOException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(format("Unknown class %s", className));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Wraps a call to {@link Class#forName(String, boolean, ClassLoader)} so that the specified class is loaded
+     * without being initialised, and so that any {@link ClassNotFoundException} or {@link LinkageError} is logged
+     * rather than propagating back up the call stack.
+     *
+     * @param className the name of the class to load.
+     *
+     * @return the requested class, if available, or {@code null}.
+     */
+    protected final Class<?> safeLoadClass(final String className) {
+        try {
+            return forName(className, false, getClassLoader());
+        }
+        catch (final ClassNotFoundException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(format("Unknown class %s", className));
+            }
+        }
+        catch (final LinkageError e) {
+            LOG.warn(format("Error loading class %s", className), e);
+        }
+        return null;
+    }
+
     /**
      * Wraps a call to {@link Class#forName(String)} so that any {@link ClassNotFoundException} is logged rather than
      * propagating back up the call stack. Returns the specified class if successful, or {@code null} otherwise.
@@ -252,9 +2186,56 @@ public class BeanLocatorDefinitionCopier extends ApplicationObjectSupport {
             return forName(className);
         }
         catch (final ClassNotFoundException e) {
-            LOG.debug(format("Unknown class %s", className));
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(format("Unknown class %s", className));
+            }
         }
         return null;
     }
 
+    /**
+     * Holds an immutable, compiled snapshot of the filters configured for an instance.
+     */
+    private static final class FilterSnapshot {
+
+        /**
+         * Stores the filter generation the snapshot was compiled from.
+         */
+        private final int generation;
+
+        /**
+         * Stores the compiled inclusions.
+         */
+        private final CompiledFilterChain includes;
+
+        /**
+         * Stores the compiled exclusions.
+         */
+        private final CompiledFilterChain excludes;
+
+        /**
+         * Stores the fingerprint of the filters, or {@code null} if they cannot be fingerprinted.
+         */
+        private final String fingerprint;
+
+        /**
+         * Compiles a snapshot of the supplied filters.
+         *
+         * @param generation     the filter generation the snapshot is compiled from.
+         * @param includeFilters the include filters, in order.
+         * @param excludeFilters the exclude filters, in order.
+         * @param classLoader    the class loader names are resolved against.
+         */
+        FilterSnapshot(final int generation,
+                       final List<TypeFilter> includeFilters,
+                       final List<TypeFilter> excludeFilters,
+                       final ClassLoader classLoader) {
+            this.generation = generation;
+            this.includes = new CompiledFilterChain(includeFilters, classLoader);
+            this.excludes = new CompiledFilterChain(excludeFilters, classLoader);
+            this.fingerprint = fingerprint(includeFilters, excludeFilters);
+        }
+
+    }
+
 }
@@ -0,0 +1,408 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static java.util.Arrays.binarySearch;
+import static java.util.regex.Pattern.quote;
+
+/**
+ * This class provides a filter over bean names which is applied by {@link BeanLocatorDefinitionCopier} before any class
+ * is loaded, so names which can never be copied are rejected without the cost of resolving them. Names can be included
+ * or excluded by:
+ * <ul>
+ * <li>Prefix, for example {@code com.liferay.portal.service.}</li>
+ * <li>Glob pattern, where {@code ?} matches any single character, {@code *} matches any characters other than
+ * {@code .} and {@code **} matches any characters, for example {@code com.liferay.portal.service.*Service}</li>
+ * <li>Regular expression, which must match the whole name</li>
+ * </ul>
+ * Exclusions take priority over inclusions, and if no inclusion is defined every name which is not excluded is
+ * accepted. Prefixes are compiled into a trie and patterns into a single regular expression the first time a name is
+ * tested after the configuration changes.
+ */
+public class BeanNameFilter {
+
+    /**
+     * Stores the inclusion rules.
+     */
+    private final transient Rules includes = new Rules();
+
+    /**
+     * Stores the exclusion rules.
+     */
+    private final transient Rules excludes = new Rules();
+
+    /**
+     * Adds a prefix which names must start with to be accepted.
+     *
+     * @param prefix the prefix to include.
+     */
+    public final void addIncludePrefix(final String prefix) {
+        includes.addPrefix(prefix);
+    }
+
+    /**
+     * Adds a prefix which names must not start with to be accepted.
+     *
+     * @param prefix the prefix to exclude.
+     */
+    public final void addExcludePrefix(final String prefix) {
+        excludes.addPrefix(prefix);
+    }
+
+    /**
+     * Adds a glob pattern which names must match to be accepted.
+     *
+     * @param glob the glob pattern to include.
+     */
+    public final void addIncludePattern(final String glob) {
+        includes.addRegex(globToRegex(glob));
+    }
+
+    /**
+     * Adds a glob pattern which names must not match to be accepted.
+     *
+     * @param glob the glob pattern to exclude.
+     */
+    public final void addExcludePattern(final String glob) {
+        excludes.addRegex(globToRegex(glob));
+    }
+
+    /**
+     * Adds a regular expression which names must match to be accepted.
+     *
+     * @param regex the regular expression to include.
+     */
+    public final void addIncludeRegex(final String regex) {
+        includes.addRegex(Pattern.compile(regex).pattern());
+    }
+
+    /**
+     * Adds a regular expression which names must not match to be accepted.
+     *
+     * @param regex the regular expression to exclude.
+     */
+    public final void addExcludeRegex(final String regex) {
+        excludes.addRegex(Pattern.compile(regex).pattern());
+    }
+
+    /**
+     * Sets the prefixes which names must start with to be accepted, replacing any previously included prefixes.
+     *
+     * @param prefixes the prefixes to include.
+     */
+    public final void setIncludePrefixes(final Collection<String> prefixes) {
+        includes.clearPrefixes();
+        for (String prefix : prefixes) {
+            addIncludePrefix(prefix);
+        }
+    }
+
+    /**
+     * Sets the prefixes which names must not start with to be accepted, replacing any previously excluded prefixes.
+     *
+     * @param prefixes the prefixes to exclude.
+     */
+    public final void setExcludePrefixes(final Collection<String> prefixes) {
+        excludes.clearPrefixes();
+        for (String prefix : prefixes) {
+            addExcludePrefix(prefix);
+        }
+    }
+
+    /**
+     * Determines whether the supplied name is accepted by this filter.
+     *
+     * @param name the name to test.
+     *
+     * @return {@code true} if the name is not excluded and is included (or no inclusion is defined), {@code false}
+     *         otherwise.
+     */
+    public final boolean accepts(final String name) {
+        if (excludes.matches(name)) {
+            return false;
+        }
+        return includes.isEmpty() || includes.matches(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return a description of the rules of this filter, which is equal for filters with equal rules.
+     */
+    @Override
+    public final String toString() {
+        return "BeanNameFilter{include=" + includes + ", exclude=" + excludes + '}';
+    }
+
+    /**
+     * Converts the supplied glob pattern into an equivalent regular expression.
+     *
+     * @param glob the glob pattern to convert.
+     *
+     * @return the equivalent regular expression.
+     */
+    static String globToRegex(final String glob) {
+        final StringBuilder builder = new StringBuilder();
+        int literalStart = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            final char c = glob.charAt(i);
+            if (c != '*' && c != '?') {
+                continue;
+            }
+            if (i > literalStart) {
+                builder.append(quote(glob.substring(literalStart, i)));
+            }
+            if (c == '?') {
+                builder.append('.');
+            }
+            else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                builder.append(".*");
+                i++;
+            }
+            else {
+                builder.append("[^.]*");
+            }
+            literalStart = i + 1;
+        }
+        if (literalStart < glob.length()) {
+            builder.append(quote(glob.substring(literalStart)));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Holds a set of prefix and regular expression rules, compiling them on first use.
+     */
+    private static final class Rules {
+
+        /**
+         * Stores the configured prefixes.
+         */
+        private final List<String> prefixes = new ArrayList<String>();
+
+        /**
+         * Stores the configured regular expressions.
+         */
+        private final List<String> regexes = new ArrayList<String>();
+
+        /**
+         * Stores the trie compiled from {@link #prefixes}, or {@code null} if no prefix is defined.
+         */
+        private volatile PrefixTrie trie;
+
+        /**
+         * Stores the pattern compiled from {@link #regexes}, or {@code null} if no regular expression is defined.
+         */
+        private volatile Pattern pattern;
+
+        /**
+         * Stores whether {@link #pattern} and {@link #trie} reflect the current rules.
+         */
+        private volatile boolean compiled;
+
+        /**
+         * Adds a prefix rule.
+         *
+         * @param prefix the prefix.
+         */
+        synchronized void addPrefix(final String prefix) {
+            prefixes.add(prefix);
+            compiled = false;
+        }
+
+        /**
+         * Adds a regular expression rule.
+         *
+         * @param regex the regular expression.
+         */
+        synchronized void addRegex(final String regex) {
+            regexes.add(regex);
+            compiled = false;
+        }
+
+        /**
+         * Removes every prefix rule.
+         */
+        synchronized void clearPrefixes() {
+            prefixes.clear();
+            compiled = false;
+        }
+
+        /**
+         * Returns whether no rule has been defined.
+         *
+         * @return {@code true} if no rule has been defined.
+         */
+        boolean isEmpty() {
+            if (!compiled) {
+                compile();
+            }
+            return trie == null && pattern == null;
+        }
+
+        /**
+         * Returns whether the supplied name matches any rule.
+         *
+         * @param name the name to test.
+         *
+         * @return {@code true} if the name starts with any prefix or matches any regular expression.
+         */
+        boolean matches(final String name) {
+            if (!compiled) {
+                compile();
+            }
+            final PrefixTrie currentTrie = trie;
+            final Pattern currentPattern = pattern;
+            return currentTrie != null && currentTrie.matchesPrefixOf(name)
+                   || currentPattern != null && currentPattern.matcher(name).matches();
+        }
+
+        /**
+         * Compiles the current rules.
+         */
+        private synchronized void compile() {
+            if (compiled) {
+                return;
+            }
+
+            PrefixTrie newTrie = null;
+            if (!prefixes.isEmpty()) {
+                newTrie = new PrefixTrie();
+                for (String prefix : prefixes) {
+                    newTrie.add(prefix);
+                }
+            }
+
+            Pattern newPattern = null;
+            if (!regexes.isEmpty()) {
+                final StringBuilder builder = new StringBuilder();
+                for (String regex : regexes) {
+                    if (builder.length() > 0) {
+                        builder.append('|');
+                    }
+                    builder.append("(?:").append(regex).append(')');
+                }
+                newPattern = Pattern.compile(builder.toString());
+            }
+
+            trie = newTrie;
+            pattern = newPattern;
+            compiled = true;
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * @return a description of the rules.
+         */
+        @Override
+        public synchronized String toString() {
+            return "{prefixes=" + prefixes + ", regexes=" + regexes + '}';
+        }
+
+    }
+
+    /**
+     * Trie of prefixes, whose children are held in sorted arrays to avoid boxing characters when matching.
+     */
+    private static final class PrefixTrie {
+
+        /**
+         * Stores the characters leading to each child, in ascending order.
+         */
+        private char[] keys = new char[0];
+
+        /**
+         * Stores the children, in the same order as {@link #keys}.
+         */
+        private PrefixTrie[] children = new PrefixTrie[0];
+
+        /**
+         * Stores whether a prefix ends at this node.
+         */
+        private boolean terminal;
+
+        /**
+         * Adds the supplied prefix below this node.
+         *
+         * @param prefix the prefix to add.
+         */
+        void add(final String prefix) {
+            PrefixTrie node = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.childFor(prefix.charAt(i));
+            }
+            node.terminal = true;
+        }
+
+        /**
+         * Returns whether any prefix added below this node is a prefix of the supplied name.
+         *
+         * @param name the name to test.
+         *
+         * @return {@code true} if a prefix of the name has been added.
+         */
+        boolean matchesPrefixOf(final String name) {
+            PrefixTrie node = this;
+            for (int i = 0; !node.terminal; i++) {
+                if (i == name.length()) {
+                    return false;
+                }
+                final int index = binarySearch(node.keys, name.charAt(i));
+                if (index < 0) {
+                    return false;
+                }
+                node = node.children[index];
+            }
+            return true;
+        }
+
+        /**
+         * Returns the child for the supplied character, creating it if necessary.
+         *
+         * @param key the character leading to the child.
+         *
+         * @return the child.
+         */
+        private PrefixTrie childFor(final char key) {
+            final int index = binarySearch(keys, key);
+            if (index >= 0) {
+                return children[index];
+            }
+
+            final int insertion = -index - 1;
+            final char[] newKeys = new char[keys.length + 1];
+            final PrefixTrie[] newChildren = new PrefixTrie[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertion);
+            System.arraycopy(children, 0, newChildren, 0, insertion);
+            System.arraycopy(keys, insertion, newKeys, insertion + 1, keys.length - insertion);
+            System.arraycopy(children, insertion, newChildren, insertion + 1, children.length - insertion);
+            newKeys[insertion] = key;
+            newChildren[insertion] = new PrefixTrie();
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[insertion];
+        }
+
+    }
+
+}
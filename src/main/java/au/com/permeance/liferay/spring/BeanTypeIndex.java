@@ -0,0 +1,151 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class provides an index from types to the names of the beans assignable to them, built by
+ * {@link BeanLocatorDefinitionCopier} as it registers beans. Each bean is indexed under its class and every superclass
+ * and interface of it, so resolving the beans of a type is a single map lookup rather than a scan of every registered
+ * singleton. Types are indexed by name, so the index does not keep classes reachable. Names are returned in the order
+ * their beans were indexed.
+ */
+public class BeanTypeIndex {
+
+    /**
+     * Constant returned when no bean is indexed under a type.
+     */
+    private static final String[] NO_NAMES = new String[0];
+
+    /**
+     * Stores the names of the beans assignable to each type, keyed by type name.
+     */
+    private final transient Map<String, Set<String>> namesByType = new HashMap<String, Set<String>>();
+
+    /**
+     * Stores the names of the types each bean is indexed under, keyed by bean name.
+     */
+    private final transient Map<String, Set<String>> typesByName = new HashMap<String, Set<String>>();
+
+    /**
+     * Indexes the named bean under the supplied type and every supertype of it, replacing any previous entry for the
+     * name.
+     *
+     * @param name the name of the bean.
+     * @param type the type of the bean.
+     */
+    public final synchronized void add(final String name, final Class<?> type) {
+        remove(name);
+        final Set<String> typeNames = new LinkedHashSet<String>();
+        collect(type, typeNames);
+        for (String typeName : typeNames) {
+            Set<String> names = namesByType.get(typeName);
+            if (names == null) {
+                names = new LinkedHashSet<String>();
+                namesByType.put(typeName, names);
+            }
+            names.add(name);
+        }
+        typesByName.put(name, typeNames);
+    }
+
+    /**
+     * Removes the named bean from the index.
+     *
+     * @param name the name of the bean.
+     *
+     * @return {@code true} if the bean was indexed, {@code false} otherwise.
+     */
+    public final synchronized boolean remove(final String name) {
+        final Set<String> typeNames = typesByName.remove(name);
+        if (typeNames == null) {
+            return false;
+        }
+        for (String typeName : typeNames) {
+            final Set<String> names = namesByType.get(typeName);
+            names.remove(name);
+            if (names.isEmpty()) {
+                namesByType.remove(typeName);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes every bean from the index.
+     */
+    public final synchronized void clear() {
+        namesByType.clear();
+        typesByName.clear();
+    }
+
+    /**
+     * Returns the names of the indexed beans assignable to the supplied type.
+     *
+     * @param type the type to look up.
+     *
+     * @return the names of the matching beans, which is empty if there are none.
+     */
+    public final String[] getBeanNamesForType(final Class<?> type) {
+        return getBeanNamesForType(type.getName());
+    }
+
+    /**
+     * Returns the names of the indexed beans assignable to the named type.
+     *
+     * @param typeName the name of the type to look up.
+     *
+     * @return the names of the matching beans, which is empty if there are none.
+     */
+    public final synchronized String[] getBeanNamesForType(final String typeName) {
+        final Set<String> names = namesByType.get(typeName);
+        return names == null ? NO_NAMES : names.toArray(new String[names.size()]);
+    }
+
+    /**
+     * Returns the number of indexed beans.
+     *
+     * @return the number of indexed beans.
+     */
+    public final synchronized int size() {
+        return typesByName.size();
+    }
+
+    /**
+     * Collects the names of the supplied type and every supertype of it.
+     *
+     * @param type      the type to collect the names of.
+     * @param typeNames the names collected so far, to add to.
+     */
+    private static void collect(final Class<?> type, final Set<String> typeNames) {
+        if (!typeNames.add(type.getName())) {
+            return;
+        }
+        final Class<?> superclass = type.getSuperclass();
+        if (superclass != null) {
+            collect(superclass, typeNames);
+        }
+        for (Class<?> interfaceType : type.getInterfaces()) {
+            collect(interfaceType, typeNames);
+        }
+    }
+
+}
@@ -0,0 +1,539 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+import com.liferay.portal.kernel.log.Log;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.springframework.core.type.filter.TypeFilter;
+
+import static com.liferay.portal.kernel.log.LogFactoryUtil.getLog;
+
+import static java.lang.String.format;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * This class provides an opt-in {@link BeanDecorator} which caches the results of read-only methods of copied beans,
+ * such as the lookups of liferay's local services, so repeated calls made while handling a request do not each reach
+ * the service (and its database). Beans are selected by {@link #addTypeFilter(TypeFilter) type filters} and wrapped in
+ * a JDK proxy as described by {@link AbstractProxyBeanDecorator}; unlike other decorators, no bean is decorated until
+ * a type filter is added or every bean is opted in via {@link #setCacheAllBeans(boolean)}. Methods whose names match
+ * the {@link #setMethodPattern(String) method pattern} and which return a value are cached, keyed by method and
+ * arguments.
+ * <p/>
+ * Each bean name has its own cache, shared by every proxy decorating a bean of that name: a {@link ConcurrentHashMap}
+ * holding at most {@link #setMaxEntries(int) a bounded number} of results, each of which expires after the
+ * {@link #setTimeToLiveMillis(long) time to live}. Exceptions are never cached. By default, calling any method which is
+ * not cached (such as {@code updateUser}) invalidates the bean's cache; caches can also be invalidated explicitly via
+ * {@link #invalidate(String)} and {@link #invalidateAll()}, for example from a liferay model listener. A result read
+ * while the cache is being invalidated is not cached.
+ * <p/>
+ * Cached results are the same instances returned to every caller, and liferay models are mutable: a caller which
+ * modifies a cached model (for example before passing it to an update method) changes what every other caller sees
+ * until the result expires. Only beans whose results callers treat as read-only should be selected.
+ */
+public class CachingBeanDecorator extends AbstractProxyBeanDecorator {
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = getLog(CachingBeanDecorator.class);
+
+    /**
+     * The default pattern of the names of cached methods.
+     */
+    public static final String DEFAULT_METHOD_PATTERN = "(get|fetch|count|has|is)[A-Z].*";
+
+    /**
+     * Placeholder cached for {@code null} results.
+     */
+    private static final Object NULL = new Object();
+
+    /**
+     * Stores the cache of each decorated bean, keyed by bean name.
+     */
+    private final transient ConcurrentMap<String, ResultCache> caches = new ConcurrentHashMap<String, ResultCache>();
+
+    /**
+     * Stores the number of invocations answered from a cache.
+     */
+    private final transient AtomicLong hits = new AtomicLong();
+
+    /**
+     * Stores the number of cacheable invocations which reached the bean.
+     */
+    private final transient AtomicLong misses = new AtomicLong();
+
+    /**
+     * Stores the pattern of the names of cached methods.
+     */
+    private transient volatile Pattern methodPattern = Pattern.compile(DEFAULT_METHOD_PATTERN);
+
+    /**
+     * Stores the time each result is cached for.
+     */
+    private transient volatile long timeToLiveNanos = MILLISECONDS.toNanos(60000L);
+
+    /**
+     * Stores the maximum number of results cached for each bean.
+     */
+    private transient volatile int maxEntries = 1000;
+
+    /**
+     * Stores whether invoking a method which is not cached invalidates the bean's cache.
+     */
+    private transient volatile boolean invalidateOnWrite = true;
+
+    /**
+     * Stores whether every bean is decorated when no type filter has been added.
+     */
+    private transient volatile boolean cacheAllBeans;
+
+    /**
+     * Sets the regular expression which the names of cached methods must match, which defaults to
+     * {@link #DEFAULT_METHOD_PATTERN}.
+     *
+     * @param methodPattern the pattern of the names of cached methods.
+     */
+    public final void setMethodPattern(final String methodPattern) {
+        this.methodPattern = Pattern.compile(methodPattern);
+    }
+
+    /**
+     * Sets the time each result is cached for, which defaults to one minute.
+     *
+     * @param timeToLiveMillis the time to cache results for, in milliseconds.
+     */
+    public final void setTimeToLiveMillis(final long timeToLiveMillis) {
+        this.timeToLiveNanos = MILLISECONDS.toNanos(timeToLiveMillis);
+    }
+
+    /**
+     * Sets the maximum number of results cached for each bean, which defaults to 1000. When a cache is full, expired
+     * results are evicted first, followed by arbitrary results until a quarter of the cache is free.
+     *
+     * @param maxEntries the maximum number of results cached for each bean.
+     */
+    public final void setMaxEntries(final int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Sets whether invoking a method of a decorated bean which is not cached invalidates that bean's cache.
+     *
+     * @param invalidateOnWrite {@code true} to invalidate on methods which are not cached, {@code false} to only
+     *                          invalidate explicitly or on expiry.
+     */
+    public final void setInvalidateOnWrite(final boolean invalidateOnWrite) {
+        this.invalidateOnWrite = invalidateOnWrite;
+    }
+
+    /**
+     * Sets whether every bean with a cacheable method is decorated when no {@link #addTypeFilter(TypeFilter) type
+     * filter} has been added, which defaults to {@code false} so that results are only cached for beans selected
+     * explicitly. As cached results are shared between callers, this should only be enabled if no caller modifies the
+     * results of any copied bean.
+     *
+     * @param cacheAllBeans {@code true} to decorate every bean when no type filter has been added, {@code false} to
+     *                      decorate no bean.
+     */
+    public final void setCacheAllBeans(final boolean cacheAllBeans) {
+        this.cacheAllBeans = cacheAllBeans;
+    }
+
+    /**
+     * Removes every cached result of the named bean.
+     *
+     * @param name the name of the bean.
+     */
+    public final void invalidate(final String name) {
+        final ResultCache cache = caches.get(name);
+        if (cache != null) {
+            cache.invalidate();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Discards the cache of the named bean, including the cached results and the methods found to be cacheable. A bean
+     * decorated under the same name afterwards is given a new cache.
+     */
+    @Override
+    public final void release(final String name) {
+        final ResultCache cache = caches.remove(name);
+        if (cache != null) {
+            cache.invalidate();
+        }
+    }
+
+    /**
+     * Removes every cached result of every bean.
+     */
+    public final void invalidateAll() {
+        for (ResultCache cache : caches.values()) {
+            cache.invalidate();
+        }
+    }
+
+    /**
+     * Returns the number of invocations answered from a cache.
+     *
+     * @return the number of cache hits.
+     */
+    public final long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of cacheable invocations which were not answered from a cache.
+     *
+     * @return the number of cache misses.
+     */
+    public final long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return a caching handler, or {@code null} if no type filter has been added (unless
+     *         {@link #setCacheAllBeans(boolean) every bean is opted in}) or no interface method is cacheable.
+     */
+    @Override
+    protected final InvocationHandler createInvocationHandler(final String name,
+                                                              final Object bean,
+                                                              final Class<?>[] interfaces) {
+        if (!hasTypeFilters() && !cacheAllBeans) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(format("Not caching bean %s as no type filter selects beans to cache", name));
+            }
+            return null;
+        }
+        if (!hasCacheableMethod(interfaces)) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(format("Not caching bean %s as it has no cacheable interface method", name));
+            }
+            return null;
+        }
+
+        final ResultCache created = new ResultCache();
+        final ResultCache existing = caches.putIfAbsent(name, created);
+        final ResultCache cache = existing == null ? created : existing;
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(format("Caching results of bean %s", name));
+        }
+        return new CachingInvocationHandler(bean, cache);
+    }
+
+    /**
+     * Returns whether any method of the supplied interfaces is cacheable.
+     *
+     * @param interfaces the interfaces to check.
+     *
+     * @return {@code true} if a method is cacheable, {@code false} otherwise.
+     */
+    private boolean hasCacheableMethod(final Class<?>[] interfaces) {
+        for (Class<?> interfaceType : interfaces) {
+            for (Method method : interfaceType.getMethods()) {
+                if (isCacheable(method)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the results of the supplied method are cached.
+     *
+     * @param method the method to check.
+     *
+     * @return {@code true} if the method returns a value and its name matches the {@link #methodPattern}.
+     */
+    private boolean isCacheable(final Method method) {
+        return method.getReturnType() != Void.TYPE && methodPattern.matcher(method.getName()).matches();
+    }
+
+    /**
+     * Holds the cached results of a single bean.
+     */
+    private final class ResultCache {
+
+        /**
+         * Stores the cached results, keyed by invocation.
+         */
+        private final ConcurrentMap<Invocation, Result> results = new ConcurrentHashMap<Invocation, Result>();
+
+        /**
+         * Stores whether each method invoked so far is cacheable.
+         */
+        private final ConcurrentMap<Method, Boolean> cacheable = new ConcurrentHashMap<Method, Boolean>();
+
+        /**
+         * Stores the number of times the cache has been invalidated, so that results read before an invalidation are
+         * not cached after it.
+         */
+        private final AtomicLong generation = new AtomicLong();
+
+        /**
+         * Removes every cached result, and prevents results read before now from being cached.
+         */
+        void invalidate() {
+            generation.incrementAndGet();
+            results.clear();
+        }
+
+        /**
+         * Returns whether the results of the supplied method are cached, remembering the answer.
+         *
+         * @param method the method to check.
+         *
+         * @return {@code true} if the method's results are cached, {@code false} otherwise.
+         */
+        boolean isCacheable(final Method method) {
+            Boolean result = cacheable.get(method);
+            if (result == null) {
+                result = CachingBeanDecorator.this.isCacheable(method);
+                cacheable.put(method, result);
+            }
+            return result;
+        }
+
+        /**
+         * Returns the unexpired result of the supplied invocation.
+         *
+         * @param invocation the invocation to look up.
+         * @param now        the current time, from {@link System#nanoTime()}.
+         *
+         * @return the cached result, or {@code null} if there is none.
+         */
+        Result get(final Invocation invocation, final long now) {
+            final Result result = results.get(invocation);
+            if (result == null) {
+                return null;
+            }
+            if (now - result.expiry >= 0) {
+                results.remove(invocation, result);
+                return null;
+            }
+            return result;
+        }
+
+        /**
+         * Caches the result of the supplied invocation, evicting results if the cache is full, unless the cache has
+         * been invalidated since the invocation started.
+         *
+         * @param invocation      the invocation.
+         * @param value           the result of the invocation.
+         * @param now             the current time, from {@link System#nanoTime()}.
+         * @param startGeneration the {@link #generation} when the invocation started.
+         */
+        void put(final Invocation invocation, final Object value, final long now, final long startGeneration) {
+            if (generation.get() != startGeneration) {
+                return;
+            }
+            final Result result = new Result(value == null ? NULL : value, now + timeToLiveNanos);
+            results.put(invocation, result);
+            if (generation.get() != startGeneration) {
+                // invalidated while caching the result
+                results.remove(invocation, result);
+                return;
+            }
+            final int limit = maxEntries;
+            if (results.size() > limit) {
+                evict(limit, now);
+            }
+        }
+
+        /**
+         * Evicts expired results and then, if necessary, arbitrary results until a quarter of the cache is free.
+         *
+         * @param limit the maximum number of results.
+         * @param now   the current time, from {@link System#nanoTime()}.
+         */
+        private void evict(final int limit, final long now) {
+            for (Iterator<Result> iterator = results.values().iterator(); iterator.hasNext(); ) {
+                if (now - iterator.next().expiry >= 0) {
+                    iterator.remove();
+                }
+            }
+            final int target = limit - limit / 4;
+            for (Iterator<Result> iterator = results.values().iterator();
+                 results.size() > target && iterator.hasNext(); ) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+
+    }
+
+    /**
+     * Provides the {@link InvocationHandler} of caching proxies.
+     */
+    private final class CachingInvocationHandler implements InvocationHandler {
+
+        /**
+         * Stores the decorated bean.
+         */
+        private final Object target;
+
+        /**
+         * Stores the cache of the decorated bean.
+         */
+        private final ResultCache cache;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param target the decorated bean.
+         * @param cache  the cache of the decorated bean.
+         */
+        CachingInvocationHandler(final Object target, final ResultCache cache) {
+            this.target = target;
+            this.cache = cache;
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p/>
+         * Answers cacheable invocations from the cache where possible, and otherwise invokes the decorated bean.
+         */
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return invokeTarget(target, method, args);
+            }
+            if (!cache.isCacheable(method)) {
+                try {
+                    return invokeTarget(target, method, args);
+                }
+                finally {
+                    if (invalidateOnWrite) {
+                        cache.invalidate();
+                    }
+                }
+            }
+
+            final Invocation invocation = new Invocation(method, args);
+            final Result cached = cache.get(invocation, nanoTime());
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached.value == NULL ? null : cached.value;
+            }
+            misses.incrementAndGet();
+            final long generation = cache.generation.get();
+            final Object value = invokeTarget(target, method, args);
+            cache.put(invocation, value, nanoTime(), generation);
+            return value;
+        }
+
+    }
+
+    /**
+     * Holds a cached result and its expiry.
+     */
+    private static final class Result {
+
+        /**
+         * Stores the result, or {@link #NULL} for a {@code null} result.
+         */
+        private final Object value;
+
+        /**
+         * Stores the time the result expires, from {@link System#nanoTime()}.
+         */
+        private final long expiry;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param value  the result.
+         * @param expiry the time the result expires.
+         */
+        Result(final Object value, final long expiry) {
+            this.value = value;
+            this.expiry = expiry;
+        }
+
+    }
+
+    /**
+     * Identifies an invocation by its method and arguments, compared deeply so that array arguments with equal
+     * elements identify the same invocation.
+     */
+    private static final class Invocation {
+
+        /**
+         * Stores the invoked method.
+         */
+        private final Method method;
+
+        /**
+         * Stores the arguments, or {@code null} if there are none.
+         */
+        private final Object[] args;
+
+        /**
+         * Stores the hash code of the invocation.
+         */
+        private final int hashCode;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param method the invoked method.
+         * @param args   the arguments, or {@code null} if there are none.
+         */
+        Invocation(final Method method, final Object[] args) {
+            this.method = method;
+            this.args = args == null ? null : args.clone();
+            this.hashCode = 31 * method.hashCode() + Arrays.deepHashCode(this.args);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Invocation)) {
+                return false;
+            }
+            final Invocation other = (Invocation) obj;
+            return hashCode == other.hashCode && method.equals(other.method) && Arrays.deepEquals(args, other.args);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+    }
+
+}
@@ -0,0 +1,367 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+import com.liferay.portal.kernel.log.Log;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Inherited;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.core.type.ClassMetadata;
+import org.springframework.core.type.StandardClassMetadata;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.core.type.filter.TypeFilter;
+
+import static com.liferay.portal.kernel.log.LogFactoryUtil.getLog;
+
+import static java.lang.Class.forName;
+import static java.lang.String.format;
+
+/**
+ * This class provides an immutable, pre-compiled form of a list of {@link TypeFilter}s, which matches a class if any
+ * of the filters would. The {@link AssignableTypeFilter}s created by {@link CopyManifestGenerator#filter(String)} are
+ * compiled into a set of supertype names, so a class hierarchy is walked once however many of them are configured, and
+ * its {@link AnnotationTypeFilter}s are compiled into sets of annotation names, so each annotation present on a class
+ * is looked up once. Only those filters expose what they match through public methods; any other filter (including
+ * Spring's own, whose state is private) is retained as a fallback which must be matched individually by the caller.
+ */
+final class CompiledFilterChain {
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = getLog(CompiledFilterChain.class);
+
+    /**
+     * Stores the names of the types which matching classes are assignable to.
+     */
+    private final Set<String> supertypeNames = new HashSet<String>();
+
+    /**
+     * Stores the names of the annotations which matching classes are directly annotated with.
+     */
+    private final Set<String> annotationNames = new HashSet<String>();
+
+    /**
+     * Stores the names of the annotations which matching classes are meta-annotated with.
+     */
+    private final Set<String> metaAnnotationNames = new HashSet<String>();
+
+    /**
+     * Stores the names of the annotations which matching classes inherit directly from a superclass.
+     */
+    private final Set<String> inheritedAnnotationNames = new HashSet<String>();
+
+    /**
+     * Stores the names of the annotations which matching classes inherit as meta-annotations from a superclass.
+     */
+    private final Set<String> inheritedMetaAnnotationNames = new HashSet<String>();
+
+    /**
+     * Stores the filters which could not be compiled, in order.
+     */
+    private final List<TypeFilter> fallbackFilters = new ArrayList<TypeFilter>();
+
+    /**
+     * Stores the class loader supertypes which cannot be read are resolved against.
+     */
+    private final ClassLoader classLoader;
+
+    /**
+     * Compiles the supplied filters.
+     *
+     * @param filters     the filters to compile.
+     * @param classLoader the class loader supertypes are resolved against when they are not read with a factory.
+     */
+    CompiledFilterChain(final Collection<? extends TypeFilter> filters, final ClassLoader classLoader) {
+        this.classLoader = classLoader;
+        for (TypeFilter filter : filters) {
+            if (!compileAssignable(filter) && !compileAnnotation(filter)) {
+                fallbackFilters.add(filter);
+            }
+        }
+    }
+
+    /**
+     * Returns whether this chain contains no filters, compiled or otherwise.
+     *
+     * @return {@code true} if this chain matches nothing, {@code false} otherwise.
+     */
+    boolean isEmpty() {
+        return supertypeNames.isEmpty() && annotationNames.isEmpty() && fallbackFilters.isEmpty();
+    }
+
+    /**
+     * Returns the filters which could not be compiled, which must be matched individually.
+     *
+     * @return the filters which could not be compiled, in order.
+     */
+    List<TypeFilter> getFallbackFilters() {
+        return Collections.unmodifiableList(fallbackFilters);
+    }
+
+    /**
+     * Checks whether the class described by the supplied metadata matches any of the compiled filters. The fallback
+     * filters are not consulted.
+     *
+     * @param metadataReader        the metadata of the class to match.
+     * @param metadataReaderFactory the factory to read supertypes with, or {@code null} to resolve them as classes.
+     *
+     * @return {@code true} if any compiled filter matches, {@code false} otherwise.
+     */
+    boolean matches(final MetadataReader metadataReader, final MetadataReaderFactory metadataReaderFactory) {
+        if (!annotationNames.isEmpty()
+            && hasAnnotation(metadataReader.getAnnotationMetadata(), annotationNames, metaAnnotationNames)) {
+            return true;
+        }
+        if (!inheritedAnnotationNames.isEmpty()
+            && hasInheritedAnnotation(metadataReader.getClassMetadata(), metadataReaderFactory)) {
+            return true;
+        }
+        return !supertypeNames.isEmpty()
+               && isAssignable(metadataReader.getClassMetadata(), metadataReaderFactory, new HashSet<String>());
+    }
+
+    /**
+     * Compiles the supplied filter if it is an assignable type filter created by
+     * {@link CopyManifestGenerator#filter(String)}.
+     *
+     * @param filter the filter to compile.
+     *
+     * @return {@code true} if the filter was compiled, {@code false} otherwise.
+     */
+    private boolean compileAssignable(final TypeFilter filter) {
+        if (filter.getClass() != CopyManifestGenerator.DescribedAssignableTypeFilter.class) {
+            return false;
+        }
+        supertypeNames.add(((CopyManifestGenerator.DescribedAssignableTypeFilter) filter).getTargetType().getName());
+        return true;
+    }
+
+    /**
+     * Compiles the supplied filter if it is an annotation type filter created by
+     * {@link CopyManifestGenerator#filter(String)}, which never considers interfaces.
+     *
+     * @param filter the filter to compile.
+     *
+     * @return {@code true} if the filter was compiled, {@code false} otherwise.
+     */
+    private boolean compileAnnotation(final TypeFilter filter) {
+        if (filter.getClass() != CopyManifestGenerator.DescribedAnnotationTypeFilter.class) {
+            return false;
+        }
+        final CopyManifestGenerator.DescribedAnnotationTypeFilter annotationFilter =
+            (CopyManifestGenerator.DescribedAnnotationTypeFilter) filter;
+        final Class<? extends Annotation> annotationType = annotationFilter.getAnnotationType();
+        final String name = annotationType.getName();
+        final boolean meta = annotationFilter.isConsiderMetaAnnotations();
+        annotationNames.add(name);
+        if (meta) {
+            metaAnnotationNames.add(name);
+        }
+        // as for AnnotationTypeFilter, only annotations which are themselves @Inherited are inherited
+        if (annotationType.isAnnotationPresent(Inherited.class)) {
+            inheritedAnnotationNames.add(name);
+            if (meta) {
+                inheritedMetaAnnotationNames.add(name);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the supplied metadata describes a class annotated with any of the supplied annotations.
+     *
+     * @param metadata            the metadata of the class.
+     * @param names               the names of the annotations the class may be directly annotated with.
+     * @param metaAnnotationNames the names of the annotations the class may be meta-annotated with.
+     *
+     * @return {@code true} if the class is annotated with any of the annotations, {@code false} otherwise.
+     */
+    private static boolean hasAnnotation(final AnnotationMetadata metadata,
+                                         final Set<String> names,
+                                         final Set<String> metaAnnotationNames) {
+        for (String type : metadata.getAnnotationTypes()) {
+            if (names.contains(type)) {
+                return true;
+            }
+            if (!metaAnnotationNames.isEmpty()) {
+                for (String metaType : metadata.getMetaAnnotationTypes(type)) {
+                    if (metaAnnotationNames.contains(metaType)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether any superclass of the class described by the supplied metadata is annotated with an inherited
+     * annotation.
+     *
+     * @param metadata              the metadata of the class.
+     * @param metadataReaderFactory the factory to read superclasses with, or {@code null} to resolve them as classes.
+     *
+     * @return {@code true} if an inherited annotation is found, {@code false} otherwise.
+     */
+    private boolean hasInheritedAnnotation(final ClassMetadata metadata,
+                                           final MetadataReaderFactory metadataReaderFactory) {
+        ClassMetadata current = metadata;
+        while (current.hasSuperClass() && !Object.class.getName().equals(current.getSuperClassName())) {
+            final MetadataReader superClassReader = read(current.getSuperClassName(), metadataReaderFactory);
+            if (superClassReader == null) {
+                return false;
+            }
+            if (hasAnnotation(superClassReader.getAnnotationMetadata(), inheritedAnnotationNames,
+                              inheritedMetaAnnotationNames)) {
+                return true;
+            }
+            current = superClassReader.getClassMetadata();
+        }
+        return false;
+    }
+
+    /**
+     * Walks the hierarchy of the class described by the supplied metadata, checking whether it is assignable to any
+     * of the compiled supertypes. Classes already resolved are walked directly rather than read.
+     *
+     * @param metadata              the metadata of the class.
+     * @param metadataReaderFactory the factory to read supertypes with, or {@code null} to resolve them as classes.
+     * @param visited               the names of the types already walked.
+     *
+     * @return {@code true} if the class is assignable to any compiled supertype, {@code false} otherwise.
+     */
+    private boolean isAssignable(final ClassMetadata metadata,
+                                 final MetadataReaderFactory metadataReaderFactory,
+                                 final Set<String> visited) {
+        if (metadata instanceof StandardClassMetadata) {
+            return isAssignable(((StandardClassMetadata) metadata).getIntrospectedClass(), visited);
+        }
+        if (!visited.add(metadata.getClassName())) {
+            return false;
+        }
+        if (supertypeNames.contains(metadata.getClassName())) {
+            return true;
+        }
+        if (metadata.hasSuperClass() && isAssignable(metadata.getSuperClassName(), metadataReaderFactory, visited)) {
+            return true;
+        }
+        for (String interfaceName : metadata.getInterfaceNames()) {
+            if (isAssignable(interfaceName, metadataReaderFactory, visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Walks the hierarchy of the named type, checking whether it is assignable to any of the compiled supertypes. The
+     * name itself is checked before the type is read or resolved.
+     *
+     * @param name                  the name of the type.
+     * @param metadataReaderFactory the factory to read supertypes with, or {@code null} to resolve them as classes.
+     * @param visited               the names of the types already walked.
+     *
+     * @return {@code true} if the type is assignable to any compiled supertype, {@code false} otherwise.
+     */
+    private boolean isAssignable(final String name,
+                                 final MetadataReaderFactory metadataReaderFactory,
+                                 final Set<String> visited) {
+        if (supertypeNames.contains(name)) {
+            return true;
+        }
+        if (visited.contains(name)) {
+            return false;
+        }
+        final MetadataReader metadataReader = read(name, metadataReaderFactory);
+        return metadataReader != null
+               && isAssignable(metadataReader.getClassMetadata(), metadataReaderFactory, visited);
+    }
+
+    /**
+     * Walks the hierarchy of the supplied class, checking whether it is assignable to any of the compiled supertypes.
+     *
+     * @param clazz   the class.
+     * @param visited the names of the types already walked.
+     *
+     * @return {@code true} if the class is assignable to any compiled supertype, {@code false} otherwise.
+     */
+    private boolean isAssignable(final Class<?> clazz, final Set<String> visited) {
+        if (!visited.add(clazz.getName())) {
+            return false;
+        }
+        if (supertypeNames.contains(clazz.getName())) {
+            return true;
+        }
+        final Class<?> superclass = clazz.getSuperclass();
+        if (superclass != null && isAssignable(superclass, visited)) {
+            return true;
+        }
+        for (Class<?> type : clazz.getInterfaces()) {
+            if (isAssignable(type, visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the metadata of the named supertype. As Spring's own filters do, core Java types are resolved as classes
+     * rather than read, as are all types when no factory is supplied. Failures are logged at debug level and treated
+     * as the type not matching.
+     *
+     * @param name                  the name of the type.
+     * @param metadataReaderFactory the factory to read the type with, or {@code null} to resolve it as a class.
+     *
+     * @return the metadata of the type, or {@code null} if it cannot be read.
+     */
+    private MetadataReader read(final String name, final MetadataReaderFactory metadataReaderFactory) {
+        if (metadataReaderFactory == null || name.startsWith("java.")) {
+            try {
+                return new SimpleMetadataReader(forName(name, false, classLoader));
+            }
+            catch (final ClassNotFoundException e) {
+                LOG.debug(format("Unable to resolve supertype %s", name), e);
+            }
+            catch (final LinkageError e) {
+                LOG.debug(format("Unable to resolve supertype %s", name), e);
+            }
+            return null;
+        }
+
+        try {
+            return metadataReaderFactory.getMetadataReader(name);
+        }
+        catch (final IOException e) {
+            LOG.debug(format("Unable to read supertype %s", name), e);
+        }
+        return null;
+    }
+
+}
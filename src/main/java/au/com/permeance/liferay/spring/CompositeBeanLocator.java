@@ -0,0 +1,279 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+import com.liferay.portal.kernel.bean.BeanLocator;
+import com.liferay.portal.kernel.bean.BeanLocatorException;
+import com.liferay.portal.kernel.log.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static com.liferay.portal.kernel.log.LogFactoryUtil.getLog;
+
+import static java.lang.String.format;
+
+/**
+ * This class provides a {@link BeanLocator} which merges an ordered list of bean locators (for example the portal's
+ * and those of several service builder plugins), so that a single {@link BeanLocatorDefinitionCopier} classifies each
+ * name once however many locators provide it. When several locators provide the same name, the first locator in the
+ * list takes precedence, and the name is located from it alone. Supplying an {@link ExecutorService} via
+ * {@link #setExecutorService(ExecutorService)} obtains the names of every locator concurrently.
+ * <p/>
+ * Instances are equal if they merge equal lists of locators, so copiers configured with the same locators share
+ * {@link SharedBeanFactoryRegistry shared factories} and {@link AcceptanceCache cached decisions}.
+ */
+public class CompositeBeanLocator implements BeanLocator {
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = getLog(CompositeBeanLocator.class);
+
+    /**
+     * Stores the merged bean locators, in order of precedence.
+     */
+    private final transient List<BeanLocator> beanLocators;
+
+    /**
+     * Stores the locator providing each name, as of the last call to {@link #getNames()}.
+     */
+    private transient volatile Map<String, BeanLocator> owners = Collections.emptyMap();
+
+    /**
+     * Stores the executor used to obtain names concurrently, or {@code null} to obtain them sequentially.
+     */
+    private transient ExecutorService executorService;
+
+    /**
+     * Creates a new instance merging the supplied bean locators.
+     *
+     * @param beanLocators the bean locators to merge, in order of precedence.
+     *
+     * @throws IllegalArgumentException if no bean locator is supplied.
+     */
+    public CompositeBeanLocator(final List<? extends BeanLocator> beanLocators) {
+        if (beanLocators.isEmpty()) {
+            throw new IllegalArgumentException("At least one bean locator is required");
+        }
+        this.beanLocators = Collections.unmodifiableList(new ArrayList<BeanLocator>(beanLocators));
+    }
+
+    /**
+     * Sets the executor used to obtain the names of every locator concurrently. The thread calling {@link #getNames()}
+     * waits for the tasks submitted to it, so if that thread may itself belong to the executor (for example when
+     * names are obtained during an asynchronous copy on the same executor) a small pool can deadlock; use a dedicated
+     * executor in that case. The executor is not shut down by this instance.
+     *
+     * @param executorService the executor to use, or {@code null} to obtain names sequentially.
+     */
+    public final void setExecutorService(final ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    /**
+     * Returns the merged bean locators.
+     *
+     * @return the merged bean locators, in order of precedence.
+     */
+    public final List<BeanLocator> getBeanLocators() {
+        return beanLocators;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the class loader of the first bean locator.
+     */
+    @Override
+    public final ClassLoader getClassLoader() {
+        return beanLocators.get(0).getClassLoader();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the names provided by every bean locator, each listed once, in order of precedence.
+     */
+    @Override
+    public final String[] getNames() {
+        final List<String[]> names = executorService == null ? getNamesSequentially() : getNamesConcurrently();
+
+        final Map<String, BeanLocator> merged = new LinkedHashMap<String, BeanLocator>();
+        for (int i = 0; i < beanLocators.size(); i++) {
+            final BeanLocator beanLocator = beanLocators.get(i);
+            for (String name : names.get(i)) {
+                final BeanLocator owner = merged.get(name);
+                if (owner == null) {
+                    merged.put(name, beanLocator);
+                }
+                else if (LOG.isDebugEnabled()) {
+                    LOG.debug(format("Ignoring bean %s from %s in favour of %s", name, beanLocator, owner));
+                }
+            }
+        }
+        owners = merged;
+        return merged.keySet().toArray(new String[merged.size()]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final Class<?> getType(final String name) throws BeanLocatorException {
+        final BeanLocator owner = owners.get(name);
+        if (owner != null) {
+            return owner.getType(name);
+        }
+        BeanLocatorException failure = null;
+        for (BeanLocator beanLocator : beanLocators) {
+            try {
+                final Class<?> type = beanLocator.getType(name);
+                if (type != null) {
+                    return type;
+                }
+            }
+            catch (final BeanLocatorException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Names obtained by the last call to {@link #getNames()} are located from the locator which provided them; any
+     * other name is located from the first locator which provides it.
+     */
+    @Override
+    public final Object locate(final String name) throws BeanLocatorException {
+        final BeanLocator owner = owners.get(name);
+        if (owner != null) {
+            return owner.locate(name);
+        }
+        BeanLocatorException failure = null;
+        for (BeanLocator beanLocator : beanLocators) {
+            try {
+                final Object bean = beanLocator.locate(name);
+                if (bean != null) {
+                    return bean;
+                }
+            }
+            catch (final BeanLocatorException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return null;
+    }
+
+    /**
+     * Obtains the names of every locator on the calling thread.
+     *
+     * @return the names of each locator, in order.
+     */
+    private List<String[]> getNamesSequentially() {
+        final List<String[]> names = new ArrayList<String[]>(beanLocators.size());
+        for (BeanLocator beanLocator : beanLocators) {
+            names.add(beanLocator.getNames());
+        }
+        return names;
+    }
+
+    /**
+     * Obtains the names of every locator concurrently using the {@link #executorService}.
+     *
+     * @return the names of each locator, in order.
+     */
+    private List<String[]> getNamesConcurrently() {
+        final List<Callable<String[]>> tasks = new ArrayList<Callable<String[]>>(beanLocators.size());
+        for (final BeanLocator beanLocator : beanLocators) {
+            tasks.add(new Callable<String[]>() {
+                @Override
+                public String[] call() {
+                    return beanLocator.getNames();
+                }
+            });
+        }
+
+        final List<String[]> names = new ArrayList<String[]>(beanLocators.size());
+        try {
+            for (Future<String[]> future : executorService.invokeAll(tasks)) {
+                names.add(future.get());
+            }
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BeanLocatorException("Interrupted while obtaining bean names", e);
+        }
+        catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new BeanLocatorException("Error obtaining bean names", cause);
+        }
+        return names;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@code true} if the supplied object merges an equal list of bean locators, {@code false} otherwise.
+     */
+    @Override
+    public final boolean equals(final Object obj) {
+        return obj instanceof CompositeBeanLocator && beanLocators.equals(((CompositeBeanLocator) obj).beanLocators);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the hash code of the list of bean locators.
+     */
+    @Override
+    public final int hashCode() {
+        return beanLocators.hashCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return a description of the merged bean locators.
+     */
+    @Override
+    public final String toString() {
+        return "CompositeBeanLocator" + beanLocators;
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+/**
+ * This interface is implemented by listeners notified of the copies made by a {@link BeanLocatorDefinitionCopier} and
+ * of the slow {@link CopierPhase phases} of each bean, for example to forward them to a profiler or tracing system so
+ * slow deploys can be diagnosed alongside garbage collection and class loading activity. Listeners are called on the
+ * thread performing the work, which may be a thread of the copier's executor, so they must be thread safe and should
+ * return quickly.
+ */
+public interface CopierEventListener {
+
+    /**
+     * Called when a copy completes.
+     *
+     * @param target     the target of the copy, typically the application context.
+     * @param names      the number of names obtained from the bean locator.
+     * @param registered the number of beans registered.
+     * @param nanos      the duration of the copy, in nanoseconds.
+     */
+    void copyCompleted(Object target, int names, int registered, long nanos);
+
+    /**
+     * Called when a phase of a single bean takes at least the copier's
+     * {@link BeanLocatorDefinitionCopier#setEventThresholdNanos(long) event threshold}.
+     *
+     * @param event the event describing the phase.
+     */
+    void phaseCompleted(CopierPhaseEvent event);
+
+}
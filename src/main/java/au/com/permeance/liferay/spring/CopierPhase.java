@@ -0,0 +1,50 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+/**
+ * This enumeration describes the timed phases of copying a bean from liferay's
+ * {@link com.liferay.portal.kernel.bean.BeanLocator}.
+ */
+public enum CopierPhase {
+
+    /**
+     * Resolving the class, or reading the class metadata, identified by a bean name.
+     */
+    TYPE_RESOLUTION,
+
+    /**
+     * Matching a type against the configured include and exclude filters.
+     */
+    FILTER_MATCHING,
+
+    /**
+     * Locating a bean via {@link com.liferay.portal.kernel.bean.BeanLocator#locate(String)}.
+     */
+    LOCATE,
+
+    /**
+     * Applying the configured {@link BeanDecorator}s to a located bean.
+     */
+    DECORATION,
+
+    /**
+     * Registering a bean with the Spring {@link org.springframework.beans.factory.config.SingletonBeanRegistry}.
+     */
+    REGISTRATION
+
+}
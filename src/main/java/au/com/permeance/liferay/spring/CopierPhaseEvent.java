@@ -0,0 +1,153 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+import org.springframework.core.type.filter.TypeFilter;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * This class describes a single {@link CopierPhase phase} of copying a bean, as reported to a
+ * {@link CopierEventListener}: the bean's name, how long the phase took, the decision reached for the bean, the filter
+ * which decided it (if any) and, for {@link CopierPhase#LOCATE}, whether the bean was located.
+ */
+public final class CopierPhaseEvent {
+
+    /**
+     * Stores the name of the bean.
+     */
+    private final String name;
+
+    /**
+     * Stores the phase.
+     */
+    private final CopierPhase phase;
+
+    /**
+     * Stores the duration of the phase.
+     */
+    private final long nanos;
+
+    /**
+     * Stores the decision reached for the bean.
+     */
+    private final AcceptanceDecision decision;
+
+    /**
+     * Stores the filter which decided the bean, or {@code null} if no filter decided it.
+     */
+    private final TypeFilter decidingFilter;
+
+    /**
+     * Stores whether the phase succeeded.
+     */
+    private final boolean successful;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param name           the name of the bean.
+     * @param phase          the phase.
+     * @param nanos          the duration of the phase, in nanoseconds.
+     * @param decision       the decision reached for the bean.
+     * @param decidingFilter the filter which decided the bean, or {@code null} if no filter decided it.
+     * @param successful     {@code true} if the phase succeeded, {@code false} otherwise.
+     */
+    public CopierPhaseEvent(final String name,
+                            final CopierPhase phase,
+                            final long nanos,
+                            final AcceptanceDecision decision,
+                            final TypeFilter decidingFilter,
+                            final boolean successful) {
+        this.name = name;
+        this.phase = phase;
+        this.nanos = nanos;
+        this.decision = decision;
+        this.decidingFilter = decidingFilter;
+        this.successful = successful;
+    }
+
+    /**
+     * Returns the name of the bean.
+     *
+     * @return the name of the bean.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the phase.
+     *
+     * @return the phase.
+     */
+    public CopierPhase getPhase() {
+        return phase;
+    }
+
+    /**
+     * Returns the duration of the phase.
+     *
+     * @return the duration of the phase, in nanoseconds.
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Returns the decision reached for the bean.
+     *
+     * @return the decision reached for the bean.
+     */
+    public AcceptanceDecision getDecision() {
+        return decision;
+    }
+
+    /**
+     * Returns the filter which decided the bean: the exclude filter which excluded it, or the include filter which
+     * included it.
+     *
+     * @return the deciding filter, or {@code null} if the bean was decided without matching a filter (for example
+     *         when its type is unknown, or no include filter is configured).
+     */
+    public TypeFilter getDecidingFilter() {
+        return decidingFilter;
+    }
+
+    /**
+     * Returns whether the phase succeeded. Type resolution succeeds when the type is known, and location when the
+     * bean locator supplies the bean; filter matching always succeeds.
+     *
+     * @return {@code true} if the phase succeeded, {@code false} otherwise.
+     */
+    public boolean isSuccessful() {
+        return successful;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return a description of the event.
+     */
+    @Override
+    public String toString() {
+        return format("%s %s: durationMs=%d decision=%s filter=%s successful=%s", phase, name,
+                      NANOSECONDS.toMillis(nanos), decision, decidingFilter, successful);
+    }
+
+}
@@ -0,0 +1,411 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class accumulates the statistics of a {@link BeanLocatorDefinitionCopier}: how many names were scanned, how
+ * each was decided, and how long each {@link CopierPhase} took. Counters are updated with atomic operations only, so
+ * statistics can be recorded concurrently (for example when resolving in parallel) without locking. Instances
+ * implement {@link CopierStatisticsMBean} so they can be exported via JMX.
+ */
+public class CopierStatistics implements CopierStatisticsMBean {
+
+    /**
+     * Stores the number of completed copies.
+     */
+    private final transient AtomicLong copies = new AtomicLong();
+
+    /**
+     * Stores the duration of the most recent copy.
+     */
+    private final transient AtomicLong lastCopyNanos = new AtomicLong();
+
+    /**
+     * Stores the duration of the slowest copy.
+     */
+    private final transient AtomicLong maxCopyNanos = new AtomicLong();
+
+    /**
+     * Stores the number of names scanned.
+     */
+    private final transient AtomicLong namesScanned = new AtomicLong();
+
+    /**
+     * Stores the number of names with each decision.
+     */
+    private final transient Map<AcceptanceDecision, AtomicLong> decisions =
+        new EnumMap<AcceptanceDecision, AtomicLong>(AcceptanceDecision.class);
+
+    /**
+     * Stores the number of locate failures.
+     */
+    private final transient AtomicLong locateFailures = new AtomicLong();
+
+    /**
+     * Stores the number of beans deferred because they were not located in time.
+     */
+    private final transient AtomicLong deferrals = new AtomicLong();
+
+    /**
+     * Stores the number of beans registered.
+     */
+    private final transient AtomicLong registered = new AtomicLong();
+
+    /**
+     * Stores the cumulative time spent in each phase.
+     */
+    private final transient Map<CopierPhase, AtomicLong> phaseNanos =
+        new EnumMap<CopierPhase, AtomicLong>(CopierPhase.class);
+
+    /**
+     * Stores the longest time spent in a single occurrence of each phase.
+     */
+    private final transient Map<CopierPhase, AtomicLong> maxPhaseNanos =
+        new EnumMap<CopierPhase, AtomicLong>(CopierPhase.class);
+
+    /**
+     * Creates a new instance with every statistic set to zero.
+     */
+    public CopierStatistics() {
+        for (AcceptanceDecision decision : AcceptanceDecision.values()) {
+            decisions.put(decision, new AtomicLong());
+        }
+        for (CopierPhase phase : CopierPhase.values()) {
+            phaseNanos.put(phase, new AtomicLong());
+            maxPhaseNanos.put(phase, new AtomicLong());
+        }
+    }
+
+    /**
+     * Records a completed copy.
+     *
+     * @param nanos the duration of the copy, in nanoseconds.
+     */
+    public final void recordCopy(final long nanos) {
+        copies.incrementAndGet();
+        lastCopyNanos.set(nanos);
+        updateMax(maxCopyNanos, nanos);
+    }
+
+    /**
+     * Records the decision reached for a scanned name.
+     *
+     * @param decision the decision reached.
+     */
+    public final void recordDecision(final AcceptanceDecision decision) {
+        namesScanned.incrementAndGet();
+        decisions.get(decision).incrementAndGet();
+    }
+
+    /**
+     * Records an accepted bean which the bean locator failed to supply.
+     */
+    public final void recordLocateFailure() {
+        locateFailures.incrementAndGet();
+    }
+
+    /**
+     * Records an accepted bean which the bean locator did not supply in time.
+     */
+    public final void recordDeferral() {
+        deferrals.incrementAndGet();
+    }
+
+    /**
+     * Records a registered bean.
+     */
+    public final void recordRegistration() {
+        registered.incrementAndGet();
+    }
+
+    /**
+     * Records the time spent in a single occurrence of the supplied phase.
+     *
+     * @param phase the phase.
+     * @param nanos the time spent, in nanoseconds.
+     */
+    public final void recordPhase(final CopierPhase phase, final long nanos) {
+        phaseNanos.get(phase).addAndGet(nanos);
+        updateMax(maxPhaseNanos.get(phase), nanos);
+    }
+
+    /**
+     * Returns the number of names with the supplied decision.
+     *
+     * @param decision the decision.
+     *
+     * @return the number of names with the decision.
+     */
+    public final long getDecisions(final AcceptanceDecision decision) {
+        return decisions.get(decision).get();
+    }
+
+    /**
+     * Returns the cumulative time spent in the supplied phase.
+     *
+     * @param phase the phase.
+     *
+     * @return the cumulative time spent, in nanoseconds.
+     */
+    public final long getPhaseNanos(final CopierPhase phase) {
+        return phaseNanos.get(phase).get();
+    }
+
+    /**
+     * Returns the longest time spent in a single occurrence of the supplied phase.
+     *
+     * @param phase the phase.
+     *
+     * @return the longest time spent, in nanoseconds.
+     */
+    public final long getMaxPhaseNanos(final CopierPhase phase) {
+        return maxPhaseNanos.get(phase).get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getCopies() {
+        return copies.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getLastCopyNanos() {
+        return lastCopyNanos.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getMaxCopyNanos() {
+        return maxCopyNanos.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getNamesScanned() {
+        return namesScanned.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getNamesExcluded() {
+        return getDecisions(AcceptanceDecision.NAME_EXCLUDED);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getUnknownTypes() {
+        return getDecisions(AcceptanceDecision.UNKNOWN_TYPE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getExcluded() {
+        return getDecisions(AcceptanceDecision.EXCLUDED);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getNotIncluded() {
+        return getDecisions(AcceptanceDecision.NOT_INCLUDED);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getIndexedRejected() {
+        return getDecisions(AcceptanceDecision.INDEXED_REJECTED);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getLocateFailures() {
+        return locateFailures.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getDeferrals() {
+        return deferrals.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getRegistered() {
+        return registered.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getTypeResolutionNanos() {
+        return getPhaseNanos(CopierPhase.TYPE_RESOLUTION);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getMaxTypeResolutionNanos() {
+        return getMaxPhaseNanos(CopierPhase.TYPE_RESOLUTION);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getFilterMatchingNanos() {
+        return getPhaseNanos(CopierPhase.FILTER_MATCHING);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getMaxFilterMatchingNanos() {
+        return getMaxPhaseNanos(CopierPhase.FILTER_MATCHING);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getLocateNanos() {
+        return getPhaseNanos(CopierPhase.LOCATE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getMaxLocateNanos() {
+        return getMaxPhaseNanos(CopierPhase.LOCATE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getDecorationNanos() {
+        return getPhaseNanos(CopierPhase.DECORATION);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getMaxDecorationNanos() {
+        return getMaxPhaseNanos(CopierPhase.DECORATION);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getRegistrationNanos() {
+        return getPhaseNanos(CopierPhase.REGISTRATION);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getMaxRegistrationNanos() {
+        return getMaxPhaseNanos(CopierPhase.REGISTRATION);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void reset() {
+        copies.set(0);
+        lastCopyNanos.set(0);
+        maxCopyNanos.set(0);
+        namesScanned.set(0);
+        locateFailures.set(0);
+        deferrals.set(0);
+        registered.set(0);
+        for (AtomicLong counter : decisions.values()) {
+            counter.set(0);
+        }
+        for (CopierPhase phase : CopierPhase.values()) {
+            phaseNanos.get(phase).set(0);
+            maxPhaseNanos.get(phase).set(0);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return a summary of the statistics.
+     */
+    @Override
+    public final String toString() {
+        return "CopierStatistics{copies=" + getCopies() + ", lastCopyNanos=" + getLastCopyNanos()
+               + ", namesScanned=" + getNamesScanned() + ", namesExcluded=" + getNamesExcluded()
+               + ", unknownTypes=" + getUnknownTypes() + ", excluded=" + getExcluded()
+               + ", notIncluded=" + getNotIncluded() + ", indexedRejected=" + getIndexedRejected()
+               + ", locateFailures=" + getLocateFailures()
+               + ", deferrals=" + getDeferrals() + ", registered=" + getRegistered()
+               + ", typeResolutionNanos=" + getTypeResolutionNanos()
+               + ", filterMatchingNanos=" + getFilterMatchingNanos() + ", locateNanos=" + getLocateNanos()
+               + ", decorationNanos=" + getDecorationNanos() + ", registrationNanos=" + getRegistrationNanos() + '}';
+    }
+
+    /**
+     * Raises the supplied maximum to the supplied value if it is larger.
+     *
+     * @param max   the maximum to update.
+     * @param value the candidate value.
+     */
+    private static void updateMax(final AtomicLong max, final long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+}
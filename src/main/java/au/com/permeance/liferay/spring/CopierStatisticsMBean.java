@@ -0,0 +1,185 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+/**
+ * This interface describes the management interface of {@link CopierStatistics}, allowing the statistics of a
+ * {@link BeanLocatorDefinitionCopier} to be exported as a standard MBean (for example using Spring's
+ * {@link org.springframework.jmx.export.MBeanExporter}).
+ */
+public interface CopierStatisticsMBean {
+
+    /**
+     * Returns the number of completed copies.
+     *
+     * @return the number of completed copies.
+     */
+    long getCopies();
+
+    /**
+     * Returns the duration of the most recent copy.
+     *
+     * @return the duration of the most recent copy, in nanoseconds.
+     */
+    long getLastCopyNanos();
+
+    /**
+     * Returns the duration of the slowest copy.
+     *
+     * @return the duration of the slowest copy, in nanoseconds.
+     */
+    long getMaxCopyNanos();
+
+    /**
+     * Returns the number of names obtained from the bean locator which have been processed.
+     *
+     * @return the number of names scanned.
+     */
+    long getNamesScanned();
+
+    /**
+     * Returns the number of names rejected by the name filter.
+     *
+     * @return the number of names rejected by the name filter.
+     */
+    long getNamesExcluded();
+
+    /**
+     * Returns the number of names which did not identify a known type.
+     *
+     * @return the number of unknown types.
+     */
+    long getUnknownTypes();
+
+    /**
+     * Returns the number of types which matched an exclude filter.
+     *
+     * @return the number of excluded types.
+     */
+    long getExcluded();
+
+    /**
+     * Returns the number of types which did not match any include filter.
+     *
+     * @return the number of types not included.
+     */
+    long getNotIncluded();
+
+    /**
+     * Returns the number of names rejected by an acceptance index or copy manifest without being classified.
+     *
+     * @return the number of names rejected by an index.
+     */
+    long getIndexedRejected();
+
+    /**
+     * Returns the number of accepted beans which the bean locator failed to supply.
+     *
+     * @return the number of locate failures.
+     */
+    long getLocateFailures();
+
+    /**
+     * Returns the number of accepted beans deferred because the bean locator did not supply them in time.
+     *
+     * @return the number of deferrals.
+     */
+    long getDeferrals();
+
+    /**
+     * Returns the number of beans registered.
+     *
+     * @return the number of beans registered.
+     */
+    long getRegistered();
+
+    /**
+     * Returns the cumulative time spent resolving types.
+     *
+     * @return the cumulative time spent resolving types, in nanoseconds.
+     */
+    long getTypeResolutionNanos();
+
+    /**
+     * Returns the longest time spent resolving a single type.
+     *
+     * @return the longest time spent resolving a single type, in nanoseconds.
+     */
+    long getMaxTypeResolutionNanos();
+
+    /**
+     * Returns the cumulative time spent matching filters.
+     *
+     * @return the cumulative time spent matching filters, in nanoseconds.
+     */
+    long getFilterMatchingNanos();
+
+    /**
+     * Returns the longest time spent matching filters against a single type.
+     *
+     * @return the longest time spent matching filters against a single type, in nanoseconds.
+     */
+    long getMaxFilterMatchingNanos();
+
+    /**
+     * Returns the cumulative time spent locating beans.
+     *
+     * @return the cumulative time spent locating beans, in nanoseconds.
+     */
+    long getLocateNanos();
+
+    /**
+     * Returns the longest time spent locating a single bean.
+     *
+     * @return the longest time spent locating a single bean, in nanoseconds.
+     */
+    long getMaxLocateNanos();
+
+    /**
+     * Returns the cumulative time spent decorating beans.
+     *
+     * @return the cumulative time spent decorating beans, in nanoseconds.
+     */
+    long getDecorationNanos();
+
+    /**
+     * Returns the longest time spent decorating a single bean.
+     *
+     * @return the longest time spent decorating a single bean, in nanoseconds.
+     */
+    long getMaxDecorationNanos();
+
+    /**
+     * Returns the cumulative time spent registering beans.
+     *
+     * @return the cumulative time spent registering beans, in nanoseconds.
+     */
+    long getRegistrationNanos();
+
+    /**
+     * Returns the longest time spent registering a single bean.
+     *
+     * @return the longest time spent registering a single bean, in nanoseconds.
+     */
+    long getMaxRegistrationNanos();
+
+    /**
+     * Resets every statistic to zero.
+     */
+    void reset();
+
+}
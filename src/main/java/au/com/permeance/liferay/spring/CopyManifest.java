@@ -0,0 +1,170 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.springframework.core.io.Resource;
+
+/**
+ * This class provides a manifest of the bean names accepted by a filter configuration, generated at build time by
+ * {@link CopyManifestGenerator} and consumed at runtime by {@link BeanLocatorDefinitionCopier#setCopyManifest(Resource)}
+ * so that names are copied without loading their classes or matching filters. Each manifest records the
+ * {@link TypeFilterFingerprint fingerprint} of the filters it was generated with, and is only used by copiers
+ * configured with equivalent filters.
+ * <p/>
+ * Manifests are UTF-8 text files: a {@code fingerprint=} line followed by one accepted name per line. Blank lines and
+ * lines starting with {@code #} are ignored.
+ */
+public class CopyManifest {
+
+    /**
+     * The prefix of the line holding the fingerprint.
+     */
+    private static final String FINGERPRINT_PREFIX = "fingerprint=";
+
+    /**
+     * The encoding of manifest files.
+     */
+    private static final String ENCODING = "UTF-8";
+
+    /**
+     * Stores the fingerprint of the filters the manifest was generated with.
+     */
+    private final transient String fingerprint;
+
+    /**
+     * Stores the accepted names, in order.
+     */
+    private final transient Set<String> names;
+
+    /**
+     * Creates a new instance holding the supplied names.
+     *
+     * @param fingerprint the fingerprint of the filters the names were accepted by.
+     * @param names       the accepted names.
+     */
+    public CopyManifest(final String fingerprint, final Collection<String> names) {
+        this.fingerprint = fingerprint;
+        this.names = Collections.unmodifiableSet(new LinkedHashSet<String>(names));
+    }
+
+    /**
+     * Reads a manifest from the supplied resource.
+     *
+     * @param resource the resource to read.
+     *
+     * @return the manifest read.
+     *
+     * @throws IOException if the resource cannot be read or holds no fingerprint.
+     */
+    public static CopyManifest read(final Resource resource) throws IOException {
+        final Reader reader = new InputStreamReader(resource.getInputStream(), ENCODING);
+        try {
+            return read(reader, resource.getDescription());
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads a manifest from the supplied reader.
+     *
+     * @param reader      the reader to read from.
+     * @param description the description of the source of the manifest, used in error messages.
+     *
+     * @return the manifest read.
+     *
+     * @throws IOException if the reader fails or the manifest holds no fingerprint.
+     */
+    static CopyManifest read(final Reader reader, final String description) throws IOException {
+        final BufferedReader bufferedReader = new BufferedReader(reader);
+        String fingerprint = null;
+        final Set<String> names = new LinkedHashSet<String>();
+        for (String line = bufferedReader.readLine(); line != null; line = bufferedReader.readLine()) {
+            final String trimmed = line.trim();
+            if (trimmed.length() == 0 || trimmed.charAt(0) == '#') {
+                continue;
+            }
+            if (fingerprint == null && trimmed.startsWith(FINGERPRINT_PREFIX)) {
+                fingerprint = trimmed.substring(FINGERPRINT_PREFIX.length());
+            }
+            else {
+                names.add(trimmed);
+            }
+        }
+        if (fingerprint == null) {
+            throw new IOException("Copy manifest has no fingerprint: " + description);
+        }
+        return new CopyManifest(fingerprint, names);
+    }
+
+    /**
+     * Writes this manifest to the supplied writer, which is not closed.
+     *
+     * @param writer the writer to write to.
+     *
+     * @throws IOException if the writer fails.
+     */
+    public final void write(final Writer writer) throws IOException {
+        writer.write("# Generated by " + CopyManifestGenerator.class.getName() + "\n");
+        writer.write(FINGERPRINT_PREFIX + fingerprint + "\n");
+        for (String name : names) {
+            writer.write(name + "\n");
+        }
+        writer.flush();
+    }
+
+    /**
+     * Returns the fingerprint of the filters the manifest was generated with.
+     *
+     * @return the fingerprint of the filters.
+     */
+    public final String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Returns the accepted names.
+     *
+     * @return the accepted names, in order.
+     */
+    public final Set<String> getNames() {
+        return names;
+    }
+
+    /**
+     * Returns whether the supplied name was accepted.
+     *
+     * @param name the name to check.
+     *
+     * @return {@code true} if the name was accepted, {@code false} otherwise.
+     */
+    public final boolean contains(final String name) {
+        return names.contains(name);
+    }
+
+}
@@ -0,0 +1,419 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+import com.liferay.portal.kernel.bean.BeanLocator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.core.type.filter.RegexPatternTypeFilter;
+import org.springframework.core.type.filter.TypeFilter;
+
+import static au.com.permeance.liferay.spring.TypeFilterFingerprint.fingerprint;
+
+import static java.lang.Class.forName;
+
+/**
+ * This class generates {@link CopyManifest}s at build time, by classifying candidate names against a filter
+ * configuration without loading their classes. Candidates are the classes found in the packages given by
+ * {@code --scan} (typically those of Liferay's {@code portal-service} API, which name its beans) and any names given by
+ * {@code --name}. Filters are given by {@code --include} and {@code --exclude} as {@code assignable:<class>},
+ * {@code annotation:<class>} or {@code regex:<pattern>}, which correspond to Spring's {@link AssignableTypeFilter},
+ * {@link AnnotationTypeFilter} and {@link RegexPatternTypeFilter} constructed with their single argument. They must
+ * be given in the same order as the filters configured for the copier at runtime, which must be equivalent Spring
+ * filters or filters created from the same specifications with {@link #filter(String)}, or the manifest will be
+ * ignored. For example, using the {@code exec-maven-plugin} in the {@code process-classes} phase:
+ * <pre>
+ * &lt;plugin&gt;
+ *     &lt;groupId&gt;org.codehaus.mojo&lt;/groupId&gt;
+ *     &lt;artifactId&gt;exec-maven-plugin&lt;/artifactId&gt;
+ *     &lt;executions&gt;
+ *         &lt;execution&gt;
+ *             &lt;phase&gt;process-classes&lt;/phase&gt;
+ *             &lt;goals&gt;&lt;goal&gt;java&lt;/goal&gt;&lt;/goals&gt;
+ *             &lt;configuration&gt;
+ *                 &lt;mainClass&gt;au.com.permeance.liferay.spring.CopyManifestGenerator&lt;/mainClass&gt;
+ *                 &lt;arguments&gt;
+ *                     &lt;argument&gt;--output=${project.build.outputDirectory}/copy-manifest.txt&lt;/argument&gt;
+ *                     &lt;argument&gt;--scan=com.liferay.portal.service&lt;/argument&gt;
+ *                     &lt;argument&gt;--include=regex:.*LocalService&lt;/argument&gt;
+ *                 &lt;/arguments&gt;
+ *             &lt;/configuration&gt;
+ *         &lt;/execution&gt;
+ *     &lt;/executions&gt;
+ * &lt;/plugin&gt;
+ * </pre>
+ * and configuring the copier with the same filter and the generated manifest:
+ * <pre>
+ * &lt;bean class="au.com.permeance.liferay.spring.BeanLocatorDefinitionCopier"&gt;
+ *     &lt;constructor-arg&gt;
+ *         &lt;bean class="com.liferay.portal.kernel.bean.PortalBeanLocatorUtil" factory-method="getBeanLocator"/&gt;
+ *     &lt;/constructor-arg&gt;
+ *     &lt;property name="includeFilters"&gt;
+ *         &lt;list&gt;
+ *             &lt;bean class="au.com.permeance.liferay.spring.CopyManifestGenerator" factory-method="filter"&gt;
+ *                 &lt;constructor-arg value="regex:.*LocalService"/&gt;
+ *             &lt;/bean&gt;
+ *         &lt;/list&gt;
+ *     &lt;/property&gt;
+ *     &lt;property name="copyManifest" value="classpath:copy-manifest.txt"/&gt;
+ * &lt;/bean&gt;
+ * </pre>
+ */
+public final class CopyManifestGenerator {
+
+    /**
+     * Prevents instantiation.
+     */
+    private CopyManifestGenerator() {
+    }
+
+    /**
+     * Generates a manifest as described by the supplied arguments and writes it to the {@code --output} file.
+     *
+     * @param args the arguments: {@code --output=<file>} followed by any number of {@code --scan=<package>},
+     *             {@code --name=<name>}, {@code --include=<filter>} and {@code --exclude=<filter>} arguments.
+     *
+     * @throws IOException if a package cannot be scanned or the manifest cannot be written.
+     */
+    public static void main(final String[] args) throws IOException {
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        final ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver(classLoader);
+        final MetadataReaderFactory metadataReaderFactory = new CachingMetadataReaderFactory(classLoader);
+
+        String output = null;
+        final Set<String> names = new LinkedHashSet<String>();
+        final List<TypeFilter> includeFilters = new ArrayList<TypeFilter>();
+        final List<TypeFilter> excludeFilters = new ArrayList<TypeFilter>();
+        for (String arg : args) {
+            if (arg.startsWith("--output=")) {
+                output = value(arg);
+            }
+            else if (arg.startsWith("--scan=")) {
+                names.addAll(scan(value(arg), resolver, metadataReaderFactory));
+            }
+            else if (arg.startsWith("--name=")) {
+                names.add(value(arg));
+            }
+            else if (arg.startsWith("--include=")) {
+                includeFilters.add(parseFilter(value(arg), classLoader));
+            }
+            else if (arg.startsWith("--exclude=")) {
+                excludeFilters.add(parseFilter(value(arg), classLoader));
+            }
+            else {
+                throw new IllegalArgumentException("Unrecognised argument: " + arg);
+            }
+        }
+        if (output == null) {
+            throw new IllegalArgumentException("No --output argument given");
+        }
+
+        final CopyManifest manifest = generate(names, includeFilters, excludeFilters, metadataReaderFactory);
+        final File file = new File(output);
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            manifest.write(writer);
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Generates a manifest of the supplied names accepted by the supplied filters, using the same criteria as
+     * {@link BeanLocatorDefinitionCopier}.
+     *
+     * @param names                 the candidate names.
+     * @param includeFilters        the include filters, in order.
+     * @param excludeFilters        the exclude filters, in order.
+     * @param metadataReaderFactory the factory to read the metadata of candidates with.
+     *
+     * @return the manifest of the accepted names.
+     *
+     * @throws IllegalArgumentException if the filters cannot be {@link TypeFilterFingerprint fingerprinted}, in which
+     *                                  case no copier could use the manifest.
+     */
+    public static CopyManifest generate(final Collection<String> names,
+                                        final List<TypeFilter> includeFilters,
+                                        final List<TypeFilter> excludeFilters,
+                                        final MetadataReaderFactory metadataReaderFactory) {
+        final String fingerprint = fingerprint(includeFilters, excludeFilters);
+        if (fingerprint == null) {
+            throw new IllegalArgumentException("Filters cannot be fingerprinted: " + includeFilters + ", "
+                                               + excludeFilters);
+        }
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier((BeanLocator) null);
+        for (TypeFilter filter : includeFilters) {
+            copier.addIncludeFilter(filter);
+        }
+        for (TypeFilter filter : excludeFilters) {
+            copier.addExcludeFilter(filter);
+        }
+        copier.setMetadataReaderFactory(metadataReaderFactory);
+
+        final List<String> accepted = new ArrayList<String>();
+        for (String name : names) {
+            if (copier.isAcceptable(name)) {
+                accepted.add(name);
+            }
+        }
+        return new CopyManifest(fingerprint, accepted);
+    }
+
+    /**
+     * Creates a filter given as {@code assignable:<class>}, {@code annotation:<class>} or {@code regex:<pattern>},
+     * resolving classes with the context class loader. The filters created match exactly as the corresponding Spring
+     * filters do, but expose the values they were created with, so they are {@link TypeFilterFingerprint fingerprinted}
+     * and {@link CompiledFilterChain compiled} without reading Spring's internal state.
+     *
+     * @param spec the filter to create.
+     *
+     * @return the filter.
+     *
+     * @throws IllegalArgumentException if the filter cannot be parsed.
+     */
+    public static TypeFilter filter(final String spec) {
+        return parseFilter(spec, Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * Parses a filter given as {@code assignable:<class>}, {@code annotation:<class>} or {@code regex:<pattern>}.
+     *
+     * @param spec        the filter to parse.
+     * @param classLoader the class loader to resolve classes with.
+     *
+     * @return the filter.
+     *
+     * @throws IllegalArgumentException if the filter cannot be parsed.
+     */
+    @SuppressWarnings("unchecked")
+    static TypeFilter parseFilter(final String spec, final ClassLoader classLoader) {
+        final int separator = spec.indexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Filter must be given as <type>:<value>: " + spec);
+        }
+        final String type = spec.substring(0, separator);
+        final String value = spec.substring(separator + 1);
+        if ("regex".equals(type)) {
+            return new DescribedRegexPatternTypeFilter(Pattern.compile(value));
+        }
+        final Class<?> clazz;
+        try {
+            clazz = forName(value, false, classLoader);
+        }
+        catch (final ClassNotFoundException e) {
+            throw new IllegalArgumentException("Unknown filter class: " + value, e);
+        }
+        if ("assignable".equals(type)) {
+            return new DescribedAssignableTypeFilter(clazz);
+        }
+        if ("annotation".equals(type) && clazz.isAnnotation()) {
+            return new DescribedAnnotationTypeFilter((Class<? extends Annotation>) clazz);
+        }
+        throw new IllegalArgumentException("Unsupported filter: " + spec);
+    }
+
+    /**
+     * Returns the names of the top level classes in the supplied package and its subpackages.
+     *
+     * @param packageName           the package to scan.
+     * @param resolver              the resolver to find class files with.
+     * @param metadataReaderFactory the factory to read class files with.
+     *
+     * @return the names of the classes found.
+     *
+     * @throws IOException if the package cannot be scanned.
+     */
+    static List<String> scan(final String packageName,
+                             final ResourcePatternResolver resolver,
+                             final MetadataReaderFactory metadataReaderFactory) throws IOException {
+        final List<String> names = new ArrayList<String>();
+        final String pattern = ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX + packageName.replace('.', '/')
+                               + "/**/*.class";
+        for (Resource resource : resolver.getResources(pattern)) {
+            final String name = metadataReaderFactory.getMetadataReader(resource).getClassMetadata().getClassName();
+            if (name.indexOf('$') < 0) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Returns the value of a {@code --key=value} argument.
+     *
+     * @param arg the argument.
+     *
+     * @return the value of the argument.
+     */
+    private static String value(final String arg) {
+        return arg.substring(arg.indexOf('=') + 1);
+    }
+
+    /**
+     * {@link AssignableTypeFilter} which exposes its target type.
+     */
+    static final class DescribedAssignableTypeFilter extends AssignableTypeFilter {
+
+        /**
+         * Stores the type matched classes must be assignable to.
+         */
+        private final Class<?> targetType;
+
+        /**
+         * Creates a new instance matching classes assignable to the supplied type.
+         *
+         * @param targetType the type matched classes must be assignable to.
+         */
+        DescribedAssignableTypeFilter(final Class<?> targetType) {
+            super(targetType);
+            this.targetType = targetType;
+        }
+
+        /**
+         * Returns the type matched classes must be assignable to.
+         *
+         * @return the type matched classes must be assignable to.
+         */
+        public Class<?> getTargetType() {
+            return targetType;
+        }
+
+    }
+
+    /**
+     * {@link AnnotationTypeFilter} which exposes its annotation type and how it is matched.
+     */
+    static final class DescribedAnnotationTypeFilter extends AnnotationTypeFilter {
+
+        /**
+         * Stores the annotation matched classes must be annotated with.
+         */
+        private final Class<? extends Annotation> annotationType;
+
+        /**
+         * Stores whether classes meta-annotated with the annotation are matched.
+         */
+        private final boolean considerMetaAnnotations;
+
+        /**
+         * Creates a new instance matching classes annotated or meta-annotated with the supplied annotation.
+         *
+         * @param annotationType the annotation matched classes must be annotated with.
+         */
+        DescribedAnnotationTypeFilter(final Class<? extends Annotation> annotationType) {
+            this(annotationType, true);
+        }
+
+        /**
+         * Creates a new instance matching classes annotated with the supplied annotation.
+         *
+         * @param annotationType          the annotation matched classes must be annotated with.
+         * @param considerMetaAnnotations whether classes meta-annotated with the annotation are matched.
+         */
+        DescribedAnnotationTypeFilter(final Class<? extends Annotation> annotationType,
+                                      final boolean considerMetaAnnotations) {
+            super(annotationType, considerMetaAnnotations);
+            this.annotationType = annotationType;
+            this.considerMetaAnnotations = considerMetaAnnotations;
+        }
+
+        /**
+         * Returns the annotation matched classes must be annotated with.
+         *
+         * @return the annotation matched classes must be annotated with.
+         */
+        public Class<? extends Annotation> getAnnotationType() {
+            return annotationType;
+        }
+
+        /**
+         * Returns whether classes meta-annotated with the annotation are matched.
+         *
+         * @return {@code true} if meta-annotations are considered, {@code false} otherwise.
+         */
+        public boolean isConsiderMetaAnnotations() {
+            return considerMetaAnnotations;
+        }
+
+        /**
+         * Returns whether classes implementing interfaces annotated with the annotation are matched, which they never
+         * are.
+         *
+         * @return {@code false}.
+         */
+        public boolean isConsiderInterfaces() {
+            return false;
+        }
+
+    }
+
+    /**
+     * {@link RegexPatternTypeFilter} which exposes its pattern.
+     */
+    static final class DescribedRegexPatternTypeFilter extends RegexPatternTypeFilter {
+
+        /**
+         * Stores the pattern matched class names must match.
+         */
+        private final Pattern pattern;
+
+        /**
+         * Creates a new instance matching class names which match the supplied pattern.
+         *
+         * @param pattern the pattern matched class names must match.
+         */
+        DescribedRegexPatternTypeFilter(final Pattern pattern) {
+            super(pattern);
+            this.pattern = pattern;
+        }
+
+        /**
+         * Returns the pattern matched class names must match.
+         *
+         * @return the pattern matched class names must match.
+         */
+        public Pattern getPattern() {
+            return pattern;
+        }
+
+    }
+
+}
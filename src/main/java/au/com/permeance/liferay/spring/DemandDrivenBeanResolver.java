@@ -0,0 +1,381 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+import com.liferay.portal.kernel.log.Log;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.PropertyValue;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.BeanFactoryUtils;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.config.ConstructorArgumentValues.ValueHolder;
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessorAdapter;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.core.Ordered;
+import org.springframework.core.PriorityOrdered;
+import org.springframework.core.annotation.AnnotationUtils;
+
+import static com.liferay.portal.kernel.log.LogFactoryUtil.getLog;
+
+import static java.lang.String.format;
+
+/**
+ * This class resolves the dependencies of a context's beans from a {@link BeanLocatorDefinitionCopier} in
+ * {@link BeanLocatorDefinitionCopier#setOnDemand(boolean) on demand} mode, so that only the liferay beans the context
+ * actually depends on are classified, located and registered. Before each bean is instantiated its dependencies are
+ * found and any the context cannot already satisfy are {@link BeanLocatorDefinitionCopier#resolveBean(String) resolved}
+ * from the copier, in time for Spring to inject them as usual. Dependencies are found from:
+ * <ul>
+ * <li>the fields, methods and constructors of the bean class annotated with {@link Autowired},
+ * {@code javax.annotation.Resource} or {@code javax.inject.Inject}, resolved by the name of their type (which is how
+ * liferay names its services) or by the explicit name given to a {@code Resource};</li>
+ * <li>the bean references in the properties and constructor arguments of the bean's definition, resolved by name.</li>
+ * </ul>
+ * Dependencies on primitive, array, collection and map types are never resolved. Spring offers no hook for beans looked
+ * up directly from the factory, so such lookups should use {@link BeanLocatorDefinitionCopier#getBean(String)} instead,
+ * which resolves beans on demand in the same way.
+ * <p/>
+ * An instance is declared alongside the copier, for example:
+ * <pre>
+ * &lt;bean id="copier" class="au.com.permeance.liferay.spring.BeanLocatorDefinitionCopier"&gt;
+ *     &lt;constructor-arg&gt;
+ *         &lt;bean class="com.liferay.portal.kernel.bean.PortalBeanLocatorUtil" factory-method="getBeanLocator"/&gt;
+ *     &lt;/constructor-arg&gt;
+ *     &lt;property name="onDemand" value="true"/&gt;
+ * &lt;/bean&gt;
+ * &lt;bean class="au.com.permeance.liferay.spring.DemandDrivenBeanResolver"&gt;
+ *     &lt;constructor-arg ref="copier"/&gt;
+ * &lt;/bean&gt;
+ * </pre>
+ */
+public class DemandDrivenBeanResolver extends InstantiationAwareBeanPostProcessorAdapter
+    implements PriorityOrdered, BeanFactoryAware {
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = getLog(DemandDrivenBeanResolver.class);
+
+    /**
+     * The name of the JSR-250 resource annotation, which is not present in every runtime.
+     */
+    private static final String RESOURCE_ANNOTATION = "javax.annotation.Resource";
+
+    /**
+     * The name of the JSR-330 injection annotation, which is not required to be present.
+     */
+    private static final String INJECT_ANNOTATION = "javax.inject.Inject";
+
+    /**
+     * Stores the copier to resolve dependencies from.
+     */
+    private final transient BeanLocatorDefinitionCopier copier;
+
+    /**
+     * Stores the annotated dependencies of each bean class inspected so far.
+     */
+    private final transient ConcurrentMap<Class<?>, List<Dependency>> dependencies =
+        new ConcurrentHashMap<Class<?>, List<Dependency>>();
+
+    /**
+     * Stores the bean factory whose beans' dependencies are resolved.
+     */
+    private transient ListableBeanFactory beanFactory;
+
+    /**
+     * Stores the order of this post processor.
+     */
+    private transient int order = Ordered.HIGHEST_PRECEDENCE;
+
+    /**
+     * Creates a new instance resolving dependencies from the supplied copier.
+     *
+     * @param copier the copier to resolve dependencies from, which should be in
+     *               {@link BeanLocatorDefinitionCopier#setOnDemand(boolean) on demand} mode.
+     */
+    public DemandDrivenBeanResolver(final BeanLocatorDefinitionCopier copier) {
+        this.copier = copier;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void setBeanFactory(final BeanFactory beanFactory) {
+        if (!(beanFactory instanceof ListableBeanFactory)) {
+            throw new IllegalArgumentException(format("%s is not a ListableBeanFactory", beanFactory));
+        }
+        this.beanFactory = (ListableBeanFactory) beanFactory;
+    }
+
+    /**
+     * Sets the order of this post processor, which defaults to {@link Ordered#HIGHEST_PRECEDENCE} so that dependencies
+     * are resolved before any other post processor sees the bean.
+     *
+     * @param order the order of this post processor.
+     */
+    public final void setOrder(final int order) {
+        this.order = order;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final int getOrder() {
+        return order;
+    }
+
+    /**
+     * Resolves the dependencies of the named bean which the bean factory cannot already satisfy.
+     *
+     * @param beanClass the class of the bean to be instantiated.
+     * @param beanName  the name of the bean.
+     *
+     * @return always returns {@code null}, so the bean is instantiated as usual.
+     */
+    @Override
+    public final Object postProcessBeforeInstantiation(final Class<?> beanClass, final String beanName) {
+        for (Dependency dependency : getDependencies(beanClass)) {
+            if (dependency.name != null) {
+                resolveByName(dependency.name, beanName);
+            }
+            else {
+                resolveByType(dependency.type, beanName);
+            }
+        }
+        for (String reference : getReferences(beanName)) {
+            resolveByName(reference, beanName);
+        }
+        return null;
+    }
+
+    /**
+     * Resolves the named dependency from the copier if the bean factory does not contain it.
+     *
+     * @param name     the name of the dependency.
+     * @param beanName the name of the bean depending on it.
+     */
+    private void resolveByName(final String name, final String beanName) {
+        if (!beanFactory.containsBean(name) && copier.resolveBean(name) != null && LOG.isDebugEnabled()) {
+            LOG.debug(format("Resolved dependency %s of bean %s", name, beanName));
+        }
+    }
+
+    /**
+     * Resolves a dependency of the supplied type from the copier if the bean factory contains no bean of that type.
+     *
+     * @param type     the type of the dependency.
+     * @param beanName the name of the bean depending on it.
+     */
+    private void resolveByType(final Class<?> type, final String beanName) {
+        if (type.isPrimitive() || type.isArray() || Collection.class.isAssignableFrom(type)
+            || Map.class.isAssignableFrom(type)) {
+            return;
+        }
+        if (BeanFactoryUtils.beanNamesForTypeIncludingAncestors(beanFactory, type, true, false).length == 0) {
+            resolveByName(type.getName(), beanName);
+        }
+    }
+
+    /**
+     * Returns the annotated dependencies of the supplied class, inspecting it if this is the first request.
+     *
+     * @param beanClass the class to inspect.
+     *
+     * @return the dependencies of the class.
+     */
+    private List<Dependency> getDependencies(final Class<?> beanClass) {
+        List<Dependency> classDependencies = dependencies.get(beanClass);
+        if (classDependencies == null) {
+            classDependencies = findDependencies(beanClass);
+            dependencies.putIfAbsent(beanClass, classDependencies);
+        }
+        return classDependencies;
+    }
+
+    /**
+     * Finds the annotated dependencies of the supplied class and its superclasses.
+     *
+     * @param beanClass the class to inspect.
+     *
+     * @return the dependencies of the class.
+     */
+    private static List<Dependency> findDependencies(final Class<?> beanClass) {
+        final List<Dependency> found = new ArrayList<Dependency>();
+        for (Class<?> clazz = beanClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (isInjectionPoint(field)) {
+                    found.add(new Dependency(getResourceName(field), field.getType()));
+                }
+            }
+            for (Method method : clazz.getDeclaredMethods()) {
+                if (isInjectionPoint(method)) {
+                    addParameters(found, getResourceName(method), method.getParameterTypes());
+                }
+            }
+            for (Constructor<?> constructor : clazz.getDeclaredConstructors()) {
+                if (isInjectionPoint(constructor)) {
+                    addParameters(found, null, constructor.getParameterTypes());
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Adds a dependency for each of the supplied parameter types, or a single named dependency if a name is supplied.
+     *
+     * @param found          the dependencies to add to.
+     * @param name           the explicit name of the dependency, or {@code null} to add a dependency per parameter.
+     * @param parameterTypes the parameter types of the injection point.
+     */
+    private static void addParameters(final List<Dependency> found,
+                                      final String name,
+                                      final Class<?>[] parameterTypes) {
+        if (name != null) {
+            found.add(new Dependency(name, null));
+            return;
+        }
+        for (Class<?> parameterType : parameterTypes) {
+            found.add(new Dependency(null, parameterType));
+        }
+    }
+
+    /**
+     * Returns whether the supplied member is annotated as an injection point.
+     *
+     * @param member the member to check.
+     *
+     * @return {@code true} if the member is annotated with {@link Autowired}, {@code javax.annotation.Resource} or
+     *         {@code javax.inject.Inject}, {@code false} otherwise.
+     */
+    private static boolean isInjectionPoint(final AccessibleObject member) {
+        for (Annotation annotation : member.getAnnotations()) {
+            final Class<? extends Annotation> annotationType = annotation.annotationType();
+            if (annotationType == Autowired.class || RESOURCE_ANNOTATION.equals(annotationType.getName())
+                || INJECT_ANNOTATION.equals(annotationType.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the explicit name given by the {@code javax.annotation.Resource} annotation of the supplied member, if
+     * any.
+     *
+     * @param member the member to check.
+     *
+     * @return the explicit name, or {@code null} if the member has no {@code Resource} annotation or it gives no name.
+     */
+    private static String getResourceName(final AccessibleObject member) {
+        for (Annotation annotation : member.getAnnotations()) {
+            if (RESOURCE_ANNOTATION.equals(annotation.annotationType().getName())) {
+                final Object name = AnnotationUtils.getValue(annotation, "name");
+                return name instanceof String && ((String) name).length() > 0 ? (String) name : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the names of the beans referenced by the properties and constructor arguments of the named bean's
+     * definition.
+     *
+     * @param beanName the name of the bean.
+     *
+     * @return the names of the referenced beans, or an empty list if the bean has no definition in the bean factory.
+     */
+    private List<String> getReferences(final String beanName) {
+        if (!(beanFactory instanceof ConfigurableListableBeanFactory) || !beanFactory.containsBeanDefinition(beanName)) {
+            return Collections.emptyList();
+        }
+        final BeanDefinition definition =
+            ((ConfigurableListableBeanFactory) beanFactory).getBeanDefinition(beanName);
+
+        final List<String> references = new ArrayList<String>();
+        for (PropertyValue propertyValue : definition.getPropertyValues().getPropertyValues()) {
+            addReference(references, propertyValue.getValue());
+        }
+        for (ValueHolder valueHolder : definition.getConstructorArgumentValues().getIndexedArgumentValues().values()) {
+            addReference(references, valueHolder.getValue());
+        }
+        for (ValueHolder valueHolder : definition.getConstructorArgumentValues().getGenericArgumentValues()) {
+            addReference(references, valueHolder.getValue());
+        }
+        return references;
+    }
+
+    /**
+     * Adds the name of the referenced bean if the supplied value is a bean reference.
+     *
+     * @param references the names to add to.
+     * @param value      the property or constructor argument value.
+     */
+    private static void addReference(final List<String> references, final Object value) {
+        if (value instanceof RuntimeBeanReference && !((RuntimeBeanReference) value).isToParent()) {
+            references.add(((RuntimeBeanReference) value).getBeanName());
+        }
+    }
+
+    /**
+     * This class describes a dependency found at an annotated injection point.
+     */
+    private static final class Dependency {
+
+        /**
+         * Stores the explicit name of the dependency, or {@code null} if it is resolved by type.
+         */
+        private final String name;
+
+        /**
+         * Stores the type of the dependency, or {@code null} if it is resolved by name.
+         */
+        private final Class<?> type;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param name the explicit name of the dependency, or {@code null} if it is resolved by type.
+         * @param type the type of the dependency, or {@code null} if it is resolved by name.
+         */
+        private Dependency(final String name, final Class<?> type) {
+            this.name = name;
+            this.type = type;
+        }
+
+    }
+
+}
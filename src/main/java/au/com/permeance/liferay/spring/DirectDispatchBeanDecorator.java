@@ -0,0 +1,210 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+import com.liferay.portal.kernel.bean.ClassLoaderBeanHandler;
+import com.liferay.portal.kernel.log.Log;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import static com.liferay.portal.kernel.log.LogFactoryUtil.getLog;
+
+import static java.lang.String.format;
+import static java.lang.reflect.Proxy.newProxyInstance;
+
+/**
+ * This class provides a {@link BeanDecorator} which replaces the class loader switching proxies liferay returns for
+ * beans located across plugin class loaders with a single direct dispatcher. Such beans are JDK proxies backed by a
+ * {@link ClassLoaderBeanHandler}, often nested several deep, each level of which switches the thread's context class
+ * loader and calls {@link Method#invoke(Object, Object...)} on the next. The dispatcher instead invokes the innermost
+ * bean directly using the implementation method, resolved and made accessible once per interface method, switching the
+ * context class loader only if it differs from the loader the innermost handler would have set (and restoring it
+ * afterwards), so the context class loader seen by the bean is unchanged.
+ * <p/>
+ * Only proxies backed by exactly {@link ClassLoaderBeanHandler} or
+ * {@link com.liferay.portal.kernel.bean.ContextClassLoaderBeanHandler} are unwrapped, as subclasses may add behaviour;
+ * unwrapping stops at the first proxy backed by any other handler, which becomes the target of the dispatcher. Beans
+ * which are not such proxies are returned unchanged. This decorator should be applied before any other decorator,
+ * which {@link BeanLocatorDefinitionCopier#setDirectDispatch(boolean)} does.
+ */
+public class DirectDispatchBeanDecorator implements BeanDecorator {
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = getLog(DirectDispatchBeanDecorator.class);
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return a proxy dispatching directly to the innermost bean if the supplied bean is a class loader switching
+     *         proxy, or the supplied bean otherwise.
+     */
+    @Override
+    public final Object decorate(final String name, final Object bean) {
+        Object target = bean;
+        // the innermost handler with a class loader determines the context class loader the bean is invoked with
+        ClassLoader classLoader = null;
+        int depth = 0;
+        for (ClassLoaderBeanHandler handler = getHandler(target); handler != null; handler = getHandler(target)) {
+            if (handler.getClassLoader() != null) {
+                classLoader = handler.getClassLoader();
+            }
+            target = handler.getBean();
+            depth++;
+        }
+        if (depth == 0) {
+            return bean;
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(format("Dispatching directly to bean %s through %d class loader proxies", name, depth));
+        }
+        final Class<?> proxyClass = bean.getClass();
+        return newProxyInstance(proxyClass.getClassLoader(), proxyClass.getInterfaces(),
+                                new Dispatcher(target, classLoader));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Nothing is retained for a bean other than by the dispatcher decorating it, so there is nothing to discard.
+     */
+    @Override
+    public final void release(final String name) {
+        // nothing to do
+    }
+
+    /**
+     * Returns the {@link ClassLoaderBeanHandler} backing the supplied bean, if it is a proxy backed by one which can be
+     * unwrapped.
+     *
+     * @param bean the bean to check.
+     *
+     * @return the handler, or {@code null} if the bean cannot be unwrapped.
+     */
+    // ContextClassLoaderBeanHandler is deprecated but still backs beans located from older plugins
+    @SuppressWarnings("deprecation")
+    private static ClassLoaderBeanHandler getHandler(final Object bean) {
+        if (bean == null || !Proxy.isProxyClass(bean.getClass())) {
+            return null;
+        }
+        final InvocationHandler handler = Proxy.getInvocationHandler(bean);
+        final Class<?> handlerClass = handler.getClass();
+        if (handlerClass == ClassLoaderBeanHandler.class
+            || handlerClass == com.liferay.portal.kernel.bean.ContextClassLoaderBeanHandler.class) {
+            return (ClassLoaderBeanHandler) handler;
+        }
+        return null;
+    }
+
+    /**
+     * Provides the {@link InvocationHandler} dispatching directly to the innermost bean.
+     */
+    private static final class Dispatcher implements InvocationHandler {
+
+        /**
+         * Stores the innermost bean.
+         */
+        private final Object target;
+
+        /**
+         * Stores the context class loader the bean is invoked with, or {@code null} to leave it unchanged.
+         */
+        private final ClassLoader classLoader;
+
+        /**
+         * Stores the implementation method of each interface method invoked so far.
+         */
+        private final ConcurrentMap<Method, Method> methods = new ConcurrentHashMap<Method, Method>();
+
+        /**
+         * Creates a new instance.
+         *
+         * @param target      the innermost bean.
+         * @param classLoader the context class loader to invoke the bean with, or {@code null} to leave it unchanged.
+         */
+        Dispatcher(final Object target, final ClassLoader classLoader) {
+            this.target = target;
+            this.classLoader = classLoader;
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p/>
+         * Invokes the implementation of the supplied method on the innermost bean, with the context class loader the
+         * replaced proxies would have set.
+         */
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            final Method implementation = getImplementation(method);
+            final Thread thread = Thread.currentThread();
+            final ClassLoader contextClassLoader = thread.getContextClassLoader();
+            final boolean switchClassLoader = classLoader != null && classLoader != contextClassLoader;
+            if (switchClassLoader) {
+                thread.setContextClassLoader(classLoader);
+            }
+            try {
+                return implementation.invoke(target, args);
+            }
+            catch (final InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+            finally {
+                if (switchClassLoader) {
+                    thread.setContextClassLoader(contextClassLoader);
+                }
+            }
+        }
+
+        /**
+         * Returns the implementation of the supplied interface method by the innermost bean, resolving it and making
+         * it accessible on first use.
+         *
+         * @param method the interface method.
+         *
+         * @return the implementation method.
+         */
+        private Method getImplementation(final Method method) {
+            Method implementation = methods.get(method);
+            if (implementation == null) {
+                implementation = ClassUtils.getMostSpecificMethod(method, target.getClass());
+                try {
+                    ReflectionUtils.makeAccessible(implementation);
+                }
+                catch (final RuntimeException e) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug(format("Unable to make %s accessible - invoking %s", implementation, method), e);
+                    }
+                    implementation = method;
+                }
+                methods.put(method, implementation);
+            }
+            return implementation;
+        }
+
+    }
+
+}
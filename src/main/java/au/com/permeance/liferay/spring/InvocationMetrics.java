@@ -0,0 +1,246 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class accumulates the invocation metrics of a single method: the number of calls, the number of calls which
+ * threw, the total time spent and a histogram of call durations. To keep recording cheap when a method is called from
+ * many threads at once, every counter is striped: each thread updates the stripe selected by its identifier, stripes
+ * are padded onto separate cache lines, and stripes are only summed when the metrics are read. Reads are therefore not
+ * atomic snapshots, but every completed call is eventually reflected in them.
+ * <p/>
+ * The histogram has {@link #BUCKETS} buckets of exponentially increasing width: bucket 0 holds calls taking less than
+ * 1024 nanoseconds, and bucket {@code n} calls taking less than {@code 2^(n+10)} nanoseconds, with the last bucket
+ * holding every slower call.
+ */
+public final class InvocationMetrics {
+
+    /**
+     * The number of histogram buckets.
+     */
+    public static final int BUCKETS = 32;
+
+    /**
+     * The number of counters (a cache line of longs) reserved for each stripe.
+     */
+    private static final int PADDING = 8;
+
+    /**
+     * The offset of the call count within a stripe.
+     */
+    private static final int CALLS = 0;
+
+    /**
+     * The offset of the error count within a stripe.
+     */
+    private static final int ERRORS = 1;
+
+    /**
+     * The offset of the total duration within a stripe.
+     */
+    private static final int NANOS = 2;
+
+    /**
+     * The number of stripes, a power of two.
+     */
+    private static final int STRIPES = stripes(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Stores the striped call counts, error counts and durations.
+     */
+    private final AtomicLongArray counters = new AtomicLongArray(STRIPES * PADDING);
+
+    /**
+     * Stores the striped histogram buckets.
+     */
+    private final AtomicLongArray histogram = new AtomicLongArray(STRIPES * BUCKETS);
+
+    /**
+     * Records a call.
+     *
+     * @param nanos  the duration of the call, in nanoseconds.
+     * @param failed {@code true} if the call threw, {@code false} otherwise.
+     */
+    public void record(final long nanos, final boolean failed) {
+        final int stripe = stripe();
+        final int base = stripe * PADDING;
+        counters.incrementAndGet(base + CALLS);
+        if (failed) {
+            counters.incrementAndGet(base + ERRORS);
+        }
+        counters.addAndGet(base + NANOS, nanos);
+        histogram.incrementAndGet(stripe * BUCKETS + bucket(nanos));
+    }
+
+    /**
+     * Returns the number of calls.
+     *
+     * @return the number of calls.
+     */
+    public long getCalls() {
+        return sum(CALLS);
+    }
+
+    /**
+     * Returns the number of calls which threw.
+     *
+     * @return the number of failed calls.
+     */
+    public long getErrors() {
+        return sum(ERRORS);
+    }
+
+    /**
+     * Returns the total duration of every call.
+     *
+     * @return the total duration, in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return sum(NANOS);
+    }
+
+    /**
+     * Returns the mean duration of a call.
+     *
+     * @return the mean duration, in nanoseconds, or zero if there have been no calls.
+     */
+    public long getMeanNanos() {
+        final long calls = getCalls();
+        return calls == 0 ? 0 : getTotalNanos() / calls;
+    }
+
+    /**
+     * Returns the number of calls in each histogram bucket.
+     *
+     * @return the bucket counts, indexed by bucket.
+     */
+    public long[] getHistogram() {
+        final long[] buckets = new long[BUCKETS];
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                buckets[bucket] += histogram.get(stripe * BUCKETS + bucket);
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * Returns an upper bound of the supplied percentile of call durations, as the upper bound of the histogram bucket
+     * holding it.
+     *
+     * @param percentile the percentile, between 0 and 100.
+     *
+     * @return the upper bound of the percentile, in nanoseconds, or zero if there have been no calls.
+     */
+    public long getPercentileNanos(final double percentile) {
+        final long[] buckets = getHistogram();
+        long calls = 0;
+        for (long count : buckets) {
+            calls += count;
+        }
+        if (calls == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1L, (long) Math.ceil(percentile / 100 * calls));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += buckets[bucket];
+            if (seen >= rank) {
+                return getUpperBoundNanos(bucket);
+            }
+        }
+        return getUpperBoundNanos(BUCKETS - 1);
+    }
+
+    /**
+     * Resets every counter to zero.
+     */
+    public void reset() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+        for (int i = 0; i < histogram.length(); i++) {
+            histogram.set(i, 0);
+        }
+    }
+
+    /**
+     * Returns the exclusive upper bound of the durations held by the supplied histogram bucket.
+     *
+     * @param bucket the bucket.
+     *
+     * @return the upper bound, in nanoseconds, which is {@link Long#MAX_VALUE} for the last bucket.
+     */
+    public static long getUpperBoundNanos(final int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : 1L << (bucket + 10);
+    }
+
+    /**
+     * Returns the histogram bucket holding the supplied duration.
+     *
+     * @param nanos the duration, in nanoseconds.
+     *
+     * @return the bucket.
+     */
+    static int bucket(final long nanos) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0L, nanos) >>> 10));
+    }
+
+    /**
+     * Sums the counter at the supplied offset across every stripe.
+     *
+     * @param offset the offset of the counter within a stripe.
+     *
+     * @return the sum of the counter.
+     */
+    private long sum(final int offset) {
+        long sum = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            sum += counters.get(stripe * PADDING + offset);
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the stripe updated by the calling thread.
+     *
+     * @return the stripe of the calling thread.
+     */
+    private static int stripe() {
+        final long id = Thread.currentThread().getId();
+        return (int) (id ^ (id >>> 32)) & (STRIPES - 1);
+    }
+
+    /**
+     * Returns the number of stripes to use for the supplied number of processors: the smallest power of two which is
+     * at least twice the number of processors, up to 64.
+     *
+     * @param processors the number of processors.
+     *
+     * @return the number of stripes.
+     */
+    static int stripes(final int processors) {
+        int stripes = 1;
+        while (stripes < processors * 2 && stripes < 64) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+}
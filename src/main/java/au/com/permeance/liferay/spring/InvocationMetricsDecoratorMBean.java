@@ -0,0 +1,75 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+/**
+ * This interface describes the management interface of {@link InvocationMetricsDecorator}, allowing the invocation
+ * metrics of copied beans to be exported as a standard MBean (for example using Spring's
+ * {@link org.springframework.jmx.export.MBeanExporter}). Methods are identified as {@code <bean name>#<method name>}.
+ */
+public interface InvocationMetricsDecoratorMBean {
+
+    /**
+     * Returns the methods which have been called.
+     *
+     * @return the called methods, in alphabetical order.
+     */
+    String[] getMethods();
+
+    /**
+     * Returns the number of calls to the supplied method.
+     *
+     * @param method the method.
+     *
+     * @return the number of calls, or zero if the method has not been called.
+     */
+    long getCalls(String method);
+
+    /**
+     * Returns the number of calls to the supplied method which threw.
+     *
+     * @param method the method.
+     *
+     * @return the number of failed calls, or zero if the method has not been called.
+     */
+    long getErrors(String method);
+
+    /**
+     * Returns the mean duration of a call to the supplied method.
+     *
+     * @param method the method.
+     *
+     * @return the mean duration, in nanoseconds, or zero if the method has not been called.
+     */
+    long getMeanNanos(String method);
+
+    /**
+     * Returns an upper bound of the supplied percentile of the durations of calls to the supplied method.
+     *
+     * @param method     the method.
+     * @param percentile the percentile, between 0 and 100.
+     *
+     * @return the upper bound of the percentile, in nanoseconds, or zero if the method has not been called.
+     */
+    long getPercentileNanos(String method, double percentile);
+
+    /**
+     * Resets the metrics of every method.
+     */
+    void reset();
+
+}
@@ -0,0 +1,34 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+/**
+ * This interface is implemented by sinks the metrics of an {@link InvocationMetricsDecorator} are published to, for
+ * example to forward them to a metrics library or monitoring system. Publication is driven by the caller of
+ * {@link InvocationMetricsDecorator#publishTo(InvocationMetricsSink)}, typically on a schedule.
+ */
+public interface InvocationMetricsSink {
+
+    /**
+     * Records the metrics of a single method.
+     *
+     * @param method  the name of the method, as {@code <bean name>#<method name>}.
+     * @param metrics the metrics of the method.
+     */
+    void record(String method, InvocationMetrics metrics);
+
+}
@@ -0,0 +1,115 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+import com.liferay.portal.kernel.bean.BeanLocator;
+import com.liferay.portal.kernel.bean.BeanLocatorException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.lang.String.format;
+import static java.lang.reflect.Proxy.newProxyInstance;
+
+/**
+ * This class provides an {@link InvocationHandler} which defers calling {@link BeanLocator#locate(String)} until the
+ * first method invocation on the proxy it backs. The located bean is then published without locking, so concurrent
+ * first invocations may each locate the bean but all subsequent invocations share a single instance.
+ */
+public class LazyBeanInvocationHandler implements InvocationHandler {
+
+    /**
+     * Stores the liferay bean locator to locate the target bean from.
+     */
+    private final transient BeanLocator beanLocator;
+
+    /**
+     * Stores the name of the target bean.
+     */
+    private final transient String name;
+
+    /**
+     * Stores the target bean once it has been located.
+     */
+    private final transient AtomicReference<Object> target = new AtomicReference<Object>();
+
+    /**
+     * Creates a new instance which locates the named bean from the supplied bean locator on first use.
+     *
+     * @param beanLocator the liferay bean locator to locate the target bean from.
+     * @param name        the name of the target bean.
+     */
+    public LazyBeanInvocationHandler(final BeanLocator beanLocator, final String name) {
+        this.beanLocator = beanLocator;
+        this.name = name;
+    }
+
+    /**
+     * Creates a proxy implementing the supplied interface which locates the named bean on first use.
+     *
+     * @param beanLocator the liferay bean locator to locate the target bean from.
+     * @param name        the name of the target bean.
+     * @param type        the interface the proxy should implement.
+     *
+     * @return the lazily initialised proxy.
+     */
+    public static Object newLazyProxy(final BeanLocator beanLocator, final String name, final Class<?> type) {
+        return newProxyInstance(type.getClassLoader(),
+                                new Class<?>[]{type},
+                                new LazyBeanInvocationHandler(beanLocator, name));
+    }
+
+    /**
+     * Returns the target bean, locating it if this is the first request.
+     *
+     * @return the target bean.
+     *
+     * @throws BeanLocatorException if the bean locator cannot supply the target bean.
+     */
+    public final Object getTarget() {
+        final Object existing = target.get();
+        if (existing != null) {
+            return existing;
+        }
+
+        final Object located = beanLocator.locate(name);
+        if (located == null) {
+            throw new BeanLocatorException(format("Bean locator returned no instance for bean %s", name));
+        }
+
+        target.compareAndSet(null, located);
+        return target.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Invokes the supplied method on the target bean, locating it first if necessary.
+     */
+    @Override
+    public final Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        try {
+            return method.invoke(getTarget(), args);
+        }
+        catch (final InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+import com.liferay.portal.kernel.bean.BeanLocator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * This class tracks consecutive {@link BeanLocator#locate(String)} failures (including timeouts) per name, so that a
+ * {@link BeanLocatorDefinitionCopier} stops waiting on names which keep failing. Once a name has failed
+ * {@link #getFailureThreshold()} times in a row its circuit opens and it is skipped until the reset interval has
+ * elapsed; a single attempt is then allowed, which closes the circuit if it succeeds and reopens it if it fails.
+ */
+public class LocateCircuitBreaker {
+
+    /**
+     * The default interval after which an open circuit allows another attempt, in milliseconds.
+     */
+    public static final long DEFAULT_RESET_MILLIS = 300000L;
+
+    /**
+     * Stores the state of each name which has failed since it last succeeded.
+     */
+    private final transient Map<String, Circuit> circuits = new HashMap<String, Circuit>();
+
+    /**
+     * Stores the number of consecutive failures which opens a name's circuit.
+     */
+    private final transient int failureThreshold;
+
+    /**
+     * Stores the interval after which an open circuit allows another attempt, in nanoseconds.
+     */
+    private final transient long resetNanos;
+
+    /**
+     * Creates a new instance opening circuits after the supplied number of consecutive failures and allowing another
+     * attempt after {@link #DEFAULT_RESET_MILLIS}.
+     *
+     * @param failureThreshold the number of consecutive failures which opens a name's circuit.
+     */
+    public LocateCircuitBreaker(final int failureThreshold) {
+        this(failureThreshold, DEFAULT_RESET_MILLIS);
+    }
+
+    /**
+     * Creates a new instance opening circuits after the supplied number of consecutive failures.
+     *
+     * @param failureThreshold the number of consecutive failures which opens a name's circuit.
+     * @param resetMillis      the interval after which an open circuit allows another attempt, in milliseconds.
+     */
+    public LocateCircuitBreaker(final int failureThreshold, final long resetMillis) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("Failure threshold must be positive: " + failureThreshold);
+        }
+        if (resetMillis < 0) {
+            throw new IllegalArgumentException("Reset interval must not be negative: " + resetMillis);
+        }
+        this.failureThreshold = failureThreshold;
+        this.resetNanos = MILLISECONDS.toNanos(resetMillis);
+    }
+
+    /**
+     * Returns the number of consecutive failures which opens a name's circuit.
+     *
+     * @return the failure threshold.
+     */
+    public final int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    /**
+     * Returns whether the named bean may be located. An open circuit allows a single attempt once the reset interval
+     * has elapsed since it opened.
+     *
+     * @param name the name of the bean.
+     *
+     * @return {@code true} if the bean may be located, {@code false} if its circuit is open.
+     */
+    public final synchronized boolean allows(final String name) {
+        final Circuit circuit = circuits.get(name);
+        if (circuit == null || circuit.failures < failureThreshold) {
+            return true;
+        }
+        final long now = nanoTime();
+        if (now - circuit.openedNanos < resetNanos) {
+            return false;
+        }
+        circuit.openedNanos = now;
+        return true;
+    }
+
+    /**
+     * Records that the named bean was located, closing its circuit.
+     *
+     * @param name the name of the bean.
+     */
+    public final synchronized void recordSuccess(final String name) {
+        circuits.remove(name);
+    }
+
+    /**
+     * Records that the named bean could not be located in time, opening its circuit once the failure threshold is
+     * reached.
+     *
+     * @param name the name of the bean.
+     *
+     * @return {@code true} if the circuit of the bean is now open, {@code false} otherwise.
+     */
+    public final synchronized boolean recordFailure(final String name) {
+        Circuit circuit = circuits.get(name);
+        if (circuit == null) {
+            circuit = new Circuit();
+            circuits.put(name, circuit);
+        }
+        circuit.failures++;
+        if (circuit.failures == failureThreshold) {
+            circuit.openedNanos = nanoTime();
+        }
+        return circuit.failures >= failureThreshold;
+    }
+
+    /**
+     * Returns the names whose circuits are open.
+     *
+     * @return the names whose circuits are open.
+     */
+    public final synchronized List<String> getOpenNames() {
+        final List<String> names = new ArrayList<String>();
+        for (Map.Entry<String, Circuit> entry : circuits.entrySet()) {
+            if (entry.getValue().failures >= failureThreshold) {
+                names.add(entry.getKey());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Closes every circuit, forgetting all recorded failures.
+     */
+    public final synchronized void reset() {
+        circuits.clear();
+    }
+
+    /**
+     * This class holds the failure state of a single name.
+     */
+    private static final class Circuit {
+
+        /**
+         * Stores the number of consecutive failures.
+         */
+        private int failures;
+
+        /**
+         * Stores when the circuit opened or last allowed an attempt, as given by {@link System#nanoTime()}.
+         */
+        private long openedNanos;
+
+    }
+
+}
@@ -0,0 +1,232 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+import com.liferay.portal.kernel.log.Log;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.springframework.core.io.Resource;
+
+import static com.liferay.portal.kernel.log.LogFactoryUtil.getLog;
+
+import static java.lang.String.format;
+
+/**
+ * This class supplies the acceptance decisions a {@link BeanLocatorDefinitionCopier} can apply without classifying
+ * names: those of a build-time {@link CopyManifest}, which take precedence, or those persisted in an
+ * {@link AcceptanceIndex} by a previous copy. Decisions are only supplied for filters equivalent to those they were
+ * reached with, as identified by their {@link TypeFilterFingerprint fingerprint}.
+ */
+final class PrecomputedDecisions {
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = getLog(PrecomputedDecisions.class);
+
+    /**
+     * Stores the persistent index of acceptance decisions, or {@code null} if decisions should not be persisted.
+     */
+    private AcceptanceIndex acceptanceIndex;
+
+    /**
+     * Stores the resource holding the build-time manifest of names to copy, or {@code null} if names are classified.
+     */
+    private Resource copyManifestResource;
+
+    /**
+     * Stores the manifest read from {@link #copyManifestResource}, or {@code null} if it has not been read.
+     */
+    private CopyManifest copyManifest;
+
+    /**
+     * Sets the persistent index of acceptance decisions.
+     *
+     * @param acceptanceIndex the index to use, or {@code null} to classify every name.
+     */
+    void setAcceptanceIndex(final AcceptanceIndex acceptanceIndex) {
+        this.acceptanceIndex = acceptanceIndex;
+    }
+
+    /**
+     * Sets the resource holding the build-time manifest of names to copy, which is read when first needed.
+     *
+     * @param copyManifestResource the resource holding the manifest, or {@code null} to classify every name.
+     */
+    void setCopyManifest(final Resource copyManifestResource) {
+        this.copyManifestResource = copyManifestResource;
+        this.copyManifest = null;
+    }
+
+    /**
+     * Discards the manifest read, so that it is read again when next needed.
+     */
+    void clear() {
+        copyManifest = null;
+    }
+
+    /**
+     * Looks up the decisions for the supplied names in the manifest, if one is set and applies, and otherwise in the
+     * acceptance index, if one is set and the filters can be fingerprinted.
+     *
+     * @param names             the names to look up.
+     * @param filterFingerprint the fingerprint of the configured filters, or {@code null} if they cannot be
+     *                          fingerprinted.
+     * @param nameFilter        the name filter applied to the names, or {@code null} if there is none.
+     *
+     * @return the result of the lookup.
+     */
+    Lookup lookup(final String[] names, final String filterFingerprint, final BeanNameFilter nameFilter) {
+        final boolean[] manifested = getManifestDecisions(names, filterFingerprint, nameFilter);
+        if (manifested != null || acceptanceIndex == null) {
+            return new Lookup(manifested, null, 0L);
+        }
+        final String indexFingerprint = indexFingerprint(filterFingerprint, nameFilter);
+        if (indexFingerprint == null) {
+            LOG.warn(format("Not using acceptance index %s as the configured filters cannot be fingerprinted",
+                            acceptanceIndex.getFile()));
+            return new Lookup(null, null, 0L);
+        }
+        final long indexKey = AcceptanceIndex.key(names, indexFingerprint);
+        final boolean[] indexed = acceptanceIndex.load(indexKey, names.length);
+        return new Lookup(indexed, indexed == null ? acceptanceIndex : null, indexKey);
+    }
+
+    /**
+     * Returns whether each of the supplied names should be copied according to the {@link #copyManifestResource}, if
+     * one is set and its manifest was generated with equivalent filters.
+     *
+     * @param names             the names to look up.
+     * @param filterFingerprint the fingerprint of the configured filters, or {@code null} if they cannot be
+     *                          fingerprinted.
+     * @param nameFilter        the name filter applied to the names, or {@code null} if there is none.
+     *
+     * @return whether each name should be copied, in order, or {@code null} if the names must be classified.
+     */
+    boolean[] getManifestDecisions(final String[] names,
+                                   final String filterFingerprint,
+                                   final BeanNameFilter nameFilter) {
+        if (copyManifestResource == null) {
+            return null;
+        }
+        if (copyManifest == null) {
+            try {
+                copyManifest = CopyManifest.read(copyManifestResource);
+            }
+            catch (final IOException e) {
+                LOG.warn(format("Error reading copy manifest %s - classifying names", copyManifestResource), e);
+                return null;
+            }
+        }
+        if (filterFingerprint == null) {
+            LOG.warn(format("Ignoring copy manifest %s as the configured filters cannot be fingerprinted - "
+                            + "classifying names", copyManifestResource));
+            return null;
+        }
+        if (!copyManifest.getFingerprint().equals(filterFingerprint)) {
+            LOG.warn(format("Copy manifest %s was generated with different filters - classifying names",
+                            copyManifestResource));
+            return null;
+        }
+
+        final boolean[] accepted = new boolean[names.length];
+        for (int i = 0; i < names.length; i++) {
+            accepted[i] = copyManifest.contains(names[i]) && (nameFilter == null || nameFilter.accepts(names[i]));
+        }
+        return accepted;
+    }
+
+    /**
+     * Returns the fingerprint identifying the complete configuration used to classify names, including the name
+     * filter.
+     *
+     * @param filterFingerprint the fingerprint of the configured filters, or {@code null} if they cannot be
+     *                          fingerprinted.
+     * @param nameFilter        the name filter applied to the names, or {@code null} if there is none.
+     *
+     * @return the fingerprint of the complete classification configuration, or {@code null} if the filters cannot be
+     *         fingerprinted.
+     */
+    static String indexFingerprint(final String filterFingerprint, final BeanNameFilter nameFilter) {
+        return filterFingerprint == null || nameFilter == null ? filterFingerprint : filterFingerprint + nameFilter;
+    }
+
+    /**
+     * This class holds the decisions found by a {@link #lookup(String[], String, BeanNameFilter) lookup}, and stores
+     * the decisions reached by classifying the names in the acceptance index if it held none for them.
+     */
+    static final class Lookup {
+
+        /**
+         * Stores the decisions found, or {@code null} if the names must be classified.
+         */
+        private final boolean[] decisions;
+
+        /**
+         * Stores the index to store the decisions reached in, or {@code null} if they should not be stored.
+         */
+        private final AcceptanceIndex missedIndex;
+
+        /**
+         * Stores the key of the names in the {@link #missedIndex}.
+         */
+        private final long indexKey;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param decisions   the decisions found, or {@code null} if the names must be classified.
+         * @param missedIndex the index to store the decisions reached in, or {@code null} if they should not be
+         *                    stored.
+         * @param indexKey    the key of the names in the index.
+         */
+        Lookup(final boolean[] decisions, final AcceptanceIndex missedIndex, final long indexKey) {
+            this.decisions = decisions;
+            this.missedIndex = missedIndex;
+            this.indexKey = indexKey;
+        }
+
+        /**
+         * Returns the decisions found.
+         *
+         * @return whether each name should be copied, in order, or {@code null} if the names must be classified.
+         */
+        boolean[] getDecisions() {
+            return decisions;
+        }
+
+        /**
+         * Stores the decisions reached by classifying the names in the acceptance index, if it held none for them.
+         *
+         * @param resolutions the resolutions of the names, in order.
+         */
+        void store(final List<Resolution> resolutions) {
+            if (missedIndex == null) {
+                return;
+            }
+            final boolean[] accepted = new boolean[resolutions.size()];
+            for (int i = 0; i < accepted.length; i++) {
+                accepted[i] = resolutions.get(i).decision.isAccepted();
+            }
+            missedIndex.store(indexKey, accepted);
+        }
+
+    }
+
+}
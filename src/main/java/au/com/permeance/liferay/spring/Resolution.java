@@ -0,0 +1,68 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+import com.liferay.portal.kernel.bean.BeanLocator;
+
+import org.springframework.core.type.classreading.MetadataReader;
+
+/**
+ * This class holds the outcome of resolving a single name obtained from the {@link BeanLocator} by a
+ * {@link BeanLocatorDefinitionCopier}, which is shared with the {@link BackgroundCopy} in progress, if any.
+ */
+final class Resolution {
+
+    /**
+     * Stores the name of the bean being resolved.
+     */
+    final String name;
+
+    /**
+     * Stores the acceptance decision reached for the bean.
+     */
+    AcceptanceDecision decision;
+
+    /**
+     * Stores the type of the bean, if it has been resolved.
+     */
+    Class<?> type;
+
+    /**
+     * Stores the bean to register, or {@code null} if the bean should not be registered.
+     */
+    Object bean;
+
+    /**
+     * Stores the metadata the bean was classified with, if it was classified while an event listener was set.
+     */
+    MetadataReader metadataReader;
+
+    /**
+     * Stores whether the bean was accepted but not located in time, and so may be retried.
+     */
+    boolean deferred;
+
+    /**
+     * Creates a new instance for the supplied name.
+     *
+     * @param name the name of the bean being resolved.
+     */
+    Resolution(final String name) {
+        this.name = name;
+    }
+
+}
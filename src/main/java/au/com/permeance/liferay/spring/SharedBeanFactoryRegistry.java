@@ -0,0 +1,286 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+import com.liferay.portal.kernel.bean.BeanLocator;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.SingletonBeanRegistry;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+/**
+ * This class provides read-only {@link BeanFactory} instances holding the beans of a {@link BeanLocator}, so that
+ * {@link BeanLocatorDefinitionCopier} instances with equivalent configurations can attach a single factory as the
+ * parent of their contexts instead of each registering every bean. Each factory is populated once, on first request,
+ * and then sealed: its configuration is frozen (allowing Spring to cache lookups by type) and any further attempt to
+ * register or remove beans fails with an {@link UnsupportedOperationException}.
+ * <p/>
+ * Each request for a factory acquires a reference to it, which is given up with
+ * {@link #release(BeanLocator, BeanFactory)}; a factory is discarded once its last reference is released. Bean locators
+ * are only weakly referenced, and all of their factories can be discarded explicitly with {@link #release(BeanLocator)}
+ * when a plugin is undeployed. Note that {@link #getSharedInstance()} is shared by every copier loaded by the same
+ * class loader as this class.
+ */
+public class SharedBeanFactoryRegistry {
+
+    /**
+     * The instance shared by default between copiers.
+     */
+    private static final SharedBeanFactoryRegistry SHARED_INSTANCE = new SharedBeanFactoryRegistry();
+
+    /**
+     * Stores the shared factories, keyed by bean locator, then by configuration key.
+     */
+    private final transient Map<BeanLocator, Map<String, Entry>> entries =
+        new WeakHashMap<BeanLocator, Map<String, Entry>>();
+
+    /**
+     * Returns the instance shared by default between copiers.
+     *
+     * @return the shared instance.
+     */
+    public static SharedBeanFactoryRegistry getSharedInstance() {
+        return SHARED_INSTANCE;
+    }
+
+    /**
+     * Returns the shared factory for the supplied bean locator and configuration, populating it with the supplied
+     * populator if it does not exist yet, and acquires a reference to it. Concurrent requests for the same factory wait
+     * for it to be populated; if population fails the exception is propagated, no reference is acquired and the next
+     * request populates the factory again.
+     *
+     * @param beanLocator the bean locator the factory holds the beans of.
+     * @param key         the key identifying the configuration used to populate the factory.
+     * @param populator   the populator to register beans with a new factory.
+     *
+     * @return the sealed shared factory.
+     */
+    public final BeanFactory getBeanFactory(final BeanLocator beanLocator,
+                                            final String key,
+                                            final Populator populator) {
+        final Entry entry;
+        synchronized (this) {
+            Map<String, Entry> map = entries.get(beanLocator);
+            if (map == null) {
+                map = new HashMap<String, Entry>();
+                entries.put(beanLocator, map);
+            }
+            Entry existing = map.get(key);
+            if (existing == null) {
+                existing = new Entry();
+                map.put(key, existing);
+            }
+            existing.references++;
+            entry = existing;
+        }
+
+        synchronized (entry) {
+            if (entry.beanFactory == null) {
+                final SealableBeanFactory beanFactory = new SealableBeanFactory();
+                try {
+                    populator.populate(beanFactory);
+                }
+                catch (final RuntimeException e) {
+                    release(beanLocator, key, entry);
+                    throw e;
+                }
+                beanFactory.seal();
+                entry.beanFactory = beanFactory;
+            }
+            return entry.beanFactory;
+        }
+    }
+
+    /**
+     * Releases a reference to the supplied factory, previously returned by
+     * {@link #getBeanFactory(BeanLocator, String, Populator)} for the supplied bean locator, discarding the factory if
+     * no other reference to it remains. Has no effect if the factory has already been discarded.
+     *
+     * @param beanLocator the bean locator the factory holds the beans of.
+     * @param beanFactory the factory to release.
+     */
+    public final synchronized void release(final BeanLocator beanLocator, final BeanFactory beanFactory) {
+        final Map<String, Entry> map = entries.get(beanLocator);
+        if (map == null) {
+            return;
+        }
+        for (Map.Entry<String, Entry> mapEntry : map.entrySet()) {
+            if (mapEntry.getValue().beanFactory == beanFactory) {
+                release(beanLocator, mapEntry.getKey(), mapEntry.getValue());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Releases a reference to the supplied entry, removing it if no other reference to it remains.
+     *
+     * @param beanLocator the bean locator the entry holds the beans of.
+     * @param key         the key of the entry.
+     * @param entry       the entry to release.
+     */
+    private synchronized void release(final BeanLocator beanLocator, final String key, final Entry entry) {
+        final Map<String, Entry> map = entries.get(beanLocator);
+        if (map == null || map.get(key) != entry || --entry.references > 0) {
+            return;
+        }
+        map.remove(key);
+        if (map.isEmpty()) {
+            entries.remove(beanLocator);
+        }
+    }
+
+    /**
+     * Discards every factory holding the beans of the supplied bean locator, however many references to them remain.
+     * Contexts already attached to a discarded factory keep using it.
+     *
+     * @param beanLocator the bean locator to discard factories for.
+     */
+    public final synchronized void release(final BeanLocator beanLocator) {
+        entries.remove(beanLocator);
+    }
+
+    /**
+     * Returns the total number of shared factories.
+     *
+     * @return the total number of shared factories.
+     */
+    public final synchronized int size() {
+        int size = 0;
+        for (Map<String, Entry> map : entries.values()) {
+            size += map.size();
+        }
+        return size;
+    }
+
+    /**
+     * This interface is implemented to register beans with a new shared factory before it is sealed.
+     */
+    public interface Populator {
+
+        /**
+         * Registers beans with the supplied registry.
+         *
+         * @param singletonBeanRegistry the registry of the new shared factory.
+         */
+        void populate(SingletonBeanRegistry singletonBeanRegistry);
+
+    }
+
+    /**
+     * Holds a shared factory, which is {@code null} until it has been populated.
+     */
+    private static final class Entry {
+
+        /**
+         * Stores the shared factory, or {@code null} if it has not been populated.
+         */
+        private SealableBeanFactory beanFactory;
+
+        /**
+         * Stores the number of references acquired to the factory and not yet released. Guarded by the registry.
+         */
+        private int references;
+
+    }
+
+    /**
+     * Bean factory which rejects changes to its beans once sealed.
+     */
+    private static final class SealableBeanFactory extends DefaultListableBeanFactory {
+
+        /**
+         * Serialisation version.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Stores whether this factory has been sealed.
+         */
+        private volatile boolean sealed;
+
+        /**
+         * Freezes the configuration of this factory and rejects any further changes to its beans.
+         */
+        void seal() {
+            freezeConfiguration();
+            sealed = true;
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * @throws UnsupportedOperationException if this factory has been sealed.
+         */
+        @Override
+        public void registerSingleton(final String beanName, final Object singletonObject) {
+            checkNotSealed();
+            super.registerSingleton(beanName, singletonObject);
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * @throws UnsupportedOperationException if this factory has been sealed.
+         */
+        @Override
+        public void destroySingleton(final String beanName) {
+            checkNotSealed();
+            super.destroySingleton(beanName);
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * @throws UnsupportedOperationException if this factory has been sealed.
+         */
+        @Override
+        public void registerBeanDefinition(final String beanName, final BeanDefinition beanDefinition) {
+            checkNotSealed();
+            super.registerBeanDefinition(beanName, beanDefinition);
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * @throws UnsupportedOperationException if this factory has been sealed.
+         */
+        @Override
+        public void removeBeanDefinition(final String beanName) {
+            checkNotSealed();
+            super.removeBeanDefinition(beanName);
+        }
+
+        /**
+         * Checks this factory has not been sealed.
+         *
+         * @throws UnsupportedOperationException if this factory has been sealed.
+         */
+        private void checkNotSealed() {
+            if (sealed) {
+                throw new UnsupportedOperationException("Shared bean factory is read-only");
+            }
+        }
+
+    }
+
+}
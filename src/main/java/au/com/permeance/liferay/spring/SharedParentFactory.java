@@ -0,0 +1,153 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+import com.liferay.portal.kernel.bean.BeanLocator;
+import com.liferay.portal.kernel.log.Log;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.ApplicationContext;
+
+import static com.liferay.portal.kernel.log.LogFactoryUtil.getLog;
+
+import static java.lang.String.format;
+
+/**
+ * This class attaches the shared factory a {@link BeanLocatorDefinitionCopier} obtains from its
+ * {@link SharedBeanFactoryRegistry} as the parent of a context's bean factory, and holds the reference to it until the
+ * copier releases its beans. Contexts which cannot share a factory are reported, and are copied to instead.
+ */
+final class SharedParentFactory {
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = getLog(SharedParentFactory.class);
+
+    /**
+     * Stores the registry of shared parent bean factories, or {@code null} if beans should be copied to each context.
+     */
+    private volatile SharedBeanFactoryRegistry registry;
+
+    /**
+     * Stores the shared factory attached to the context, whose reference is released with the copied beans, or
+     * {@code null} if no shared factory is attached.
+     */
+    private BeanFactory attached;
+
+    /**
+     * Sets the registry of shared parent bean factories.
+     *
+     * @param registry the registry to obtain shared factories from, or {@code null} to copy beans to each context.
+     */
+    void setRegistry(final SharedBeanFactoryRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Returns whether beans are shared via a registry rather than copied to each context.
+     *
+     * @return {@code true} if a registry is set, {@code false} otherwise.
+     */
+    boolean isEnabled() {
+        return registry != null;
+    }
+
+    /**
+     * Attaches the shared factory holding the beans of the supplied {@link BeanLocator} for the supplied configuration
+     * as the parent of the supplied bean factory, populating the shared factory first if no other copier has done so.
+     * Any factory previously attached by this instance is released first.
+     *
+     * @param context          the context being initialised.
+     * @param beanFactory      the bean factory of the context.
+     * @param beanLocator      the bean locator the beans are copied from.
+     * @param indexFingerprint the fingerprint of the filters and name filter classifying names, or {@code null} if the
+     *                         filters cannot be fingerprinted.
+     * @param lazy             {@code true} if the beans are copied lazily, {@code false} otherwise.
+     * @param populator        the populator copying the beans to a new shared factory.
+     *
+     * @return {@code true} if a shared factory was attached, or {@code false} if the beans must be copied to the
+     *         context instead, because the filters cannot be fingerprinted or the bean factory already has a parent.
+     */
+    boolean attach(final ApplicationContext context,
+                   final ConfigurableListableBeanFactory beanFactory,
+                   final BeanLocator beanLocator,
+                   final String indexFingerprint,
+                   final boolean lazy,
+                   final SharedBeanFactoryRegistry.Populator populator) {
+        final String sharedKey = key(indexFingerprint, lazy);
+        if (sharedKey == null) {
+            LOG.warn(format("Copying bean definitions instead of sharing them with %s as the configured filters "
+                            + "cannot be fingerprinted", context));
+            return false;
+        }
+        if (beanFactory.getParentBeanFactory() != null) {
+            LOG.warn(format("Copying bean definitions instead of sharing them as %s already has a parent", context));
+            return false;
+        }
+
+        release(beanLocator);
+        attached = registry.getBeanFactory(beanLocator, sharedKey, populator);
+        beanFactory.setParentBeanFactory(attached);
+        if (LOG.isInfoEnabled()) {
+            LOG.info(format("Shared bean definitions from %s with %s", beanLocator, context));
+        }
+        return true;
+    }
+
+    /**
+     * Releases this instance's reference to the attached shared factory, if any, discarding the factory once no other
+     * copier shares it.
+     *
+     * @param beanLocator the bean locator the attached factory holds the beans of.
+     */
+    void release(final BeanLocator beanLocator) {
+        if (attached != null) {
+            registry.release(beanLocator, attached);
+            attached = null;
+        }
+    }
+
+    /**
+     * Discards every shared factory of the supplied bean locator, however many copiers share it.
+     *
+     * @param beanLocator the bean locator being replaced.
+     */
+    void discard(final BeanLocator beanLocator) {
+        final SharedBeanFactoryRegistry current = registry;
+        if (current != null && beanLocator != null) {
+            current.release(beanLocator);
+        }
+    }
+
+    /**
+     * Returns the key identifying the shared factories populated by copiers configured alike, which is equal for
+     * copiers whose filters, name filter and lazy mode are equivalent, however they were created.
+     *
+     * @param indexFingerprint the fingerprint of the filters and name filter classifying names, or {@code null} if the
+     *                         filters cannot be fingerprinted.
+     * @param lazy             {@code true} if the beans are copied lazily, {@code false} otherwise.
+     *
+     * @return the key of the shared factory for the configuration, or {@code null} if the filters cannot be
+     *         fingerprinted, in which case no factory may be shared.
+     */
+    static String key(final String indexFingerprint, final boolean lazy) {
+        return indexFingerprint == null || !lazy ? indexFingerprint : indexFingerprint + "lazy";
+    }
+
+}
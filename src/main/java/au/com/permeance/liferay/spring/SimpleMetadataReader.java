@@ -22,14 +22,20 @@ import org.springframework.core.type.classreading.MetadataReader;
 
 /**
  * This class provides an implementation of the {@link MetadataReader} interface which reads from an already
- * materialised class (rather than a resource or stream).
+ * materialised class (rather than a resource or stream). The metadata is only built when first requested, and is then
+ * shared by every subsequent request, so a single instance can be matched against many filters cheaply.
  */
 public class SimpleMetadataReader implements MetadataReader {
 
     /**
-     * Stores the metadata for the class supplied in the constructor.
+     * Stores the class supplied in the constructor.
      */
-    private final transient StandardAnnotationMetadata standardAnnotationMetadata;
+    private final transient Class<?> clazz;
+
+    /**
+     * Stores the metadata for the class supplied in the constructor, once built.
+     */
+    private transient volatile StandardAnnotationMetadata standardAnnotationMetadata;
 
     /**
      * Creates a new instance, based on the supplied class.
@@ -37,7 +43,7 @@ public class SimpleMetadataReader implements MetadataReader {
      * @param clazz the class to base this instance on.
      */
     public SimpleMetadataReader(final Class<?> clazz) {
-        standardAnnotationMetadata = new StandardAnnotationMetadata(clazz);
+        this.clazz = clazz;
     }
 
     /**
@@ -57,7 +63,7 @@ public class SimpleMetadataReader implements MetadataReader {
      */
     @Override
     public final StandardAnnotationMetadata getClassMetadata() {
-        return standardAnnotationMetadata;
+        return getStandardAnnotationMetadata();
     }
 
     /**
@@ -67,7 +73,22 @@ public class SimpleMetadataReader implements MetadataReader {
      */
     @Override
     public final StandardAnnotationMetadata getAnnotationMetadata() {
-        return standardAnnotationMetadata;
+        return getStandardAnnotationMetadata();
+    }
+
+    /**
+     * Returns the metadata for the class supplied in the constructor, building it if this is the first request.
+     * Concurrent first requests may each build the metadata, but only equivalent instances are ever returned.
+     *
+     * @return the metadata for the class supplied in the constructor.
+     */
+    private StandardAnnotationMetadata getStandardAnnotationMetadata() {
+        StandardAnnotationMetadata metadata = standardAnnotationMetadata;
+        if (metadata == null) {
+            metadata = new StandardAnnotationMetadata(clazz);
+            standardAnnotationMetadata = metadata;
+        }
+        return metadata;
     }
 
 }
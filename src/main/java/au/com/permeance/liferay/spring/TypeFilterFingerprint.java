@@ -0,0 +1,283 @@
+/*
+This file is part of liferay-spring-extensions.
+
+liferay-spring-extensions is free software: you can redistribute it and/or
+modify it under the terms of the GNU General Public License as published by the
+Free Software Foundation, either version 3 of the License, or (at your option)
+any later version.
+
+liferay-spring-extensions is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+more details.
+
+You should have received a copy of the GNU General Public License along with
+liferay-spring-extensions. If not, see <http://www.gnu.org/licenses />.
+*/
+package au.com.permeance.liferay.spring;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.regex.Pattern;
+
+import org.springframework.core.type.filter.AbstractTypeHierarchyTraversingFilter;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.core.type.filter.RegexPatternTypeFilter;
+import org.springframework.core.type.filter.TypeFilter;
+
+/**
+ * This class computes fingerprints identifying a configuration of include and exclude {@link TypeFilter}s by the
+ * classes they accept, so that equivalent configurations created independently (for example by two plugins, or by
+ * successive deployments of one plugin) share a fingerprint, and configurations accepting different classes do not.
+ * <p/>
+ * Spring's {@link AssignableTypeFilter}, {@link AnnotationTypeFilter} and {@link RegexPatternTypeFilter}, and the
+ * equivalent filters created by {@link CopyManifestGenerator#filter(String)}, are described by the values they were
+ * constructed with, so a Spring filter and a generated filter accepting the same classes share a description. Spring
+ * 3.1 exposes no accessors for those values, so they are read from the filters' fields; should that be refused (for
+ * example by a security manager) the filter is treated as not fingerprintable. Any other filter is described by the
+ * values of its public bean properties if they consist only of types, strings, patterns, primitives and enums.
+ * <p/>
+ * A filter which cannot be described by value (such as Spring's
+ * {@link org.springframework.core.type.filter.AspectJTypeFilter}, which does not retain its expression) makes its whole
+ * configuration not fingerprintable: {@link #fingerprint(Collection, Collection)} returns {@code null}, and callers
+ * must neither share nor persist decisions made with such a configuration.
+ */
+public final class TypeFilterFingerprint {
+
+    /**
+     * Prevents instantiation.
+     */
+    private TypeFilterFingerprint() {
+    }
+
+    /**
+     * Computes the fingerprint of the supplied filter configuration.
+     *
+     * @param includeFilters the include filters, in order.
+     * @param excludeFilters the exclude filters, in order.
+     *
+     * @return a string which is equal for equivalent filter configurations, or {@code null} if any of the filters
+     *         cannot be described by value.
+     */
+    public static String fingerprint(final Collection<? extends TypeFilter> includeFilters,
+                                     final Collection<? extends TypeFilter> excludeFilters) {
+        final StringBuilder builder = new StringBuilder("include[");
+        if (!append(builder, includeFilters)) {
+            return null;
+        }
+        builder.append("]exclude[");
+        if (!append(builder, excludeFilters)) {
+            return null;
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Appends the description of each of the supplied filters to the supplied builder.
+     *
+     * @param builder the builder to append to.
+     * @param filters the filters to describe.
+     *
+     * @return {@code true} if every filter was described, {@code false} if any cannot be described by value.
+     */
+    private static boolean append(final StringBuilder builder, final Collection<? extends TypeFilter> filters) {
+        for (TypeFilter filter : filters) {
+            final String description = describe(filter);
+            if (description == null) {
+                return false;
+            }
+            builder.append(description).append(';');
+        }
+        return true;
+    }
+
+    /**
+     * Describes the supplied filter by value.
+     *
+     * @param filter the filter to describe.
+     *
+     * @return the description of the filter, or {@code null} if it cannot be described by value.
+     */
+    static String describe(final Object filter) {
+        final Class<?> clazz = filter.getClass();
+        if (clazz == CopyManifestGenerator.DescribedAssignableTypeFilter.class) {
+            return describeAssignable(((CopyManifestGenerator.DescribedAssignableTypeFilter) filter).getTargetType());
+        }
+        if (clazz == CopyManifestGenerator.DescribedAnnotationTypeFilter.class) {
+            final CopyManifestGenerator.DescribedAnnotationTypeFilter annotationFilter =
+                (CopyManifestGenerator.DescribedAnnotationTypeFilter) filter;
+            return describeAnnotation(annotationFilter.getAnnotationType(),
+                                      annotationFilter.isConsiderMetaAnnotations(),
+                                      annotationFilter.isConsiderInterfaces());
+        }
+        if (clazz == CopyManifestGenerator.DescribedRegexPatternTypeFilter.class) {
+            return describeRegex(((CopyManifestGenerator.DescribedRegexPatternTypeFilter) filter).getPattern());
+        }
+        if (clazz == AssignableTypeFilter.class) {
+            return describeAssignable(readField(AssignableTypeFilter.class, "targetType", filter));
+        }
+        if (clazz == AnnotationTypeFilter.class) {
+            return describeAnnotation(readField(AnnotationTypeFilter.class, "annotationType", filter),
+                                      readField(AnnotationTypeFilter.class, "considerMetaAnnotations", filter),
+                                      readField(AbstractTypeHierarchyTraversingFilter.class, "considerInterfaces",
+                                                filter));
+        }
+        if (clazz == RegexPatternTypeFilter.class) {
+            return describeRegex(readField(RegexPatternTypeFilter.class, "pattern", filter));
+        }
+        return describeProperties(filter);
+    }
+
+    /**
+     * Describes an assignable type filter.
+     *
+     * @param targetType the type accepted classes are assignable to.
+     *
+     * @return the description of the filter, or {@code null} if the target type is not a type.
+     */
+    private static String describeAssignable(final Object targetType) {
+        return targetType instanceof Class ? "assignable:" + ((Class<?>) targetType).getName() : null;
+    }
+
+    /**
+     * Describes an annotation type filter.
+     *
+     * @param annotationType          the annotation accepted classes are annotated with.
+     * @param considerMetaAnnotations whether meta-annotations are considered.
+     * @param considerInterfaces      whether annotations on interfaces are considered.
+     *
+     * @return the description of the filter, or {@code null} if any of the values has an unexpected type.
+     */
+    private static String describeAnnotation(final Object annotationType,
+                                             final Object considerMetaAnnotations,
+                                             final Object considerInterfaces) {
+        if (!(annotationType instanceof Class) || !(considerMetaAnnotations instanceof Boolean)
+            || !(considerInterfaces instanceof Boolean)) {
+            return null;
+        }
+        return "annotation:" + ((Class<?>) annotationType).getName() + ",meta=" + considerMetaAnnotations
+               + ",interfaces=" + considerInterfaces;
+    }
+
+    /**
+     * Describes a regular expression type filter.
+     *
+     * @param pattern the pattern accepted class names match.
+     *
+     * @return the description of the filter, or {@code null} if the pattern is not a pattern.
+     */
+    private static String describeRegex(final Object pattern) {
+        return pattern instanceof Pattern ? "regex:" + describeValue(pattern) : null;
+    }
+
+    /**
+     * Describes the supplied filter by the values of its public bean properties.
+     *
+     * @param filter the filter to describe.
+     *
+     * @return the description of the filter, or {@code null} if it has no public properties or any of them cannot be
+     *         described by value.
+     */
+    private static String describeProperties(final Object filter) {
+        final PropertyDescriptor[] properties;
+        try {
+            properties = Introspector.getBeanInfo(filter.getClass(), Object.class).getPropertyDescriptors();
+        }
+        catch (final IntrospectionException e) {
+            return null;
+        }
+        final StringBuilder builder = new StringBuilder(filter.getClass().getName()).append('{');
+        boolean described = false;
+        for (PropertyDescriptor property : properties) {
+            final Method readMethod = property.getReadMethod();
+            if (readMethod == null) {
+                continue;
+            }
+            final String value = describeValue(readProperty(readMethod, filter));
+            if (value == null) {
+                return null;
+            }
+            builder.append(property.getName()).append('=').append(value).append(',');
+            described = true;
+        }
+        return described ? builder.append('}').toString() : null;
+    }
+
+    /**
+     * Describes a single value, returning {@code null} if it cannot be described by value.
+     *
+     * @param value the value to describe.
+     *
+     * @return the description of the value, or {@code null}.
+     */
+    private static String describeValue(final Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (value instanceof Class) {
+            return ((Class<?>) value).getName();
+        }
+        if (value instanceof Pattern) {
+            final Pattern pattern = (Pattern) value;
+            return pattern.pattern() + '/' + pattern.flags();
+        }
+        if (value instanceof String || value instanceof Number || value instanceof Boolean
+            || value instanceof Character || value instanceof Enum) {
+            return String.valueOf(value);
+        }
+        return null;
+    }
+
+    /**
+     * Reads the value of a property from the supplied object.
+     *
+     * @param readMethod the public method reading the property.
+     * @param target     the object to read from.
+     *
+     * @return the value of the property, or the method itself if it cannot be read (which cannot be described).
+     */
+    private static Object readProperty(final Method readMethod, final Object target) {
+        try {
+            return readMethod.invoke(target);
+        }
+        catch (final IllegalAccessException e) {
+            return readMethod;
+        }
+        catch (final InvocationTargetException e) {
+            return readMethod;
+        }
+    }
+
+    /**
+     * Reads the named field declared by the supplied Spring filter class from the supplied filter.
+     *
+     * @param declaringClass the class declaring the field.
+     * @param name           the name of the field.
+     * @param target         the filter to read from.
+     *
+     * @return the value of the field, or {@code null} if it does not exist or cannot be read.
+     */
+    private static Object readField(final Class<?> declaringClass, final String name, final Object target) {
+        try {
+            final Field field = declaringClass.getDeclaredField(name);
+            field.setAccessible(true);
+            return field.get(target);
+        }
+        catch (final NoSuchFieldException e) {
+            return null;
+        }
+        catch (final IllegalAccessException e) {
+            return null;
+        }
+        catch (final RuntimeException e) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+package au.com.permeance.liferay.spring;
+
+import org.testng.annotations.Test;
+
+import static au.com.permeance.liferay.spring.AcceptanceDecision.ACCEPTED;
+import static au.com.permeance.liferay.spring.AcceptanceDecision.EXCLUDED;
+import static au.com.permeance.liferay.spring.AcceptanceDecision.UNKNOWN_TYPE;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+public class AcceptanceCacheTest {
+
+    private final ClassLoader classLoader = getClass().getClassLoader();
+
+    @Test
+    public void testGetSharedInstance() throws Exception {
+        final AcceptanceCache cache = AcceptanceCache.getSharedInstance();
+
+        assertSame(cache, AcceptanceCache.getSharedInstance());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testConstructorWithInvalidMaximumSize() throws Exception {
+        new AcceptanceCache(0);
+    }
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        final AcceptanceCache cache = new AcceptanceCache(10);
+
+        cache.put(classLoader, "fingerprint", "java.lang.Object", ACCEPTED);
+        cache.put(classLoader, "fingerprint", "invalid.class.Name", UNKNOWN_TYPE);
+
+        assertEquals(cache.get(classLoader, "fingerprint", "java.lang.Object"), ACCEPTED);
+        assertEquals(cache.get(classLoader, "fingerprint", "invalid.class.Name"), UNKNOWN_TYPE);
+        assertNull(cache.get(classLoader, "other", "java.lang.Object"));
+        assertNull(cache.get(null, "fingerprint", "java.lang.Object"));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        final AcceptanceCache cache = new AcceptanceCache(2);
+
+        cache.put(classLoader, "fingerprint", "a", ACCEPTED);
+        cache.put(classLoader, "fingerprint", "b", ACCEPTED);
+        cache.get(classLoader, "fingerprint", "a");
+        cache.put(classLoader, "fingerprint", "c", EXCLUDED);
+
+        assertEquals(cache.size(), 2);
+        assertEquals(cache.get(classLoader, "fingerprint", "a"), ACCEPTED);
+        assertNull(cache.get(classLoader, "fingerprint", "b"));
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        final AcceptanceCache cache = new AcceptanceCache(10);
+        cache.put(classLoader, "fingerprint", "a", ACCEPTED);
+        cache.put(null, "fingerprint", "a", ACCEPTED);
+
+        cache.invalidate(classLoader);
+
+        assertNull(cache.get(classLoader, "fingerprint", "a"));
+        assertEquals(cache.get(null, "fingerprint", "a"), ACCEPTED);
+    }
+
+    @Test
+    public void testPutWithDifferentFingerprints() throws Exception {
+        final AcceptanceCache cache = new AcceptanceCache(10);
+        cache.put(classLoader, "fingerprint1", "a", ACCEPTED);
+        cache.put(classLoader, "fingerprint2", "a", EXCLUDED);
+
+        assertEquals(cache.size(), 2);
+        assertEquals(cache.get(classLoader, "fingerprint1", "a"), ACCEPTED);
+        assertEquals(cache.get(classLoader, "fingerprint2", "a"), EXCLUDED);
+    }
+
+    @Test
+    public void testInvalidateAll() throws Exception {
+        final AcceptanceCache cache = new AcceptanceCache(10);
+        cache.put(classLoader, "fingerprint", "a", ACCEPTED);
+
+        cache.invalidateAll();
+
+        assertEquals(cache.size(), 0);
+    }
+
+}
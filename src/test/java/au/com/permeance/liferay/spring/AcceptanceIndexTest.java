@@ -0,0 +1,97 @@
+package au.com.permeance.liferay.spring;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+
+public class AcceptanceIndexTest {
+
+    private File file;
+
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() throws Exception {
+        file = File.createTempFile("acceptance", ".idx");
+        file.delete();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    @Test
+    public void testKey() throws Exception {
+        final long key1 = AcceptanceIndex.key(new String[]{"a", "b"}, "fingerprint");
+        final long key2 = AcceptanceIndex.key(new String[]{"a", "b"}, "fingerprint");
+        final long key3 = AcceptanceIndex.key(new String[]{"ab"}, "fingerprint");
+        final long key4 = AcceptanceIndex.key(new String[]{"a", "b"}, "other");
+
+        assertEquals(key1, key2);
+        assertFalse(key1 == key3);
+        assertFalse(key1 == key4);
+    }
+
+    @Test
+    public void testLoadWithMissingFile() throws Exception {
+        final AcceptanceIndex index = new AcceptanceIndex(file);
+
+        final boolean[] result = index.load(1L, 2);
+
+        assertNull(result);
+    }
+
+    @Test
+    public void testStoreAndLoad() throws Exception {
+        final boolean[] accepted = new boolean[]{true, false, false, true, true, false, true, false, false, true};
+        final AcceptanceIndex index = new AcceptanceIndex(file);
+
+        index.store(42L, accepted);
+        final boolean[] result = index.load(42L, accepted.length);
+
+        assertEquals(result, accepted);
+    }
+
+    @Test
+    public void testLoadWithDifferentKey() throws Exception {
+        final AcceptanceIndex index = new AcceptanceIndex(file);
+        index.store(42L, new boolean[]{true});
+
+        final boolean[] result = index.load(43L, 1);
+
+        assertNull(result);
+    }
+
+    @Test
+    public void testLoadWithDifferentCount() throws Exception {
+        final AcceptanceIndex index = new AcceptanceIndex(file);
+        index.store(42L, new boolean[]{true});
+
+        final boolean[] result = index.load(42L, 9);
+
+        assertNull(result);
+    }
+
+    @Test
+    public void testLoadWithCorruptFile() throws Exception {
+        final FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(new byte[21]);
+        }
+        finally {
+            outputStream.close();
+        }
+        final AcceptanceIndex index = new AcceptanceIndex(file);
+
+        final boolean[] result = index.load(0L, 1);
+
+        assertNull(result);
+    }
+
+}
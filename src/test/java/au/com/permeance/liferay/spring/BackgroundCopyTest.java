@@ -0,0 +1,218 @@
+package au.com.permeance.liferay.spring;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.springframework.beans.factory.config.SingletonBeanRegistry;
+import org.springframework.beans.factory.support.DefaultSingletonBeanRegistry;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class BackgroundCopyTest {
+
+    private CountingResolver resolver;
+
+    private BackgroundCopy backgroundCopy;
+
+    private DefaultSingletonBeanRegistry registry;
+
+    private ExecutorService executor;
+
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() throws Exception {
+        resolver = new CountingResolver();
+        backgroundCopy = new BackgroundCopy(resolver);
+        registry = new DefaultSingletonBeanRegistry();
+        executor = newSingleThreadExecutor();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testCompleted() throws Exception {
+        assertNull(backgroundCopy.getFuture());
+
+        backgroundCopy.completed();
+
+        assertTrue(backgroundCopy.getFuture().isDone());
+        assertNull(backgroundCopy.resolveEarly(registry, "bean"));
+        assertEquals(resolver.resolved, 0);
+    }
+
+    @Test
+    public void testResolveWithoutBackgroundCopy() throws Exception {
+        backgroundCopy.resolve("bean", null, null);
+        backgroundCopy.resolve("bean", null, null);
+
+        assertEquals(resolver.resolved, 2);
+    }
+
+    @Test
+    public void testResolveEarlyThenCopy() throws Exception {
+        final Future<?> future = startBlocked();
+
+        final Object early = backgroundCopy.resolveEarly(registry, "bean");
+        final Resolution resolution = backgroundCopy.resolve("bean", null, null);
+        final Object registered = backgroundCopy.register(registry, resolution);
+
+        assertSame(registered, early);
+        assertSame(registry.getSingleton("bean"), early);
+        assertEquals(resolver.resolved, 1);
+        assertEquals(resolver.decorated, 1);
+        assertTrue(backgroundCopy.finish(registry).isEmpty());
+        future.cancel(true);
+    }
+
+    @Test
+    public void testCopyThenResolveEarly() throws Exception {
+        final Future<?> future = startBlocked();
+
+        final Resolution resolution = backgroundCopy.resolve("bean", null, null);
+        final Object registered = backgroundCopy.register(registry, resolution);
+
+        assertSame(backgroundCopy.resolveEarly(registry, "bean"), registered);
+        assertEquals(resolver.resolved, 1);
+        assertEquals(resolver.decorated, 1);
+        future.cancel(true);
+    }
+
+    @Test
+    public void testFinishRegistersRemainingEarlyResolutions() throws Exception {
+        final Future<?> future = startBlocked();
+        final Object early = backgroundCopy.resolveEarly(registry, "bean");
+
+        final List<Resolution> remaining = backgroundCopy.finish(registry);
+
+        assertEquals(remaining.size(), 1);
+        assertSame(remaining.get(0).bean, early);
+        assertSame(registry.getSingleton("bean"), early);
+        assertSame(backgroundCopy.resolveEarly(registry, "bean"), early);
+        assertNull(backgroundCopy.resolveEarly(registry, "other"));
+        backgroundCopy.resolve("bean", null, null);
+        assertEquals(resolver.resolved, 2);
+        future.cancel(true);
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        final Future<?> future = startBlocked();
+        backgroundCopy.resolveEarly(registry, "bean");
+
+        backgroundCopy.clear();
+
+        assertTrue(backgroundCopy.finish(registry).isEmpty());
+        assertNull(registry.getSingleton("bean"));
+        future.cancel(true);
+    }
+
+    @Test
+    public void testCancelIfPending() throws Exception {
+        final Object lock = new Object();
+        synchronized (lock) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (lock) {
+                        // occupies the executor until the test releases the lock
+                    }
+                }
+            });
+            backgroundCopy.start(executor, new Runnable() {
+                @Override
+                public void run() {
+                    resolver.resolve("bean", null, null);
+                }
+            });
+
+            backgroundCopy.cancelIfPending();
+        }
+
+        assertTrue(backgroundCopy.getFuture().isCancelled());
+        executor.shutdown();
+        executor.awaitTermination(1, SECONDS);
+        assertEquals(resolver.resolved, 0);
+    }
+
+    @Test
+    public void testCancelIfPendingLeavesRunningCopy() throws Exception {
+        final Future<?> future = startBlocked();
+
+        backgroundCopy.cancelIfPending();
+
+        assertFalse(future.isCancelled());
+        backgroundCopy.cancel();
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        backgroundCopy.completed();
+
+        backgroundCopy.reset();
+
+        assertNull(backgroundCopy.getFuture());
+    }
+
+    private Future<?> startBlocked() throws Exception {
+        final Object started = new Object();
+        synchronized (started) {
+            backgroundCopy.start(executor, new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (started) {
+                        started.notifyAll();
+                    }
+                    try {
+                        Thread.sleep(Long.MAX_VALUE);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            started.wait(1000L);
+        }
+        return backgroundCopy.getFuture();
+    }
+
+    private static final class CountingResolver implements BackgroundCopy.Resolver {
+
+        private int resolved;
+
+        private int decorated;
+
+        @Override
+        public Resolution resolve(final String name, final Boolean indexed, final Long deadline) {
+            resolved++;
+            final Resolution resolution = new Resolution(name);
+            resolution.decision = AcceptanceDecision.ACCEPTED;
+            resolution.bean = new Object();
+            return resolution;
+        }
+
+        @Override
+        public Object decorate(final String name, final Object bean) {
+            decorated++;
+            return new Object[] {bean};
+        }
+
+        @Override
+        public void register(final SingletonBeanRegistry registry, final String name, final Object bean) {
+            registry.registerSingleton(name, bean);
+        }
+
+    }
+
+}
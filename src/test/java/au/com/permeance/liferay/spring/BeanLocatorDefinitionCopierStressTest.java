@@ -0,0 +1,195 @@
+package au.com.permeance.liferay.spring;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Stress tests driving many concurrent context refreshes against a {@link FakeBeanLocator}. The default build runs them
+ * at the bounded sizes below, with lenient wall-clock throughput and heap growth limits; {@code mvn -Pstress test} runs
+ * them alone, and larger runs can be made by setting the {@code stress.*} system properties, e.g.
+ * {@code -Dstress.names=20000 -Dstress.contexts=256}.
+ */
+@Test(groups = "stress")
+public class BeanLocatorDefinitionCopierStressTest {
+
+    private static final int NAMES = Integer.getInteger("stress.names", 2000);
+
+    private static final int CONTEXTS = Integer.getInteger("stress.contexts", 32);
+
+    private static final int THREADS = Integer.getInteger("stress.threads", 8);
+
+    private static final long LOCATE_LATENCY_MICROS = Long.getLong("stress.locateLatencyMicros", 20L);
+
+    private static final long CLASS_LOADING_MICROS = Long.getLong("stress.classLoadingMicros", 5L);
+
+    private static final double EXCEPTION_RATE = Double.parseDouble(System.getProperty("stress.exceptionRate", "0.005"));
+
+    private static final long MAX_P99_MILLIS = Long.getLong("stress.maxP99Millis", 10000L);
+
+    private static final double MIN_REFRESHES_PER_SECOND =
+        Double.parseDouble(System.getProperty("stress.minRefreshesPerSecond", "1"));
+
+    private static final long MAX_HEAP_GROWTH_BYTES = Long.getLong("stress.maxHeapGrowthBytes", 16L * 1024 * 1024);
+
+    private FakeBeanLocator beanLocator;
+
+    private ExecutorService refreshExecutor;
+
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() throws Exception {
+        beanLocator = new FakeBeanLocator(NAMES, MICROSECONDS.toNanos(LOCATE_LATENCY_MICROS), EXCEPTION_RATE,
+                                          MICROSECONDS.toNanos(CLASS_LOADING_MICROS));
+        refreshExecutor = newFixedThreadPool(THREADS);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() throws Exception {
+        refreshExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentRefreshes() throws Exception {
+        final List<Callable<Long>> refreshes = new ArrayList<Callable<Long>>(CONTEXTS);
+        for (int i = 0; i < CONTEXTS; i++) {
+            refreshes.add(new Callable<Long>() {
+                @Override
+                public Long call() {
+                    final GenericApplicationContext context = newContext(beanLocator);
+                    try {
+                        final long start = nanoTime();
+                        context.refresh();
+                        final long nanos = nanoTime() - start;
+
+                        final RunnableCopier copier = context.getBean(RunnableCopier.class);
+                        assertEquals(copier.getTypeIndex().size(), beanLocator.getLocatableCount(Runnable.class));
+                        assertEquals(copier.getStatistics().getLocateFailures(),
+                                     beanLocator.getCount(Runnable.class)
+                                     - beanLocator.getLocatableCount(Runnable.class));
+                        return nanos;
+                    }
+                    finally {
+                        context.close();
+                    }
+                }
+            });
+        }
+
+        final long start = nanoTime();
+        final long[] latencies = new long[CONTEXTS];
+        int i = 0;
+        for (Future<Long> future : refreshExecutor.invokeAll(refreshes)) {
+            latencies[i++] = future.get();
+        }
+        final long elapsed = nanoTime() - start;
+        Arrays.sort(latencies);
+
+        final double refreshesPerSecond = CONTEXTS / (elapsed / (double) SECONDS.toNanos(1));
+        final long p50 = NANOSECONDS.toMillis(percentile(latencies, 50));
+        final long p99 = NANOSECONDS.toMillis(percentile(latencies, 99));
+        assertTrue(refreshesPerSecond >= MIN_REFRESHES_PER_SECOND,
+                   String.format("Throughput %.1f refreshes/s below %.1f", refreshesPerSecond,
+                                 MIN_REFRESHES_PER_SECOND));
+        assertTrue(p50 <= p99);
+        assertTrue(p99 <= MAX_P99_MILLIS, String.format("p99 latency %dms exceeds %dms", p99, MAX_P99_MILLIS));
+        assertEquals(beanLocator.getLocateCount(), (long) CONTEXTS * beanLocator.getCount(Runnable.class));
+    }
+
+    @Test
+    public void testParallelResolutionOverlapsLocateLatency() throws Exception {
+        final FakeBeanLocator slowBeanLocator = new FakeBeanLocator(400, MILLISECONDS.toNanos(1), 0, 0);
+        final long sequentialMillis = 400;
+
+        final GenericApplicationContext context = newContext(slowBeanLocator);
+        context.getBeanDefinition("copier").getPropertyValues().add("executorService", refreshExecutor);
+        try {
+            final long start = nanoTime();
+            context.refresh();
+            final long millis = NANOSECONDS.toMillis(nanoTime() - start);
+
+            assertEquals(context.getBean(RunnableCopier.class).getTypeIndex().size(),
+                         slowBeanLocator.getCount(Runnable.class));
+            assertTrue(millis < sequentialMillis / 2,
+                       String.format("Parallel copy took %dms, sequential locates take %dms", millis, sequentialMillis));
+        }
+        finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testRepeatedRefreshesDoNotGrowHeap() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            refreshAndClose();
+        }
+        final long before = usedHeapAfterGc();
+        for (int i = 0; i < CONTEXTS * 2; i++) {
+            refreshAndClose();
+        }
+        final long growth = usedHeapAfterGc() - before;
+
+        assertTrue(growth <= MAX_HEAP_GROWTH_BYTES,
+                   String.format("Heap grew by %d bytes over %d refreshes", growth, CONTEXTS * 2));
+    }
+
+    private void refreshAndClose() {
+        final GenericApplicationContext context = newContext(beanLocator);
+        context.refresh();
+        context.close();
+    }
+
+    private static GenericApplicationContext newContext(final FakeBeanLocator beanLocator) {
+        final GenericApplicationContext context = new GenericApplicationContext();
+        context.registerBeanDefinition("copier", BeanDefinitionBuilder.genericBeanDefinition(RunnableCopier.class)
+            .addConstructorArgValue(beanLocator)
+            .addPropertyValue("metadataReaderFactory", beanLocator.getMetadataReaderFactory())
+            .addPropertyValue("quiet", true)
+            .getBeanDefinition());
+        return context;
+    }
+
+    private static long percentile(final long[] sorted, final int percentile) {
+        final int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    public static class RunnableCopier extends BeanLocatorDefinitionCopier {
+
+        public RunnableCopier(final FakeBeanLocator beanLocator) {
+            super(beanLocator);
+            addIncludeFilter(new AssignableTypeFilter(Runnable.class));
+        }
+
+    }
+
+}
@@ -2,33 +2,71 @@ package au.com.permeance.liferay.spring;
 
 import com.liferay.portal.kernel.bean.BeanLocator;
 import com.liferay.portal.kernel.bean.BeanLocatorException;
+import com.liferay.portal.kernel.bean.ClassLoaderBeanHandler;
 
+import java.io.File;
 import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
 import org.springframework.core.type.classreading.MetadataReader;
 import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.core.type.filter.AssignableTypeFilter;
 import org.springframework.core.type.filter.TypeFilter;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileCopyUtils;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import static java.util.Arrays.asList;
 import static java.util.Collections.singleton;
+import static java.util.Collections.singletonMap;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 public class BeanLocatorDefinitionCopierTest {
 
+    private static boolean uninitialisedInitialised;
+
     @Mock
     private BeanLocator beanLocator;
 
@@ -98,6 +136,1075 @@ public class BeanLocatorDefinitionCopierTest {
         verify(configurableListableBeanFactory).registerSingleton("java.lang.Object", bean);
     }
 
+    @Test
+    public void testInitApplicationContextWithEventListener() throws Exception {
+        final Object bean = "bean";
+        final TypeFilter includeFilter = new AssignableTypeFilter(CharSequence.class);
+        final CopierEventListener listener = mock(CopierEventListener.class);
+        when(configurableApplicationContext.getBeanFactory()).thenReturn(configurableListableBeanFactory);
+        when(beanLocator.getNames()).thenReturn(new String[]{"invalid.class.Name",
+                                                             "java.lang.String",
+                                                             "java.lang.Object"});
+        when(beanLocator.locate("java.lang.String")).thenReturn(bean);
+
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.addIncludeFilter(includeFilter);
+        copier.setEventListener(listener);
+        copier.setEventThresholdNanos(0);
+        copier.initApplicationContext(configurableApplicationContext);
+
+        final ArgumentCaptor<CopierPhaseEvent> events = ArgumentCaptor.forClass(CopierPhaseEvent.class);
+        verify(listener).copyCompleted(eq(configurableApplicationContext), eq(3), eq(1), anyLong());
+        verify(listener, times(7)).phaseCompleted(events.capture());
+        final CopierPhaseEvent unknown = events.getAllValues().get(0);
+        assertEquals(unknown.getName(), "invalid.class.Name");
+        assertEquals(unknown.getPhase(), CopierPhase.TYPE_RESOLUTION);
+        assertEquals(unknown.getDecision(), AcceptanceDecision.UNKNOWN_TYPE);
+        assertFalse(unknown.isSuccessful());
+        final CopierPhaseEvent included = events.getAllValues().get(3);
+        assertEquals(included.getName(), "java.lang.String");
+        assertEquals(included.getPhase(), CopierPhase.FILTER_MATCHING);
+        assertSame(included.getDecidingFilter(), includeFilter);
+        final CopierPhaseEvent located = events.getAllValues().get(4);
+        assertEquals(located.getPhase(), CopierPhase.LOCATE);
+        assertEquals(located.getDecision(), AcceptanceDecision.ACCEPTED);
+        assertTrue(located.isSuccessful());
+        final CopierPhaseEvent notIncluded = events.getAllValues().get(6);
+        assertEquals(notIncluded.getName(), "java.lang.Object");
+        assertEquals(notIncluded.getDecision(), AcceptanceDecision.NOT_INCLUDED);
+        assertNull(notIncluded.getDecidingFilter());
+    }
+
+    @Test
+    public void testInitApplicationContextWithEventThreshold() throws Exception {
+        final CopierEventListener listener = mock(CopierEventListener.class);
+        when(configurableApplicationContext.getBeanFactory()).thenReturn(configurableListableBeanFactory);
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object"});
+        when(beanLocator.locate("java.lang.Object")).thenReturn(new Object());
+
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.setEventListener(listener);
+        copier.setEventThresholdNanos(Long.MAX_VALUE);
+        copier.initApplicationContext(configurableApplicationContext);
+
+        verify(listener).copyCompleted(eq(configurableApplicationContext), eq(1), eq(1), anyLong());
+        verify(listener, never()).phaseCompleted(any(CopierPhaseEvent.class));
+    }
+
+    @Test
+    public void testInitApplicationContextWithBeanDecorator() throws Exception {
+        final Object bean = new Object();
+        final Object decorated = new Object();
+        final BeanDecorator beanDecorator = mock(BeanDecorator.class);
+        when(beanDecorator.decorate("java.lang.Object", bean)).thenReturn(decorated);
+        when(configurableApplicationContext.getBeanFactory()).thenReturn(configurableListableBeanFactory);
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object"});
+        when(beanLocator.locate("java.lang.Object")).thenReturn(bean);
+
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.addBeanDecorator(beanDecorator);
+        copier.initApplicationContext(configurableApplicationContext);
+
+        verify(configurableListableBeanFactory).registerSingleton("java.lang.Object", decorated);
+    }
+
+    @Test
+    public void testInitApplicationContextTimesDecorationSeparately() throws Exception {
+        final Object bean = new Object();
+        final BeanDecorator beanDecorator = new BeanDecorator() {
+            @Override
+            public Object decorate(final String name, final Object bean) {
+                try {
+                    Thread.sleep(50);
+                }
+                catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return bean;
+            }
+
+            @Override
+            public void release(final String name) {
+            }
+        };
+        when(configurableApplicationContext.getBeanFactory()).thenReturn(configurableListableBeanFactory);
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object"});
+        when(beanLocator.locate("java.lang.Object")).thenReturn(bean);
+
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.addBeanDecorator(beanDecorator);
+        copier.initApplicationContext(configurableApplicationContext);
+
+        assertTrue(copier.getStatistics().getDecorationNanos() >= MILLISECONDS.toNanos(50));
+        assertTrue(copier.getStatistics().getRegistrationNanos() < MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    public void testInitApplicationContextWithDirectDispatch() throws Exception {
+        final Object bean = Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Runnable.class},
+                                                   new ClassLoaderBeanHandler(mock(Runnable.class), null));
+        when(configurableApplicationContext.getBeanFactory()).thenReturn(configurableListableBeanFactory);
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Runnable"});
+        when(beanLocator.locate("java.lang.Runnable")).thenReturn(bean);
+
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.setDirectDispatch(true);
+        copier.initApplicationContext(configurableApplicationContext);
+
+        final ArgumentCaptor<Object> registered = ArgumentCaptor.forClass(Object.class);
+        verify(configurableListableBeanFactory).registerSingleton(eq("java.lang.Runnable"), registered.capture());
+        assertTrue(registered.getValue() instanceof Runnable);
+        assertFalse(Proxy.getInvocationHandler(registered.getValue()) instanceof ClassLoaderBeanHandler);
+    }
+
+    @Test
+    public void testInitApplicationContextWithQuiet() throws Exception {
+        final Object bean = new Object();
+        when(configurableApplicationContext.getBeanFactory()).thenReturn(configurableListableBeanFactory);
+        when(beanLocator.getNames()).thenReturn(new String[]{"invalid.class.Name",
+                                                             "java.lang.String",
+                                                             "java.lang.Object"});
+        when(beanLocator.locate("java.lang.Object")).thenReturn(bean);
+
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.setQuiet(true);
+        copier.setSkippedNameLimit(1);
+        copier.initApplicationContext(configurableApplicationContext);
+
+        verify(configurableListableBeanFactory).registerSingleton("java.lang.Object", bean);
+        verify(configurableListableBeanFactory, times(1)).registerSingleton(anyString(), any());
+    }
+
+    @Test
+    public void testResync() throws Exception {
+        final Object bean1 = new Object();
+        final Object bean2 = new Object();
+        final Object bean3 = new Object();
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object", "java.lang.Runnable"},
+                                                new String[]{"java.lang.Runnable", "java.lang.Thread"});
+        when(beanLocator.locate("java.lang.Object")).thenReturn(bean1);
+        when(beanLocator.locate("java.lang.Runnable")).thenReturn(bean2);
+        when(beanLocator.locate("java.lang.Thread")).thenReturn(bean3);
+        final GenericApplicationContext context = new GenericApplicationContext();
+
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.initApplicationContext(context);
+        copier.resync();
+
+        assertFalse(context.getBeanFactory().containsSingleton("java.lang.Object"));
+        assertSame(context.getBeanFactory().getSingleton("java.lang.Runnable"), bean2);
+        assertSame(context.getBeanFactory().getSingleton("java.lang.Thread"), bean3);
+        verify(beanLocator, times(1)).locate("java.lang.Runnable");
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testResyncBeforeInitApplicationContext() throws Exception {
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+
+        copier.resync();
+    }
+
+    @Test
+    public void testInitApplicationContextOnDemand() throws Exception {
+        final Thread bean = new Thread();
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Thread", "java.lang.Object"},
+                                                new String[]{"java.lang.Thread", "java.lang.Runnable"});
+        when(beanLocator.locate("java.lang.Thread")).thenReturn(bean);
+        final GenericApplicationContext context = new GenericApplicationContext();
+
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.setOnDemand(true);
+        copier.addIncludeFilter(new AssignableTypeFilter(Runnable.class));
+        copier.initApplicationContext(context);
+
+        verify(beanLocator, never()).locate(anyString());
+        assertTrue(copier.getCopyFuture().isDone());
+
+        assertSame(copier.resolveBean("java.lang.Thread"), bean);
+        assertSame(copier.resolveBean("java.lang.Thread"), bean);
+        assertNull(copier.resolveBean("java.lang.Object"));
+        assertNull(copier.resolveBean("java.lang.Runnable"));
+        copier.resync();
+
+        assertSame(context.getBeanFactory().getSingleton("java.lang.Thread"), bean);
+        assertFalse(context.getBeanFactory().containsSingleton("java.lang.Runnable"));
+        assertEquals(copier.getBeansOfType(Runnable.class), singletonMap("java.lang.Thread", bean));
+        verify(beanLocator, times(1)).locate("java.lang.Thread");
+        verify(beanLocator, never()).locate("java.lang.Object");
+    }
+
+    @Test
+    public void testGetBeanOnDemand() throws Exception {
+        final Object bean = new Object();
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object"});
+        when(beanLocator.locate("java.lang.Object")).thenReturn(bean);
+        final GenericApplicationContext context = new GenericApplicationContext();
+
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.setOnDemand(true);
+        copier.initApplicationContext(context);
+
+        assertSame(copier.getBean("java.lang.Object"), bean);
+        assertSame(context.getBeanFactory().getSingleton("java.lang.Object"), bean);
+    }
+
+    @Test
+    public void testInitApplicationContextWithLocateTimeout() throws Exception {
+        final Object bean = new Object();
+        final CountDownLatch released = new CountDownLatch(1);
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object", "java.lang.Thread"});
+        when(beanLocator.locate("java.lang.Object")).thenAnswer(new Answer<Object>() {
+            private int calls;
+
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                if (calls++ == 0) {
+                    released.await();
+                }
+                return bean;
+            }
+        });
+        when(beanLocator.locate("java.lang.Thread")).thenReturn(bean);
+        final GenericApplicationContext context = new GenericApplicationContext();
+        final ExecutorService locateExecutor = newCachedThreadPool();
+
+        try {
+            final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+            copier.setLocateExecutorService(locateExecutor);
+            copier.setLocateTimeoutMillis(50);
+            copier.initApplicationContext(context);
+
+            assertFalse(context.getBeanFactory().containsSingleton("java.lang.Object"));
+            assertTrue(context.getBeanFactory().containsSingleton("java.lang.Thread"));
+            assertEquals(copier.getDeferredNames(), asList("java.lang.Object"));
+            assertEquals(copier.getStatistics().getDeferrals(), 1L);
+            assertEquals(copier.getStatistics().getLocateFailures(), 0L);
+
+            assertEquals(copier.retryDeferred(), 1);
+            assertSame(context.getBeanFactory().getSingleton("java.lang.Object"), bean);
+            assertTrue(copier.getDeferredNames().isEmpty());
+            assertEquals(copier.getStatistics().getNamesScanned(), 2L);
+            assertEquals(copier.getStatistics().getDecisions(AcceptanceDecision.ACCEPTED), 2L);
+            assertEquals(copier.getStatistics().getRegistered(), 2L);
+            assertEquals(copier.getStatistics().getDeferrals(), 1L);
+        }
+        finally {
+            released.countDown();
+            locateExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testInitApplicationContextWithLocateTimeoutAndFailingLocator() throws Exception {
+        final Object bean = new Object();
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object", "java.lang.Thread"});
+        when(beanLocator.locate("java.lang.Object")).thenThrow(new IllegalStateException());
+        when(beanLocator.locate("java.lang.Thread")).thenReturn(bean);
+        final GenericApplicationContext context = new GenericApplicationContext();
+        final ExecutorService locateExecutor = newCachedThreadPool();
+        final LocateCircuitBreaker breaker = new LocateCircuitBreaker(2);
+
+        try {
+            final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+            copier.setLocateExecutorService(locateExecutor);
+            copier.setLocateTimeoutMillis(1000);
+            copier.setCircuitBreaker(breaker);
+            copier.initApplicationContext(context);
+
+            assertTrue(context.getBeanFactory().containsSingleton("java.lang.Thread"));
+            assertEquals(copier.getDeferredNames(), asList("java.lang.Object"));
+            assertEquals(copier.getStatistics().getDeferrals(), 1L);
+
+            assertEquals(copier.retryDeferred(), 0);
+            assertTrue(copier.getDeferredNames().isEmpty());
+            assertEquals(copier.getStatistics().getLocateFailures(), 1L);
+            assertEquals(breaker.getOpenNames(), asList("java.lang.Object"));
+        }
+        finally {
+            locateExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testInitApplicationContextWithCopyDeadline() throws Exception {
+        final CountDownLatch released = new CountDownLatch(1);
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object", "java.lang.Thread"});
+        when(beanLocator.locate("java.lang.Object")).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                released.await();
+                return new Object();
+            }
+        });
+        final GenericApplicationContext context = new GenericApplicationContext();
+        final ExecutorService locateExecutor = newCachedThreadPool();
+
+        try {
+            final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+            copier.setLocateExecutorService(locateExecutor);
+            copier.setCopyDeadlineMillis(10);
+            copier.initApplicationContext(context);
+
+            // the first bean is never located, so the deadline has always passed before the second is reached
+            assertFalse(context.getBeanFactory().containsSingleton("java.lang.Object"));
+            assertFalse(context.getBeanFactory().containsSingleton("java.lang.Thread"));
+            assertEquals(copier.getDeferredNames(), asList("java.lang.Object", "java.lang.Thread"));
+            assertEquals(copier.getStatistics().getDeferrals(), 2L);
+            verify(beanLocator, never()).locate("java.lang.Thread");
+        }
+        finally {
+            released.countDown();
+            locateExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRetryExecutorRetriesDeferredBeans() throws Exception {
+        final Object bean = new Object();
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object"});
+        when(beanLocator.locate("java.lang.Object")).thenAnswer(new Answer<Object>() {
+            private int calls;
+
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                if (calls++ == 0) {
+                    Thread.sleep(1000);
+                }
+                return bean;
+            }
+        });
+        final GenericApplicationContext context = new GenericApplicationContext();
+        final ExecutorService locateExecutor = newCachedThreadPool();
+        final ScheduledExecutorService retryExecutor = newSingleThreadScheduledExecutor();
+
+        try {
+            final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+            copier.setLocateExecutorService(locateExecutor);
+            copier.setLocateTimeoutMillis(20);
+            copier.setRetryExecutorService(retryExecutor);
+            copier.setRetryDelayMillis(10);
+            copier.initApplicationContext(context);
+
+            for (int i = 0; i < 500 && !copier.getDeferredNames().isEmpty(); i++) {
+                Thread.sleep(10);
+            }
+
+            assertTrue(copier.getDeferredNames().isEmpty());
+            assertSame(context.getBeanFactory().getSingleton("java.lang.Object"), bean);
+        }
+        finally {
+            locateExecutor.shutdownNow();
+            retryExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testResolveBeanWithCircuitBreaker() throws Exception {
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object"});
+        when(beanLocator.locate("java.lang.Object")).thenThrow(new BeanLocatorException());
+        final GenericApplicationContext context = new GenericApplicationContext();
+
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.setOnDemand(true);
+        copier.setCircuitBreaker(new LocateCircuitBreaker(2));
+        copier.initApplicationContext(context);
+        for (int i = 0; i < 4; i++) {
+            assertNull(copier.resolveBean("java.lang.Object"));
+        }
+
+        verify(beanLocator, times(2)).locate("java.lang.Object");
+        assertEquals(copier.getStatistics().getLocateFailures(), 4L);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testResolveBeanBeforeInitApplicationContext() throws Exception {
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+
+        copier.resolveBean("java.lang.Object");
+    }
+
+    @Test
+    public void testGetBeansOfType() throws Exception {
+        final Thread bean1 = new Thread();
+        final Object bean2 = new Object();
+        final Thread bean3 = new Thread();
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Thread", "java.lang.Object"},
+                                                new String[]{"java.lang.Object", "java.lang.Runnable"});
+        when(beanLocator.locate("java.lang.Thread")).thenReturn(bean1);
+        when(beanLocator.locate("java.lang.Object")).thenReturn(bean2);
+        when(beanLocator.locate("java.lang.Runnable")).thenReturn(bean3);
+        final GenericApplicationContext context = new GenericApplicationContext();
+
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.initApplicationContext(context);
+
+        assertEquals(copier.getTypeIndex().getBeanNamesForType(Runnable.class), new String[]{"java.lang.Thread"});
+        assertEquals(copier.getBeansOfType(Runnable.class), singletonMap("java.lang.Thread", bean1));
+
+        copier.resync();
+
+        assertEquals(copier.getBeansOfType(Runnable.class), singletonMap("java.lang.Runnable", bean3));
+        assertEquals(copier.getTypeIndex().size(), 2);
+    }
+
+    @Test
+    public void testGetBeansOfTypeBeforeInitApplicationContext() throws Exception {
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+
+        assertTrue(copier.getBeansOfType(Object.class).isEmpty());
+    }
+
+    @Test
+    public void testSetCopyManifest() throws Exception {
+        final Object bean = new Object();
+        when(configurableApplicationContext.getBeanFactory()).thenReturn(configurableListableBeanFactory);
+        when(beanLocator.getNames()).thenReturn(new String[]{"invalid.class.Name", "java.lang.Object"});
+        when(beanLocator.locate("invalid.class.Name")).thenReturn(bean);
+        final String fingerprint =
+            TypeFilterFingerprint.fingerprint(singleton(CopyManifestGenerator.filter("assignable:java.lang.Thread")),
+                                              Collections.<TypeFilter>emptyList());
+        final String manifest = "fingerprint=" + fingerprint + "\ninvalid.class.Name\n";
+
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.addIncludeFilter(CopyManifestGenerator.filter("assignable:java.lang.Thread"));
+        copier.setCopyManifest(new ByteArrayResource(manifest.getBytes("UTF-8")));
+        copier.initApplicationContext(configurableApplicationContext);
+
+        verify(configurableListableBeanFactory, times(1)).registerSingleton("invalid.class.Name", bean);
+        verify(beanLocator, never()).locate("java.lang.Object");
+        assertEquals(copier.getStatistics().getUnknownTypes(), 0L);
+        assertEquals(copier.getStatistics().getNotIncluded(), 0L);
+        assertEquals(copier.getStatistics().getIndexedRejected(), 1L);
+    }
+
+    @Test
+    public void testSetCopyManifestWithDifferentFilters() throws Exception {
+        final Object bean = new Object();
+        when(configurableApplicationContext.getBeanFactory()).thenReturn(configurableListableBeanFactory);
+        when(beanLocator.getNames()).thenReturn(new String[]{"invalid.class.Name", "java.lang.Object"});
+        when(beanLocator.locate("java.lang.Object")).thenReturn(bean);
+        final String manifest = "fingerprint=other\ninvalid.class.Name\n";
+
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.setCopyManifest(new ByteArrayResource(manifest.getBytes("UTF-8")));
+        copier.initApplicationContext(configurableApplicationContext);
+
+        verify(configurableListableBeanFactory, times(1)).registerSingleton("java.lang.Object", bean);
+        verify(beanLocator, never()).locate("invalid.class.Name");
+    }
+
+    @Test
+    public void testSetAsyncExecutorService() throws Exception {
+        final Object bean1 = new Object();
+        final Thread bean2 = new Thread();
+        final CountDownLatch locating = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object", "java.lang.Thread"});
+        when(beanLocator.locate("java.lang.Object")).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                locating.countDown();
+                release.await();
+                return bean1;
+            }
+        });
+        when(beanLocator.locate("java.lang.Thread")).thenReturn(bean2);
+        final GenericApplicationContext context = new GenericApplicationContext();
+        final ExecutorService executorService = newSingleThreadExecutor();
+
+        try {
+            final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+            copier.setAsyncExecutorService(executorService);
+            copier.initApplicationContext(context);
+            locating.await();
+
+            assertFalse(copier.getCopyFuture().isDone());
+            assertSame(copier.getBean("java.lang.Thread"), bean2);
+            assertFalse(context.getBeanFactory().containsSingleton("java.lang.Thread"));
+
+            release.countDown();
+            copier.getCopyFuture().get();
+
+            assertSame(context.getBeanFactory().getSingleton("java.lang.Object"), bean1);
+            assertSame(copier.getBean("java.lang.Thread"), bean2);
+            assertNull(copier.getBean("invalid.class.Name"));
+        }
+        finally {
+            release.countDown();
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testGetBeanDuringCopyReturnsRegisteredBean() throws Exception {
+        final CountDownLatch locating = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object", "java.lang.Thread"});
+        when(beanLocator.locate("java.lang.Object")).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                locating.countDown();
+                release.await();
+                return new Object();
+            }
+        });
+        when(beanLocator.locate("java.lang.Thread")).thenReturn(new Thread());
+        final GenericApplicationContext context = new GenericApplicationContext();
+        final ExecutorService executorService = newSingleThreadExecutor();
+
+        try {
+            final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+            copier.addBeanDecorator(new BeanDecorator() {
+                @Override
+                public Object decorate(final String name, final Object bean) {
+                    return new AtomicReference<Object>(bean);
+                }
+
+                @Override
+                public void release(final String name) {
+                }
+            });
+            copier.setAsyncExecutorService(executorService);
+            copier.initApplicationContext(context);
+            locating.await();
+
+            final Object bean = copier.getBean("java.lang.Thread");
+            release.countDown();
+            copier.getCopyFuture().get();
+
+            assertSame(context.getBeanFactory().getSingleton("java.lang.Thread"), bean);
+            assertSame(copier.getBean("java.lang.Thread"), bean);
+            verify(beanLocator, times(1)).locate("java.lang.Thread");
+            assertEquals(copier.getStatistics().getNamesScanned(), 2L);
+            assertEquals(copier.getStatistics().getRegistered(), 2L);
+        }
+        finally {
+            release.countDown();
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testGetBeanDuringCopyDoesNotResolveAgain() throws Exception {
+        final CountDownLatch locating = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread bean = new Thread();
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Thread", "java.lang.Object"});
+        when(beanLocator.locate("java.lang.Thread")).thenReturn(bean);
+        when(beanLocator.locate("java.lang.Object")).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                locating.countDown();
+                release.await();
+                return new Object();
+            }
+        });
+        final GenericApplicationContext context = new GenericApplicationContext();
+        final ExecutorService executorService = newSingleThreadExecutor();
+
+        try {
+            final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+            copier.setAsyncExecutorService(executorService);
+            copier.initApplicationContext(context);
+            locating.await();
+
+            assertSame(copier.getBean("java.lang.Thread"), bean);
+            release.countDown();
+            copier.getCopyFuture().get();
+
+            assertSame(context.getBeanFactory().getSingleton("java.lang.Thread"), bean);
+            verify(beanLocator, times(1)).locate("java.lang.Thread");
+            assertEquals(copier.getStatistics().getNamesScanned(), 2L);
+            assertEquals(copier.getStatistics().getDecisions(AcceptanceDecision.ACCEPTED), 2L);
+            assertEquals(copier.getStatistics().getRegistered(), 2L);
+        }
+        finally {
+            release.countDown();
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testGetBeanDuringCopyRegistersNameNoLongerProvided() throws Exception {
+        final CountDownLatch locating = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread bean = new Thread();
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object"});
+        when(beanLocator.locate("java.lang.Thread")).thenReturn(bean);
+        when(beanLocator.locate("java.lang.Object")).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                locating.countDown();
+                release.await();
+                return new Object();
+            }
+        });
+        final GenericApplicationContext context = new GenericApplicationContext();
+        final ExecutorService executorService = newSingleThreadExecutor();
+
+        try {
+            final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+            copier.setAsyncExecutorService(executorService);
+            copier.initApplicationContext(context);
+            locating.await();
+
+            assertSame(copier.getBean("java.lang.Thread"), bean);
+            release.countDown();
+            copier.getCopyFuture().get();
+
+            assertSame(context.getBeanFactory().getSingleton("java.lang.Thread"), bean);
+            assertEquals(copier.getStatistics().getNamesScanned(), 2L);
+            assertEquals(copier.getStatistics().getRegistered(), 2L);
+
+            copier.release();
+
+            assertFalse(context.getBeanFactory().containsSingleton("java.lang.Thread"));
+            assertFalse(context.getBeanFactory().containsSingleton("java.lang.Object"));
+        }
+        finally {
+            release.countDown();
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testGetBeanWaitsForCopy() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final Object bean = new Object();
+        when(beanLocator.getNames()).thenReturn(new String[]{"invalid.class.Name"});
+        when(beanLocator.locate("invalid.class.Name")).thenReturn(bean);
+        final GenericApplicationContext context = new GenericApplicationContext();
+        final ExecutorService executorService = newSingleThreadExecutor();
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                }
+                catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        try {
+            final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+            copier.setAsyncExecutorService(executorService);
+            copier.initApplicationContext(context);
+            release.countDown();
+
+            assertNull(copier.getBean("invalid.class.Name"));
+            assertTrue(copier.getCopyFuture().isDone());
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testGetCopyFutureWithoutAsyncExecutorService() throws Exception {
+        when(configurableApplicationContext.getBeanFactory()).thenReturn(configurableListableBeanFactory);
+        when(beanLocator.getNames()).thenReturn(new String[0]);
+
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.initApplicationContext(configurableApplicationContext);
+
+        assertTrue(copier.getCopyFuture().isDone());
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testGetCopyFutureBeforeInitApplicationContext() throws Exception {
+        new BeanLocatorDefinitionCopier(beanLocator).getCopyFuture();
+    }
+
+    @Test
+    public void testLifecycle() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object"});
+        when(beanLocator.locate("java.lang.Object")).thenReturn(new Object());
+        final GenericApplicationContext context = new GenericApplicationContext();
+        final ExecutorService executorService = newSingleThreadExecutor();
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                }
+                catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        try {
+            final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+            copier.setAsyncExecutorService(executorService);
+            copier.setPhase(5);
+            copier.initApplicationContext(context);
+
+            assertTrue(copier.isAutoStartup());
+            assertEquals(copier.getPhase(), 5);
+            assertFalse(copier.isRunning());
+
+            copier.start();
+            assertTrue(copier.isRunning());
+
+            final Runnable callback = mock(Runnable.class);
+            copier.stop(callback);
+            release.countDown();
+
+            assertFalse(copier.isRunning());
+            assertTrue(copier.getCopyFuture().isCancelled());
+            assertFalse(context.getBeanFactory().containsSingleton("java.lang.Object"));
+            verify(callback).run();
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testStartAwaitsCopy() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object"});
+        when(beanLocator.locate("java.lang.Object")).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                release.await();
+                return new Object();
+            }
+        });
+        final GenericApplicationContext context = new GenericApplicationContext();
+        final ExecutorService executorService = newSingleThreadExecutor();
+
+        try {
+            final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+            copier.setAsyncExecutorService(executorService);
+            copier.setAwaitOnStart(true);
+            copier.initApplicationContext(context);
+            release.countDown();
+            copier.start();
+
+            assertTrue(context.getBeanFactory().containsSingleton("java.lang.Object"));
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMultipleBeanLocators() throws Exception {
+        final BeanLocator otherBeanLocator = mock(BeanLocator.class);
+        final Object bean1 = new Object();
+        final Object bean2 = new Object();
+        final Thread bean3 = new Thread();
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object"});
+        when(beanLocator.locate("java.lang.Object")).thenReturn(bean1);
+        when(otherBeanLocator.getNames()).thenReturn(new String[]{"java.lang.Object", "java.lang.Thread"});
+        when(otherBeanLocator.locate("java.lang.Object")).thenReturn(bean2);
+        when(otherBeanLocator.locate("java.lang.Thread")).thenReturn(bean3);
+        final GenericApplicationContext context = new GenericApplicationContext();
+
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(asList(beanLocator,
+                                                                                          otherBeanLocator));
+        copier.initApplicationContext(context);
+
+        assertSame(context.getBeanFactory().getSingleton("java.lang.Object"), bean1);
+        assertSame(context.getBeanFactory().getSingleton("java.lang.Thread"), bean3);
+        assertEquals(copier.getStatistics().getNamesScanned(), 2L);
+        verify(otherBeanLocator, never()).locate("java.lang.Object");
+    }
+
+    @Test
+    public void testSharedBeanFactoryRegistry() throws Exception {
+        final Object bean = new Object();
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object", "invalid.class.Name"});
+        when(beanLocator.locate("java.lang.Object")).thenReturn(bean);
+        final SharedBeanFactoryRegistry registry = new SharedBeanFactoryRegistry();
+        final GenericApplicationContext context1 = new GenericApplicationContext();
+        final GenericApplicationContext context2 = new GenericApplicationContext();
+
+        final BeanLocatorDefinitionCopier copier1 = new BeanLocatorDefinitionCopier(beanLocator);
+        copier1.setSharedBeanFactoryRegistry(registry);
+        copier1.initApplicationContext(context1);
+        final BeanLocatorDefinitionCopier copier2 = new BeanLocatorDefinitionCopier(beanLocator);
+        copier2.setSharedBeanFactoryRegistry(registry);
+        copier2.initApplicationContext(context2);
+
+        assertFalse(context1.getBeanFactory().containsSingleton("java.lang.Object"));
+        assertSame(context1.getBeanFactory().getParentBeanFactory(), context2.getBeanFactory().getParentBeanFactory());
+        assertSame(context1.getBeanFactory().getBean("java.lang.Object"), bean);
+        assertSame(context2.getBeanFactory().getBean("java.lang.Object"), bean);
+        assertEquals(registry.size(), 1);
+        verify(beanLocator, times(1)).getNames();
+        verify(beanLocator, times(1)).locate("java.lang.Object");
+    }
+
+    @Test
+    public void testSharedBeanFactoryRegistryWithDifferentFilters() throws Exception {
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object"});
+        when(beanLocator.locate("java.lang.Object")).thenReturn(new Object());
+        final SharedBeanFactoryRegistry registry = new SharedBeanFactoryRegistry();
+
+        final BeanLocatorDefinitionCopier copier1 = new BeanLocatorDefinitionCopier(beanLocator);
+        copier1.setSharedBeanFactoryRegistry(registry);
+        copier1.initApplicationContext(new GenericApplicationContext());
+        final BeanLocatorDefinitionCopier copier2 = new BeanLocatorDefinitionCopier(beanLocator);
+        copier2.setSharedBeanFactoryRegistry(registry);
+        copier2.addExcludeFilter(new AssignableTypeFilter(Runnable.class));
+        copier2.initApplicationContext(new GenericApplicationContext());
+
+        assertEquals(registry.size(), 2);
+    }
+
+    @Test
+    public void testSharedBeanFactoryRegistryWithEquivalentFilters() throws Exception {
+        final Thread bean = new Thread();
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Thread", "java.lang.Object"});
+        when(beanLocator.locate("java.lang.Thread")).thenReturn(bean);
+        final SharedBeanFactoryRegistry registry = new SharedBeanFactoryRegistry();
+        final GenericApplicationContext context1 = new GenericApplicationContext();
+        final GenericApplicationContext context2 = new GenericApplicationContext();
+
+        final BeanLocatorDefinitionCopier copier1 = new BeanLocatorDefinitionCopier(beanLocator);
+        copier1.setSharedBeanFactoryRegistry(registry);
+        copier1.addIncludeFilter(new AssignableTypeFilter(Runnable.class));
+        copier1.initApplicationContext(context1);
+        final BeanLocatorDefinitionCopier copier2 = new BeanLocatorDefinitionCopier(beanLocator);
+        copier2.setSharedBeanFactoryRegistry(registry);
+        copier2.addIncludeFilter(new AssignableTypeFilter(Runnable.class));
+        copier2.initApplicationContext(context2);
+
+        assertSame(context1.getBeanFactory().getParentBeanFactory(), context2.getBeanFactory().getParentBeanFactory());
+        assertSame(context2.getBeanFactory().getBean("java.lang.Thread"), bean);
+        assertEquals(registry.size(), 1);
+        verify(beanLocator, times(1)).locate("java.lang.Thread");
+    }
+
+    @Test
+    public void testSharedBeanFactoryRegistryWithUndescribableFilter() throws Exception {
+        final Object bean = new Object();
+        when(typeFilter.match(any(MetadataReader.class), any(MetadataReaderFactory.class))).thenReturn(true);
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object"});
+        when(beanLocator.locate("java.lang.Object")).thenReturn(bean);
+        final SharedBeanFactoryRegistry registry = new SharedBeanFactoryRegistry();
+        final GenericApplicationContext context = new GenericApplicationContext();
+
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.setSharedBeanFactoryRegistry(registry);
+        copier.addIncludeFilter(typeFilter);
+        copier.initApplicationContext(context);
+
+        assertNull(context.getBeanFactory().getParentBeanFactory());
+        assertSame(context.getBeanFactory().getSingleton("java.lang.Object"), bean);
+        assertEquals(registry.size(), 0);
+    }
+
+    @Test
+    public void testSharedBeanFactoryRegistryWithExistingParent() throws Exception {
+        final Object bean = new Object();
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object"});
+        when(beanLocator.locate("java.lang.Object")).thenReturn(bean);
+        final SharedBeanFactoryRegistry registry = new SharedBeanFactoryRegistry();
+        final GenericApplicationContext parent = new GenericApplicationContext();
+        final GenericApplicationContext context = new GenericApplicationContext(parent);
+
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.setSharedBeanFactoryRegistry(registry);
+        copier.initApplicationContext(context);
+
+        assertSame(context.getBeanFactory().getSingleton("java.lang.Object"), bean);
+        assertEquals(registry.size(), 0);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testResyncWithSharedBeanFactoryRegistry() throws Exception {
+        when(beanLocator.getNames()).thenReturn(new String[0]);
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.setSharedBeanFactoryRegistry(new SharedBeanFactoryRegistry());
+        copier.initApplicationContext(new GenericApplicationContext());
+
+        copier.resync();
+    }
+
+    @Test
+    public void testGetStatistics() throws Exception {
+        when(configurableApplicationContext.getBeanFactory()).thenReturn(configurableListableBeanFactory);
+        when(beanLocator.getNames()).thenReturn(new String[]{"invalid.class.Name",
+                                                             "java.lang.String",
+                                                             "java.lang.Object"});
+        when(beanLocator.locate("java.lang.Object")).thenReturn(new Object());
+
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.initApplicationContext(configurableApplicationContext);
+        final CopierStatistics statistics = copier.getStatistics();
+
+        assertEquals(statistics.getCopies(), 1);
+        assertEquals(statistics.getNamesScanned(), 3);
+        assertEquals(statistics.getUnknownTypes(), 1);
+        assertEquals(statistics.getLocateFailures(), 1);
+        assertEquals(statistics.getRegistered(), 1);
+    }
+
+    @Test
+    public void testInitApplicationContextWithExecutorService() throws Exception {
+        final Object bean1 = new Object();
+        final Object bean2 = new Object();
+        when(configurableApplicationContext.getBeanFactory()).thenReturn(configurableListableBeanFactory);
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Runnable",
+                                                             "invalid.class.Name",
+                                                             "java.lang.Object"});
+        when(beanLocator.locate("java.lang.Runnable")).thenReturn(bean1);
+        when(beanLocator.locate("java.lang.Object")).thenReturn(bean2);
+        final ExecutorService executorService = newFixedThreadPool(2);
+
+        try {
+            final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+            copier.setExecutorService(executorService);
+            copier.initApplicationContext(configurableApplicationContext);
+        }
+        finally {
+            executorService.shutdown();
+        }
+
+        final InOrder inOrder = inOrder(configurableListableBeanFactory);
+        inOrder.verify(configurableListableBeanFactory).registerSingleton("java.lang.Runnable", bean1);
+        inOrder.verify(configurableListableBeanFactory).registerSingleton("java.lang.Object", bean2);
+    }
+
+    @Test
+    public void testInitApplicationContextWithLazy() throws Exception {
+        final Object bean = new Object();
+        when(configurableApplicationContext.getBeanFactory()).thenReturn(configurableListableBeanFactory);
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Runnable", "java.lang.Object"});
+        when(beanLocator.locate("java.lang.Object")).thenReturn(bean);
+
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.setLazy(true);
+        copier.initApplicationContext(configurableApplicationContext);
+
+        verify(configurableListableBeanFactory).registerSingleton(eq("java.lang.Runnable"), any(Runnable.class));
+        verify(configurableListableBeanFactory).registerSingleton("java.lang.Object", bean);
+        verify(beanLocator, never()).locate("java.lang.Runnable");
+    }
+
+    @Test
+    public void testIsAcceptableWithAcceptanceCache() throws Exception {
+        final CountingTypeFilter countingTypeFilter = new CountingTypeFilter("all", true);
+        final AcceptanceCache cache = new AcceptanceCache(10);
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.addExcludeFilter(countingTypeFilter);
+        copier.setAcceptanceCache(cache);
+
+        final boolean result1 = copier.isAcceptable("java.lang.Object");
+        final boolean result2 = copier.isAcceptable("java.lang.Object");
+        final boolean result3 = copier.isAcceptable("invalid.class.Name");
+
+        assertFalse(result1);
+        assertFalse(result2);
+        assertFalse(result3);
+        assertEquals(cache.size(), 2);
+        assertEquals(countingTypeFilter.matchCount(), 1);
+    }
+
+    @Test
+    public void testIsAcceptableWithAcceptanceCacheAndUndescribableFilter() throws Exception {
+        when(typeFilter.match(any(MetadataReader.class), any(MetadataReaderFactory.class))).thenReturn(true);
+        final AcceptanceCache cache = new AcceptanceCache(10);
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.addExcludeFilter(typeFilter);
+        copier.setAcceptanceCache(cache);
+
+        final boolean result1 = copier.isAcceptable("java.lang.Object");
+        final boolean result2 = copier.isAcceptable("java.lang.Object");
+
+        assertFalse(result1);
+        assertFalse(result2);
+        assertEquals(cache.size(), 0);
+        verify(typeFilter, times(2)).match(any(MetadataReader.class), any(MetadataReaderFactory.class));
+    }
+
+    @Test
+    public void testInitApplicationContextWithAcceptanceIndex() throws Exception {
+        final Object bean = new Object();
+        final CountingTypeFilter countingTypeFilter = new CountingTypeFilter("all", true);
+        when(configurableApplicationContext.getBeanFactory()).thenReturn(configurableListableBeanFactory);
+        when(beanLocator.getNames()).thenReturn(new String[]{"invalid.class.Name", "java.lang.Object"});
+        when(beanLocator.locate("java.lang.Object")).thenReturn(bean);
+        final File file = File.createTempFile("acceptance", ".idx");
+        file.delete();
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+
+        try {
+            copier.addIncludeFilter(countingTypeFilter);
+            copier.setAcceptanceIndex(new AcceptanceIndex(file));
+            copier.initApplicationContext(configurableApplicationContext);
+            copier.initApplicationContext(configurableApplicationContext);
+        }
+        finally {
+            file.delete();
+        }
+
+        assertEquals(countingTypeFilter.matchCount(), 1);
+        verify(configurableListableBeanFactory, times(2)).registerSingleton("java.lang.Object", bean);
+        assertEquals(copier.getStatistics().getUnknownTypes(), 1L);
+        assertEquals(copier.getStatistics().getIndexedRejected(), 1L);
+        assertEquals(copier.getStatistics().getNotIncluded(), 0L);
+    }
+
+    @Test
+    public void testInitApplicationContextWithAcceptanceIndexAndChangedFilter() throws Exception {
+        final Thread bean = new Thread();
+        when(configurableApplicationContext.getBeanFactory()).thenReturn(configurableListableBeanFactory);
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Thread", "java.lang.Object"});
+        when(beanLocator.locate("java.lang.Thread")).thenReturn(bean);
+        final File file = File.createTempFile("acceptance", ".idx");
+        file.delete();
+        final BeanLocatorDefinitionCopier copier1 = new BeanLocatorDefinitionCopier(beanLocator);
+        final BeanLocatorDefinitionCopier copier2 = new BeanLocatorDefinitionCopier(beanLocator);
+
+        try {
+            copier1.addIncludeFilter(new AssignableTypeFilter(Runnable.class));
+            copier1.setAcceptanceIndex(new AcceptanceIndex(file));
+            copier1.initApplicationContext(configurableApplicationContext);
+            copier2.addIncludeFilter(new AssignableTypeFilter(String.class));
+            copier2.setAcceptanceIndex(new AcceptanceIndex(file));
+            copier2.initApplicationContext(configurableApplicationContext);
+        }
+        finally {
+            file.delete();
+        }
+
+        verify(configurableListableBeanFactory, times(1)).registerSingleton("java.lang.Thread", bean);
+        assertEquals(copier2.getStatistics().getIndexedRejected(), 0L);
+        assertEquals(copier2.getStatistics().getNotIncluded(), 2L);
+    }
+
+    @Test
+    public void testInitApplicationContextWithAcceptanceIndexAndUndescribableFilter() throws Exception {
+        final Object bean = new Object();
+        when(typeFilter.match(any(MetadataReader.class), any(MetadataReaderFactory.class))).thenReturn(true);
+        when(configurableApplicationContext.getBeanFactory()).thenReturn(configurableListableBeanFactory);
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object"});
+        when(beanLocator.locate("java.lang.Object")).thenReturn(bean);
+        final File file = File.createTempFile("acceptance", ".idx");
+        file.delete();
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+
+        try {
+            copier.addIncludeFilter(typeFilter);
+            copier.setAcceptanceIndex(new AcceptanceIndex(file));
+            copier.initApplicationContext(configurableApplicationContext);
+
+            assertFalse(file.exists());
+        }
+        finally {
+            file.delete();
+        }
+
+        verify(configurableListableBeanFactory).registerSingleton("java.lang.Object", bean);
+    }
+
     @Test
     public void testSafeLocateWithBeanLocatorException() throws Exception {
         when(beanLocator.locate(anyString())).thenThrow(new BeanLocatorException());
@@ -128,6 +1235,20 @@ public class BeanLocatorDefinitionCopierTest {
         assertFalse(result);
     }
 
+    @Test
+    public void testIsAcceptableWithNameFilter() throws Exception {
+        final BeanNameFilter nameFilter = new BeanNameFilter();
+        nameFilter.addIncludePrefix("java.util.");
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.addIncludeFilter(typeFilter);
+        copier.setNameFilter(nameFilter);
+
+        final boolean result = copier.isAcceptable("java.lang.Object");
+
+        assertFalse(result);
+        verify(typeFilter, never()).match(any(MetadataReader.class), any(MetadataReaderFactory.class));
+    }
+
     @Test
     public void testIsAcceptableWithExclusion() throws Exception {
         when(typeFilter.match(any(MetadataReader.class), any(MetadataReaderFactory.class))).thenReturn(true);
@@ -171,6 +1292,66 @@ public class BeanLocatorDefinitionCopierTest {
         assertTrue(result);
     }
 
+    @Test
+    public void testIsAcceptableSharesMetadataReader() throws Exception {
+        final TypeFilter includeFilter = mock(TypeFilter.class);
+        when(includeFilter.match(any(MetadataReader.class), any(MetadataReaderFactory.class))).thenReturn(true);
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.addExcludeFilter(typeFilter);
+        copier.addIncludeFilter(includeFilter);
+
+        final boolean result = copier.isAcceptable("java.lang.Object");
+
+        final ArgumentCaptor<MetadataReader> excludeReader = ArgumentCaptor.forClass(MetadataReader.class);
+        final ArgumentCaptor<MetadataReader> includeReader = ArgumentCaptor.forClass(MetadataReader.class);
+        verify(typeFilter).match(excludeReader.capture(), any(MetadataReaderFactory.class));
+        verify(includeFilter).match(includeReader.capture(), any(MetadataReaderFactory.class));
+        assertTrue(result);
+        assertSame(excludeReader.getValue(), includeReader.getValue());
+    }
+
+    @Test
+    public void testIsAcceptableWithMetadataReaderFactory() throws Exception {
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.addIncludeFilter(new AssignableTypeFilter(Runnable.class));
+        copier.setMetadataReaderFactory(new CachingMetadataReaderFactory(getClass().getClassLoader()));
+
+        final boolean result1 = copier.isAcceptable(Thread.class.getName());
+        final boolean result2 = copier.isAcceptable(Uninitialised.class.getName());
+        final boolean result3 = copier.isAcceptable("invalid.class.Name");
+
+        assertTrue(result1);
+        assertFalse(result2);
+        assertFalse(result3);
+        assertFalse(uninitialisedInitialised);
+    }
+
+    @Test
+    public void testInitApplicationContextWithMetadataReaderFactoryAndLazy() throws Exception {
+        when(configurableApplicationContext.getBeanFactory()).thenReturn(configurableListableBeanFactory);
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Runnable"});
+
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.setMetadataReaderFactory(new CachingMetadataReaderFactory(getClass().getClassLoader()));
+        copier.setLazy(true);
+        copier.initApplicationContext(configurableApplicationContext);
+
+        verify(configurableListableBeanFactory).registerSingleton(eq("java.lang.Runnable"), any(Runnable.class));
+        verify(beanLocator, never()).locate("java.lang.Runnable");
+    }
+
+    @Test
+    public void testSafeLoadClass() throws Exception {
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+
+        final Class<?> clazz1 = copier.safeLoadClass(Uninitialised.class.getName());
+        final Class<?> clazz2 = copier.safeLoadClass("invalid.class.Name");
+
+        assertEquals(clazz1.getName(), Uninitialised.class.getName());
+        assertNull(clazz2);
+        assertFalse(uninitialisedInitialised);
+    }
+
     @Test
     public void testMatchesWithoutMatch() throws Exception {
         when(typeFilter.match(any(MetadataReader.class), any(MetadataReaderFactory.class))).thenReturn(false);
@@ -229,4 +1410,335 @@ public class BeanLocatorDefinitionCopierTest {
         assertEquals(clazz, Object.class);
     }
 
+    @Test
+    public void testDestroy() throws Exception {
+        final Object bean = new Object();
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object", "java.lang.Thread"});
+        when(beanLocator.locate(anyString())).thenReturn(bean);
+        final GenericApplicationContext context = new GenericApplicationContext();
+        context.getBeanFactory().registerSingleton("other", bean);
+
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.initApplicationContext(context);
+        copier.destroy();
+
+        assertFalse(context.getBeanFactory().containsSingleton("java.lang.Object"));
+        assertFalse(context.getBeanFactory().containsSingleton("java.lang.Thread"));
+        assertTrue(context.getBeanFactory().containsSingleton("other"));
+        assertEquals(copier.getTypeIndex().size(), 0);
+        assertTrue(copier.getBeansOfType(Object.class).isEmpty());
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testResyncAfterDestroy() throws Exception {
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object"});
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.initApplicationContext(new GenericApplicationContext());
+        copier.destroy();
+
+        copier.resync();
+    }
+
+    @Test
+    public void testReleaseReleasesSharedBeanFactory() throws Exception {
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object"});
+        when(beanLocator.locate("java.lang.Object")).thenReturn(new Object());
+        final SharedBeanFactoryRegistry registry = new SharedBeanFactoryRegistry();
+
+        final BeanLocatorDefinitionCopier copier1 = new BeanLocatorDefinitionCopier(beanLocator);
+        copier1.setSharedBeanFactoryRegistry(registry);
+        copier1.initApplicationContext(new GenericApplicationContext());
+        final BeanLocatorDefinitionCopier copier2 = new BeanLocatorDefinitionCopier(beanLocator);
+        copier2.setSharedBeanFactoryRegistry(registry);
+        copier2.initApplicationContext(new GenericApplicationContext());
+
+        copier1.release();
+        copier1.destroy();
+        assertEquals(registry.size(), 1);
+
+        copier2.release();
+        assertEquals(registry.size(), 0);
+        verify(beanLocator, times(1)).locate("java.lang.Object");
+    }
+
+    @Test
+    public void testSetBeanLocatorDiscardsSharedBeanFactory() throws Exception {
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object"});
+        when(beanLocator.locate("java.lang.Object")).thenReturn(new Object());
+        final SharedBeanFactoryRegistry registry = new SharedBeanFactoryRegistry();
+
+        final BeanLocatorDefinitionCopier copier1 = new BeanLocatorDefinitionCopier(beanLocator);
+        copier1.setSharedBeanFactoryRegistry(registry);
+        copier1.initApplicationContext(new GenericApplicationContext());
+        final BeanLocatorDefinitionCopier copier2 = new BeanLocatorDefinitionCopier(beanLocator);
+        copier2.setSharedBeanFactoryRegistry(registry);
+        copier2.initApplicationContext(new GenericApplicationContext());
+
+        copier1.setBeanLocator(mock(BeanLocator.class));
+
+        assertEquals(registry.size(), 0);
+    }
+
+    @Test
+    public void testReleaseReleasesCachingBeanDecorator() throws Exception {
+        final CachingBeanDecoratorTest.Service bean = mock(CachingBeanDecoratorTest.Service.class);
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object"});
+        when(beanLocator.locate("java.lang.Object")).thenReturn(bean);
+        final GenericApplicationContext context = new GenericApplicationContext();
+
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        final CachingBeanDecorator cachingBeanDecorator = new CachingBeanDecorator();
+        cachingBeanDecorator.addTypeFilter(new AssignableTypeFilter(CachingBeanDecoratorTest.Service.class));
+        copier.addBeanDecorator(cachingBeanDecorator);
+        copier.initApplicationContext(context);
+        ((CachingBeanDecoratorTest.Service) context.getBean("java.lang.Object")).getName(1L);
+        copier.release();
+        copier.resync();
+        ((CachingBeanDecoratorTest.Service) context.getBean("java.lang.Object")).getName(1L);
+
+        verify(bean, times(2)).getName(1L);
+    }
+
+    @Test
+    public void testSetBeanLocator() throws Exception {
+        final Object bean1 = new Object();
+        final Thread bean2 = new Thread();
+        final BeanLocator otherBeanLocator = mock(BeanLocator.class);
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object"});
+        when(beanLocator.locate("java.lang.Object")).thenReturn(bean1);
+        when(otherBeanLocator.getNames()).thenReturn(new String[]{"java.lang.Thread"});
+        when(otherBeanLocator.locate("java.lang.Thread")).thenReturn(bean2);
+        final GenericApplicationContext context = new GenericApplicationContext();
+
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.initApplicationContext(context);
+        copier.setBeanLocator(otherBeanLocator);
+
+        assertFalse(context.getBeanFactory().containsSingleton("java.lang.Object"));
+        assertSame(context.getBeanFactory().getSingleton("java.lang.Thread"), bean2);
+        assertEquals(copier.getBeansOfType(Object.class), singletonMap("java.lang.Thread", bean2));
+    }
+
+    @Test
+    public void testContextCloseReleasesPluginClassLoader() throws Exception {
+        final SharedBeanFactoryRegistry registry = new SharedBeanFactoryRegistry();
+
+        final WeakReference<ClassLoader> pluginClassLoader = refreshAndCloseWithPlugin(registry);
+
+        assertTrue(isCollected(pluginClassLoader), "Plugin class loader retained after context close");
+
+        final InvocationMetricsDecorator metricsDecorator = new InvocationMetricsDecorator();
+        final WeakReference<ClassLoader> decoratedClassLoader = refreshAndCloseWithPlugin(metricsDecorator);
+
+        assertNull(metricsDecorator.getMetrics("java.lang.Object#getNames"));
+        assertEquals(metricsDecorator.getMethods().length, 0);
+        assertTrue(isCollected(decoratedClassLoader), "Plugin class loader retained by decorator after context close");
+    }
+
+    @Test(timeOut = 10000)
+    public void testCloseCancelsBlockedCopy() throws Exception {
+        final CountDownLatch locating = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Object", "java.lang.Thread"});
+        when(beanLocator.locate("java.lang.Object")).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                locating.countDown();
+                release.await();
+                return new Object();
+            }
+        });
+        final ExecutorService executorService = newSingleThreadExecutor();
+        final GenericApplicationContext context = new GenericApplicationContext();
+        context.registerBeanDefinition("copier",
+                                       BeanDefinitionBuilder.genericBeanDefinition(BeanLocatorDefinitionCopier.class)
+                                           .addConstructorArgValue(beanLocator)
+                                           .addPropertyValue("asyncExecutorService", executorService)
+                                           .getBeanDefinition());
+
+        try {
+            context.refresh();
+            final BeanLocatorDefinitionCopier copier = context.getBean(BeanLocatorDefinitionCopier.class);
+            final Future<?> copyFuture = copier.getCopyFuture();
+            locating.await();
+
+            context.close();
+
+            assertTrue(copyFuture.isCancelled());
+            assertFalse(context.getBeanFactory().containsSingleton("java.lang.Object"));
+            verify(beanLocator, never()).locate("java.lang.Thread");
+        }
+        finally {
+            release.countDown();
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSetBeanLocatorReleasesPluginClassLoader() throws Exception {
+        when(beanLocator.getNames()).thenReturn(new String[0]);
+        final GenericApplicationContext context = new GenericApplicationContext();
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        copier.initApplicationContext(context);
+
+        final WeakReference<ClassLoader> pluginClassLoader = copyFromPlugin(copier, context);
+        copier.setBeanLocator(beanLocator);
+
+        assertTrue(isCollected(pluginClassLoader), "Plugin class loader retained after bean locator replaced");
+        assertFalse(context.getBeanFactory().containsSingleton("java.lang.Object"));
+    }
+
+    private static WeakReference<ClassLoader> refreshAndCloseWithPlugin(final SharedBeanFactoryRegistry registry)
+        throws Exception {
+        final BeanLocator pluginBeanLocator = newPluginBeanLocator();
+        final GenericApplicationContext context = new GenericApplicationContext();
+        context.registerBeanDefinition("copier",
+                                       BeanDefinitionBuilder.genericBeanDefinition(BeanLocatorDefinitionCopier.class)
+                                           .addConstructorArgValue(pluginBeanLocator)
+                                           .addPropertyValue("sharedBeanFactoryRegistry", registry)
+                                           .getBeanDefinition());
+        context.refresh();
+        assertSame(context.getBean("java.lang.Object"), pluginBeanLocator);
+        context.close();
+        return new WeakReference<ClassLoader>(pluginBeanLocator.getClassLoader());
+    }
+
+    private static WeakReference<ClassLoader> refreshAndCloseWithPlugin(final InvocationMetricsDecorator decorator)
+        throws Exception {
+        final BeanLocator pluginBeanLocator = newPluginBeanLocator();
+        final GenericApplicationContext context = new GenericApplicationContext();
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(pluginBeanLocator);
+        copier.addBeanDecorator(decorator);
+        context.getBeanFactory().registerSingleton("copier", copier);
+        context.getDefaultListableBeanFactory().registerDisposableBean("copier", copier);
+        copier.setApplicationContext(context);
+        context.refresh();
+        final BeanLocator decorated = (BeanLocator) context.getBean("java.lang.Object");
+        assertNotSame(decorated, pluginBeanLocator);
+        decorated.getNames();
+        assertEquals(decorator.getMetrics("java.lang.Object#getNames").getCalls(), 1);
+        context.close();
+        return new WeakReference<ClassLoader>(pluginBeanLocator.getClassLoader());
+    }
+
+    private static WeakReference<ClassLoader> copyFromPlugin(final BeanLocatorDefinitionCopier copier,
+                                                             final GenericApplicationContext context)
+        throws Exception {
+        final BeanLocator pluginBeanLocator = newPluginBeanLocator();
+        copier.setBeanLocator(pluginBeanLocator);
+        assertSame(context.getBeanFactory().getSingleton("java.lang.Object"), pluginBeanLocator);
+        return new WeakReference<ClassLoader>(pluginBeanLocator.getClassLoader());
+    }
+
+    private static BeanLocator newPluginBeanLocator() throws Exception {
+        final ClassLoader pluginClassLoader = new PluginClassLoader(BeanLocatorDefinitionCopierTest.class
+                                                                        .getClassLoader());
+        final BeanLocator pluginBeanLocator =
+            (BeanLocator) pluginClassLoader.loadClass(PluginBeanLocator.class.getName()).newInstance();
+        assertSame(pluginBeanLocator.getClassLoader(), pluginClassLoader);
+        return pluginBeanLocator;
+    }
+
+    private static boolean isCollected(final WeakReference<?> reference) throws InterruptedException {
+        for (int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        return reference.get() == null;
+    }
+
+    public static class PluginBeanLocator implements BeanLocator {
+
+        @Override
+        public ClassLoader getClassLoader() {
+            return getClass().getClassLoader();
+        }
+
+        @Override
+        public String[] getNames() {
+            return new String[]{"java.lang.Object"};
+        }
+
+        @Override
+        public Class<?> getType(final String name) {
+            return Object.class;
+        }
+
+        @Override
+        public Object locate(final String name) {
+            return this;
+        }
+
+    }
+
+    private static final class PluginClassLoader extends ClassLoader {
+
+        private PluginClassLoader(final ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(final String name, final boolean resolve)
+            throws ClassNotFoundException {
+            if (!PluginBeanLocator.class.getName().equals(name)) {
+                return super.loadClass(name, resolve);
+            }
+            Class<?> clazz = findLoadedClass(name);
+            if (clazz == null) {
+                final byte[] bytes;
+                try {
+                    bytes = FileCopyUtils.copyToByteArray(
+                        getParent().getResourceAsStream(name.replace('.', '/') + ".class"));
+                }
+                catch (final IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+                clazz = defineClass(name, bytes, 0, bytes.length);
+            }
+            return clazz;
+        }
+
+    }
+
+    public static class CountingTypeFilter implements TypeFilter {
+
+        private final String name;
+
+        private final boolean matching;
+
+        private final AtomicInteger matches = new AtomicInteger();
+
+        public CountingTypeFilter(final String name, final boolean matching) {
+            this.name = name;
+            this.matching = matching;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isMatching() {
+            return matching;
+        }
+
+        @Override
+        public boolean match(final MetadataReader metadataReader, final MetadataReaderFactory metadataReaderFactory) {
+            matches.incrementAndGet();
+            return matching;
+        }
+
+        int matchCount() {
+            return matches.get();
+        }
+
+    }
+
+    private static final class Uninitialised {
+
+        static {
+            uninitialisedInitialised = true;
+        }
+
+    }
+
 }
@@ -0,0 +1,101 @@
+package au.com.permeance.liferay.spring;
+
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class BeanNameFilterTest {
+
+    @Test
+    public void testAcceptsWithoutRules() throws Exception {
+        final BeanNameFilter filter = new BeanNameFilter();
+
+        final boolean result = filter.accepts("com.liferay.portal.service.UserLocalService");
+
+        assertTrue(result);
+    }
+
+    @Test
+    public void testAcceptsWithIncludePrefix() throws Exception {
+        final BeanNameFilter filter = new BeanNameFilter();
+        filter.addIncludePrefix("com.liferay.portal.service.");
+        filter.addIncludePrefix("com.liferay.portlet.");
+
+        assertTrue(filter.accepts("com.liferay.portal.service.UserLocalService"));
+        assertTrue(filter.accepts("com.liferay.portlet.blogs.service.BlogsEntryLocalService"));
+        assertFalse(filter.accepts("com.liferay.portal.model.User"));
+        assertFalse(filter.accepts("com.liferay."));
+        assertFalse(filter.accepts("liferayDataSource"));
+    }
+
+    @Test
+    public void testAcceptsWithExcludePrefix() throws Exception {
+        final BeanNameFilter filter = new BeanNameFilter();
+        filter.addIncludePrefix("com.liferay.portal.service.");
+        filter.addExcludePrefix("com.liferay.portal.service.persistence.");
+
+        assertTrue(filter.accepts("com.liferay.portal.service.UserLocalService"));
+        assertFalse(filter.accepts("com.liferay.portal.service.persistence.UserPersistence"));
+    }
+
+    @Test
+    public void testAcceptsWithIncludePattern() throws Exception {
+        final BeanNameFilter filter = new BeanNameFilter();
+        filter.addIncludePattern("com.liferay.portal.service.*LocalService");
+
+        assertTrue(filter.accepts("com.liferay.portal.service.UserLocalService"));
+        assertFalse(filter.accepts("com.liferay.portal.service.UserService"));
+        assertFalse(filter.accepts("com.liferay.portal.service.impl.UserLocalService"));
+    }
+
+    @Test
+    public void testAcceptsWithExcludePattern() throws Exception {
+        final BeanNameFilter filter = new BeanNameFilter();
+        filter.addExcludePattern("**.persistence.*");
+
+        assertTrue(filter.accepts("com.liferay.portal.service.UserLocalService"));
+        assertFalse(filter.accepts("com.liferay.portal.service.persistence.UserPersistence"));
+    }
+
+    @Test
+    public void testAcceptsWithRegex() throws Exception {
+        final BeanNameFilter filter = new BeanNameFilter();
+        filter.addIncludeRegex("com\\.liferay\\..*Service");
+        filter.addExcludeRegex(".*\\.Group.*");
+
+        assertTrue(filter.accepts("com.liferay.portal.service.UserLocalService"));
+        assertFalse(filter.accepts("com.liferay.portal.service.GroupLocalService"));
+        assertFalse(filter.accepts("com.liferay.portal.service.UserLocalServiceUtil"));
+    }
+
+    @Test
+    public void testAcceptsRecompilesAfterChange() throws Exception {
+        final BeanNameFilter filter = new BeanNameFilter();
+        filter.addIncludePrefix("com.liferay.portal.");
+        assertTrue(filter.accepts("com.liferay.portal.service.UserLocalService"));
+
+        filter.setIncludePrefixes(asList("com.liferay.portlet."));
+
+        assertFalse(filter.accepts("com.liferay.portal.service.UserLocalService"));
+    }
+
+    @Test
+    public void testGlobToRegex() throws Exception {
+        assertEquals(BeanNameFilter.globToRegex("a.*"), "\\Qa.\\E[^.]*");
+        assertEquals(BeanNameFilter.globToRegex("**b?"), ".*\\Qb\\E.");
+    }
+
+    @Test
+    public void testToString() throws Exception {
+        final BeanNameFilter filter1 = new BeanNameFilter();
+        filter1.addIncludePrefix("com.liferay.");
+        final BeanNameFilter filter2 = new BeanNameFilter();
+        filter2.addIncludePrefix("com.liferay.");
+
+        assertEquals(filter1.toString(), filter2.toString());
+    }
+
+}
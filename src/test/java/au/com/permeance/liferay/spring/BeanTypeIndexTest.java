@@ -0,0 +1,66 @@
+package au.com.permeance.liferay.spring;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class BeanTypeIndexTest {
+
+    @Test
+    public void testAdd() throws Exception {
+        final BeanTypeIndex index = new BeanTypeIndex();
+
+        index.add("thread", Thread.class);
+        index.add("list", ArrayList.class);
+
+        assertEquals(index.getBeanNamesForType(Thread.class), new String[]{"thread"});
+        assertEquals(index.getBeanNamesForType(Runnable.class), new String[]{"thread"});
+        assertEquals(index.getBeanNamesForType(Iterable.class), new String[]{"list"});
+        assertEquals(index.getBeanNamesForType(Serializable.class.getName()), new String[]{"list"});
+        assertEquals(index.getBeanNamesForType(Object.class), new String[]{"thread", "list"});
+        assertEquals(index.getBeanNamesForType(String.class), new String[0]);
+        assertEquals(index.size(), 2);
+    }
+
+    @Test
+    public void testAddReplacesExistingEntry() throws Exception {
+        final BeanTypeIndex index = new BeanTypeIndex();
+        index.add("bean", Thread.class);
+
+        index.add("bean", ArrayList.class);
+
+        assertEquals(index.getBeanNamesForType(Runnable.class), new String[0]);
+        assertEquals(index.getBeanNamesForType(Iterable.class), new String[]{"bean"});
+        assertEquals(index.size(), 1);
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        final BeanTypeIndex index = new BeanTypeIndex();
+        index.add("thread", Thread.class);
+        index.add("list", ArrayList.class);
+
+        assertTrue(index.remove("thread"));
+        assertFalse(index.remove("thread"));
+
+        assertEquals(index.getBeanNamesForType(Runnable.class), new String[0]);
+        assertEquals(index.getBeanNamesForType(Object.class), new String[]{"list"});
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        final BeanTypeIndex index = new BeanTypeIndex();
+        index.add("thread", Thread.class);
+
+        index.clear();
+
+        assertEquals(index.getBeanNamesForType(Object.class), new String[0]);
+        assertEquals(index.size(), 0);
+    }
+
+}
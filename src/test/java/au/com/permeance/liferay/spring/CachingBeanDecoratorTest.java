@@ -0,0 +1,248 @@
+package au.com.permeance.liferay.spring;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+public class CachingBeanDecoratorTest {
+
+    private CountingService bean;
+
+    private CachingBeanDecorator decorator;
+
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() throws Exception {
+        bean = new CountingService();
+        decorator = new CachingBeanDecorator();
+        decorator.setCacheAllBeans(true);
+    }
+
+    @Test
+    public void testDecorateCachesMatchingMethods() throws Exception {
+        final Service service = (Service) decorator.decorate("service", bean);
+
+        assertEquals(service.getName(1L), "name1");
+        assertEquals(service.getName(1L), "name1");
+        assertEquals(service.getName(2L), "name2");
+        assertEquals(bean.reads.get(), 2);
+        assertEquals(decorator.getHits(), 1L);
+        assertEquals(decorator.getMisses(), 2L);
+    }
+
+    @Test
+    public void testDecorateCachesNullResults() throws Exception {
+        final Service service = (Service) decorator.decorate("service", bean);
+
+        assertNull(service.getName(-1L));
+        assertNull(service.getName(-1L));
+        assertEquals(bean.reads.get(), 1);
+    }
+
+    @Test
+    public void testDecorateComparesArrayArguments() throws Exception {
+        final Service service = (Service) decorator.decorate("service", bean);
+
+        service.countNames(new long[]{1L, 2L});
+        service.countNames(new long[]{1L, 2L});
+
+        assertEquals(bean.reads.get(), 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testDecorateDoesNotCacheExceptions() throws Exception {
+        final Service service = (Service) decorator.decorate("service", bean);
+
+        try {
+            service.getName(0L);
+        }
+        catch (final IllegalArgumentException e) {
+            service.getName(0L);
+        }
+    }
+
+    @Test
+    public void testDecorateInvalidatesOnWrite() throws Exception {
+        final Service service = (Service) decorator.decorate("service", bean);
+
+        service.getName(1L);
+        service.updateName(1L);
+        service.getName(1L);
+
+        assertEquals(bean.reads.get(), 2);
+    }
+
+    @Test
+    public void testDecorateWithoutInvalidateOnWrite() throws Exception {
+        decorator.setInvalidateOnWrite(false);
+        final Service service = (Service) decorator.decorate("service", bean);
+
+        service.getName(1L);
+        service.updateName(1L);
+        service.getName(1L);
+
+        assertEquals(bean.reads.get(), 1);
+    }
+
+    @Test
+    public void testDecorateWithTimeToLive() throws Exception {
+        decorator.setTimeToLiveMillis(0L);
+        final Service service = (Service) decorator.decorate("service", bean);
+
+        service.getName(1L);
+        service.getName(1L);
+
+        assertEquals(bean.reads.get(), 2);
+    }
+
+    @Test
+    public void testDecorateWithMaxEntries() throws Exception {
+        decorator.setMaxEntries(4);
+        final Service service = (Service) decorator.decorate("service", bean);
+
+        for (long id = 1L; id <= 10L; id++) {
+            service.getName(id);
+        }
+        service.getName(10L);
+
+        assertEquals(bean.reads.get(), 10);
+        assertEquals(decorator.getMisses(), 10L);
+    }
+
+    @Test
+    public void testDecorateWithMethodPattern() throws Exception {
+        decorator.setMethodPattern("count.*");
+        final Service service = (Service) decorator.decorate("service", bean);
+
+        service.getName(1L);
+        service.getName(1L);
+
+        assertEquals(bean.reads.get(), 2);
+    }
+
+    @Test
+    public void testDecorateWithUnmatchedTypeFilter() throws Exception {
+        decorator.addTypeFilter(new AssignableTypeFilter(Runnable.class));
+
+        assertSame(decorator.decorate("service", bean), bean);
+    }
+
+    @Test
+    public void testDecorateWithMatchedTypeFilter() throws Exception {
+        decorator.addTypeFilter(new AssignableTypeFilter(Service.class));
+
+        assertNotSame(decorator.decorate("service", bean), bean);
+    }
+
+    @Test
+    public void testDecorateWithoutTypeFilter() throws Exception {
+        decorator.setCacheAllBeans(false);
+
+        assertSame(decorator.decorate("service", bean), bean);
+    }
+
+    @Test
+    public void testDecorateDoesNotCacheResultReadDuringInvalidation() throws Exception {
+        final AtomicInteger reads = new AtomicInteger();
+        final Service service = (Service) decorator.decorate("service", new CountingService() {
+            @Override
+            public String getName(final long id) {
+                reads.incrementAndGet();
+                decorator.invalidate("service");
+                return super.getName(id);
+            }
+        });
+
+        service.getName(1L);
+        service.getName(1L);
+
+        assertEquals(reads.get(), 2);
+    }
+
+    @Test
+    public void testDecorateWithoutInterfaces() throws Exception {
+        final Object plain = new Object();
+
+        assertSame(decorator.decorate("plain", plain), plain);
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        final Service service = (Service) decorator.decorate("service", bean);
+
+        service.getName(1L);
+        decorator.invalidate("service");
+        service.getName(1L);
+        decorator.invalidateAll();
+        service.getName(1L);
+
+        assertEquals(bean.reads.get(), 3);
+    }
+
+    @Test
+    public void testRelease() throws Exception {
+        final Service service = (Service) decorator.decorate("service", bean);
+        service.getName(1L);
+
+        decorator.release("service");
+        final Service released = (Service) decorator.decorate("service", bean);
+        released.getName(1L);
+        released.getName(1L);
+
+        assertEquals(bean.reads.get(), 2);
+    }
+
+    @Test
+    public void testDecorateSharesCacheByName() throws Exception {
+        final Service service1 = (Service) decorator.decorate("service", bean);
+        final Service service2 = (Service) decorator.decorate("service", bean);
+
+        service1.getName(1L);
+        service2.getName(1L);
+
+        assertEquals(bean.reads.get(), 1);
+    }
+
+    public interface Service {
+
+        String getName(long id);
+
+        int countNames(long[] ids);
+
+        void updateName(long id);
+
+    }
+
+    private static class CountingService implements Service {
+
+        private final AtomicInteger reads = new AtomicInteger();
+
+        @Override
+        public String getName(final long id) {
+            reads.incrementAndGet();
+            if (id == 0L) {
+                throw new IllegalArgumentException();
+            }
+            return id < 0L ? null : "name" + id;
+        }
+
+        @Override
+        public int countNames(final long[] ids) {
+            reads.incrementAndGet();
+            return ids.length;
+        }
+
+        @Override
+        public void updateName(final long id) {
+            // nothing to do
+        }
+
+    }
+
+}
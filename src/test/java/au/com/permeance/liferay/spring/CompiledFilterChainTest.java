@@ -0,0 +1,180 @@
+package au.com.permeance.liferay.spring;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.core.type.filter.RegexPatternTypeFilter;
+import org.springframework.core.type.filter.TypeFilter;
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class CompiledFilterChainTest {
+
+    private final ClassLoader classLoader = getClass().getClassLoader();
+
+    @Test
+    public void testCompile() throws Exception {
+        final TypeFilter regexFilter = new RegexPatternTypeFilter(Pattern.compile(".*"));
+        final TypeFilter springAssignableFilter = new AssignableTypeFilter(Runnable.class);
+        final TypeFilter springAnnotationFilter = new AnnotationTypeFilter(Marker.class);
+
+        final CompiledFilterChain chain = new CompiledFilterChain(asList(assignable(Runnable.class),
+                                                                         regexFilter,
+                                                                         annotation(Marker.class, true),
+                                                                         springAssignableFilter,
+                                                                         springAnnotationFilter), classLoader);
+
+        assertFalse(chain.isEmpty());
+        assertEquals(chain.getFallbackFilters(),
+                     asList(regexFilter, springAssignableFilter, springAnnotationFilter));
+    }
+
+    @Test
+    public void testCompileWithGeneratedFilters() throws Exception {
+        final CompiledFilterChain chain =
+            new CompiledFilterChain(asList(CopyManifestGenerator.filter("assignable:java.lang.Runnable"),
+                                           CopyManifestGenerator.filter("annotation:" + Marker.class.getName())),
+                                    classLoader);
+
+        assertTrue(chain.getFallbackFilters().isEmpty());
+        assertTrue(chain.matches(new SimpleMetadataReader(Derived.class), null));
+        assertTrue(chain.matches(new SimpleMetadataReader(ComposedBean.class), null));
+        assertFalse(chain.matches(new SimpleMetadataReader(Object.class), null));
+    }
+
+    @Test
+    public void testIsEmpty() throws Exception {
+        final List<TypeFilter> none = emptyList();
+
+        assertTrue(new CompiledFilterChain(none, classLoader).isEmpty());
+    }
+
+    @Test
+    public void testMatchesAssignable() throws Exception {
+        final CompiledFilterChain chain = new CompiledFilterChain(asList(assignable(Runnable.class),
+                                                                         assignable(Comparable.class)),
+                                                                  classLoader);
+
+        assertTrue(chain.matches(new SimpleMetadataReader(Derived.class), null));
+        assertTrue(chain.matches(new SimpleMetadataReader(String.class), null));
+        assertFalse(chain.matches(new SimpleMetadataReader(Object.class), null));
+        assertFalse(chain.matches(new SimpleMetadataReader(ComposedBean.class), null));
+    }
+
+    @Test
+    public void testMatchesAssignableWithMetadataReaderFactory() throws Exception {
+        final MetadataReaderFactory factory = new CachingMetadataReaderFactory(classLoader);
+        final CompiledFilterChain chain = new CompiledFilterChain(singletonList(assignable(Runnable.class)),
+                                                                  classLoader);
+
+        assertTrue(chain.matches(factory.getMetadataReader(Derived.class.getName()), factory));
+        assertFalse(chain.matches(factory.getMetadataReader(ComposedBean.class.getName()), factory));
+    }
+
+    @Test
+    public void testMatchesAnnotation() throws Exception {
+        final CompiledFilterChain chain = new CompiledFilterChain(singletonList(annotation(Marker.class, true)),
+                                                                  classLoader);
+
+        assertTrue(chain.matches(new SimpleMetadataReader(Base.class), null));
+        assertTrue(chain.matches(new SimpleMetadataReader(Derived.class), null));
+        assertTrue(chain.matches(new SimpleMetadataReader(ComposedBean.class), null));
+        assertFalse(chain.matches(new SimpleMetadataReader(Object.class), null));
+    }
+
+    @Test
+    public void testMatchesAnnotationWithoutMetaAnnotations() throws Exception {
+        final CompiledFilterChain chain =
+            new CompiledFilterChain(singletonList(annotation(Marker.class, false)), classLoader);
+
+        assertTrue(chain.matches(new SimpleMetadataReader(Base.class), null));
+        assertFalse(chain.matches(new SimpleMetadataReader(ComposedBean.class), null));
+    }
+
+    @Test
+    public void testMatchesAnnotationWithoutInheritance() throws Exception {
+        final CompiledFilterChain chain = new CompiledFilterChain(singletonList(annotation(Composed.class, true)),
+                                                                  classLoader);
+
+        assertTrue(chain.matches(new SimpleMetadataReader(ComposedBean.class), null));
+        assertFalse(chain.matches(new SimpleMetadataReader(DerivedComposedBean.class), null));
+    }
+
+    @Test
+    public void testMatchesAgreesWithFilters() throws Exception {
+        final MetadataReaderFactory factory = new CachingMetadataReaderFactory(classLoader);
+        final List<TypeFilter> filters = asList(assignable(Runnable.class),
+                                                assignable(Base.class),
+                                                assignable(Object.class),
+                                                annotation(Marker.class, true),
+                                                annotation(Marker.class, false),
+                                                annotation(Composed.class, true));
+        final List<Class<?>> classes = asList(Object.class, Base.class, Derived.class, ComposedBean.class,
+                                              DerivedComposedBean.class, Thread.class);
+
+        for (TypeFilter filter : filters) {
+            final CompiledFilterChain chain = new CompiledFilterChain(singletonList(filter), classLoader);
+            for (Class<?> clazz : classes) {
+                final boolean expected = filter.match(factory.getMetadataReader(clazz.getName()), factory);
+                assertEquals(chain.matches(new SimpleMetadataReader(clazz), null), expected, filter + " " + clazz);
+                if (!clazz.getName().startsWith("java.")) {
+                    assertEquals(chain.matches(factory.getMetadataReader(clazz.getName()), factory), expected,
+                                 filter + " " + clazz);
+                }
+            }
+        }
+    }
+
+    private static TypeFilter assignable(final Class<?> targetType) {
+        return new CopyManifestGenerator.DescribedAssignableTypeFilter(targetType);
+    }
+
+    private static TypeFilter annotation(final Class<? extends Annotation> annotationType,
+                                         final boolean considerMetaAnnotations) {
+        return new CopyManifestGenerator.DescribedAnnotationTypeFilter(annotationType, considerMetaAnnotations);
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Inherited
+    public @interface Marker {
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Marker
+    public @interface Composed {
+    }
+
+    @Marker
+    public static class Base implements Runnable {
+
+        @Override
+        public void run() {
+        }
+
+    }
+
+    public static class Derived extends Base {
+    }
+
+    @Composed
+    public static class ComposedBean {
+    }
+
+    public static class DerivedComposedBean extends ComposedBean {
+    }
+
+}
@@ -0,0 +1,129 @@
+package au.com.permeance.liferay.spring;
+
+import com.liferay.portal.kernel.bean.BeanLocator;
+import com.liferay.portal.kernel.bean.BeanLocatorException;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+
+import org.mockito.Mock;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+public class CompositeBeanLocatorTest {
+
+    @Mock
+    private BeanLocator beanLocator1;
+
+    @Mock
+    private BeanLocator beanLocator2;
+
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() throws Exception {
+        initMocks(this);
+        when(beanLocator1.getNames()).thenReturn(new String[]{"a", "b"});
+        when(beanLocator2.getNames()).thenReturn(new String[]{"b", "c"});
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testConstructorWithoutBeanLocators() throws Exception {
+        new CompositeBeanLocator(Collections.<BeanLocator>emptyList());
+    }
+
+    @Test
+    public void testGetNames() throws Exception {
+        final CompositeBeanLocator composite = new CompositeBeanLocator(asList(beanLocator1, beanLocator2));
+
+        assertEquals(composite.getNames(), new String[]{"a", "b", "c"});
+    }
+
+    @Test
+    public void testGetNamesConcurrently() throws Exception {
+        final ExecutorService executorService = newFixedThreadPool(2);
+        try {
+            final CompositeBeanLocator composite = new CompositeBeanLocator(asList(beanLocator2, beanLocator1));
+            composite.setExecutorService(executorService);
+
+            assertEquals(composite.getNames(), new String[]{"b", "c", "a"});
+        }
+        finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testLocate() throws Exception {
+        final Object bean1 = new Object();
+        final Object bean2 = new Object();
+        when(beanLocator1.locate("b")).thenReturn(bean1);
+        when(beanLocator2.locate("b")).thenReturn(bean2);
+        when(beanLocator2.locate("c")).thenReturn(bean2);
+        final CompositeBeanLocator composite = new CompositeBeanLocator(asList(beanLocator1, beanLocator2));
+        composite.getNames();
+
+        assertSame(composite.locate("b"), bean1);
+        assertSame(composite.locate("c"), bean2);
+        verify(beanLocator1, never()).locate("c");
+    }
+
+    @Test
+    public void testLocateUnlistedName() throws Exception {
+        final Object bean = new Object();
+        when(beanLocator1.locate("d")).thenThrow(new BeanLocatorException("d"));
+        when(beanLocator2.locate("d")).thenReturn(bean);
+        final CompositeBeanLocator composite = new CompositeBeanLocator(asList(beanLocator1, beanLocator2));
+
+        assertSame(composite.locate("d"), bean);
+        assertNull(composite.locate("e"));
+    }
+
+    @Test(expectedExceptions = BeanLocatorException.class)
+    public void testLocateUnknownName() throws Exception {
+        when(beanLocator1.locate("d")).thenThrow(new BeanLocatorException("d"));
+        final CompositeBeanLocator composite = new CompositeBeanLocator(asList(beanLocator1, beanLocator2));
+
+        composite.locate("d");
+    }
+
+    @Test
+    public void testGetType() throws Exception {
+        doReturn(Runnable.class).when(beanLocator1).getType("b");
+        doReturn(Thread.class).when(beanLocator2).getType("c");
+        final CompositeBeanLocator composite = new CompositeBeanLocator(asList(beanLocator1, beanLocator2));
+
+        assertEquals(composite.getType("c"), Thread.class);
+        composite.getNames();
+        assertEquals(composite.getType("b"), Runnable.class);
+    }
+
+    @Test
+    public void testGetClassLoader() throws Exception {
+        final ClassLoader classLoader = getClass().getClassLoader();
+        when(beanLocator1.getClassLoader()).thenReturn(classLoader);
+        final CompositeBeanLocator composite = new CompositeBeanLocator(asList(beanLocator1, beanLocator2));
+
+        assertSame(composite.getClassLoader(), classLoader);
+    }
+
+    @Test
+    public void testEquals() throws Exception {
+        final CompositeBeanLocator composite = new CompositeBeanLocator(asList(beanLocator1, beanLocator2));
+
+        assertEquals(composite, new CompositeBeanLocator(asList(beanLocator1, beanLocator2)));
+        assertEquals(composite.hashCode(), new CompositeBeanLocator(asList(beanLocator1, beanLocator2)).hashCode());
+        assertFalse(composite.equals(new CompositeBeanLocator(asList(beanLocator2, beanLocator1))));
+    }
+
+}
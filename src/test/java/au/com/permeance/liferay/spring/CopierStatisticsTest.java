@@ -0,0 +1,86 @@
+package au.com.permeance.liferay.spring;
+
+import org.testng.annotations.Test;
+
+import static au.com.permeance.liferay.spring.AcceptanceDecision.ACCEPTED;
+import static au.com.permeance.liferay.spring.AcceptanceDecision.EXCLUDED;
+import static au.com.permeance.liferay.spring.AcceptanceDecision.INDEXED_REJECTED;
+import static au.com.permeance.liferay.spring.AcceptanceDecision.NAME_EXCLUDED;
+import static au.com.permeance.liferay.spring.AcceptanceDecision.NOT_INCLUDED;
+import static au.com.permeance.liferay.spring.AcceptanceDecision.UNKNOWN_TYPE;
+import static au.com.permeance.liferay.spring.CopierPhase.LOCATE;
+import static org.testng.Assert.assertEquals;
+
+public class CopierStatisticsTest {
+
+    @Test
+    public void testRecordDecision() throws Exception {
+        final CopierStatistics statistics = new CopierStatistics();
+
+        statistics.recordDecision(ACCEPTED);
+        statistics.recordDecision(NAME_EXCLUDED);
+        statistics.recordDecision(UNKNOWN_TYPE);
+        statistics.recordDecision(EXCLUDED);
+        statistics.recordDecision(NOT_INCLUDED);
+        statistics.recordDecision(NOT_INCLUDED);
+        statistics.recordDecision(INDEXED_REJECTED);
+
+        assertEquals(statistics.getNamesScanned(), 7);
+        assertEquals(statistics.getDecisions(ACCEPTED), 1);
+        assertEquals(statistics.getNamesExcluded(), 1);
+        assertEquals(statistics.getUnknownTypes(), 1);
+        assertEquals(statistics.getExcluded(), 1);
+        assertEquals(statistics.getNotIncluded(), 2);
+        assertEquals(statistics.getIndexedRejected(), 1);
+    }
+
+    @Test
+    public void testRecordPhase() throws Exception {
+        final CopierStatistics statistics = new CopierStatistics();
+
+        statistics.recordPhase(LOCATE, 10);
+        statistics.recordPhase(LOCATE, 30);
+        statistics.recordPhase(LOCATE, 20);
+
+        assertEquals(statistics.getLocateNanos(), 60);
+        assertEquals(statistics.getMaxLocateNanos(), 30);
+        assertEquals(statistics.getDecorationNanos(), 0);
+        assertEquals(statistics.getRegistrationNanos(), 0);
+    }
+
+    @Test
+    public void testRecordCopy() throws Exception {
+        final CopierStatistics statistics = new CopierStatistics();
+
+        statistics.recordCopy(50);
+        statistics.recordCopy(20);
+
+        assertEquals(statistics.getCopies(), 2);
+        assertEquals(statistics.getLastCopyNanos(), 20);
+        assertEquals(statistics.getMaxCopyNanos(), 50);
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        final CopierStatistics statistics = new CopierStatistics();
+        statistics.recordCopy(50);
+        statistics.recordDecision(ACCEPTED);
+        statistics.recordLocateFailure();
+        statistics.recordDeferral();
+        statistics.recordRegistration();
+        statistics.recordPhase(LOCATE, 10);
+
+        statistics.reset();
+
+        assertEquals(statistics.getCopies(), 0);
+        assertEquals(statistics.getMaxCopyNanos(), 0);
+        assertEquals(statistics.getNamesScanned(), 0);
+        assertEquals(statistics.getDecisions(ACCEPTED), 0);
+        assertEquals(statistics.getLocateFailures(), 0);
+        assertEquals(statistics.getDeferrals(), 0);
+        assertEquals(statistics.getRegistered(), 0);
+        assertEquals(statistics.getLocateNanos(), 0);
+        assertEquals(statistics.getMaxLocateNanos(), 0);
+    }
+
+}
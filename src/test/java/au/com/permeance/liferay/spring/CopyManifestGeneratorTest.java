@@ -0,0 +1,158 @@
+package au.com.permeance.liferay.spring;
+
+import com.liferay.portal.kernel.bean.BeanLocator;
+import com.liferay.portal.kernel.bean.PortalBeanLocatorUtil;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.core.type.filter.RegexPatternTypeFilter;
+import org.springframework.core.type.filter.TypeFilter;
+import org.testng.annotations.Test;
+
+import static au.com.permeance.liferay.spring.TypeFilterFingerprint.fingerprint;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class CopyManifestGeneratorTest {
+
+    private static final List<TypeFilter> NONE = Collections.emptyList();
+
+    private final ClassLoader classLoader = getClass().getClassLoader();
+
+    @Test
+    public void testGenerate() throws Exception {
+        final List<TypeFilter> includeFilters = singletonList((TypeFilter) new AssignableTypeFilter(Runnable.class));
+        final List<TypeFilter> excludeFilters = singletonList((TypeFilter) new AssignableTypeFilter(Thread.class));
+
+        final CopyManifest manifest = CopyManifestGenerator.generate(asList("java.lang.Runnable",
+                                                                            "java.lang.Thread",
+                                                                            "java.lang.Object",
+                                                                            "invalid.class.Name"),
+                                                                     includeFilters,
+                                                                     excludeFilters,
+                                                                     new CachingMetadataReaderFactory(classLoader));
+
+        assertEquals(manifest.getNames(), Collections.singleton("java.lang.Runnable"));
+        assertEquals(manifest.getFingerprint(), fingerprint(includeFilters, excludeFilters));
+    }
+
+    @Test
+    public void testDocumentedConfiguration() throws Exception {
+        final BeanLocator beanLocator = mock(BeanLocator.class);
+        final Object bean = new Object();
+        when(beanLocator.getNames()).thenReturn(new String[]{"com.example.service.MissingLocalService",
+                                                             "java.lang.Thread"});
+        when(beanLocator.locate("com.example.service.MissingLocalService")).thenReturn(bean);
+        PortalBeanLocatorUtil.setBeanLocator(beanLocator);
+
+        try {
+            final ClassPathXmlApplicationContext context =
+                new ClassPathXmlApplicationContext("copy-manifest-context.xml");
+            try {
+                assertSame(context.getBean("com.example.service.MissingLocalService"), bean);
+                assertFalse(context.containsBean("java.lang.Thread"));
+            }
+            finally {
+                context.close();
+            }
+        }
+        finally {
+            PortalBeanLocatorUtil.setBeanLocator(null);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testGenerateWithUndescribableFilter() throws Exception {
+        final TypeFilter undescribable = new TypeFilter() {
+            @Override
+            public boolean match(final MetadataReader metadataReader,
+                                 final MetadataReaderFactory metadataReaderFactory) {
+                return true;
+            }
+        };
+
+        CopyManifestGenerator.generate(asList("java.lang.Runnable"), singletonList(undescribable), NONE,
+                                       new CachingMetadataReaderFactory(classLoader));
+    }
+
+    @Test
+    public void testParseFilter() throws Exception {
+        final TypeFilter assignable = CopyManifestGenerator.parseFilter("assignable:java.lang.Runnable", classLoader);
+        final TypeFilter annotation = CopyManifestGenerator.parseFilter("annotation:java.lang.Deprecated", classLoader);
+        final TypeFilter regex = CopyManifestGenerator.parseFilter("regex:java\\..*", classLoader);
+
+        assertTrue(assignable instanceof AssignableTypeFilter);
+        assertTrue(annotation instanceof AnnotationTypeFilter);
+        assertTrue(regex instanceof RegexPatternTypeFilter);
+        assertEquals(fingerprint(asList(assignable, annotation, regex), NONE),
+                     fingerprint(asList(CopyManifestGenerator.filter("assignable:java.lang.Runnable"),
+                                        CopyManifestGenerator.filter("annotation:java.lang.Deprecated"),
+                                        CopyManifestGenerator.filter("regex:java\\..*")),
+                                 NONE));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testParseFilterWithUnknownType() throws Exception {
+        CopyManifestGenerator.parseFilter("unknown:java.lang.Runnable", classLoader);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testParseFilterWithUnknownClass() throws Exception {
+        CopyManifestGenerator.parseFilter("assignable:invalid.class.Name", classLoader);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testParseFilterWithNonAnnotation() throws Exception {
+        CopyManifestGenerator.parseFilter("annotation:java.lang.Runnable", classLoader);
+    }
+
+    @Test
+    public void testScan() throws Exception {
+        final List<String> names = CopyManifestGenerator.scan(getClass().getPackage().getName(),
+                                                              new PathMatchingResourcePatternResolver(classLoader),
+                                                              new CachingMetadataReaderFactory(classLoader));
+
+        assertTrue(names.contains(getClass().getName()));
+        assertTrue(names.contains(CopyManifest.class.getName()));
+    }
+
+    @Test
+    public void testMain() throws Exception {
+        final File file = File.createTempFile("copy-manifest", ".txt");
+        file.deleteOnExit();
+
+        CopyManifestGenerator.main(new String[]{"--output=" + file.getPath(),
+                                                "--scan=" + getClass().getPackage().getName(),
+                                                "--name=java.lang.Thread",
+                                                "--include=regex:.*CopyManifest.*",
+                                                "--exclude=assignable:java.lang.Runnable"});
+        final CopyManifest manifest = CopyManifest.read(new FileSystemResource(file));
+
+        assertTrue(manifest.contains(CopyManifest.class.getName()));
+        assertTrue(manifest.contains(getClass().getName()));
+        assertFalse(manifest.contains("java.lang.Thread"));
+        assertFalse(manifest.contains(BeanLocatorDefinitionCopier.class.getName()));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMainWithoutOutput() throws Exception {
+        CopyManifestGenerator.main(new String[]{"--name=java.lang.Thread"});
+    }
+
+}
@@ -0,0 +1,51 @@
+package au.com.permeance.liferay.spring;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.springframework.core.io.ByteArrayResource;
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class CopyManifestTest {
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        final CopyManifest manifest = new CopyManifest("include[]exclude[]", asList("b.B", "a.A"));
+        final StringWriter writer = new StringWriter();
+
+        manifest.write(writer);
+        final CopyManifest result = CopyManifest.read(new ByteArrayResource(writer.toString().getBytes("UTF-8")));
+
+        assertEquals(result.getFingerprint(), "include[]exclude[]");
+        assertEquals(result.getNames(), manifest.getNames());
+        assertEquals(result.getNames().iterator().next(), "b.B");
+    }
+
+    @Test
+    public void testReadIgnoresCommentsAndBlankLines() throws Exception {
+        final CopyManifest manifest = CopyManifest.read(new StringReader("# comment\n\nfingerprint=abc\n  a.A  \n"),
+                                                        "test");
+
+        assertEquals(manifest.getFingerprint(), "abc");
+        assertTrue(manifest.contains("a.A"));
+        assertFalse(manifest.contains("# comment"));
+        assertEquals(manifest.getNames().size(), 1);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testReadWithoutFingerprint() throws Exception {
+        CopyManifest.read(new StringReader("a.A\n"), "test");
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testGetNamesIsUnmodifiable() throws Exception {
+        new CopyManifest("abc", asList("a.A")).getNames().add("b.B");
+    }
+
+}
@@ -0,0 +1,161 @@
+package au.com.permeance.liferay.spring;
+
+import com.liferay.portal.kernel.bean.BeanLocator;
+
+import java.util.concurrent.Callable;
+
+import org.mockito.Mock;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.context.annotation.AnnotationConfigUtils;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.Ordered;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+public class DemandDrivenBeanResolverTest {
+
+    @Mock
+    private BeanLocator beanLocator;
+
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() throws Exception {
+        initMocks(this);
+    }
+
+    @Test
+    public void testResolvesDependencies() throws Exception {
+        final Runnable runnable = mock(Runnable.class);
+        final Callable<?> constructed = mock(Callable.class);
+        final Object referenced = new Object();
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Runnable",
+                                                             "java.lang.Comparable",
+                                                             "java.lang.CharSequence",
+                                                             "java.util.concurrent.Callable",
+                                                             "java.lang.Object"});
+        when(beanLocator.locate("java.lang.Runnable")).thenReturn(runnable);
+        when(beanLocator.locate("java.lang.Comparable")).thenReturn("comparable");
+        when(beanLocator.locate("java.lang.CharSequence")).thenReturn(referenced);
+        when(beanLocator.locate("java.util.concurrent.Callable")).thenReturn(constructed);
+
+        final GenericApplicationContext context = newContext();
+        context.registerBeanDefinition("consumer", BeanDefinitionBuilder.genericBeanDefinition(Consumer.class)
+            .addPropertyValue("referenced", new RuntimeBeanReference("java.lang.CharSequence"))
+            .getBeanDefinition());
+        context.refresh();
+        try {
+            final Consumer consumer = context.getBean(Consumer.class);
+
+            assertSame(consumer.runnable, runnable);
+            assertEquals(consumer.comparable, "comparable");
+            assertSame(consumer.referenced, referenced);
+            assertSame(consumer.callable, constructed);
+            assertFalse(context.containsBean("java.lang.Object"));
+            verify(beanLocator, never()).locate("java.lang.Object");
+        }
+        finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testDoesNotResolveSatisfiedDependencies() throws Exception {
+        final Thread runnable = new Thread();
+        when(beanLocator.getNames()).thenReturn(new String[]{"java.lang.Runnable",
+                                                             "java.lang.Comparable",
+                                                             "java.util.concurrent.Callable"});
+        when(beanLocator.locate(anyString())).thenReturn(new Thread());
+
+        final GenericApplicationContext context = newContext();
+        context.getBeanFactory().registerSingleton("runnable", runnable);
+        context.getBeanFactory().registerSingleton("java.lang.Comparable", "comparable");
+        context.getBeanFactory().registerSingleton("callable", mock(Callable.class));
+        context.registerBeanDefinition("consumer", BeanDefinitionBuilder.genericBeanDefinition(Consumer.class)
+            .getBeanDefinition());
+        context.refresh();
+        try {
+            assertSame(context.getBean(Consumer.class).runnable, runnable);
+            verify(beanLocator, never()).locate(anyString());
+        }
+        finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testPostProcessBeforeInstantiationWithoutDependencies() throws Exception {
+        final BeanLocatorDefinitionCopier copier = new BeanLocatorDefinitionCopier(beanLocator);
+        final ListableBeanFactory beanFactory = mock(ListableBeanFactory.class);
+
+        final DemandDrivenBeanResolver resolver = new DemandDrivenBeanResolver(copier);
+        resolver.setBeanFactory(beanFactory);
+
+        assertNull(resolver.postProcessBeforeInstantiation(Object.class, "object"));
+        verify(beanLocator, never()).getNames();
+    }
+
+    @Test
+    public void testSetOrder() throws Exception {
+        final DemandDrivenBeanResolver resolver = new DemandDrivenBeanResolver(null);
+
+        assertEquals(resolver.getOrder(), Ordered.HIGHEST_PRECEDENCE);
+        resolver.setOrder(5);
+        assertEquals(resolver.getOrder(), 5);
+    }
+
+    private GenericApplicationContext newContext() {
+        final GenericApplicationContext context = new GenericApplicationContext();
+        AnnotationConfigUtils.registerAnnotationConfigProcessors(context);
+        context.registerBeanDefinition("copier",
+                                       BeanDefinitionBuilder.genericBeanDefinition(BeanLocatorDefinitionCopier.class)
+                                           .addConstructorArgValue(beanLocator)
+                                           .addPropertyValue("onDemand", true)
+                                           .getBeanDefinition());
+        context.registerBeanDefinition("resolver",
+                                       BeanDefinitionBuilder.genericBeanDefinition(DemandDrivenBeanResolver.class)
+                                           .addConstructorArgReference("copier")
+                                           .getBeanDefinition());
+        return context;
+    }
+
+    public static class Consumer {
+
+        @Autowired
+        private Runnable runnable;
+
+        private Comparable<?> comparable;
+
+        private final Callable<?> callable;
+
+        private Object referenced;
+
+        @Autowired
+        public Consumer(final Callable<?> callable) {
+            this.callable = callable;
+        }
+
+        @Autowired
+        public void setComparable(final Comparable<?> comparable) {
+            this.comparable = comparable;
+        }
+
+        public void setReferenced(final Object referenced) {
+            this.referenced = referenced;
+        }
+
+    }
+
+}
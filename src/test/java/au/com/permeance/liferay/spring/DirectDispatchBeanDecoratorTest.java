@@ -0,0 +1,133 @@
+package au.com.permeance.liferay.spring;
+
+import com.liferay.portal.kernel.bean.ClassLoaderBeanHandler;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.Callable;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static java.lang.reflect.Proxy.newProxyInstance;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class DirectDispatchBeanDecoratorTest {
+
+    private ClassLoader outerClassLoader;
+
+    private ClassLoader innerClassLoader;
+
+    private DirectDispatchBeanDecorator decorator;
+
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() throws Exception {
+        outerClassLoader = new URLClassLoader(new URL[0]);
+        innerClassLoader = new URLClassLoader(new URL[0]);
+        decorator = new DirectDispatchBeanDecorator();
+    }
+
+    @Test
+    // ContextClassLoaderBeanHandler is deprecated but must still be unwrapped
+    @SuppressWarnings("deprecation")
+    public void testDecorateUnwrapsNestedProxies() throws Exception {
+        final Object inner = proxy(new ClassLoaderBeanHandler(new ContextClassLoaderCapturingCallable(),
+                                                              innerClassLoader));
+        final Object outer =
+            proxy(new com.liferay.portal.kernel.bean.ContextClassLoaderBeanHandler(inner, outerClassLoader));
+
+        final Object decorated = decorator.decorate("bean", outer);
+
+        final InvocationHandler handler = Proxy.getInvocationHandler(decorated);
+        assertFalse(handler instanceof ClassLoaderBeanHandler);
+        assertTrue(decorated instanceof Callable);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDecoratePreservesContextClassLoader() throws Exception {
+        final ClassLoader original = Thread.currentThread().getContextClassLoader();
+        final Object inner = proxy(new ClassLoaderBeanHandler(new ContextClassLoaderCapturingCallable(),
+                                                              innerClassLoader));
+        final Object outer = proxy(new ClassLoaderBeanHandler(inner, outerClassLoader));
+
+        final Callable<ClassLoader> decorated = (Callable<ClassLoader>) decorator.decorate("bean", outer);
+
+        assertSame(decorated.call(), innerClassLoader);
+        assertSame(((Callable<ClassLoader>) outer).call(), innerClassLoader);
+        assertSame(Thread.currentThread().getContextClassLoader(), original);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDecorateWithoutClassLoader() throws Exception {
+        final ClassLoader original = Thread.currentThread().getContextClassLoader();
+        final Object outer = proxy(new ClassLoaderBeanHandler(new ContextClassLoaderCapturingCallable(), null));
+
+        final Callable<ClassLoader> decorated = (Callable<ClassLoader>) decorator.decorate("bean", outer);
+
+        assertSame(decorated.call(), original);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDecoratePropagatesExceptions() throws Exception {
+        final ClassLoader original = Thread.currentThread().getContextClassLoader();
+        final Object outer = proxy(new ClassLoaderBeanHandler(new FailingCallable(), innerClassLoader));
+
+        final Callable<ClassLoader> decorated = (Callable<ClassLoader>) decorator.decorate("bean", outer);
+
+        try {
+            decorated.call();
+            fail();
+        }
+        catch (final IllegalStateException e) {
+            assertEquals(e.getMessage(), "failed");
+        }
+        assertSame(Thread.currentThread().getContextClassLoader(), original);
+    }
+
+    @Test
+    public void testDecorateWithOtherProxy() throws Exception {
+        final Object bean = proxy(new LazyBeanInvocationHandler(null, "bean"));
+
+        assertSame(decorator.decorate("bean", bean), bean);
+    }
+
+    @Test
+    public void testDecorateWithPlainBean() throws Exception {
+        final Object bean = new Object();
+
+        assertSame(decorator.decorate("bean", bean), bean);
+    }
+
+    private static Object proxy(final InvocationHandler handler) {
+        return newProxyInstance(DirectDispatchBeanDecoratorTest.class.getClassLoader(),
+                                new Class<?>[]{Callable.class}, handler);
+    }
+
+    private static final class ContextClassLoaderCapturingCallable implements Callable<ClassLoader> {
+
+        @Override
+        public ClassLoader call() {
+            return Thread.currentThread().getContextClassLoader();
+        }
+
+    }
+
+    private static final class FailingCallable implements Callable<ClassLoader> {
+
+        @Override
+        public ClassLoader call() {
+            throw new IllegalStateException("failed");
+        }
+
+    }
+
+}
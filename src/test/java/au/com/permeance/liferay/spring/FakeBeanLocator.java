@@ -0,0 +1,172 @@
+package au.com.permeance.liferay.spring;
+
+import com.liferay.portal.kernel.bean.BeanLocator;
+import com.liferay.portal.kernel.bean.BeanLocatorException;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.locks.LockSupport.parkNanos;
+
+/**
+ * A configurable stand-in for liferay's {@link BeanLocator}, providing a number of synthetic names whose location
+ * takes a fixed time and fails for a random (but reproducible) fraction of them. The names do not identify classes, so
+ * copiers must read their metadata from {@link #getMetadataReaderFactory()}, which spends a fixed amount of CPU time
+ * per read to simulate the cost of loading classes.
+ */
+public class FakeBeanLocator implements BeanLocator {
+
+    private static final Class<?>[] TYPES = {Runnable.class, Comparable.class, Serializable.class, CharSequence.class};
+
+    private final String[] names;
+
+    private final Map<String, Class<?>> types = new HashMap<String, Class<?>>();
+
+    private final Map<String, Object> beans = new HashMap<String, Object>();
+
+    private final long locateLatencyNanos;
+
+    private final long classLoadingNanos;
+
+    private final AtomicLong locateCount = new AtomicLong();
+
+    /**
+     * Creates a locator providing the supplied number of names.
+     *
+     * @param nameCount          the number of names.
+     * @param locateLatencyNanos the time each call to {@link #locate(String)} takes, in nanoseconds.
+     * @param exceptionRate      the fraction (between 0 and 1) of names whose location fails.
+     * @param classLoadingNanos  the CPU time each metadata read takes, in nanoseconds.
+     */
+    public FakeBeanLocator(final int nameCount,
+                           final long locateLatencyNanos,
+                           final double exceptionRate,
+                           final long classLoadingNanos) {
+        this.locateLatencyNanos = locateLatencyNanos;
+        this.classLoadingNanos = classLoadingNanos;
+        final Random random = new Random(nameCount);
+        names = new String[nameCount];
+        for (int i = 0; i < nameCount; i++) {
+            names[i] = "com.example.fake.FakeService" + i;
+            types.put(names[i], TYPES[i % TYPES.length]);
+            if (random.nextDouble() >= exceptionRate) {
+                beans.put(names[i], new Object());
+            }
+        }
+    }
+
+    /**
+     * Returns the number of names of the supplied type.
+     *
+     * @param type the type to count.
+     *
+     * @return the number of names of the type.
+     */
+    public int getCount(final Class<?> type) {
+        int count = 0;
+        for (Class<?> nameType : types.values()) {
+            if (nameType == type) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of names of the supplied type whose location succeeds.
+     *
+     * @param type the type to count.
+     *
+     * @return the number of locatable names of the type.
+     */
+    public int getLocatableCount(final Class<?> type) {
+        int count = 0;
+        for (String name : beans.keySet()) {
+            if (types.get(name) == type) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of calls made to {@link #locate(String)}.
+     *
+     * @return the number of locate calls.
+     */
+    public long getLocateCount() {
+        return locateCount.get();
+    }
+
+    /**
+     * Returns a factory reading the metadata of the names provided by this locator, each read spending the configured
+     * class loading time.
+     *
+     * @return the metadata reader factory.
+     */
+    public MetadataReaderFactory getMetadataReaderFactory() {
+        return new MetadataReaderFactory() {
+            @Override
+            public MetadataReader getMetadataReader(final String className) throws IOException {
+                final long start = nanoTime();
+                while (nanoTime() - start < classLoadingNanos) {
+                    Thread.yield();
+                }
+                final Class<?> type = types.get(className);
+                if (type == null) {
+                    throw new IOException("Unknown class " + className);
+                }
+                return new SimpleMetadataReader(type);
+            }
+
+            @Override
+            public MetadataReader getMetadataReader(final Resource resource) {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public ClassLoader getClassLoader() {
+        return getClass().getClassLoader();
+    }
+
+    @Override
+    public String[] getNames() {
+        return names.clone();
+    }
+
+    @Override
+    public Class<?> getType(final String name) throws BeanLocatorException {
+        return types.get(name);
+    }
+
+    @Override
+    public Object locate(final String name) throws BeanLocatorException {
+        locateCount.incrementAndGet();
+        final long deadline = nanoTime() + locateLatencyNanos;
+        for (long remaining = locateLatencyNanos; remaining > 0; remaining = deadline - nanoTime()) {
+            parkNanos(remaining);
+        }
+        final Object bean = beans.get(name);
+        if (bean == null) {
+            throw new BeanLocatorException("Unable to locate " + name);
+        }
+        return bean;
+    }
+
+    @Override
+    public String toString() {
+        return "FakeBeanLocator[" + names.length + "]";
+    }
+
+}
@@ -0,0 +1,106 @@
+package au.com.permeance.liferay.spring;
+
+import java.util.concurrent.Callable;
+
+import org.mockito.Mock;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+public class InvocationMetricsDecoratorTest {
+
+    @Mock
+    private Callable<String> callable;
+
+    private InvocationMetricsDecorator decorator;
+
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() throws Exception {
+        initMocks(this);
+        decorator = new InvocationMetricsDecorator();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDecorateRecordsCalls() throws Exception {
+        when(callable.call()).thenReturn("result").thenThrow(new IllegalStateException());
+        final Callable<String> proxy = (Callable<String>) decorator.decorate("bean", callable);
+
+        assertEquals(proxy.call(), "result");
+        try {
+            proxy.call();
+            fail();
+        }
+        catch (final IllegalStateException e) {
+            // expected
+        }
+
+        assertEquals(decorator.getMethods(), new String[]{"bean#call"});
+        assertEquals(decorator.getCalls("bean#call"), 2L);
+        assertEquals(decorator.getErrors("bean#call"), 1L);
+        assertEquals(decorator.getMetrics("bean#call").getCalls(), 2L);
+    }
+
+    @Test
+    public void testDecorateDoesNotRecordObjectMethods() throws Exception {
+        final Object proxy = decorator.decorate("bean", callable);
+
+        proxy.toString();
+
+        assertEquals(decorator.getMethods(), new String[0]);
+    }
+
+    @Test
+    public void testGetMetricsOfUncalledMethod() throws Exception {
+        assertNull(decorator.getMetrics("bean#call"));
+        assertEquals(decorator.getCalls("bean#call"), 0L);
+        assertEquals(decorator.getErrors("bean#call"), 0L);
+        assertEquals(decorator.getMeanNanos("bean#call"), 0L);
+        assertEquals(decorator.getPercentileNanos("bean#call", 99), 0L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRelease() throws Exception {
+        ((Callable<String>) decorator.decorate("bean", callable)).call();
+        ((Callable<String>) decorator.decorate("beanOther", callable)).call();
+
+        decorator.release("bean");
+
+        assertNull(decorator.getMetrics("bean#call"));
+        assertEquals(decorator.getMethods(), new String[]{"beanOther#call"});
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPublishTo() throws Exception {
+        final InvocationMetricsSink sink = mock(InvocationMetricsSink.class);
+        ((Callable<String>) decorator.decorate("bean", callable)).call();
+
+        decorator.publishTo(sink);
+
+        verify(sink).record(eq("bean#call"), same(decorator.getMetrics("bean#call")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReset() throws Exception {
+        final Callable<String> proxy = (Callable<String>) decorator.decorate("bean", callable);
+        proxy.call();
+
+        decorator.reset();
+        proxy.call();
+
+        assertEquals(decorator.getCalls("bean#call"), 1L);
+    }
+
+}
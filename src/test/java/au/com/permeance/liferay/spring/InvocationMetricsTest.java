@@ -0,0 +1,111 @@
+package au.com.permeance.liferay.spring;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.Test;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static org.testng.Assert.assertEquals;
+
+public class InvocationMetricsTest {
+
+    @Test
+    public void testRecord() throws Exception {
+        final InvocationMetrics metrics = new InvocationMetrics();
+
+        metrics.record(100L, false);
+        metrics.record(3000L, true);
+
+        assertEquals(metrics.getCalls(), 2L);
+        assertEquals(metrics.getErrors(), 1L);
+        assertEquals(metrics.getTotalNanos(), 3100L);
+        assertEquals(metrics.getMeanNanos(), 1550L);
+        assertEquals(metrics.getHistogram()[0], 1L);
+        assertEquals(metrics.getHistogram()[2], 1L);
+    }
+
+    @Test
+    public void testRecordConcurrently() throws Exception {
+        final InvocationMetrics metrics = new InvocationMetrics();
+        final ExecutorService executorService = newFixedThreadPool(4);
+        try {
+            final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for (int i = 0; i < 4; i++) {
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int j = 0; j < 10000; j++) {
+                            metrics.record(1L, j % 10 == 0);
+                        }
+                        return null;
+                    }
+                });
+            }
+            for (Future<Void> future : executorService.invokeAll(tasks)) {
+                future.get();
+            }
+        }
+        finally {
+            executorService.shutdown();
+        }
+
+        assertEquals(metrics.getCalls(), 40000L);
+        assertEquals(metrics.getErrors(), 4000L);
+        assertEquals(metrics.getTotalNanos(), 40000L);
+    }
+
+    @Test
+    public void testGetMeanNanosWithoutCalls() throws Exception {
+        assertEquals(new InvocationMetrics().getMeanNanos(), 0L);
+    }
+
+    @Test
+    public void testGetPercentileNanos() throws Exception {
+        final InvocationMetrics metrics = new InvocationMetrics();
+        for (int i = 0; i < 99; i++) {
+            metrics.record(500L, false);
+        }
+        metrics.record(5000000L, false);
+
+        assertEquals(metrics.getPercentileNanos(50), 1024L);
+        assertEquals(metrics.getPercentileNanos(99), 1024L);
+        assertEquals(metrics.getPercentileNanos(100), 1L << 23);
+        assertEquals(new InvocationMetrics().getPercentileNanos(99), 0L);
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        final InvocationMetrics metrics = new InvocationMetrics();
+        metrics.record(100L, true);
+
+        metrics.reset();
+
+        assertEquals(metrics.getCalls(), 0L);
+        assertEquals(metrics.getErrors(), 0L);
+        assertEquals(metrics.getTotalNanos(), 0L);
+        assertEquals(metrics.getHistogram()[0], 0L);
+    }
+
+    @Test
+    public void testBucket() throws Exception {
+        assertEquals(InvocationMetrics.bucket(0L), 0);
+        assertEquals(InvocationMetrics.bucket(1023L), 0);
+        assertEquals(InvocationMetrics.bucket(1024L), 1);
+        assertEquals(InvocationMetrics.bucket(2047L), 1);
+        assertEquals(InvocationMetrics.bucket(2048L), 2);
+        assertEquals(InvocationMetrics.bucket(Long.MAX_VALUE), InvocationMetrics.BUCKETS - 1);
+        assertEquals(InvocationMetrics.getUpperBoundNanos(InvocationMetrics.BUCKETS - 1), Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testStripes() throws Exception {
+        assertEquals(InvocationMetrics.stripes(1), 2);
+        assertEquals(InvocationMetrics.stripes(3), 8);
+        assertEquals(InvocationMetrics.stripes(256), 64);
+    }
+
+}
@@ -0,0 +1,85 @@
+package au.com.permeance.liferay.spring;
+
+import com.liferay.portal.kernel.bean.BeanLocator;
+import com.liferay.portal.kernel.bean.BeanLocatorException;
+
+import java.util.concurrent.Callable;
+
+import org.mockito.Mock;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static au.com.permeance.liferay.spring.LazyBeanInvocationHandler.newLazyProxy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+public class LazyBeanInvocationHandlerTest {
+
+    @Mock
+    private BeanLocator beanLocator;
+
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() throws Exception {
+        initMocks(this);
+    }
+
+    @Test
+    public void testNewLazyProxyDoesNotLocate() throws Exception {
+        newLazyProxy(beanLocator, "test", Runnable.class);
+
+        verifyZeroInteractions(beanLocator);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testInvokeLocatesOnce() throws Exception {
+        final Callable<String> target = mock(Callable.class);
+        when(target.call()).thenReturn("result");
+        when(beanLocator.locate("test")).thenReturn(target);
+        final Callable<String> proxy = (Callable<String>) newLazyProxy(beanLocator, "test", Callable.class);
+
+        final String result1 = proxy.call();
+        final String result2 = proxy.call();
+
+        assertEquals(result1, "result");
+        assertEquals(result2, "result");
+        verify(beanLocator, times(1)).locate("test");
+        verify(target, times(2)).call();
+    }
+
+    @Test
+    public void testGetTarget() throws Exception {
+        final Object target = new Object();
+        when(beanLocator.locate("test")).thenReturn(target);
+        final LazyBeanInvocationHandler handler = new LazyBeanInvocationHandler(beanLocator, "test");
+
+        final Object result = handler.getTarget();
+
+        assertSame(result, target);
+    }
+
+    @Test(expectedExceptions = BeanLocatorException.class)
+    public void testGetTargetWithNullBean() throws Exception {
+        final LazyBeanInvocationHandler handler = new LazyBeanInvocationHandler(beanLocator, "test");
+
+        handler.getTarget();
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    @SuppressWarnings("unchecked")
+    public void testInvokeUnwrapsTargetException() throws Exception {
+        final Callable<String> target = mock(Callable.class);
+        when(target.call()).thenThrow(new IllegalStateException());
+        when(beanLocator.locate("test")).thenReturn(target);
+        final Callable<String> proxy = (Callable<String>) newLazyProxy(beanLocator, "test", Callable.class);
+
+        proxy.call();
+    }
+
+}
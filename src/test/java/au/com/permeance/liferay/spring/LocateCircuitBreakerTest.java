@@ -0,0 +1,68 @@
+package au.com.permeance.liferay.spring;
+
+import java.util.Collections;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class LocateCircuitBreakerTest {
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testConstructorWithInvalidFailureThreshold() throws Exception {
+        new LocateCircuitBreaker(0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testConstructorWithInvalidResetInterval() throws Exception {
+        new LocateCircuitBreaker(1, -1);
+    }
+
+    @Test
+    public void testRecordFailureOpensCircuit() throws Exception {
+        final LocateCircuitBreaker breaker = new LocateCircuitBreaker(2);
+
+        assertFalse(breaker.recordFailure("a"));
+        assertTrue(breaker.allows("a"));
+        assertTrue(breaker.recordFailure("a"));
+
+        assertFalse(breaker.allows("a"));
+        assertTrue(breaker.allows("b"));
+        assertEquals(breaker.getOpenNames(), Collections.singletonList("a"));
+    }
+
+    @Test
+    public void testRecordSuccessClosesCircuit() throws Exception {
+        final LocateCircuitBreaker breaker = new LocateCircuitBreaker(2);
+        breaker.recordFailure("a");
+
+        breaker.recordSuccess("a");
+
+        assertFalse(breaker.recordFailure("a"));
+        assertTrue(breaker.allows("a"));
+    }
+
+    @Test
+    public void testAllowsAttemptAfterResetInterval() throws Exception {
+        final LocateCircuitBreaker breaker = new LocateCircuitBreaker(1, 0);
+        breaker.recordFailure("a");
+
+        assertTrue(breaker.allows("a"));
+        assertTrue(breaker.recordFailure("a"));
+        assertEquals(breaker.getOpenNames(), Collections.singletonList("a"));
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        final LocateCircuitBreaker breaker = new LocateCircuitBreaker(1);
+        breaker.recordFailure("a");
+
+        breaker.reset();
+
+        assertTrue(breaker.allows("a"));
+        assertTrue(breaker.getOpenNames().isEmpty());
+    }
+
+}
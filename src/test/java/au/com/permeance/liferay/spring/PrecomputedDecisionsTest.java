@@ -0,0 +1,134 @@
+package au.com.permeance.liferay.spring;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.core.io.ByteArrayResource;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+
+public class PrecomputedDecisionsTest {
+
+    private static final String[] NAMES = {"a.A", "b.B", "c.C"};
+
+    private File file;
+
+    private PrecomputedDecisions precomputedDecisions;
+
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() throws Exception {
+        file = File.createTempFile("acceptance", ".idx");
+        file.delete();
+        precomputedDecisions = new PrecomputedDecisions();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    @Test
+    public void testIndexFingerprint() throws Exception {
+        final BeanNameFilter nameFilter = new BeanNameFilter();
+
+        assertEquals(PrecomputedDecisions.indexFingerprint("abc", null), "abc");
+        assertEquals(PrecomputedDecisions.indexFingerprint("abc", nameFilter), "abc" + nameFilter);
+        assertNull(PrecomputedDecisions.indexFingerprint(null, nameFilter));
+    }
+
+    @Test
+    public void testLookupWithoutManifestOrIndex() throws Exception {
+        final PrecomputedDecisions.Lookup lookup = precomputedDecisions.lookup(NAMES, "abc", null);
+
+        assertNull(lookup.getDecisions());
+        lookup.store(resolutions(true, false, true));
+    }
+
+    @Test
+    public void testLookupWithManifest() throws Exception {
+        precomputedDecisions.setCopyManifest(manifest("abc", "a.A", "c.C"));
+        precomputedDecisions.setAcceptanceIndex(new AcceptanceIndex(file));
+        final BeanNameFilter nameFilter = new BeanNameFilter();
+        nameFilter.addExcludePrefix("c.");
+
+        final PrecomputedDecisions.Lookup lookup = precomputedDecisions.lookup(NAMES, "abc", nameFilter);
+
+        assertEquals(lookup.getDecisions(), new boolean[] {true, false, false});
+        lookup.store(resolutions(false, false, false));
+        assertNull(new AcceptanceIndex(file).load(AcceptanceIndex.key(NAMES, "abc" + nameFilter), NAMES.length));
+    }
+
+    @Test
+    public void testGetManifestDecisionsWithDifferentFilters() throws Exception {
+        precomputedDecisions.setCopyManifest(manifest("abc", "a.A"));
+
+        assertNull(precomputedDecisions.getManifestDecisions(NAMES, "other", null));
+        assertNull(precomputedDecisions.getManifestDecisions(NAMES, null, null));
+    }
+
+    @Test
+    public void testGetManifestDecisionsWithUnreadableManifest() throws Exception {
+        precomputedDecisions.setCopyManifest(new ByteArrayResource("a.A\n".getBytes("UTF-8")));
+
+        assertNull(precomputedDecisions.getManifestDecisions(NAMES, "abc", null));
+    }
+
+    @Test
+    public void testLookupWithIndex() throws Exception {
+        precomputedDecisions.setAcceptanceIndex(new AcceptanceIndex(file));
+
+        final PrecomputedDecisions.Lookup missed = precomputedDecisions.lookup(NAMES, "abc", null);
+        missed.store(resolutions(true, false, true));
+        final PrecomputedDecisions.Lookup found = precomputedDecisions.lookup(NAMES, "abc", null);
+
+        assertNull(missed.getDecisions());
+        assertEquals(found.getDecisions(), new boolean[] {true, false, true});
+        assertNull(precomputedDecisions.lookup(NAMES, "other", null).getDecisions());
+    }
+
+    @Test
+    public void testLookupWithIndexWithoutFingerprint() throws Exception {
+        precomputedDecisions.setAcceptanceIndex(new AcceptanceIndex(file));
+
+        final PrecomputedDecisions.Lookup lookup = precomputedDecisions.lookup(NAMES, null, null);
+        lookup.store(resolutions(true, true, true));
+
+        assertNull(lookup.getDecisions());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        precomputedDecisions.setCopyManifest(manifest("abc", "a.A"));
+        assertEquals(precomputedDecisions.getManifestDecisions(NAMES, "abc", null), new boolean[] {true, false, false});
+
+        precomputedDecisions.clear();
+
+        assertEquals(precomputedDecisions.getManifestDecisions(NAMES, "abc", null), new boolean[] {true, false, false});
+    }
+
+    private static ByteArrayResource manifest(final String fingerprint, final String... names) throws Exception {
+        final StringBuilder builder = new StringBuilder("fingerprint=").append(fingerprint).append('\n');
+        for (String name : names) {
+            builder.append(name).append('\n');
+        }
+        return new ByteArrayResource(builder.toString().getBytes("UTF-8"));
+    }
+
+    private static List<Resolution> resolutions(final boolean... accepted) {
+        final List<Resolution> resolutions = new ArrayList<Resolution>();
+        for (int i = 0; i < accepted.length; i++) {
+            final Resolution resolution = new Resolution(NAMES[i]);
+            resolution.decision = accepted[i] ? AcceptanceDecision.ACCEPTED : AcceptanceDecision.NOT_INCLUDED;
+            resolutions.add(resolution);
+        }
+        return resolutions;
+    }
+
+}
@@ -0,0 +1,134 @@
+package au.com.permeance.liferay.spring;
+
+import com.liferay.portal.kernel.bean.BeanLocator;
+
+import org.mockito.Mock;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.config.SingletonBeanRegistry;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class SharedBeanFactoryRegistryTest {
+
+    @Mock
+    private BeanLocator beanLocator;
+
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() throws Exception {
+        initMocks(this);
+    }
+
+    @Test
+    public void testGetSharedInstance() throws Exception {
+        final SharedBeanFactoryRegistry registry = SharedBeanFactoryRegistry.getSharedInstance();
+
+        assertSame(registry, SharedBeanFactoryRegistry.getSharedInstance());
+    }
+
+    @Test
+    public void testGetBeanFactory() throws Exception {
+        final Object bean = new Object();
+        final CountingPopulator populator = new CountingPopulator(bean);
+        final SharedBeanFactoryRegistry registry = new SharedBeanFactoryRegistry();
+
+        final BeanFactory beanFactory = registry.getBeanFactory(beanLocator, "key", populator);
+
+        assertSame(registry.getBeanFactory(beanLocator, "key", populator), beanFactory);
+        assertNotSame(registry.getBeanFactory(beanLocator, "other", populator), beanFactory);
+        assertSame(beanFactory.getBean("bean"), bean);
+        assertTrue(((ConfigurableListableBeanFactory) beanFactory).isConfigurationFrozen());
+        assertEquals(populator.count, 2);
+        assertEquals(registry.size(), 2);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testRegisterSingletonAfterSealing() throws Exception {
+        final SharedBeanFactoryRegistry registry = new SharedBeanFactoryRegistry();
+
+        final BeanFactory beanFactory = registry.getBeanFactory(beanLocator, "key", new CountingPopulator(null));
+
+        ((SingletonBeanRegistry) beanFactory).registerSingleton("other", new Object());
+    }
+
+    @Test
+    public void testGetBeanFactoryAfterPopulationFailure() throws Exception {
+        final SharedBeanFactoryRegistry registry = new SharedBeanFactoryRegistry();
+        final RuntimeException exception = new IllegalStateException();
+        try {
+            registry.getBeanFactory(beanLocator, "key", new SharedBeanFactoryRegistry.Populator() {
+                @Override
+                public void populate(final SingletonBeanRegistry singletonBeanRegistry) {
+                    throw exception;
+                }
+            });
+            fail("Expected population failure");
+        } catch (IllegalStateException e) {
+            assertSame(e, exception);
+        }
+        final Object bean = new Object();
+
+        final BeanFactory beanFactory = registry.getBeanFactory(beanLocator, "key", new CountingPopulator(bean));
+
+        assertSame(beanFactory.getBean("bean"), bean);
+    }
+
+    @Test
+    public void testRelease() throws Exception {
+        final SharedBeanFactoryRegistry registry = new SharedBeanFactoryRegistry();
+        final CountingPopulator populator = new CountingPopulator(null);
+        registry.getBeanFactory(beanLocator, "key", populator);
+
+        registry.release(beanLocator);
+        registry.getBeanFactory(beanLocator, "key", populator);
+
+        assertEquals(populator.count, 2);
+        assertEquals(registry.size(), 1);
+    }
+
+    @Test
+    public void testReleaseBeanFactory() throws Exception {
+        final SharedBeanFactoryRegistry registry = new SharedBeanFactoryRegistry();
+        final CountingPopulator populator = new CountingPopulator(null);
+        final BeanFactory beanFactory = registry.getBeanFactory(beanLocator, "key", populator);
+        registry.getBeanFactory(beanLocator, "key", populator);
+
+        registry.release(beanLocator, beanFactory);
+        assertEquals(registry.size(), 1);
+        registry.release(beanLocator, beanFactory);
+        assertEquals(registry.size(), 0);
+
+        registry.getBeanFactory(beanLocator, "key", populator);
+        registry.release(beanLocator, beanFactory);
+        assertEquals(registry.size(), 1);
+        assertEquals(populator.count, 2);
+    }
+
+    private static final class CountingPopulator implements SharedBeanFactoryRegistry.Populator {
+
+        private final Object bean;
+
+        private int count;
+
+        CountingPopulator(final Object bean) {
+            this.bean = bean;
+        }
+
+        @Override
+        public void populate(final SingletonBeanRegistry singletonBeanRegistry) {
+            count++;
+            if (bean != null) {
+                singletonBeanRegistry.registerSingleton("bean", bean);
+            }
+        }
+
+    }
+
+}
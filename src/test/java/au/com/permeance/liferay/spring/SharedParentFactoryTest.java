@@ -0,0 +1,126 @@
+package au.com.permeance.liferay.spring;
+
+import com.liferay.portal.kernel.bean.BeanLocator;
+
+import org.mockito.Mock;
+import org.springframework.beans.factory.config.SingletonBeanRegistry;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.context.ApplicationContext;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class SharedParentFactoryTest {
+
+    @Mock
+    private BeanLocator beanLocator;
+
+    @Mock
+    private ApplicationContext context;
+
+    private SharedBeanFactoryRegistry registry;
+
+    private SharedParentFactory sharedParentFactory;
+
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() throws Exception {
+        initMocks(this);
+        registry = new SharedBeanFactoryRegistry();
+        sharedParentFactory = new SharedParentFactory();
+    }
+
+    @Test
+    public void testKey() throws Exception {
+        assertEquals(SharedParentFactory.key("fingerprint", false), "fingerprint");
+        assertEquals(SharedParentFactory.key("fingerprint", true), "fingerprintlazy");
+        assertNull(SharedParentFactory.key(null, true));
+    }
+
+    @Test
+    public void testIsEnabled() throws Exception {
+        assertFalse(sharedParentFactory.isEnabled());
+
+        sharedParentFactory.setRegistry(registry);
+
+        assertTrue(sharedParentFactory.isEnabled());
+    }
+
+    @Test
+    public void testAttachAndRelease() throws Exception {
+        sharedParentFactory.setRegistry(registry);
+        final SharedParentFactory otherParentFactory = new SharedParentFactory();
+        otherParentFactory.setRegistry(registry);
+        final DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        final DefaultListableBeanFactory other = new DefaultListableBeanFactory();
+        final Object bean = new Object();
+
+        final boolean attached =
+            sharedParentFactory.attach(context, beanFactory, beanLocator, "fingerprint", false, populator(bean));
+
+        assertTrue(attached);
+        assertTrue(otherParentFactory.attach(context, other, beanLocator, "fingerprint", false, populator(bean)));
+
+        assertSame(beanFactory.getBean("bean"), bean);
+        assertSame(other.getParentBeanFactory(), beanFactory.getParentBeanFactory());
+        sharedParentFactory.release(beanLocator);
+        assertEquals(registry.size(), 1);
+        otherParentFactory.release(beanLocator);
+        assertEquals(registry.size(), 0);
+    }
+
+    @Test
+    public void testAttachWithoutFingerprint() throws Exception {
+        sharedParentFactory.setRegistry(registry);
+        final DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+
+        assertFalse(sharedParentFactory.attach(context, beanFactory, beanLocator, null, false, populator(null)));
+
+        assertNull(beanFactory.getParentBeanFactory());
+        assertEquals(registry.size(), 0);
+    }
+
+    @Test
+    public void testAttachWithParent() throws Exception {
+        sharedParentFactory.setRegistry(registry);
+        final DefaultListableBeanFactory parent = new DefaultListableBeanFactory();
+        final DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory(parent);
+
+        final boolean attached =
+            sharedParentFactory.attach(context, beanFactory, beanLocator, "fingerprint", false, populator(null));
+
+        assertFalse(attached);
+        assertSame(beanFactory.getParentBeanFactory(), parent);
+        assertEquals(registry.size(), 0);
+    }
+
+    @Test
+    public void testDiscard() throws Exception {
+        sharedParentFactory.setRegistry(registry);
+        sharedParentFactory.attach(context, new DefaultListableBeanFactory(), beanLocator, "fingerprint", false,
+                                   populator(null));
+        sharedParentFactory.attach(context, new DefaultListableBeanFactory(), beanLocator, "fingerprint", true,
+                                   populator(null));
+
+        sharedParentFactory.discard(beanLocator);
+
+        assertEquals(registry.size(), 0);
+    }
+
+    private static SharedBeanFactoryRegistry.Populator populator(final Object bean) {
+        return new SharedBeanFactoryRegistry.Populator() {
+            @Override
+            public void populate(final SingletonBeanRegistry singletonBeanRegistry) {
+                if (bean != null) {
+                    singletonBeanRegistry.registerSingleton("bean", bean);
+                }
+            }
+        };
+    }
+
+}
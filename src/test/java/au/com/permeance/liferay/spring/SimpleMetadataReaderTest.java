@@ -2,10 +2,12 @@ package au.com.permeance.liferay.spring;
 
 import org.springframework.core.io.Resource;
 import org.springframework.core.type.StandardAnnotationMetadata;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.testng.annotations.Test;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 
 public class SimpleMetadataReaderTest {
 
@@ -38,4 +40,23 @@ public class SimpleMetadataReaderTest {
         assertEquals(className, SimpleMetadataReaderTest.class.getName());
     }
 
+    @Test
+    public void testMetadataIsBuiltLazily() throws Exception {
+        final SimpleMetadataReader reader = new SimpleMetadataReader(getClass());
+
+        final Object metadata = ReflectionTestUtils.getField(reader, "standardAnnotationMetadata");
+
+        assertNull(metadata);
+    }
+
+    @Test
+    public void testMetadataIsShared() throws Exception {
+        final SimpleMetadataReader reader = new SimpleMetadataReader(getClass());
+
+        final StandardAnnotationMetadata classMetadata = reader.getClassMetadata();
+        final StandardAnnotationMetadata annotationMetadata = reader.getAnnotationMetadata();
+
+        assertSame(classMetadata, annotationMetadata);
+    }
+
 }
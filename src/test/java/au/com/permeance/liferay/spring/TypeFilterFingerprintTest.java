@@ -0,0 +1,148 @@
+package au.com.permeance.liferay.spring;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.mockito.Mock;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.core.type.filter.RegexPatternTypeFilter;
+import org.springframework.core.type.filter.TypeFilter;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static au.com.permeance.liferay.spring.TypeFilterFingerprint.fingerprint;
+import static java.util.Arrays.asList;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+
+public class TypeFilterFingerprintTest {
+
+    private static final List<TypeFilter> NONE = Collections.emptyList();
+
+    @Mock
+    private TypeFilter typeFilter;
+
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() throws Exception {
+        initMocks(this);
+    }
+
+    @Test
+    public void testFingerprintWithEquivalentFilters() throws Exception {
+        final String fingerprint1 = fingerprint(asList(CopyManifestGenerator.filter("assignable:java.lang.Runnable"),
+                                                       CopyManifestGenerator.filter("annotation:java.lang.Deprecated"),
+                                                       CopyManifestGenerator.filter("regex:com\\..*")),
+                                                NONE);
+        final String fingerprint2 = fingerprint(asList(CopyManifestGenerator.filter("assignable:java.lang.Runnable"),
+                                                       CopyManifestGenerator.filter("annotation:java.lang.Deprecated"),
+                                                       CopyManifestGenerator.filter("regex:com\\..*")),
+                                                NONE);
+
+        assertEquals(fingerprint1, fingerprint2);
+    }
+
+    @Test
+    public void testFingerprintWithDifferentFilters() throws Exception {
+        final String fingerprint1 = fingerprint(asList(CopyManifestGenerator.filter("assignable:java.lang.Runnable")),
+                                                NONE);
+        final String fingerprint2 = fingerprint(asList(CopyManifestGenerator.filter("assignable:java.lang.Object")),
+                                                NONE);
+
+        assertFalse(fingerprint1.equals(fingerprint2));
+    }
+
+    @Test
+    public void testFingerprintWithSpringFilters() throws Exception {
+        final String fingerprint1 = fingerprint(asList(new AssignableTypeFilter(Runnable.class),
+                                                       new AnnotationTypeFilter(Deprecated.class),
+                                                       new RegexPatternTypeFilter(Pattern.compile("com\\..*"))),
+                                                NONE);
+        final String fingerprint2 = fingerprint(asList(new AssignableTypeFilter(Runnable.class),
+                                                       new AnnotationTypeFilter(Deprecated.class),
+                                                       new RegexPatternTypeFilter(Pattern.compile("com\\..*"))),
+                                                NONE);
+
+        assertEquals(fingerprint1, fingerprint2);
+    }
+
+    @Test
+    public void testFingerprintWithDifferentSpringFilters() throws Exception {
+        final String fingerprint1 = fingerprint(asList(new AssignableTypeFilter(String.class)), NONE);
+        final String fingerprint2 = fingerprint(asList(new AssignableTypeFilter(Integer.class)), NONE);
+        final String fingerprint3 = fingerprint(asList(new AssignableTypeFilter(List.class)), NONE);
+        final String fingerprint4 = fingerprint(asList(new AnnotationTypeFilter(Deprecated.class, false)), NONE);
+        final String fingerprint5 = fingerprint(asList(new AnnotationTypeFilter(Deprecated.class, true, true)), NONE);
+
+        assertEquals(new HashSet<String>(asList(fingerprint1, fingerprint2, fingerprint3)).size(), 3);
+        assertFalse(fingerprint4.equals(fingerprint5));
+    }
+
+    @Test
+    public void testFingerprintWithSpringAndGeneratedFilters() throws Exception {
+        final String fingerprint1 = fingerprint(asList(new AssignableTypeFilter(Runnable.class),
+                                                       new AnnotationTypeFilter(Deprecated.class),
+                                                       new RegexPatternTypeFilter(Pattern.compile("com\\..*"))),
+                                                NONE);
+        final String fingerprint2 = fingerprint(asList(CopyManifestGenerator.filter("assignable:java.lang.Runnable"),
+                                                       CopyManifestGenerator.filter("annotation:java.lang.Deprecated"),
+                                                       CopyManifestGenerator.filter("regex:com\\..*")),
+                                                NONE);
+
+        assertEquals(fingerprint1, fingerprint2);
+    }
+
+    @Test
+    public void testFingerprintWithUndescribableFilter() throws Exception {
+        assertNull(fingerprint(asList(new AssignableTypeFilter(Runnable.class), typeFilter), NONE));
+        assertNull(fingerprint(NONE, asList(typeFilter)));
+    }
+
+    @Test
+    public void testFingerprintDistinguishesIncludesFromExcludes() throws Exception {
+        final List<TypeFilter> filters = asList((TypeFilter) new AssignableTypeFilter(Runnable.class));
+
+        final String fingerprint1 = fingerprint(filters, NONE);
+        final String fingerprint2 = fingerprint(NONE, filters);
+
+        assertFalse(fingerprint1.equals(fingerprint2));
+    }
+
+    @Test
+    public void testDescribeWithUndescribableFilter() throws Exception {
+        assertNull(TypeFilterFingerprint.describe(typeFilter));
+        assertNull(TypeFilterFingerprint.describe(new AssignableTypeFilter(Runnable.class) {
+        }));
+    }
+
+    @Test
+    public void testDescribeWithPublicProperties() throws Exception {
+        final String description = TypeFilterFingerprint.describe(new PropertyTypeFilter());
+
+        assertEquals(description, PropertyTypeFilter.class.getName() + "{name=value,type=java.lang.Runnable,}");
+    }
+
+    public static class PropertyTypeFilter implements TypeFilter {
+
+        public String getName() {
+            return "value";
+        }
+
+        public Class<?> getType() {
+            return Runnable.class;
+        }
+
+        @Override
+        public boolean match(final MetadataReader metadataReader, final MetadataReaderFactory metadataReaderFactory) {
+            return false;
+        }
+
+    }
+
+}